@@ -0,0 +1,86 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the "call" instruction of the SML machine
+ */
+class CallInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        regs = m.registers();
+        m.labels().addLabel("f0");
+        m.labels().addLabel("f1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_JumpsToLabelAndPushesReturnAddress() {
+        m.pc(5);
+        i = new CallInstruction("lbl", "f1");
+        i.execute(m);
+
+        Assertions.assertEquals(1, m.pc());
+        Assertions.assertEquals(1, m.callDepth());
+        Assertions.assertEquals(5, m.popReturn());
+    }
+
+    @Test
+    void execute_UndefinedLabel_Throws() {
+        i = new CallInstruction("lbl", "nowhere");
+
+        Assertions.assertThrows(IllegalStateException.class, () -> i.execute(m));
+        Assertions.assertEquals(0, m.callDepth());
+    }
+
+    @Test
+    void execute_TooManyCallsOutstanding_Throws() {
+        i = new CallInstruction("lbl", "f0");
+        for (int n = 0; n < Machine.MAX_CALL_DEPTH; n++) {
+            i.execute(m);
+        }
+
+        Assertions.assertThrows(IllegalStateException.class, () -> i.execute(m));
+    }
+
+    @Test
+    void execute_SubroutineRunsAndReturns() {
+        m.labels().reset();
+        m.prog(List.of(
+            new CallInstruction("c0", "sub"),
+            new OutInstruction("c1", 1),
+            new BnzInstruction("c2", 1, "end"),
+            new LinInstruction("sub", 1, 42),
+            new RetInstruction("r"),
+            new LinInstruction("end", 2, 0)));
+        m.prog().forEach(ins -> m.labels().addLabel(ins.getLabel()));
+        var out = new ArrayList<Integer>();
+        m.out(out::add);
+
+        m.execute();
+
+        Assertions.assertEquals(List.of(42), out);
+        Assertions.assertEquals(0, m.callDepth());
+    }
+}
@@ -0,0 +1,106 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Input;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Tests for the "in" instruction of the SML machine
+ */
+class InInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        regs = m.registers();
+        m.prog(List.of(new InInstruction("f0", 1), new InInstruction("f1", 1)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    private static Input text(String s) {
+        return Input.of(Channels.newChannel(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void execute_ReadsValuesInOrder() {
+        m.input(Input.of(7, -3));
+        i = new InInstruction("lbl", 2);
+
+        i.execute(m);
+        Assertions.assertEquals(7, regs.register(2));
+        i.execute(m);
+        Assertions.assertEquals(-3, regs.register(2));
+        Assertions.assertEquals(0, m.pc());
+    }
+
+    @Test
+    void execute_EndOfInput_StopsMachine() {
+        regs.register(2, 5);
+        i = new InInstruction("lbl", 2);
+
+        i.execute(m);
+
+        Assertions.assertEquals(5, regs.register(2));
+        Assertions.assertEquals(m.prog().size(), m.pc());
+    }
+
+    @Test
+    void execute_ParsesTextWithSignsCommasAndNewlines() {
+        m.input(text(" 12,-5\n+8\r\n2147483647 -2147483648\n"));
+        i = new InInstruction("lbl", 0);
+
+        for (int expected : new int[] {12, -5, 8, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            i.execute(m);
+            Assertions.assertEquals(expected, regs.register(0));
+        }
+        i.execute(m);
+        Assertions.assertEquals(m.prog().size(), m.pc());
+    }
+
+    @Test
+    void execute_NumberAcrossBufferBoundary() {
+        String padding = " ".repeat(Input.BUFFER_SIZE - 3);
+        m.input(text(padding + "123456"));
+        i = new InInstruction("lbl", 0);
+
+        i.execute(m);
+
+        Assertions.assertEquals(123456, regs.register(0));
+    }
+
+    @Test
+    void execute_NotANumber_Throws() {
+        m.input(text("12x"));
+        i = new InInstruction("lbl", 0);
+
+        Assertions.assertThrows(NumberFormatException.class, () -> i.execute(m));
+    }
+
+    @Test
+    void execute_TooLarge_Throws() {
+        m.input(text("2147483648"));
+        i = new InInstruction("lbl", 0);
+
+        Assertions.assertThrows(NumberFormatException.class, () -> i.execute(m));
+    }
+}
@@ -0,0 +1,78 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+
+import java.util.List;
+
+/**
+ * Tests for the "join" instruction of the SML machine
+ */
+class JoinInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_NoChildren_ContinuesInOrder() {
+        m.prog(List.of(new JoinInstruction("j0"), new LinInstruction("j1", 0, 1)));
+        m.pc(1);
+
+        i = new JoinInstruction("lbl");
+        i.execute(m);
+
+        Assertions.assertEquals(1, m.pc());
+    }
+
+    @Test
+    void execute_ChildrenRunning_WaitsAndMerges() {
+        m.prog(List.of(
+            new LinInstruction("c0", 9, 3),
+            new MulInstruction("c1", 9, 9, 9),
+            new JoinInstruction("c2")));
+        m.labels().addLabel("c0");
+        m.labels().addLabel("c1");
+        m.labels().addLabel("c2");
+        m.spawn(0);
+
+        i = new JoinInstruction("lbl");
+        i.execute(m);
+
+        Assertions.assertEquals(9, regs.register(9));
+    }
+
+    @Test
+    void execute_InChildWithNothingToJoin_EndsChild() {
+        m.prog(List.of(
+            new LinInstruction("c0", 1, 1),
+            new JoinInstruction("c1"),
+            new LinInstruction("c2", 2, 2)));
+        m.labels().addLabel("c0");
+        m.labels().addLabel("c1");
+        m.labels().addLabel("c2");
+        m.spawn(0);
+        m.join();
+
+        Assertions.assertEquals(1, regs.register(1));
+        Assertions.assertEquals(0, regs.register(2));
+    }
+}
@@ -0,0 +1,51 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Memory;
+import sml.Registers;
+
+/**
+ * Tests for the "load" instruction of the SML machine
+ */
+class LoadInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        m.memory(Memory.allocate(16));
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_WordInMemory_CopiedToRegister() {
+        m.memory().store(5, -42);
+
+        i = new LoadInstruction("lbl", 3, 5);
+        i.execute(m);
+
+        Assertions.assertEquals(-42, regs.register(3));
+    }
+
+    @Test
+    void execute_AddressOutOfRange_Throws() {
+        i = new LoadInstruction("lbl", 3, 16);
+
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> i.execute(m));
+    }
+}
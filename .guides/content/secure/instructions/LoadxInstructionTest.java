@@ -0,0 +1,54 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Memory;
+import sml.Registers;
+
+/**
+ * Tests for the "loadx" instruction of the SML machine
+ */
+class LoadxInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        m.memory(Memory.allocate(16));
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_BaseRegisterPlusOffset_WordCopiedToRegister() {
+        m.memory().store(7, 99);
+        regs.register(1, 4);
+
+        i = new LoadxInstruction("lbl", 0, 1, 3);
+        i.execute(m);
+
+        Assertions.assertEquals(99, regs.register(0));
+    }
+
+    @Test
+    void execute_NoMemory_Throws() {
+        m.memory(Memory.none());
+
+        i = new LoadxInstruction("lbl", 0, 1, 0);
+
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> i.execute(m));
+    }
+}
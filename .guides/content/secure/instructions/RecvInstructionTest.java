@@ -0,0 +1,90 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Channel;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+
+import java.util.List;
+
+/**
+ * Tests for the "recv" instruction of the SML machine
+ */
+class RecvInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        m.channels(new Channel(4));
+        m.prog(List.of(new RecvInstruction("r0", 0, 0), new LinInstruction("r1", 0, 1)));
+        m.pc(1);
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_ValueWaiting_StoredInRegister() {
+        m.channels()[0].send(-8);
+
+        i = new RecvInstruction("lbl", 3, 0);
+        i.execute(m);
+
+        Assertions.assertEquals(-8, regs.register(3));
+        Assertions.assertEquals(1, m.pc());
+    }
+
+    @Test
+    void execute_ClosedWithValuesLeft_ValuesReceivedFirst() {
+        m.channels()[0].send(5);
+        m.channels()[0].close();
+
+        i = new RecvInstruction("lbl", 3, 0);
+        i.execute(m);
+        Assertions.assertEquals(5, regs.register(3));
+        i.execute(m);
+
+        Assertions.assertEquals(2, m.pc());
+    }
+
+    @Test
+    void execute_ValueSentByAnotherThread_WaitsForIt() throws InterruptedException {
+        var sender = new Thread(() -> m.channels()[0].send(123));
+
+        i = new RecvInstruction("lbl", 3, 0);
+        sender.start();
+        i.execute(m);
+        sender.join();
+
+        Assertions.assertEquals(123, regs.register(3));
+    }
+
+    @Test
+    void execute_NoSuchChannel_Throws() {
+        i = new RecvInstruction("lbl", 3, 2);
+
+        var e = Assertions.assertThrows(IllegalStateException.class, () -> i.execute(m));
+        Assertions.assertEquals("recv: no channel 2 (the machine has 1)", e.getMessage());
+    }
+
+    @Test
+    void execute_MachineWithoutChannels_Throws() {
+        m.channels(new Channel[0]);
+        i = new RecvInstruction("lbl", 3, 0);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> i.execute(m));
+    }
+}
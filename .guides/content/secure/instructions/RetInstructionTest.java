@@ -0,0 +1,52 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+
+/**
+ * Tests for the "ret" instruction of the SML machine
+ */
+class RetInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_JumpsToLatestReturnAddress() {
+        m.pushReturn(3);
+        m.pushReturn(8);
+        i = new RetInstruction("lbl");
+
+        i.execute(m);
+        Assertions.assertEquals(8, m.pc());
+        i.execute(m);
+        Assertions.assertEquals(3, m.pc());
+        Assertions.assertEquals(0, m.callDepth());
+    }
+
+    @Test
+    void execute_NoCallOutstanding_Throws() {
+        i = new RetInstruction("lbl");
+
+        Assertions.assertThrows(IllegalStateException.class, () -> i.execute(m));
+    }
+}
@@ -0,0 +1,77 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Channel;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+
+import java.util.List;
+
+/**
+ * Tests for the "send" instruction of the SML machine
+ */
+class SendInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        m.channels(new Channel(4), new Channel(4));
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_RegisterValue_SentOnChannel() {
+        regs.register(6, 77);
+
+        i = new SendInstruction("lbl", 1, 6);
+        i.execute(m);
+
+        Assertions.assertEquals(1, m.channels()[1].size());
+        Assertions.assertTrue(m.channels()[1].await());
+        Assertions.assertEquals(77, m.channels()[1].take());
+    }
+
+    @Test
+    void execute_ClosedChannel_MachineStops() {
+        m.prog(List.of(new SendInstruction("s0", 0, 0), new LinInstruction("s1", 0, 1)));
+        m.pc(1);
+        m.channels()[0].close();
+
+        i = new SendInstruction("lbl", 0, 0);
+        i.execute(m);
+
+        Assertions.assertEquals(2, m.pc());
+        Assertions.assertEquals(0, m.channels()[0].size());
+    }
+
+    @Test
+    void execute_NoSuchChannel_Throws() {
+        i = new SendInstruction("lbl", 2, 6);
+
+        var e = Assertions.assertThrows(IllegalStateException.class, () -> i.execute(m));
+        Assertions.assertEquals("send: no channel 2 (the machine has 2)", e.getMessage());
+    }
+
+    @Test
+    void execute_MachineWithoutChannels_Throws() {
+        m.channels(new Channel[0]);
+        i = new SendInstruction("lbl", 0, 6);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> i.execute(m));
+    }
+}
@@ -0,0 +1,92 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+
+import java.util.List;
+
+/**
+ * Tests for the "spawn" instruction of the SML machine
+ */
+class SpawnInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_ChildWritesRegister_MergedOnJoin() {
+        m.prog(List.of(
+            new LinInstruction("c0", 4, 7),
+            new JoinInstruction("c1")));
+        m.labels().addLabel("c0");
+        m.labels().addLabel("c1");
+        regs.register(3, 5);
+
+        i = new SpawnInstruction("lbl", "c0");
+        i.execute(m);
+        Assertions.assertEquals(0, regs.register(4));
+        m.join();
+
+        Assertions.assertEquals(7, regs.register(4));
+        Assertions.assertEquals(5, regs.register(3));
+    }
+
+    @Test
+    void execute_ChildStartsWithCopyOfRegisters() {
+        m.prog(List.of(new AddInstruction("c0", 2, 0, 1)));
+        m.labels().addLabel("c0");
+        regs.register(0, 30);
+        regs.register(1, 12);
+
+        i = new SpawnInstruction("lbl", "c0");
+        i.execute(m);
+        regs.register(0, 0);
+        m.join();
+
+        Assertions.assertEquals(42, regs.register(2));
+        Assertions.assertEquals(0, regs.register(0));
+    }
+
+    @Test
+    void execute_TwoChildrenWriteSameRegister_LaterSpawnWins() {
+        m.prog(List.of(
+            new LinInstruction("c0", 1, 100),
+            new JoinInstruction("c1"),
+            new LinInstruction("c2", 1, 200)));
+        m.labels().addLabel("c0");
+        m.labels().addLabel("c1");
+        m.labels().addLabel("c2");
+
+        new SpawnInstruction("lbl", "c2").execute(m);
+        new SpawnInstruction("lbl", "c0").execute(m);
+        m.join();
+
+        Assertions.assertEquals(100, regs.register(1));
+    }
+
+    @Test
+    void execute_UndefinedLabel_Throws() {
+        i = new SpawnInstruction("lbl", "nowhere");
+
+        Assertions.assertThrows(IllegalStateException.class, () -> i.execute(m));
+    }
+}
@@ -0,0 +1,51 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Memory;
+import sml.Registers;
+
+/**
+ * Tests for the "store" instruction of the SML machine
+ */
+class StoreInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        m.memory(Memory.allocate(16));
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_RegisterValue_CopiedToMemory() {
+        regs.register(2, 1234);
+
+        i = new StoreInstruction("lbl", 2, 15);
+        i.execute(m);
+
+        Assertions.assertEquals(1234, m.memory().load(15));
+    }
+
+    @Test
+    void execute_NegativeAddress_Throws() {
+        i = new StoreInstruction("lbl", 2, -1);
+
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> i.execute(m));
+    }
+}
@@ -0,0 +1,54 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Memory;
+import sml.Registers;
+
+/**
+ * Tests for the "storex" instruction of the SML machine
+ */
+class StorexInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        m.memory(Memory.allocate(16));
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_BaseRegisterPlusOffset_RegisterCopiedToMemory() {
+        regs.register(1, 10);
+        regs.register(2, -5);
+
+        i = new StorexInstruction("lbl", 2, 1, -2);
+        i.execute(m);
+
+        Assertions.assertEquals(-5, m.memory().load(8));
+    }
+
+    @Test
+    void execute_AddressBeyondMemory_Throws() {
+        regs.register(1, 15);
+
+        i = new StorexInstruction("lbl", 2, 1, 1);
+
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> i.execute(m));
+    }
+}
@@ -0,0 +1,68 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterRange;
+import sml.Registers;
+
+/**
+ * Tests for the "vadd" instruction of the SML machine
+ */
+class VaddInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_DisjointRanges_ResultIsElementWiseSum() {
+        for (int k = 0; k < 8; k++) {
+            regs.register(k, k);
+            regs.register(8 + k, 10 * k);
+        }
+
+        i = new VaddInstruction("lbl", new RegisterRange(16, 8), 0, 8);
+        i.execute(m);
+
+        for (int k = 0; k < 8; k++) {
+            Assertions.assertEquals(11 * k, regs.register(16 + k));
+        }
+    }
+
+    @Test
+    void execute_DestinationOverlapsSource_ResultMatchesScalarSequence() {
+        for (int k = 0; k < 20; k++) {
+            regs.register(k, 1);
+        }
+
+        // r(k+1) = r(k) + r(k) in ascending order doubles along the range
+        i = new VaddInstruction("lbl", RegisterRange.parse("1..19"), 0, 0);
+        i.execute(m);
+
+        Assertions.assertEquals(1 << 19, regs.register(19));
+    }
+
+    @Test
+    void execute_RangePastLastRegister_ExceptionIsThrown() {
+        i = new VaddInstruction("lbl", RegisterRange.parse("28..35"), 0, 8);
+
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> i.execute(m));
+    }
+}
@@ -0,0 +1,46 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterRange;
+import sml.Registers;
+
+/**
+ * Tests for the "vdot" instruction of the SML machine
+ */
+class VdotInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_TwoRanges_ResultIsDotProduct() {
+        for (int k = 0; k < 12; k++) {
+            regs.register(k, k);
+            regs.register(12 + k, 2);
+        }
+
+        i = new VdotInstruction("lbl", 30, RegisterRange.parse("0..11"), 12);
+        i.execute(m);
+
+        Assertions.assertEquals(132, regs.register(30));
+    }
+}
@@ -0,0 +1,59 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterRange;
+import sml.Registers;
+
+/**
+ * Tests for the "vmul" instruction of the SML machine
+ */
+class VmulInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_DisjointRanges_ResultIsElementWiseProduct() {
+        for (int k = 0; k < 16; k++) {
+            regs.register(k, k);
+            regs.register(16 + k, -2);
+        }
+
+        i = new VmulInstruction("lbl", new RegisterRange(16, 16), 0, 16);
+        i.execute(m);
+
+        for (int k = 0; k < 16; k++) {
+            Assertions.assertEquals(-2 * k, regs.register(16 + k));
+        }
+    }
+
+    @Test
+    void execute_ProductOverflows_ResultWrapsLikeMul() {
+        regs.register(0, 1 << 20);
+        regs.register(1, 1 << 20);
+
+        i = new VmulInstruction("lbl", new RegisterRange(2, 1), 0, 1);
+        i.execute(m);
+
+        Assertions.assertEquals((1 << 20) * (1 << 20), regs.register(2));
+    }
+}
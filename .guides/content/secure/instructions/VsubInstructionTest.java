@@ -0,0 +1,60 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterRange;
+import sml.Registers;
+
+/**
+ * Tests for the "vsub" instruction of the SML machine
+ */
+class VsubInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_DisjointRanges_ResultIsElementWiseDifference() {
+        for (int k = 0; k < 10; k++) {
+            regs.register(k, 100);
+            regs.register(10 + k, k);
+        }
+
+        i = new VsubInstruction("lbl", RegisterRange.parse("20..29"), 0, 10);
+        i.execute(m);
+
+        for (int k = 0; k < 10; k++) {
+            Assertions.assertEquals(100 - k, regs.register(20 + k));
+        }
+    }
+
+    @Test
+    void execute_SameRangeAsSources_ResultIsZero() {
+        regs.register(3, 42);
+        regs.register(4, -7);
+
+        i = new VsubInstruction("lbl", RegisterRange.parse("3..4"), 3, 3);
+        i.execute(m);
+
+        Assertions.assertEquals(0, regs.register(3));
+        Assertions.assertEquals(0, regs.register(4));
+    }
+}
@@ -0,0 +1,55 @@
+package sml.instructions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterRange;
+import sml.Registers;
+
+/**
+ * Tests for the "vsum" instruction of the SML machine
+ */
+class VsumInstructionTest {
+    private Machine m;
+    private Instruction i;
+    private Registers regs;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.registers(new Registers());
+        regs = m.registers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        i = null;
+        regs = null;
+    }
+
+    @Test
+    void execute_RangeOfValues_ResultIsSum() {
+        for (int k = 0; k < 32; k++) {
+            regs.register(k, k);
+        }
+
+        i = new VsumInstruction("lbl", 0, RegisterRange.parse("0..31"));
+        i.execute(m);
+
+        Assertions.assertEquals(496, regs.register(0));
+    }
+
+    @Test
+    void execute_SingleRegisterRange_ResultIsThatRegister() {
+        regs.register(7, -9);
+
+        i = new VsumInstruction("lbl", 1, RegisterRange.parse("7"));
+        i.execute(m);
+
+        Assertions.assertEquals(-9, regs.register(1));
+    }
+}
@@ -86,6 +86,7 @@ sourceSets {
             setSrcDirs(
                 listOf(
                     ".guides/content/secure/instructions",
+                    "src/test/java",
                     "sml/src/main/java"
                 )
             )
@@ -93,16 +94,64 @@ sourceSets {
     }
 }
 
+// Micro-benchmarks live in their own source set so they never ship with the application.
+val bench by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    runtimeClasspath += output + compileClasspath + sourceSets.main.get().runtimeClasspath
+}
+
+tasks.register<JavaExec>("bench") {
+    group = "verification"
+    description = "Runs a benchmark from src/bench/java (select with -PbenchClass=...)."
+    classpath = bench.runtimeClasspath
+    mainClass.set(providers.gradleProperty("benchClass").orElse("sml.bench.VectorBenchmark"))
+    jvmArgs("--add-modules", "jdk.incubator.vector")
+}
+
+// An AppCDS archive of the classes a typical run loads, so a cold start can map them
+// instead of loading and verifying them: java -XX:SharedArchiveFile=build/cds/sml.jsa ...
+// It must be used with the same jar it was dumped from.
+val cdsArchiveFile = layout.buildDirectory.file("cds/sml.jsa")
+
+val cdsArchive = tasks.register<JavaExec>("cdsArchive") {
+    group = "build"
+    description = "Dumps an AppCDS archive of the classes loaded running resources/test2.sml."
+    dependsOn(tasks.jar)
+    classpath = files(tasks.jar) + configurations.runtimeClasspath.get()
+    mainClass.set("sml.Main")
+    args("resources/test2.sml")
+    jvmArgs("-XX:ArchiveClassesAtExit=" + cdsArchiveFile.get().asFile.path)
+    standardOutput = java.io.ByteArrayOutputStream()
+    outputs.file(cdsArchiveFile)
+}
+
+tasks.build {
+    dependsOn(cdsArchive)
+}
+
+tasks.register<JavaExec>("benchStartup") {
+    group = "verification"
+    description = "Compares the start-up latency of cold, AppCDS and daemon runs."
+    dependsOn(cdsArchive)
+    classpath = bench.runtimeClasspath
+    mainClass.set("sml.bench.StartupBenchmark")
+    systemProperty("sml.jar", tasks.jar.get().archiveFile.get().asFile.path)
+    systemProperty("sml.cds", cdsArchiveFile.get().asFile.path)
+}
+
 tasks.test {
     useJUnitPlatform()
     testLogging {
         events("passed", "skipped", "failed")
     }
     ignoreFailures = true
+    jvmArgs("--add-modules", "jdk.incubator.vector")
 }
 
 tasks.withType<JavaCompile>().configureEach {
     options.release.set(20)
+    // The vector instructions use the incubating Vector API (with a scalar fallback).
+    options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
 }
 
 java {
@@ -113,4 +162,5 @@ java {
 
 application {
     mainClass.set("sml.Main")
+    applicationDefaultJvmArgs = listOf("--add-modules", "jdk.incubator.vector")
 }
@@ -0,0 +1,43 @@
+package sml.bench;
+
+/**
+ * Minimal timing harness shared by the benchmarks in this source set.
+ * <p>
+ * Each case is warmed up (for a minimum number of rounds and a minimum time, so
+ * the JIT has compiled the code under test), then timed over several rounds; the
+ * best round is reported as nanoseconds per operation.
+ *
+ * @author KLM and xxx
+ */
+final class Bench {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+    private static final int ROUNDS = 10;
+
+    /**
+     * Time a benchmark case and print the result.
+     *
+     * @param name       label printed with the result
+     * @param operations number of operations performed by one call of body
+     * @param body       the code under test
+     * @return best observed nanoseconds per operation
+     */
+    static double run(String name, long operations, Runnable body) {
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        for (int i = 0; i < WARMUP_ROUNDS || System.nanoTime() < warmupEnd; i++) {
+            body.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            body.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double perOp = (double) best / operations;
+        System.out.printf("%-40s %12.2f ns/op%n", name, perOp);
+        return perOp;
+    }
+
+    private Bench() {
+    } // Utility classes should not have a public or default constructor
+}
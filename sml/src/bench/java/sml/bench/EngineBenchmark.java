@@ -0,0 +1,51 @@
+package sml.bench;
+
+import sml.ExecutionEngine;
+import sml.ExecutionEngines;
+import sml.Machine;
+import sml.Translator;
+import sml.engine.CheckedEngine;
+
+/**
+ * Compares the installed {@link ExecutionEngine}s, including the time to prepare the
+ * program, on a short run (the factorial of 6, 21 steps) and a long one (a
+ * 300,000-step loop). The {@code checked} engine is left out: it computes the factorial
+ * exactly, which for the long run is a number of some 450,000 digits, so its time is
+ * that of {@link java.math.BigInteger} (see {@link OverflowBenchmark} instead).
+ *
+ * @author KLM and xxx
+ */
+public final class EngineBenchmark {
+    private static final String LOOP = """
+        f0 lin 20 %d
+        f1 lin 21 1
+        f2 lin 22 1
+        f3 mul 21 21 20
+        f4 sub 20 20 22
+        f5 bnz 20 f3
+        """;
+
+    public static void main(final String... args) {
+        for (int n : new int[] {6, 100_000}) {
+            for (ExecutionEngine engine : ExecutionEngines.all()) {
+                if (engine.name().equals(CheckedEngine.NAME)) {
+                    continue;
+                }
+                var m = new Machine();
+                Translator.ofSource(LOOP.formatted(n)).readAndTranslate(m.labels(), m.prog());
+                m.execute();
+                long steps = m.steps();
+                Bench.run(engine.name() + ", n=" + n + " (per run)", 1, () -> {
+                    m.engine(engine); // prepares afresh on every run
+                    m.execute();
+                });
+                if (m.steps() != steps) {
+                    throw new IllegalStateException(engine.name() + " executed " + m.steps() + " steps, not " + steps);
+                }
+            }
+        }
+    }
+
+    private EngineBenchmark() {
+    } // Utility classes should not have a public or default constructor
+}
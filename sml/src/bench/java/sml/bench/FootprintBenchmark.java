@@ -0,0 +1,97 @@
+package sml.bench;
+
+import sml.CompactProgram;
+import sml.Instruction;
+import sml.InstructionPool;
+import sml.Labels;
+import sml.Translator;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reports the heap a million-instruction program takes, in bytes per instruction,
+ * translated into an {@link Instruction} list and as a {@link CompactProgram}, and the
+ * extra heap a second program with the same operations and other labels takes when it
+ * shares the first one's {@link InstructionPool}. Each loop's {@code bnz} has a target
+ * of its own, so the shorter the loops, the fewer instructions can be shared.
+ *
+ * @author KLM and xxx
+ */
+public final class FootprintBenchmark {
+    private static final int INSTRUCTIONS = 1_000_000;
+
+    public static void main(final String... args) {
+        measure("loops of 8 instructions", 8);
+        measure("loops of 64 instructions", 64);
+    }
+
+    private static void measure(String mix, int loop) {
+        String source = program("a", INSTRUCTIONS, loop);
+        String similar = program("b", INSTRUCTIONS, loop);
+        System.out.println(mix + ":");
+
+        long base = usedHeap();
+        var labels = new Labels();
+        var prog = new ArrayList<Instruction>();
+        Translator.ofSource(source).readAndTranslate(labels, prog);
+        long translated = usedHeap() - base;
+        report("Instruction list", translated);
+        labels = null;
+        prog = null;
+
+        base = usedHeap();
+        var pool = new InstructionPool(InstructionPool.SHARED_SIZE);
+        CompactProgram compact = CompactProgram.of(source, pool);
+        long compacted = usedHeap() - base;
+        report("CompactProgram", compacted);
+
+        base = usedHeap();
+        CompactProgram second = CompactProgram.of(similar, pool);
+        long shared = usedHeap() - base;
+        report("second, sharing the pool", shared);
+
+        System.out.printf("  %d distinct instructions; %.1fx smaller, %.1fx for the second program%n",
+            pool.size(), (double) translated / compacted, (double) translated / shared);
+        // keep both programs reachable until they have been measured
+        if (compact.size() + second.size() != 2 * INSTRUCTIONS) {
+            throw new AssertionError("lines lost in translation");
+        }
+    }
+
+    /** Generated code: loops of a given length over a few registers, with small constants */
+    private static String program(String prefix, int size, int loop) {
+        var random = new Random(42);
+        var sb = new StringBuilder();
+        List<String> ops = List.of("add", "sub", "mul");
+        for (int pc = 0; pc < size; pc++) {
+            sb.append(prefix).append(pc).append(' ');
+            if (pc % loop == 0) {
+                sb.append("lin ").append(random.nextInt(8)).append(' ').append(random.nextInt(16));
+            } else if (pc % loop == loop - 1) {
+                sb.append("bnz ").append(random.nextInt(8)).append(' ').append(prefix).append(pc - loop + 2);
+            } else {
+                sb.append(ops.get(random.nextInt(3))).append(' ').append(random.nextInt(8))
+                    .append(' ').append(random.nextInt(8)).append(' ').append(random.nextInt(8));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void report(String what, long bytes) {
+        System.out.printf("  %-30s %,12d bytes  %6.1f bytes/instruction%n", what, bytes, (double) bytes / INSTRUCTIONS);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private FootprintBenchmark() {
+    } // Utility classes should not have a public or default constructor
+}
@@ -0,0 +1,55 @@
+package sml.bench;
+
+import sml.Input;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.Scanner;
+
+/**
+ * Measures reading numbers for the {@code in} instruction: {@link Input} parsing a
+ * million numbers of text from a channel, against {@link Scanner#nextInt()} over the
+ * same text.
+ *
+ * @author KLM and xxx
+ */
+public final class InputBenchmark {
+    private static final int NUMBERS = 1_000_000;
+
+    public static void main(final String... args) {
+        var random = new Random(42);
+        var sb = new StringBuilder();
+        for (int i = 0; i < NUMBERS; i++) {
+            sb.append(random.nextInt() >> random.nextInt(32)).append(i % 10 == 9 ? '\n' : ' ');
+        }
+        byte[] text = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        Bench.run("Input.next (per number)", NUMBERS, () -> {
+            Input input = Input.of(Channels.newChannel(new ByteArrayInputStream(text)));
+            long sum = 0;
+            while (input.hasNext()) {
+                sum += input.next();
+            }
+            consume(sum);
+        });
+        Bench.run("Scanner.nextInt (per number)", NUMBERS, () -> {
+            var scanner = new Scanner(new ByteArrayInputStream(text), StandardCharsets.UTF_8);
+            long sum = 0;
+            while (scanner.hasNextInt()) {
+                sum += scanner.nextInt();
+            }
+            consume(sum);
+        });
+    }
+
+    private static void consume(long sum) {
+        if (sum == 42) {
+            System.out.println("unlikely");
+        }
+    }
+
+    private InputBenchmark() {
+    } // Utility classes should not have a public or default constructor
+}
@@ -0,0 +1,55 @@
+package sml.bench;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Registers;
+import sml.engine.LockstepMachine;
+import sml.instructions.BnzInstruction;
+import sml.instructions.LinInstruction;
+import sml.instructions.MulInstruction;
+import sml.instructions.SubInstruction;
+
+import java.util.List;
+
+/**
+ * Compares {@link LockstepMachine} with separate {@link Machine#execute(Registers)}
+ * calls for the factorial loop of {@code resources/test2.sml}, seeded with a
+ * different n (1 to 12) in register 20 for every lane so the lanes diverge.
+ *
+ * @author KLM and xxx
+ */
+public final class LockstepBenchmark {
+    private static final int LANES = 10_000;
+
+    public static void main(final String... args) {
+        List<Instruction> prog = List.of(
+            new LinInstruction("f1", 21, 1),
+            new LinInstruction("f2", 22, 1),
+            new MulInstruction("f3", 21, 21, 20),
+            new SubInstruction("f4", 20, 20, 22),
+            new BnzInstruction("f5", 20, "f3"));
+        var labels = new Labels();
+        prog.forEach(ins -> labels.addLabel(ins.getLabel()));
+
+        var inputs = new Registers[LANES];
+        for (int l = 0; l < LANES; l++) {
+            inputs[l] = new Registers();
+            inputs[l].register(20, 1 + l % 12);
+        }
+
+        var m = new Machine();
+        m.labels(labels);
+        m.prog(prog);
+        Bench.run("Machine.execute per lane (per lane)", LANES, () -> {
+            for (Registers input : inputs) {
+                m.execute(input);
+            }
+        });
+        var lockstep = new LockstepMachine(labels, prog);
+        Bench.run("LockstepMachine (per lane)", LANES, () -> lockstep.execute(inputs));
+    }
+
+    private LockstepBenchmark() {
+    } // Utility classes should not have a public or default constructor
+}
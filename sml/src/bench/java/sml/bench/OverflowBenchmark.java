@@ -0,0 +1,73 @@
+package sml.bench;
+
+import sml.ExecutionEngines;
+import sml.Machine;
+import sml.Translator;
+
+/**
+ * Measures what overflow checking costs: the {@code checked} engine against the
+ * {@code reference} and {@code verified} engines on a loop whose arithmetic never
+ * overflows, and the {@code checked} engine on factorials that overflow into
+ * {@code long} and {@code BigInteger} registers.
+ *
+ * @author KLM and xxx
+ */
+public final class OverflowBenchmark {
+    private static final int TRIPS = 100_000;
+    /** Sums and differences that stay small: no overflow */
+    private static final String NARROW = """
+        n0 lin 20 %d
+        n1 lin 22 1
+        n2 lin 23 3
+        n3 add 21 21 23
+        n4 mul 24 21 22
+        n5 sub 21 24 22
+        n6 sub 20 20 22
+        n7 bnz 20 n3
+        """;
+    /** The factorial of the trip count, reset every 20 trips so it stays within a long */
+    private static final String LONG = """
+        f0 lin 20 %d
+        f1 lin 22 1
+        f2 lin 25 20
+        f3 lin 21 1
+        f4 lin 26 20
+        f5 mul 21 21 26
+        f6 sub 26 26 22
+        f7 sub 20 20 22
+        f8 sub 25 25 22
+        f9 bnz 25 f5
+        fa lin 25 20
+        fb lin 21 1
+        fc lin 26 20
+        fd bnz 20 f5
+        """;
+    /** The factorial of 500, which is a BigInteger for most of the run */
+    private static final String BIG = """
+        b0 lin 20 500
+        b1 lin 21 1
+        b2 lin 22 1
+        b3 mul 21 21 20
+        b4 sub 20 20 22
+        b5 bnz 20 b3
+        """;
+
+    public static void main(final String... args) {
+        for (String engine : new String[] {"reference", "verified", "checked"}) {
+            time(engine + ", no overflow", engine, NARROW.formatted(TRIPS));
+        }
+        time("checked, long", "checked", LONG.formatted(TRIPS));
+        time("checked, BigInteger", "checked", BIG);
+    }
+
+    private static void time(String name, String engine, String source) {
+        var m = new Machine();
+        Translator.ofSource(source).readAndTranslate(m.labels(), m.prog());
+        m.engine(ExecutionEngines.named(engine));
+        m.execute();
+        Bench.run(name + " (per step)", m.steps(), m::execute);
+    }
+
+    private OverflowBenchmark() {
+    } // Utility classes should not have a public or default constructor
+}
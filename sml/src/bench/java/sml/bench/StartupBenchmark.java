@@ -0,0 +1,85 @@
+package sml.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the wall-clock time to run {@code resources/test2.sml} from the command
+ * line, in a new JVM each time:
+ * <ul>
+ *     <li>cold: {@code java -cp <jar> sml.Main}</li>
+ *     <li>AppCDS: the same with {@code -XX:SharedArchiveFile} (skipped if {@code sml.cds} is not set)</li>
+ *     <li>daemon: {@code java -cp <jar> sml.daemon.DaemonClient} against a warm daemon</li>
+ * </ul>
+ * The jar and the archive come from the {@code sml.jar} and {@code sml.cds} system
+ * properties (the {@code benchStartup} Gradle task sets both); without {@code sml.jar}
+ * the benchmark's own class path is used. The median of several runs is reported.
+ *
+ * @author KLM and xxx
+ */
+public final class StartupBenchmark {
+    private static final int WARMUP_RUNS = 2;
+    private static final int RUNS = 10;
+
+    public static void main(final String... args) throws IOException, InterruptedException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String classPath = System.getProperty("sml.jar", System.getProperty("java.class.path"));
+        String cds = System.getProperty("sml.cds");
+        String program = Path.of(args.length > 0 ? args[0] : "resources/test2.sml").toAbsolutePath().toString();
+
+        time("cold", List.of(java, "-cp", classPath, "sml.Main", program));
+        if (cds != null && Files.exists(Path.of(cds))) {
+            time("AppCDS", List.of(java, "-XX:SharedArchiveFile=" + cds, "-cp", classPath, "sml.Main", program));
+        } else {
+            System.out.println("AppCDS: skipped, no archive (run the cdsArchive task)");
+        }
+
+        Path socket = Files.createTempDirectory("sml").resolve("daemon.sock");
+        Process daemon = new ProcessBuilder(java, "-cp", classPath, "sml.Main", "--daemon=" + socket)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        try {
+            while (!Files.exists(socket)) {
+                Thread.sleep(10);
+            }
+            time("daemon", List.of(java, "-cp", classPath, "sml.daemon.DaemonClient", socket.toString(), program));
+        } finally {
+            daemon.destroy();
+            daemon.waitFor();
+            Files.deleteIfExists(socket);
+            Files.deleteIfExists(socket.getParent());
+        }
+    }
+
+    private static void time(String name, List<String> command) throws IOException, InterruptedException {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            run(command);
+        }
+        var millis = new ArrayList<Double>();
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            run(command);
+            millis.add((System.nanoTime() - start) / 1e6);
+        }
+        double[] sorted = millis.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        System.out.printf("%-40s %12.1f ms (min %.1f, max %.1f)%n", name, sorted[sorted.length / 2],
+            sorted[0], sorted[sorted.length - 1]);
+    }
+
+    private static void run(List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Failed: " + String.join(" ", command));
+        }
+    }
+
+    private StartupBenchmark() {
+    } // Utility classes should not have a public or default constructor
+}
@@ -0,0 +1,39 @@
+package sml.bench;
+
+import sml.Machine;
+import sml.ProgramHash;
+import sml.Translator;
+import sml.trace.TraceBuffer;
+import sml.trace.Tracer;
+
+/**
+ * Measures the overhead of tracing: {@link Machine#execute()} against
+ * {@link Tracer#execute(Machine)} into a 16 MiB direct buffer, for a loop of
+ * 300,000 steps (enough to wrap the ring several times).
+ *
+ * @author KLM and xxx
+ */
+public final class TraceBenchmark {
+    private static final String PROGRAM = """
+        f0 lin 20 100000
+        f1 lin 21 1
+        f2 lin 22 1
+        f3 mul 21 21 20
+        f4 sub 20 20 22
+        f5 bnz 20 f3
+        """;
+
+    public static void main(final String... args) {
+        var m = new Machine();
+        Translator.ofSource(PROGRAM).readAndTranslate(m.labels(), m.prog());
+        m.execute();
+        long steps = m.steps();
+
+        Bench.run("Machine.execute (per step)", steps, m::execute);
+        var tracer = new Tracer(TraceBuffer.allocate(16 << 20, 64 << 10, ProgramHash.of(m.prog())));
+        Bench.run("Tracer.execute (per step)", steps, () -> tracer.execute(m));
+    }
+
+    private TraceBenchmark() {
+    } // Utility classes should not have a public or default constructor
+}
@@ -0,0 +1,59 @@
+package sml.bench;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterRange;
+import sml.instructions.AddInstruction;
+import sml.instructions.MulInstruction;
+import sml.instructions.VaddInstruction;
+import sml.instructions.VmulInstruction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the vector instructions with the equivalent sequences of scalar
+ * instructions over 16-register banks.
+ * <p>
+ * Run with {@code gradle bench}; add {@code -Dsml.vector=false} to the JVM
+ * arguments to measure the scalar fallback of the vector instructions.
+ *
+ * @author KLM and xxx
+ */
+public final class VectorBenchmark {
+    private static final int WIDTH = 16;
+    private static final int REPEAT = 1_000;
+    private static final int RUNS = 200;
+
+    public static void main(final String... args) {
+        System.out.println("sml.vector=" + System.getProperty("sml.vector", "true"));
+        var scalarAdd = new ArrayList<Instruction>();
+        var vectorAdd = new ArrayList<Instruction>();
+        var scalarMul = new ArrayList<Instruction>();
+        var vectorMul = new ArrayList<Instruction>();
+        for (int n = 0; n < REPEAT; n++) {
+            for (int k = 0; k < WIDTH; k++) {
+                scalarAdd.add(new AddInstruction("a" + n + "_" + k, WIDTH + k, k, WIDTH + k));
+                scalarMul.add(new MulInstruction("m" + n + "_" + k, WIDTH + k, k, WIDTH + k));
+            }
+            vectorAdd.add(new VaddInstruction("a" + n, new RegisterRange(WIDTH, WIDTH), 0, WIDTH));
+            vectorMul.add(new VmulInstruction("m" + n, new RegisterRange(WIDTH, WIDTH), 0, WIDTH));
+        }
+        long elements = (long) REPEAT * WIDTH * RUNS;
+        Bench.run("scalar add sequence (per element)", elements, () -> run(scalarAdd));
+        Bench.run("vadd (per element)", elements, () -> run(vectorAdd));
+        Bench.run("scalar mul sequence (per element)", elements, () -> run(scalarMul));
+        Bench.run("vmul (per element)", elements, () -> run(vectorMul));
+    }
+
+    private static void run(List<Instruction> prog) {
+        Machine m = new Machine();
+        m.prog(prog);
+        for (int i = 0; i < RUNS; i++) {
+            m.execute();
+        }
+    }
+
+    private VectorBenchmark() {
+    } // Utility classes should not have a public or default constructor
+}
@@ -0,0 +1,156 @@
+package sml;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded channel of {@code int}s from one machine to another, used by the
+ * {@code send} and {@code recv} instructions.
+ * <p>
+ * The channel is a lock-free ring buffer for exactly one sending and one receiving
+ * thread: each side only writes its own index, and keeps a cached copy of the other
+ * side's index so it reads the shared one only when the buffer looks full (or empty).
+ * A sender finding the buffer full, or a receiver finding it empty, parks its thread
+ * until the other side makes progress; nothing spins.
+ * <p>
+ * Either side may {@link #close()} the channel. After that {@link #send(int)} refuses
+ * values, and {@link #await()} reports the end once the values already sent have
+ * been received.
+ *
+ * @author KLM and xxx
+ */
+public final class Channel {
+    private final int[] buffer;
+    private final int mask;
+    /** Index of the next value to receive; written only by the receiver */
+    private volatile long head;
+    /** Index of the next value to send; written only by the sender */
+    private volatile long tail;
+    /** The sender's copy of head and the receiver's copy of tail */
+    private long headCache;
+    private long tailCache;
+    private volatile boolean closed;
+    /** Threads parked waiting for room, or for a value */
+    private volatile Thread sender;
+    private volatile Thread receiver;
+
+    /**
+     * @param capacity the most values buffered, rounded up to a power of two
+     */
+    public Channel(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Bad channel capacity " + capacity);
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new int[size];
+        this.mask = buffer.length - 1;
+    }
+
+    /** Returns the number of values the channel can buffer */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /** Returns the number of values sent and not yet received */
+    public int size() {
+        return (int) (tail - head);
+    }
+
+    /** Returns true if the channel has been closed */
+    public boolean closed() {
+        return closed;
+    }
+
+    /**
+     * Send a value, waiting while the buffer is full. Called only by the sending thread.
+     *
+     * @param value the value
+     * @return false (and the value is dropped) if the channel is closed
+     */
+    public boolean send(int value) {
+        long t = tail;
+        if (t - headCache >= buffer.length) {
+            headCache = head;
+            while (t - headCache >= buffer.length) {
+                if (closed) {
+                    return false;
+                }
+                sender = Thread.currentThread();
+                if (t - head >= buffer.length && !closed) {
+                    LockSupport.park(this);
+                }
+                sender = null;
+                headCache = head;
+            }
+        }
+        if (closed) {
+            return false;
+        }
+        buffer[(int) t & mask] = value;
+        tail = t + 1;
+        Thread r = receiver;
+        if (r != null) {
+            LockSupport.unpark(r);
+        }
+        return true;
+    }
+
+    /**
+     * Wait until a value can be received. Called only by the receiving thread.
+     *
+     * @return true if {@link #take()} will return a value, false if the channel is
+     * closed and every value sent has been received
+     */
+    public boolean await() {
+        long h = head;
+        if (tailCache != h) {
+            return true;
+        }
+        tailCache = tail;
+        while (tailCache == h) {
+            if (closed) {
+                tailCache = tail;
+                return tailCache != h;
+            }
+            receiver = Thread.currentThread();
+            if (tail == h && !closed) {
+                LockSupport.park(this);
+            }
+            receiver = null;
+            tailCache = tail;
+        }
+        return true;
+    }
+
+    /**
+     * Receive the next value; {@link #await()} must have returned true.
+     * Called only by the receiving thread.
+     *
+     * @return the value
+     */
+    public int take() {
+        long h = head;
+        int value = buffer[(int) h & mask];
+        head = h + 1;
+        Thread s = sender;
+        if (s != null) {
+            LockSupport.unpark(s);
+        }
+        return value;
+    }
+
+    /** Close the channel, waking either side if it is waiting. */
+    public void close() {
+        closed = true;
+        Thread s = sender;
+        if (s != null) {
+            LockSupport.unpark(s);
+        }
+        Thread r = receiver;
+        if (r != null) {
+            LockSupport.unpark(r);
+        }
+    }
+}
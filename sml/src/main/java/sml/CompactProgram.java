@@ -0,0 +1,256 @@
+package sml;
+
+import sml.instructions.BnzInstruction;
+import sml.instructions.CallInstruction;
+import sml.instructions.SpawnInstruction;
+import sml.metrics.RuntimeMetrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.RandomAccess;
+
+/**
+ * A translated program that takes a fraction of the heap of the {@link Instruction}
+ * list {@link Translator#readAndTranslate(Labels, java.util.List)} builds.
+ * <p>
+ * The instructions come from an {@link InstructionPool}, so an operation that occurs
+ * many times, in this program or in others loaded at the same time, is one object,
+ * and the program itself is an array of references to them. The labels are held apart,
+ * packed into one UTF-8 byte array, since every line has its own; {@link #labels()}
+ * answers lookups from a table of the pcs of just the labels that some {@code bnz},
+ * {@code call} or {@code spawn} refers to. A large program thus costs a reference and
+ * the bytes of its label (and a newline) per instruction, plus the pool's share.
+ * <p>
+ * Like {@link LazyProgram}, the program is a read-only {@code List<Instruction>} to be
+ * given to {@link Machine#prog(java.util.List)} with {@link #labels()}. Since pooled
+ * instructions have an empty label, an instruction's label is {@link #label(int)}.
+ * Lines are numbered as the translator numbers them.
+ *
+ * @author KLM and xxx
+ */
+public final class CompactProgram extends AbstractList<Instruction> implements RandomAccess {
+    /** Instructions between the recorded label offsets */
+    private static final int CHECKPOINT = 16;
+    private final Instruction[] prog;
+    /** The labels, each followed by a newline (labels never contain white space) */
+    private final byte[] labelText;
+    /** The offset in labelText of the label of every {@value #CHECKPOINT}th instruction */
+    private final int[] checkpoint;
+    private final CompactLabels labels;
+
+    private CompactProgram(Instruction[] prog, byte[] labelText, int[] checkpoint) {
+        this.prog = prog;
+        this.labelText = labelText;
+        this.checkpoint = checkpoint;
+        this.labels = new CompactLabels();
+    }
+
+    /**
+     * Translate program text, sharing instructions through a pool.
+     *
+     * @param source the program text
+     * @param pool   where the instructions come from
+     * @return the program
+     */
+    public static CompactProgram of(String source, InstructionPool pool) {
+        long start = System.nanoTime();
+        try {
+            return translate(source, pool);
+        } finally {
+            RuntimeMetrics.TRANSLATION_LATENCY.recordSince(start);
+            RuntimeMetrics.TRANSLATIONS.increment();
+        }
+    }
+
+    private static CompactProgram translate(String source, InstructionPool pool) {
+        var prog = new Instruction[64];
+        var labelText = new byte[256];
+        var checkpoint = new int[4];
+        int count = 0;
+        int textLength = 0;
+        for (String line : source.split("\n")) {
+            String[] words = line.trim().split("\\s+");
+            if (words.length < 2) {
+                continue; // blank, or a label with no opcode
+            }
+            Instruction ins = pool.intern(String.join(" ", Arrays.asList(words).subList(1, words.length)));
+            if (ins == null) {
+                continue;
+            }
+            byte[] label = words[0].getBytes(StandardCharsets.UTF_8);
+            if (count == prog.length) {
+                prog = Arrays.copyOf(prog, count * 2);
+            }
+            if (count % CHECKPOINT == 0) {
+                if (count / CHECKPOINT == checkpoint.length) {
+                    checkpoint = Arrays.copyOf(checkpoint, checkpoint.length * 2);
+                }
+                checkpoint[count / CHECKPOINT] = textLength;
+            }
+            if (textLength + label.length + 1 > labelText.length) {
+                labelText = Arrays.copyOf(labelText, Math.max(labelText.length * 2, textLength + label.length + 1));
+            }
+            System.arraycopy(label, 0, labelText, textLength, label.length);
+            textLength += label.length;
+            labelText[textLength++] = '\n';
+            prog[count++] = ins;
+        }
+        return new CompactProgram(Arrays.copyOf(prog, count), Arrays.copyOf(labelText, textLength),
+            Arrays.copyOf(checkpoint, (count + CHECKPOINT - 1) / CHECKPOINT));
+    }
+
+    /** Returns the labels of this program */
+    public Labels labels() {
+        return labels;
+    }
+
+    /**
+     * Returns the label of an instruction.
+     *
+     * @param pc the instruction
+     * @return its label
+     */
+    public String label(int pc) {
+        int from = labelStart(pc);
+        return new String(labelText, from, labelEnd(from) - from, StandardCharsets.UTF_8);
+    }
+
+    private int labelStart(int pc) {
+        int from = checkpoint[pc / CHECKPOINT];
+        for (int i = pc % CHECKPOINT; i > 0; i--) {
+            from = labelEnd(from) + 1;
+        }
+        return from;
+    }
+
+    private int labelEnd(int from) {
+        while (labelText[from] != '\n') {
+            from++;
+        }
+        return from;
+    }
+
+    /** Returns the number of distinct instruction objects in this program */
+    public long distinctInstructions() {
+        return Arrays.stream(prog).distinct().count();
+    }
+
+    @Override
+    public int size() {
+        return prog.length;
+    }
+
+    @Override
+    public Instruction get(int pc) {
+        return prog[pc];
+    }
+
+    /**
+     * Labels answered from the packed label text. Labels that an instruction jumps to
+     * are found through an open-addressing table of their pcs, keyed by the label's
+     * {@link String#hashCode()}; any other label by a scan.
+     */
+    private final class CompactLabels extends Labels {
+        /** The pcs of the labels jumped to, -1 in empty slots; the size is a power of two */
+        private final int[] table;
+        private final int targets;
+
+        CompactLabels() {
+            var wanted = new HashSet<String>();
+            for (Instruction ins : prog) {
+                String target = ins instanceof BnzInstruction bnz ? bnz.targetLabel()
+                    : ins instanceof CallInstruction call ? call.targetLabel()
+                    : ins instanceof SpawnInstruction spawn ? spawn.targetLabel() : null;
+                if (target != null) {
+                    wanted.add(target);
+                }
+            }
+            table = new int[Integer.highestOneBit(Math.max(1, wanted.size()) * 2) * 2];
+            Arrays.fill(table, -1);
+            int found = 0;
+            for (int pc = 0; pc < prog.length && found < wanted.size(); pc++) {
+                String lab = label(pc);
+                if (wanted.contains(lab) && slot(lab) < 0) {
+                    // the first of duplicated labels is the one found
+                    table[-slot(lab) - 1] = pc;
+                    found++;
+                }
+            }
+            targets = found;
+        }
+
+        /** Returns the slot holding the label, or -(empty slot) - 1 if it is not in the table */
+        private int slot(String lab) {
+            int mask = table.length - 1;
+            for (int i = lab.hashCode() & mask; ; i = (i + 1) & mask) {
+                if (table[i] < 0) {
+                    return -i - 1;
+                }
+                if (labelEquals(table[i], lab)) {
+                    return i;
+                }
+            }
+        }
+
+        private boolean labelEquals(int pc, String lab) {
+            int from = labelStart(pc);
+            int length = labelEnd(from) - from;
+            if (length != lab.length()) {
+                // a longer encoding may still be the same label in non-ASCII characters
+                return length > lab.length() && label(pc).equals(lab);
+            }
+            for (int i = 0; i < length; i++) {
+                byte b = labelText[from + i];
+                if (b < 0) {
+                    return label(pc).equals(lab);
+                }
+                if (b != lab.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int addLabel(String lab) {
+            throw new UnsupportedOperationException("The labels of a compact program are read-only");
+        }
+
+        @Override
+        public int indexOf(String lab) {
+            int slot = slot(lab);
+            return slot >= 0 ? table[slot] : find(lab);
+        }
+
+        private int find(String lab) {
+            for (int pc = 0; pc < prog.length; pc++) {
+                if (label(pc).equals(lab)) {
+                    return pc;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String get(int index) {
+            return label(index);
+        }
+
+        @Override
+        public int size() {
+            return prog.length;
+        }
+
+        @Override
+        public void reset() {
+            throw new UnsupportedOperationException("The labels of a compact program are read-only");
+        }
+
+        @Override
+        public String toString() {
+            return "Labels(compact, " + prog.length + " instructions, " + targets + " targets)";
+        }
+    }
+}
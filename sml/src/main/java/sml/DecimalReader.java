@@ -0,0 +1,106 @@
+package sml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Decimal integers, optionally signed, read from a channel through a buffer and parsed
+ * straight from the buffer's backing array, so reading creates no objects per number.
+ * What separates the numbers is up to the caller, which looks at it with {@link #peek()}
+ * and steps over it with {@link #skip()}: {@link Input} and the batch row reader read
+ * their text through one of these.
+ *
+ * @author KLM and xxx
+ */
+public final class DecimalReader implements Closeable {
+    /** What {@link #number()} returns when there are no digits at the position */
+    public static final long NOT_A_NUMBER = Long.MIN_VALUE;
+
+    private final ReadableByteChannel in;
+    private final ByteBuffer buffer;
+    /** The buffer's array, and the next byte and end of the bytes read into it */
+    private final byte[] bytes;
+    private int position;
+    private int limit;
+    /** Bytes of the text before the buffer's contents */
+    private long consumed;
+
+    /**
+     * @param in         the text; closed by {@link #close()}
+     * @param bufferSize bytes read from the channel at a time
+     */
+    public DecimalReader(ReadableByteChannel in, int bufferSize) {
+        this.in = in;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.bytes = buffer.array();
+    }
+
+    /**
+     * Returns the next byte without consuming it, or -1 at the end of the text.
+     *
+     * @throws IOException if the text cannot be read
+     */
+    public int peek() throws IOException {
+        if (position == limit) {
+            consumed += limit;
+            buffer.clear();
+            int n;
+            do {
+                n = in.read(buffer);
+            } while (n == 0);
+            position = 0;
+            limit = Math.max(n, 0);
+            if (n < 0) {
+                return -1;
+            }
+        }
+        return bytes[position] & 0xff;
+    }
+
+    /** Consume the byte {@link #peek()} returned */
+    public void skip() {
+        position++;
+    }
+
+    /** Returns the offset in the text of the next byte */
+    public long offset() {
+        return consumed + position;
+    }
+
+    /**
+     * Read an optional sign and the digits after it. Reading stops at the first byte that
+     * is not a digit, or as soon as the number is too large for an {@code int}.
+     *
+     * @return the number, which the caller checks fits an {@code int}; or
+     * {@link #NOT_A_NUMBER} if there are no digits
+     * @throws IOException if the text cannot be read
+     */
+    public long number() throws IOException {
+        int c = peek();
+        boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            skip();
+        }
+        long value = 0;
+        int digits = 0;
+        while ((c = peek()) >= '0' && c <= '9') {
+            skip();
+            value = value * 10 + (c - '0');
+            digits++;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return NOT_A_NUMBER;
+        }
+        return negative ? -value : value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
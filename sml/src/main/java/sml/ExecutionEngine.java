@@ -0,0 +1,43 @@
+package sml;
+
+import java.util.List;
+
+/**
+ * A strategy for executing programs, which {@link Machine#execute(Registers)} delegates to.
+ * <p>
+ * Engines are found with {@link java.util.ServiceLoader} (see {@link ExecutionEngines}),
+ * so an engine in another jar is plugged in by listing it in that jar's
+ * {@code META-INF/services/sml.ExecutionEngine}; it needs a public no-argument constructor.
+ * <p>
+ * An engine first {@link #prepare prepares} a program, doing whatever analysis or
+ * translation it needs once, and the result then runs the program any number of times.
+ *
+ * @author KLM and xxx
+ */
+public interface ExecutionEngine {
+
+    /** A program prepared by an engine. */
+    @FunctionalInterface
+    interface Executable {
+        /**
+         * Execute from the machine's current pc and registers until the pc leaves the
+         * program, leaving the final registers and pc in the machine and the number of
+         * instructions executed in {@link Machine#steps()}.
+         *
+         * @param m the machine, whose program and labels are the ones prepared
+         */
+        void run(Machine m);
+    }
+
+    /** Returns the name the engine is selected by, as in {@code --engine=<name>} */
+    String name();
+
+    /**
+     * Prepare a program for execution.
+     *
+     * @param labels the program's labels
+     * @param prog   the program
+     * @return the prepared program, or null if this engine cannot run it
+     */
+    Executable prepare(Labels labels, List<Instruction> prog);
+}
@@ -0,0 +1,69 @@
+package sml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * The installed {@link ExecutionEngine}s.
+ * <p>
+ * The engine a new {@link Machine} uses is named by the {@code sml.engine} system
+ * property, {@code auto} (choose per program, see {@code sml.engine.EngineSelector}) by
+ * default; {@code Main --engine=<name>} overrides it.
+ *
+ * @author KLM and xxx
+ */
+public final class ExecutionEngines {
+    /** The name of the engine that chooses another engine for each program */
+    public static final String AUTO = "auto";
+
+    private static final List<ExecutionEngine> ENGINES = load();
+
+    private static List<ExecutionEngine> load() {
+        var engines = new ArrayList<ExecutionEngine>();
+        for (ExecutionEngine engine : ServiceLoader.load(ExecutionEngine.class, ExecutionEngine.class.getClassLoader())) {
+            engines.add(engine);
+        }
+        if (engines.stream().noneMatch(e -> e.name().equals(ReferenceEngine.NAME))) {
+            engines.add(0, new ReferenceEngine());
+        }
+        return Collections.unmodifiableList(engines);
+    }
+
+    /** Returns every installed engine */
+    public static List<ExecutionEngine> all() {
+        return ENGINES;
+    }
+
+    /**
+     * Returns the engine with a name.
+     *
+     * @throws IllegalArgumentException if no installed engine has the name
+     */
+    public static ExecutionEngine named(String name) {
+        for (ExecutionEngine engine : ENGINES) {
+            if (engine.name().equals(name)) {
+                return engine;
+            }
+        }
+        throw new IllegalArgumentException("No engine named " + name + "; installed: "
+            + ENGINES.stream().map(ExecutionEngine::name).toList());
+    }
+
+    /**
+     * Returns the engine named by the {@code sml.engine} system property; if it is not
+     * set, the {@code auto} engine, or the reference engine if that is not installed.
+     */
+    public static ExecutionEngine defaultEngine() {
+        String name = System.getProperty("sml.engine");
+        if (name != null) {
+            return named(name);
+        }
+        return ENGINES.stream().filter(e -> e.name().equals(AUTO)).findFirst()
+            .orElseGet(() -> named(ReferenceEngine.NAME));
+    }
+
+    private ExecutionEngines() {
+    } // Utility classes should not have a public or default constructor
+}
@@ -0,0 +1,144 @@
+package sml;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+/**
+ * The numbers a machine reads with the {@code in} instruction, so that one translated
+ * program can be run over different data.
+ * <p>
+ * Input is either an array of values ({@link #of(int...)}) or text read from a file,
+ * standard input or any other channel: decimal integers, optionally signed, separated
+ * by white space or commas. The text is read and parsed by a {@link DecimalReader} with
+ * a buffer of {@value #BUFFER_SIZE} bytes, so reading creates no objects per number.
+ *
+ * @author KLM and xxx
+ */
+public final class Input implements AutoCloseable {
+    /** Bytes read from the channel at a time */
+    public static final int BUFFER_SIZE = 64 << 10;
+    private static final Input NONE = of();
+
+    /** The values, or null for text input */
+    private final int[] values;
+    private int next;
+    /** The text, or null for values */
+    private final DecimalReader text;
+
+    private Input(int[] values, ReadableByteChannel channel) {
+        this.values = values;
+        this.text = channel == null ? null : new DecimalReader(channel, BUFFER_SIZE);
+    }
+
+    /** Returns an input with nothing in it, which every machine starts with */
+    public static Input none() {
+        return NONE;
+    }
+
+    /**
+     * Input from an array.
+     *
+     * @param values the values, in the order they are read (not copied)
+     * @return the input
+     */
+    public static Input of(int... values) {
+        return new Input(values, null);
+    }
+
+    /**
+     * Input parsed from text read from a channel.
+     *
+     * @param channel the text; closed by {@link #close()}
+     * @return the input
+     */
+    public static Input of(ReadableByteChannel channel) {
+        return new Input(null, channel);
+    }
+
+    /**
+     * Input parsed from a text file.
+     *
+     * @param file the file
+     * @return the input
+     * @throws IOException if the file cannot be opened
+     */
+    public static Input open(Path file) throws IOException {
+        return of(FileChannel.open(file));
+    }
+
+    /** Returns input parsed from standard input */
+    public static Input stdin() {
+        return of(Channels.newChannel(System.in));
+    }
+
+    /**
+     * Returns true if there is another number to read.
+     *
+     * @throws UncheckedIOException if the text cannot be read
+     */
+    public boolean hasNext() {
+        if (values != null) {
+            return next < values.length;
+        }
+        try {
+            int c;
+            while ((c = text.peek()) >= 0 && separator(c)) {
+                text.skip();
+            }
+            return c >= 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read the next number.
+     *
+     * @return the number
+     * @throws NoSuchElementException if there are no more numbers
+     * @throws NumberFormatException  if the text is not a number or does not fit an int
+     * @throws UncheckedIOException   if the text cannot be read
+     */
+    public int next() {
+        if (values != null) {
+            if (next == values.length) {
+                throw new NoSuchElementException("End of input");
+            }
+            return values[next++];
+        }
+        if (!hasNext()) {
+            throw new NoSuchElementException("End of input");
+        }
+        try {
+            long start = text.offset();
+            long value = text.number();
+            if (value != DecimalReader.NOT_A_NUMBER && value != (int) value) {
+                throw new NumberFormatException("Number at byte " + start + " does not fit an int");
+            }
+            int c = text.peek();
+            if (value == DecimalReader.NOT_A_NUMBER || c >= 0 && !separator(c)) {
+                throw new NumberFormatException("Not a number at byte " + start);
+            }
+            return (int) value;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Close the channel the text is read from, if any */
+    @Override
+    public void close() throws IOException {
+        if (text != null) {
+            text.close();
+        }
+    }
+
+    private static boolean separator(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == ',';
+    }
+}
@@ -30,6 +30,39 @@ public abstract class Instruction {
         return opcode;
     }
 
+    /**
+     * Returns the registers this instruction reads; none by default.
+     */
+    public int[] sources() {
+        return new int[0];
+    }
+
+    /**
+     * Returns the registers this instruction writes; none by default.
+     */
+    public int[] destinations() {
+        return new int[0];
+    }
+
+    /**
+     * Returns true if executing this instruction may set the program counter.
+     * Such an instruction always ends a basic block.
+     */
+    public boolean changesControlFlow() {
+        return false;
+    }
+
+    /**
+     * Returns true if everything this instruction does is determined by the registers it
+     * reads: it has no effects or inputs outside the machine's registers, pc and output.
+     * Results of programs made only of such instructions can be memoized and replayed;
+     * instructions that use memory are not. False by default, so that an instruction
+     * (or a wrapper around one) is only treated as pure when it says so.
+     */
+    public boolean pure() {
+        return false;
+    }
+
     /**
      * Executes the instruction's logic; must be implemented by each subclass.
      *
@@ -0,0 +1,80 @@
+package sml;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instructions shared between the programs that are loaded at the same time.
+ * <p>
+ * An instruction does not depend on where it is in a program (a {@code bnz} finds its
+ * target through the machine's labels), so every occurrence of the same operation,
+ * such as {@code add 1 2 3}, in any {@link CompactProgram} can be one object. The
+ * pooled instructions have an empty label; a compact program keeps its labels apart.
+ * The pool holds at most a fixed number of instructions; operations seen once it is
+ * full are translated into instructions of their own.
+ *
+ * @author KLM and xxx
+ */
+public final class InstructionPool {
+    /** The most instructions {@link #shared()} holds */
+    public static final int SHARED_SIZE = 1 << 20;
+    private static final InstructionPool SHARED = new InstructionPool(SHARED_SIZE);
+
+    private final int maxSize;
+    /** Instructions by their normalized operation text */
+    private final Map<String, Instruction> instructions = new ConcurrentHashMap<>();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * @param maxSize the most instructions the pool holds
+     */
+    public InstructionPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /** Returns the pool used by the execution server and the daemon */
+    public static InstructionPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the instruction for an operation, translating it only the first time.
+     *
+     * @param operation the opcode and operands, separated by single spaces
+     * @return the instruction, or null if the operation cannot be translated
+     */
+    Instruction intern(String operation) {
+        lookups.increment();
+        Instruction ins = instructions.get(operation);
+        if (ins != null) {
+            hits.increment();
+            return ins;
+        }
+        if (instructions.size() >= maxSize) {
+            return Translator.ofSource("").translateOperation(operation);
+        }
+        return instructions.computeIfAbsent(operation, op -> Translator.ofSource("").translateOperation(op));
+    }
+
+    /** Returns the number of distinct instructions held */
+    public int size() {
+        return instructions.size();
+    }
+
+    /** Returns the number of instructions looked up */
+    public long lookups() {
+        return lookups.sum();
+    }
+
+    /** Returns the number of lookups answered by an instruction already in the pool */
+    public long hits() {
+        return hits.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "InstructionPool(" + size() + " instructions, " + hits() + " of " + lookups() + " lookups shared)";
+    }
+}
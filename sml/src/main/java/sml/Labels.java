@@ -44,6 +44,25 @@ public class Labels {
 		return IntStream.range(0, labels.size()).filter(i -> lab.equals(labels.get(i))).findFirst().orElse(-1);
 	}
 
+	/**
+	 * = the label with number index in the list
+	 *
+	 * @param index the number of the label
+	 * @return the label
+	 */
+	public String get(int index) {
+		return labels.get(index);
+	}
+
+	/**
+	 * = the number of labels in the list
+	 *
+	 * @return the size of the list
+	 */
+	public int size() {
+		return labels.size();
+	}
+
 	/**
 	 * Set the number of elements in the list to 0
 	 */
@@ -0,0 +1,257 @@
+package sml;
+
+import sml.metrics.RuntimeMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A program whose instructions are translated the first time the machine reaches them.
+ * <p>
+ * Opening a program memory-maps the file and makes one fast pass over it that records,
+ * for each instruction line, only where the line starts and a hash of its label. An
+ * {@link Instruction} object is built by {@link #get(int)} when first asked for, and
+ * kept. Start-up time and heap therefore grow with the code a run actually executes
+ * plus two {@code int}s and one reference per line, rather than with a full object
+ * graph for every line of the file.
+ * <p>
+ * The program is a read-only {@code List<Instruction>} and comes with matching
+ * {@link #labels()}, so it can be given straight to {@link Machine#prog(java.util.List)}
+ * and {@link Machine#labels(Labels)}. Lines are numbered exactly as
+ * {@link Translator#readAndTranslate(Labels, java.util.List)} would number them:
+ * blank lines, lines with no opcode and lines with an unknown opcode are skipped. A line
+ * whose operands cannot be translated is only discovered when it is reached, and then
+ * raises {@link IllegalStateException}.
+ *
+ * @author KLM and xxx
+ */
+public final class LazyProgram extends AbstractList<Instruction> implements RandomAccess {
+    /** The program text (a read-only mapping of the file) */
+    private final ByteBuffer text;
+    /** Offset of the first character of each instruction line's label */
+    private final int[] lineStart;
+    /** Hash of each instruction's label, see {@link #hash(ByteBuffer, int, int)} */
+    private final int[] labelHash;
+    /** Instructions translated so far, by pc */
+    private final Instruction[] decoded;
+    private final Translator translator = Translator.ofSource("");
+    private final LazyLabels labels = new LazyLabels();
+
+    private LazyProgram(ByteBuffer text, int[] lineStart, int[] labelHash) {
+        this.text = text;
+        this.lineStart = lineStart;
+        this.labelHash = labelHash;
+        this.decoded = new Instruction[lineStart.length];
+    }
+
+    /**
+     * Index a program file without translating it.
+     *
+     * @param file the SML program
+     * @return the program
+     * @throws IOException if the file cannot be read
+     */
+    public static LazyProgram open(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return index(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            RuntimeMetrics.TRANSLATION_LATENCY.recordSince(start);
+            RuntimeMetrics.TRANSLATIONS.increment();
+        }
+    }
+
+    /**
+     * Index program text held in memory without translating it.
+     *
+     * @param source the program text
+     * @return the program
+     */
+    public static LazyProgram of(String source) {
+        return index(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static LazyProgram index(ByteBuffer text) {
+        int[] starts = new int[64];
+        int[] hashes = new int[64];
+        int count = 0;
+        int limit = text.limit();
+        int pos = 0;
+        while (pos < limit) {
+            int eol = pos;
+            while (eol < limit && text.get(eol) != '\n') {
+                eol++;
+            }
+            int labelStart = skipSpace(text, pos, eol);
+            int labelEnd = skipWord(text, labelStart, eol);
+            int opStart = skipSpace(text, labelEnd, eol);
+            int opEnd = skipWord(text, opStart, eol);
+            if (opEnd > opStart && isOpcode(text, opStart, opEnd)) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    hashes = Arrays.copyOf(hashes, count * 2);
+                }
+                starts[count] = labelStart;
+                hashes[count] = hash(text, labelStart, labelEnd);
+                count++;
+            }
+            pos = eol + 1;
+        }
+        return new LazyProgram(text, Arrays.copyOf(starts, count), Arrays.copyOf(hashes, count));
+    }
+
+    private static boolean isOpcode(ByteBuffer text, int from, int to) {
+        String opCode = string(text, from, to);
+        if (Translator.instructionClass(opCode) != null) {
+            return true;
+        }
+        System.err.println("Unknown instruction: " + opCode);
+        return false;
+    }
+
+    /** Returns the labels of this program */
+    public Labels labels() {
+        return labels;
+    }
+
+    /** Returns how many instructions have been translated so far */
+    public int decodedCount() {
+        int n = 0;
+        for (Instruction ins : decoded) {
+            if (ins != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public int size() {
+        return lineStart.length;
+    }
+
+    @Override
+    public Instruction get(int pc) {
+        Instruction ins = decoded[pc];
+        return ins != null ? ins : decode(pc);
+    }
+
+    private synchronized Instruction decode(int pc) {
+        Instruction ins = decoded[pc];
+        if (ins == null) {
+            int from = lineStart[pc];
+            int to = from;
+            while (to < text.limit() && text.get(to) != '\n') {
+                to++;
+            }
+            ins = translator.translateLine(string(text, from, to));
+            if (ins == null) {
+                throw new IllegalStateException("Cannot translate instruction " + pc + ": " + string(text, from, to));
+            }
+            decoded[pc] = ins;
+        }
+        return ins;
+    }
+
+    private static int skipSpace(ByteBuffer text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.get(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int skipWord(ByteBuffer text, int from, int to) {
+        while (from < to && !Character.isWhitespace(text.get(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static String string(ByteBuffer text, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        text.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** FNV-1a over the label's bytes */
+    private static int hash(ByteBuffer text, int from, int to) {
+        int h = 0x811c9dc5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ (text.get(i) & 0xff)) * 0x01000193;
+        }
+        return h;
+    }
+
+    /**
+     * Labels answered from the line index: a label is only turned into a String
+     * when a bnz looks it up, and each looked-up label is remembered.
+     */
+    private final class LazyLabels extends Labels {
+        private final Map<String, Integer> resolved = new ConcurrentHashMap<>();
+
+        @Override
+        public int addLabel(String lab) {
+            throw new UnsupportedOperationException("The labels of a lazy program are read-only");
+        }
+
+        @Override
+        public int indexOf(String lab) {
+            return resolved.computeIfAbsent(lab, this::find);
+        }
+
+        private int find(String lab) {
+            byte[] wanted = lab.getBytes(StandardCharsets.UTF_8);
+            var probe = ByteBuffer.wrap(wanted);
+            int h = hash(probe, 0, wanted.length);
+            for (int pc = 0; pc < lineStart.length; pc++) {
+                if (labelHash[pc] == h && matches(lineStart[pc], wanted)) {
+                    return pc;
+                }
+            }
+            return -1;
+        }
+
+        private boolean matches(int from, byte[] wanted) {
+            int end = skipWord(text, from, text.limit());
+            if (end - from != wanted.length) {
+                return false;
+            }
+            for (int i = 0; i < wanted.length; i++) {
+                if (text.get(from + i) != wanted[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String get(int index) {
+            int from = lineStart[index];
+            return string(text, from, skipWord(text, from, text.limit()));
+        }
+
+        @Override
+        public int size() {
+            return lineStart.length;
+        }
+
+        @Override
+        public void reset() {
+            resolved.clear();
+        }
+
+        @Override
+        public String toString() {
+            return "Labels(lazy, " + lineStart.length + " instructions, " + resolved.size() + " resolved)";
+        }
+    }
+}
@@ -1,16 +1,31 @@
 package sml;
 
+import sml.metrics.RuntimeMetrics;
+
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * Represents the machine, the context in which programs run.
  * <p>
  * An instance contains 32 registers and methods to access and change them.
+ * <p>
+ * A machine can {@link #spawn(int) spawn} child machines that run part of the same
+ * program concurrently, on the common work-stealing {@link java.util.concurrent.ForkJoinPool},
+ * and later {@link #join()} them. A child shares its parent's program, labels, memory and
+ * output, and starts with a copy of its parent's registers. It has no channels, since
+ * each end of a {@link Channel} belongs to a single machine, no {@link Input} (which
+ * is read in order) and no calls outstanding.
  *
  * @author KLM and xxx
  */
 public final class Machine {
+    /** The most calls that can be outstanding at once */
+    public static final int MAX_CALL_DEPTH = 1024;
 
     /** The list of labels defined in the program */
     private Labels labels;
@@ -20,6 +35,40 @@ public final class Machine {
     private Registers registers;
     /** The program counter: index of the next instruction to execute */
     private int pc;
+    /** Where the out instruction sends values; standard output by default */
+    private IntConsumer out = value -> System.out.println(value);
+    /** Where the checked engine's out instruction sends values too wide for out; none by default */
+    private Consumer<BigInteger> wideOut;
+    /** The exact registers after a checked run that overflowed 32 bits, else null */
+    private WideRegisters wideRegisters;
+    /** Number of instructions executed by the last call of execute */
+    private long steps;
+    /** The words the load and store instructions access; none by default */
+    private Memory memory = Memory.none();
+    /** Where the in instruction reads from; empty by default */
+    private Input input = Input.none();
+    /** Return addresses of the calls outstanding, allocated once per machine */
+    private final int[] returnStack = new int[MAX_CALL_DEPTH];
+    /** The number of calls outstanding */
+    private int callDepth;
+    /** How execute runs the program */
+    private ExecutionEngine engine = ExecutionEngines.defaultEngine();
+    /** The program as prepared by the engine, and the program and labels it was prepared from */
+    private ExecutionEngine.Executable executable;
+    private List<Instruction> preparedProg;
+    private Labels preparedLabels;
+    /** The channels the send and recv instructions use, by number; none by default */
+    private Channel[] channels = new Channel[0];
+    /** Children spawned and not yet joined, in spawn order; null until the first spawn */
+    private List<Child> children;
+    /** True if this machine was started by spawn */
+    private boolean child;
+    /** The registers the last join changed, one bit per register */
+    private int joined;
+
+    /** A spawned machine, with the registers it started from */
+    private record Child(Registers start, ForkJoinTask<Machine> task) {
+    }
 
     /** 
      * Default constructor: initializes labels, prog, and pc 
@@ -30,6 +79,17 @@ public final class Machine {
         this.pc = 0;
     }
 
+    /**
+     * Returns a new machine holding a program translated from text held in memory.
+     *
+     * @param source the program text, one instruction per line
+     */
+    public static Machine ofSource(String source) {
+        var m = new Machine();
+        Translator.ofSource(source).readAndTranslate(m.labels(), m.prog());
+        return m;
+    }
+
     /** Fluent getter for labels */
     public Labels labels() {
         return labels;
@@ -70,6 +130,150 @@ public final class Machine {
         this.pc = pc;
     }
 
+    /** Fluent getter for the output sink */
+    public IntConsumer out() {
+        return out;
+    }
+
+    /**
+     * Fluent setter for the output sink. Children started by {@code spawn} share it and
+     * call it from their own threads, possibly at the same time as this machine, so for
+     * a program that spawns it must be thread-safe.
+     */
+    public void out(IntConsumer out) {
+        this.out = out;
+    }
+
+    /** Fluent getter for the sink of output values wider than 32 bits; null if there is none */
+    public Consumer<BigInteger> wideOut() {
+        return wideOut;
+    }
+
+    /**
+     * Fluent setter for the sink of output values wider than 32 bits, which only the
+     * {@code checked} engine produces; without one, outputting such a value fails.
+     */
+    public void wideOut(Consumer<BigInteger> wideOut) {
+        this.wideOut = wideOut;
+    }
+
+    /**
+     * Returns the exact values of the registers if the last run was on the {@code checked}
+     * engine and its arithmetic overflowed 32 bits; null otherwise.
+     */
+    public WideRegisters wideRegisters() {
+        return wideRegisters;
+    }
+
+    /** Fluent setter for the exact values of the registers, for the {@code checked} engine */
+    public void wideRegisters(WideRegisters wideRegisters) {
+        this.wideRegisters = wideRegisters;
+    }
+
+    /** Fluent getter for memory */
+    public Memory memory() {
+        return memory;
+    }
+
+    /** Fluent setter for memory */
+    public void memory(Memory memory) {
+        this.memory = memory;
+    }
+
+    /** Returns the number of calls outstanding */
+    public int callDepth() {
+        return callDepth;
+    }
+
+    /**
+     * Returns the return address of an outstanding call.
+     *
+     * @param depth which call, from 0 (the first made) up to {@link #callDepth()} - 1
+     */
+    public int returnAddress(int depth) {
+        return returnStack[depth];
+    }
+
+    /**
+     * Push a return address, for the call instruction.
+     *
+     * @param pc the instruction to return to
+     * @throws IllegalStateException if {@link #MAX_CALL_DEPTH} calls are already outstanding
+     */
+    public void pushReturn(int pc) {
+        if (callDepth == MAX_CALL_DEPTH) {
+            throw new IllegalStateException("Call stack overflow: more than " + MAX_CALL_DEPTH + " calls outstanding");
+        }
+        returnStack[callDepth++] = pc;
+    }
+
+    /**
+     * Pop the latest return address, for the ret instruction.
+     *
+     * @return the instruction to return to
+     * @throws IllegalStateException if no call is outstanding
+     */
+    public int popReturn() {
+        if (callDepth == 0) {
+            throw new IllegalStateException("ret with no call outstanding");
+        }
+        return returnStack[--callDepth];
+    }
+
+    /** Fluent getter for the execution engine */
+    public ExecutionEngine engine() {
+        return engine;
+    }
+
+    /** Fluent setter for the execution engine */
+    public void engine(ExecutionEngine engine) {
+        this.engine = engine;
+        this.executable = null;
+    }
+
+    /** Fluent getter for input */
+    public Input input() {
+        return input;
+    }
+
+    /** Fluent setter for input */
+    public void input(Input input) {
+        this.input = input;
+    }
+
+    /** Fluent getter for channels */
+    public Channel[] channels() {
+        return channels;
+    }
+
+    /** Fluent setter for channels */
+    public void channels(Channel... channels) {
+        this.channels = channels;
+    }
+
+    /** Returns true if this machine was started by {@link #spawn(int)} */
+    public boolean child() {
+        return child;
+    }
+
+    /**
+     * Returns the registers the last {@link #join()} merged from its children: bit r is
+     * set if some child changed register r. Zero if there were no children to wait for.
+     */
+    public int joined() {
+        return joined;
+    }
+
+    /** Returns the number of instructions executed by the last run */
+    public long steps() {
+        return steps;
+    }
+
+    /** Records the number of instructions executed, for runs made outside execute */
+    public void steps(long steps) {
+        this.steps = steps;
+    }
+
     @Override
     public String toString() {
         var sb = new StringBuilder();
@@ -80,17 +284,119 @@ public final class Machine {
     }
 
     /**
-     * Executes the program starting from instruction 0.
-     * Each instruction's execute(this) is called,
-     * and instructions like bnz may modify the program counter.
+     * Executes the program starting from instruction 0 with all registers zero.
      */
     public void execute() {
+        execute(new Registers());
+    }
+
+    /**
+     * Executes the program starting from instruction 0 with a copy of the given registers,
+     * using the machine's {@link #engine() engine} (the reference engine, {@link #run()},
+     * if the engine cannot run the program).
+     *
+     * @param initial the initial register values (not modified)
+     */
+    public void execute(Registers initial) {
         pc(0);
-        registers(new Registers());
-        while (pc() < prog().size()) {
-            Instruction ins = prog().get(pc());
-            pc(pc() + 1);
-            ins.execute(this);
+        callDepth = 0;
+        wideRegisters = null;
+        registers(initial.copy());
+        RuntimeMetrics.measure(() -> prepared().run(this), this::steps);
+    }
+
+    /**
+     * Returns the program prepared by the engine, preparing it if the program or labels
+     * have been replaced since it was last prepared. (A program changed in place is not
+     * noticed: set it again, or set the engine again, to prepare it afresh.)
+     */
+    private ExecutionEngine.Executable prepared() {
+        if (executable == null || preparedProg != prog || preparedLabels != labels) {
+            ExecutionEngine.Executable e = engine.prepare(labels, prog);
+            executable = e != null ? e : Machine::run;
+            preparedProg = prog;
+            preparedLabels = labels;
+        }
+        return executable;
+    }
+
+    /**
+     * Start a child machine at an instruction, with a copy of this machine's registers,
+     * running concurrently with this one until its pc leaves the program (or it executes
+     * a {@code join} with no children of its own to wait for). The child writes to this
+     * machine's output sink directly, see {@link #out(IntConsumer)}.
+     *
+     * @param pc the first instruction the child executes
+     */
+    public void spawn(int pc) {
+        var c = new Machine();
+        c.labels = labels;
+        c.prog = prog;
+        c.out = out;
+        c.memory = memory;
+        c.registers = registers.copy();
+        c.pc = pc;
+        c.child = true;
+        if (children == null) {
+            children = new ArrayList<>();
+        }
+        children.add(new Child(registers.copy(), ForkJoinTask.adapt(() -> {
+            RuntimeMetrics.measure(c::run, c::steps);
+            return c;
+        }).fork()));
+    }
+
+    /**
+     * Wait for every child spawned since the last join, then merge their results: each
+     * register a child changed takes the child's final value, children being merged in
+     * the order they were spawned (so the later of two children changing the same
+     * register wins). Other registers are left as they are. The registers merged are
+     * then reported by {@link #joined()}.
+     *
+     * @return false if there were no children to wait for
+     * @throws RuntimeException the first exception thrown by a child, in spawn order
+     */
+    public boolean join() {
+        joined = 0;
+        if (children == null || children.isEmpty()) {
+            return false;
+        }
+        try {
+            for (Child c : children) {
+                Registers result = c.task().join().registers;
+                for (int r = 0; r < Registers.NUMBER_OF_REGISTERS; r++) {
+                    if (result.register(r) != c.start().register(r)) {
+                        registers.register(r, result.register(r));
+                        joined |= 1 << r;
+                    }
+                }
+            }
+        } finally {
+            children.clear();
+        }
+        return true;
+    }
+
+    /**
+     * Continues executing from the current program counter and registers
+     * until the program counter leaves the program, then joins any children
+     * still running. Each instruction's execute(this) is called,
+     * and instructions like bnz may modify the program counter.
+     * The run is not recorded in {@link RuntimeMetrics}: {@link #execute(Registers)} and
+     * {@link #spawn(int)} record the runs they start.
+     */
+    public void run() {
+        long count = 0;
+        try {
+            while (pc() < prog().size()) {
+                Instruction ins = prog().get(pc());
+                pc(pc() + 1);
+                count++;
+                ins.execute(this);
+            }
+            join();
+        } finally {
+            steps = count;
         }
     }
 }
@@ -1,35 +1,501 @@
 package sml;
 
+import sml.batch.BatchRunner;
+import sml.batch.RowFormat;
+import sml.cache.ResultCache;
+import sml.daemon.Daemon;
+import sml.daemon.DaemonClient;
+import sml.debug.DebuggerCli;
+import sml.engine.AstEngine;
+import sml.engine.EngineSelector;
+import sml.engine.Inliner;
+import sml.engine.LoopDetector;
+import sml.engine.NonTerminationException;
+import sml.engine.Profile;
+import sml.engine.Profiler;
+import sml.engine.TieredEngine;
+import sml.engine.Verifier;
+import sml.metrics.MetricsHttpServer;
+import sml.metrics.MetricsRegistry;
+import sml.metrics.SmlMetrics;
+import sml.server.ExecutionServer;
+import sml.trace.Replayer;
+import sml.trace.TraceBuffer;
+import sml.trace.Tracer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * This class represents the "driver" of the program
+ * <p>
+ * Usage: {@code Main [options] <file>}, where the options are
+ * <ul>
+ *     <li>{@code --metrics-port=<port>}: serve runtime metrics in Prometheus format at
+ *     {@code http://localhost:<port>/metrics} and register the {@code sml:type=Metrics}
+ *     MBean; the process keeps serving after the program ends until it is interrupted</li>
+ *     <li>{@code --engine=<name>}: run the program on the named {@link ExecutionEngine}
+ *     ({@code reference}, {@code block}, {@code verified}, {@code tiered} or {@code auto}, the default,
+ *     which chooses per program; {@code checked}, for arithmetic that widens registers rather
+ *     than overflowing; or {@code ast}, whose instructions specialize themselves, printing
+ *     what they did at the end); the {@code sml.engine} system property does the same</li>
+ *     <li>{@code --lazy}: translate each instruction only when execution first reaches it
+ *     (see {@link LazyProgram}); the program listing is not printed</li>
+ *     <li>{@code --inline[=<size>]}: replace each {@code call} of a subroutine of at most
+ *     {@code size} instructions (default {@value Inliner#DEFAULT_MAX_SIZE}) with its body
+ *     (see {@link Inliner}) before running the program</li>
+ *     <li>{@code --verify}: check the program with the {@link Verifier} and, if it passes,
+ *     run it without per-instruction checks; otherwise report why and run it normally</li>
+ *     <li>{@code --detect-loops}: stop the program with a diagnostic if it is caught in an
+ *     infinite loop (see {@link LoopDetector}); {@code --max-steps=<n>} stops it after
+ *     {@code n} instructions, with or without loop detection</li>
+ *     <li>{@code --profile-out=<file>}: count how often each instruction runs and each
+ *     branch is taken, adding the counts to the {@link Profile} in the file (replacing it
+ *     if it is of another version of the program); {@code --profile=<file>}: let such a
+ *     profile guide the {@code auto} engine's choice and the {@code tiered} engine's compilation
+ *     of this program (see {@link EngineSelector} and {@link TieredEngine})</li>
+ *     <li>{@code --result-cache=<file>}: if the file holds the result of an earlier run of the
+ *     same program on the same engine, replay it instead of running the program; otherwise
+ *     run it and, if it ran at least {@value ResultCache#DEFAULT_MIN_STEPS} instructions and
+ *     is {@link Instruction#pure() pure}, add its result to the file (see {@link ResultCache})</li>
+ *     <li>{@code --memory=<words>}: give the machine that many words of zeroed {@link Memory}
+ *     for {@code load} and {@code store}; or {@code --memory-file=<file>} to use the
+ *     file (little-endian words) as memory, mapped in place so stores change the file</li>
+ *     <li>{@code --input=<file>}: the numbers the {@code in} instruction reads, as text
+ *     ({@code -} for standard input); without it the program's input is empty</li>
+ *     <li>{@code --debug}: run the program under the command-line debugger
+ *     ({@link DebuggerCli}) instead of running it straight through</li>
+ *     <li>{@code --trace=<file>}: record every step of the run in a memory-mapped trace
+ *     file (see {@link TraceBuffer}) holding the last {@code --trace-size=<MiB>} (default 64)</li>
+ *     <li>{@code --replay=<file>}: instead of running the program, replay a trace of it,
+ *     printing each step, and check that the replay reproduces it</li>
+ *     <li>{@code --serve=<port>}: instead of running a file, start an {@link ExecutionServer}
+ *     on the port; {@code --workers=<n>} (default: one per processor), {@code --cache-size=<n>}
+ *     (default 1024), {@code --blocks} (run a basic block at a time), {@code --detect-loops}
+ *     and {@code --max-steps=<n>} (default {@value ExecutionServer#DEFAULT_MAX_STEPS}) configure it</li>
+ *     <li>{@code --pipeline}: run several files as the stages of a {@link Pipeline}, each
+ *     receiving on channel 0 what the previous one sends on channel 1; the values the last
+ *     stage sends are printed. {@code --channel-size=<n>} (default 1024) bounds each channel</li>
+ *     <li>{@code --batch=<file>}: run the program once per row of initial registers in the
+ *     file, writing the final registers of each row, in order, to {@code --batch-out=<file>}
+ *     (see {@link BatchRunner}); {@code --batch-format=csv|binary} (default {@code csv}),
+ *     {@code --workers=<n>} (default: one per processor) and {@code --batch-size=<rows>}
+ *     configure it, and progress is reported on standard error</li>
+ *     <li>{@code --daemon=<socket>}: instead of running a file, start a {@link Daemon}
+ *     listening on a Unix domain socket ({@code --cache-size=<n>} as for the server)</li>
+ *     <li>{@code --connect=<socket>}: run the file on that daemon instead of in this JVM
+ *     (the same as {@link DaemonClient})</li>
+ * </ul>
+ * {@code --trace}, {@code --profile-out}, {@code --detect-loops} (or {@code --max-steps}),
+ * {@code --verify} and {@code --result-cache} each choose how the program is run, so at
+ * most one of them may be given; all but {@code --result-cache} run the program their
+ * own way rather than on the selected engine, so they cannot be combined with {@code --engine}.
  *
  * @author KLM and xxx
  */
 
 public final class Main {
+    private static final String USAGE = "Usage: Machine [--metrics-port=<port>] [--engine=<name>] [--lazy] [--inline[=<size>]]\n"
+        + "               [--debug] [--profile=<file>] [--memory=<words> | --memory-file=<file>]\n"
+        + "               [--input=<file>] [--replay=<file> | --verify | [--detect-loops] [--max-steps=<n>]\n"
+        + "               | --profile-out=<file> | --result-cache=<file> | --trace=<file> [--trace-size=<MiB>]]\n"
+        + "               <file>\n"
+        + "       Machine [--metrics-port=<port>] --serve=<port> [--workers=<n>] [--cache-size=<n>] [--blocks]\n"
+        + "               [--detect-loops] [--max-steps=<n>]\n"
+        + "       Machine --pipeline [--channel-size=<n>] <file> <file>...\n"
+        + "       Machine --batch=<file> --batch-out=<file> [--batch-format=csv|binary] [--workers=<n>]\n"
+        + "               [--batch-size=<rows>] [--engine=<name>] <file>\n"
+        + "       Machine --daemon=<socket> [--cache-size=<n>]\n"
+        + "       Machine --connect=<socket> <file>";
+
     /**
      * Initialises the system and executes the program.
      *
-     * @param args name of the file containing the program text.
+     * @param args options followed by the name of the file containing the program text.
      */
     public static void main(final String... args) {
-        if (args.length != 1) {
+        var options = new HashMap<String, String>();
+        var files = new ArrayList<String>();
+        parse(args, options, files);
+        if (options.containsKey("serve")) {
+            if (options.containsKey("metrics-port")) {
+                startMetrics(Integer.parseInt(options.get("metrics-port")));
+            }
+            serve(options);
+            return;
+        }
+        if (options.containsKey("daemon")) {
+            startDaemon(options);
+            return;
+        }
+        if (options.containsKey("pipeline") && !files.isEmpty()) {
+            pipeline(files, Integer.parseInt(options.getOrDefault("channel-size", "1024")));
+            return;
+        }
+        if (files.size() != 1) {
             System.err.println("Incorrect number of arguments — Machine <file> - required");
+            System.err.println(USAGE);
             System.exit(-1);
         }
 
+        String conflict = conflictingRunOptions(options);
+        if (conflict != null) {
+            System.err.println(conflict);
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+        if (options.containsKey("connect")) {
+            System.exit(DaemonClient.run(Path.of(options.get("connect")), Path.of(files.get(0)), System.out));
+        }
+
+        if (options.containsKey("metrics-port")) {
+            startMetrics(Integer.parseInt(options.get("metrics-port")));
+        }
+
+        if (options.containsKey("batch")) {
+            batch(files.get(0), options);
+            return;
+        }
+
         Machine m = new Machine();
-        Translator t = new Translator(args[0]);
-        t.readAndTranslate(m.labels(), m.prog());
+        m.wideOut(value -> System.out.println(value));
+        if (options.containsKey("engine")) {
+            m.engine(ExecutionEngines.named(options.get("engine")));
+        }
+        if (options.containsKey("lazy")) {
+            if (!openLazily(m, files.get(0))) {
+                System.exit(-1);
+            }
+            // listing the program would translate every instruction
+            System.out.println("Here is the program; it has " + m.prog().size() + " instructions.");
+        } else {
+            Translator t = new Translator(files.get(0));
+            t.readAndTranslate(m.labels(), m.prog());
+            if (options.containsKey("inline")) {
+                inline(m, options.get("inline"));
+            }
+
+            System.out.println("Here is the program; it has " + m.prog().size() + " instructions.");
+            System.out.println(m);
+        }
 
-        System.out.println("Here is the program; it has " + m.prog().size() + " instructions.");
-        System.out.println(m);
+        if (options.containsKey("profile")) {
+            useProfile(m, options.get("profile"));
+        }
+
+        if (options.containsKey("memory-file")) {
+            try {
+                m.memory(Memory.map(Path.of(options.get("memory-file")), true));
+            } catch (IOException e) {
+                System.err.println("Memory: cannot map " + options.get("memory-file") + ": " + e);
+                System.exit(-1);
+            }
+        } else if (options.containsKey("memory")) {
+            m.memory(Memory.allocate(Integer.parseInt(options.get("memory"))));
+        }
+
+        if (options.containsKey("input")) {
+            String file = options.get("input");
+            try {
+                m.input(file.equals("-") ? Input.stdin() : Input.open(Path.of(file)));
+            } catch (IOException e) {
+                System.err.println("Input: cannot open " + file + ": " + e);
+                System.exit(-1);
+            }
+        }
 
+        if (options.containsKey("debug")) {
+            new DebuggerCli(m, System.out).run();
+            System.out.println("Values of registers when the debugger quit:" + m.registers() + ".");
+            return;
+        }
+
+        if (options.containsKey("replay")) {
+            replay(m, options.get("replay"));
+            return;
+        }
+
+        LoopDetector loopDetector = loopDetector(options);
         System.out.println("Beginning program execution.");
-        m.execute();
+        if (options.containsKey("trace")) {
+            Tracer tracer = openTrace(m, options.get("trace"),
+                Integer.parseInt(options.getOrDefault("trace-size", "64")));
+            if (tracer == null) {
+                System.exit(-1);
+            }
+            tracer.execute(m);
+        } else if (options.containsKey("profile-out")) {
+            Path file = Path.of(options.get("profile-out"));
+            var profiler = new Profiler(openProfile(m, file));
+            profiler.execute(m);
+            try {
+                profiler.profile().save(file);
+            } catch (IOException e) {
+                System.err.println("Profile: cannot write " + file + ": " + e);
+            }
+        } else if (loopDetector != null) {
+            try {
+                loopDetector.execute(m);
+            } catch (NonTerminationException e) {
+                System.out.println("Stopped: " + e.getMessage() + ".");
+            }
+        } else if (options.containsKey("verify")) {
+            Verifier.Result result = Verifier.verify(m.labels(), m.prog());
+            result.problems().forEach(p -> System.err.println("Not verified: " + p));
+            if (result.verified()) {
+                result.program().execute(m);
+            } else {
+                m.execute();
+            }
+        } else if (options.containsKey("result-cache")) {
+            executeCached(m, Path.of(options.get("result-cache")));
+        } else {
+            m.execute();
+        }
         System.out.println("Ending program execution.");
 
         System.out.println("Values of registers at program termination:" + m.registers() + ".");
+        if (m.engine() instanceof AstEngine ast) {
+            System.out.println("Nodes: " + ast.stats() + ".");
+        }
+        if (m.wideRegisters() != null) {
+            System.out.println("Exact values, " + m.wideRegisters().overflows() + " results having overflowed 32 bits:"
+                + m.wideRegisters() + ".");
+        }
+    }
+
+    /** Split arguments into --name=value options and positional arguments. */
+    private static void parse(String[] args, Map<String, String> options, List<String> positional) {
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                String name = eq < 0 ? arg.substring(2) : arg.substring(2, eq);
+                options.put(name, eq < 0 ? "" : arg.substring(eq + 1));
+            } else {
+                positional.add(arg);
+            }
+        }
+    }
+
+    /**
+     * Returns why the options that choose how the program is run cannot be used together,
+     * or null if they can.
+     */
+    private static String conflictingRunOptions(Map<String, String> options) {
+        var chosen = new ArrayList<String>();
+        for (String option : List.of("trace", "profile-out", "verify", "result-cache")) {
+            if (options.containsKey(option)) {
+                chosen.add("--" + option);
+            }
+        }
+        if (options.containsKey("detect-loops") || options.containsKey("max-steps")) {
+            chosen.add(options.containsKey("detect-loops") ? "--detect-loops" : "--max-steps");
+        }
+        if (chosen.size() > 1) {
+            return "Options " + String.join(" and ", chosen) + " cannot be used together";
+        }
+        boolean onEngine = chosen.isEmpty() || chosen.get(0).equals("--result-cache");
+        if (!onEngine && options.containsKey("engine")) {
+            return "Option " + chosen.get(0) + " does not run the program on an engine, so cannot be used"
+                + " with --engine";
+        }
+        return null;
+    }
+
+    /** Returns the loop detector the options ask for, or null if they ask for none */
+    private static LoopDetector loopDetector(Map<String, String> options) {
+        if (!options.containsKey("detect-loops") && !options.containsKey("max-steps")) {
+            return null;
+        }
+        long maxSteps = options.containsKey("max-steps") ? Long.parseLong(options.get("max-steps")) : LoopDetector.UNLIMITED;
+        return new LoopDetector(maxSteps, options.containsKey("detect-loops"));
+    }
+
+    /** Run the program through the results saved in the file, adding this run's if it is worth keeping */
+    private static void executeCached(Machine m, Path file) {
+        var cache = new ResultCache(ResultCache.DEFAULT_MAX_ENTRIES, ResultCache.DEFAULT_MIN_STEPS);
+        try {
+            cache.load(file);
+        } catch (IOException e) {
+            System.err.println("Result cache: cannot read " + file + ": " + e.getMessage());
+        }
+        cache.execute(m);
+        ResultCache.Stats stats = cache.stats();
+        System.out.println(stats.hits() > 0 ? "Replayed the result saved in " + file + "."
+            : "Ran the program" + (stats.stores() > 0 ? ", saving its result in " + file : "") + ".");
+        if (stats.stores() > 0) {
+            try {
+                cache.save(file);
+            } catch (IOException e) {
+                System.err.println("Result cache: cannot write " + file + ": " + e);
+            }
+        }
+    }
+
+    /** Give the profile in the file to the machine's engine, if it is of the program and the engine uses one */
+    private static void useProfile(Machine m, String file) {
+        try {
+            Profile profile = Profile.load(Path.of(file));
+            if (!profile.matches(m.prog())) {
+                System.err.println("Profile: " + file + " is of another program; ignored");
+            } else if (m.engine() instanceof EngineSelector) {
+                m.engine(new EngineSelector(profile));
+                System.out.println("Using " + profile + ".");
+            } else if (m.engine() instanceof TieredEngine) {
+                m.engine(new TieredEngine(profile));
+                System.out.println("Using " + profile + ".");
+            } else {
+                System.err.println("Profile: the " + m.engine().name() + " engine does not use profiles; ignored");
+            }
+        } catch (IOException e) {
+            System.err.println("Profile: cannot read " + file + ": " + e.getMessage());
+        }
+    }
+
+    /** Returns the profile in the file to add this run to, or a new one if it is missing or stale */
+    private static Profile openProfile(Machine m, Path file) {
+        try {
+            Profile profile = Profile.load(file);
+            if (profile.matches(m.prog())) {
+                return profile;
+            }
+        } catch (IOException e) {
+            // start afresh
+        }
+        return Profile.of(m.prog());
+    }
+
+    private static void inline(Machine m, String maxSize) {
+        Inliner.Result result = Inliner.inline(m.labels(), m.prog(),
+            maxSize.isEmpty() ? Inliner.DEFAULT_MAX_SIZE : Integer.parseInt(maxSize));
+        m.labels(result.labels());
+        m.prog(result.prog());
+        System.out.println("Inlined " + result.inlined() + " calls.");
+    }
+
+    private static boolean openLazily(Machine m, String file) {
+        try {
+            LazyProgram program = LazyProgram.open(Path.of(file));
+            m.prog(program);
+            m.labels(program.labels());
+            return true;
+        } catch (IOException e) {
+            System.err.println("File: IO error " + e);
+            return false;
+        }
+    }
+
+    private static Tracer openTrace(Machine m, String file, int mebibytes) {
+        try {
+            return new Tracer(TraceBuffer.create(Path.of(file), mebibytes << 20, 64 << 10, ProgramHash.of(m.prog())));
+        } catch (IOException e) {
+            System.err.println("Trace: cannot create " + file + ": " + e);
+            return null;
+        }
+    }
+
+    private static void replay(Machine m, String file) {
+        Replayer replayer;
+        try {
+            replayer = new Replayer(TraceBuffer.open(Path.of(file)), m.labels(), m.prog());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Trace: cannot replay " + file + ": " + e.getMessage());
+            return;
+        }
+        replayer.out(value -> System.out.println("  out " + value));
+        System.out.println("Replaying steps " + replayer.firstStep() + " to " + replayer.lastStep() + ".");
+        do {
+            if (replayer.pc() < m.prog().size()) {
+                System.out.println(replayer.step() + ": " + m.prog().get(replayer.pc()));
+            }
+        } while (replayer.forward());
+        System.out.println("Values of registers at the end of the trace:" + replayer.registers() + ".");
+    }
+
+    private static void serve(Map<String, String> options) {
+        int port = Integer.parseInt(options.get("serve"));
+        int workers = Integer.parseInt(options.getOrDefault("workers",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int cacheSize = Integer.parseInt(options.getOrDefault("cache-size", "1024"));
+        try {
+            var server = new ExecutionServer(port, workers, cacheSize, options.containsKey("blocks"),
+                loopDetector(options));
+            System.err.println("Execution server listening on localhost:" + server.port());
+        } catch (IOException e) {
+            System.err.println("Server: cannot listen on port " + port + ": " + e);
+            System.exit(-1);
+        }
+    }
+
+    private static void pipeline(List<String> files, int channelSize) {
+        var stages = new ArrayList<Machine>();
+        for (String file : files) {
+            var m = new Machine();
+            new Translator(file).readAndTranslate(m.labels(), m.prog());
+            stages.add(m);
+        }
+        System.out.println("Beginning pipeline execution.");
+        new Pipeline(stages, channelSize).run(value -> System.out.println(value));
+        System.out.println("Ending pipeline execution.");
+        for (int i = 0; i < stages.size(); i++) {
+            System.out.println("Values of registers of stage " + i + " at termination:" + stages.get(i).registers() + ".");
+        }
+    }
+
+    private static void batch(String file, Map<String, String> options) {
+        if (!options.containsKey("batch-out")) {
+            System.err.println("Batch: --batch-out=<file> required");
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+        var m = new Machine();
+        new Translator(file).readAndTranslate(m.labels(), m.prog());
+        RowFormat format = RowFormat.named(options.getOrDefault("batch-format", "csv"));
+        int workers = Integer.parseInt(options.getOrDefault("workers",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+        var runner = new BatchRunner(m.labels(), m.prog(), workers,
+            Integer.parseInt(options.getOrDefault("batch-size", String.valueOf(BatchRunner.DEFAULT_BATCH_SIZE))),
+            4 * workers);
+        if (options.containsKey("engine")) {
+            runner.engine(ExecutionEngines.named(options.get("engine")));
+        }
+        runner.progress(p -> System.err.println("Batch: " + p));
+        try {
+            var in = format.reader(FileChannel.open(Path.of(options.get("batch"))));
+            var out = format.writer(FileChannel.open(Path.of(options.get("batch-out")),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+            System.err.println("Batch: ran " + runner.run(in, out));
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Batch: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    private static void startDaemon(Map<String, String> options) {
+        String socket = options.get("daemon");
+        try {
+            var daemon = new Daemon(Path.of(socket), Integer.parseInt(options.getOrDefault("cache-size", "1024")));
+            System.err.println("Daemon listening on " + daemon.path());
+        } catch (IOException e) {
+            System.err.println("Daemon: cannot listen on " + socket + ": " + e);
+            System.exit(-1);
+        }
+    }
+
+    private static void startMetrics(int port) {
+        try {
+            var server = new MetricsHttpServer(MetricsRegistry.global(), port);
+            SmlMetrics.register();
+            System.err.println("Serving metrics at http://localhost:" + server.port() + "/metrics");
+        } catch (IOException e) {
+            System.err.println("Metrics: cannot listen on port " + port + ": " + e);
+        }
     }
 
     private Main() {
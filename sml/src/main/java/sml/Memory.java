@@ -0,0 +1,104 @@
+package sml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * The machine's linear memory: a fixed number of 32-bit words, addressed from 0, read
+ * and written by the {@code load}/{@code store} instructions.
+ * <p>
+ * The words live outside the Java heap, either in direct memory ({@link #allocate(int)})
+ * or in a memory-mapped file ({@link #map(Path, boolean)}), so a program can work on a
+ * large input file in place. Words are stored little-endian, four bytes each, so a
+ * mapped file is simply a sequence of little-endian {@code int}s.
+ *
+ * @author KLM and xxx
+ */
+public final class Memory {
+    private static final Memory NONE = new Memory(ByteBuffer.allocateDirect(0));
+
+    private final ByteBuffer words;
+    private final int size;
+
+    private Memory(ByteBuffer buffer) {
+        this.words = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.size = buffer.capacity() / Integer.BYTES;
+    }
+
+    /** Returns a memory with no words, which every machine starts with */
+    public static Memory none() {
+        return NONE;
+    }
+
+    /**
+     * Allocate zeroed memory in direct memory.
+     *
+     * @param size the number of words
+     * @return the memory
+     */
+    public static Memory allocate(int size) {
+        if (size < 0 || size > Integer.MAX_VALUE / Integer.BYTES) {
+            throw new IllegalArgumentException("Bad memory size " + size);
+        }
+        return new Memory(ByteBuffer.allocateDirect(size * Integer.BYTES));
+    }
+
+    /**
+     * Map a file as memory; its length in bytes, rounded down to whole words, is the size.
+     *
+     * @param file     the file
+     * @param writable if true, stores change the file; otherwise a store raises
+     *                 {@link java.nio.ReadOnlyBufferException}
+     * @return the memory
+     * @throws IOException if the file cannot be mapped
+     */
+    public static Memory map(Path file, boolean writable) throws IOException {
+        var options = writable
+            ? new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE}
+            : new StandardOpenOption[] {StandardOpenOption.READ};
+        try (var channel = FileChannel.open(file, options)) {
+            long bytes = Math.min(channel.size(), (long) Integer.MAX_VALUE / Integer.BYTES * Integer.BYTES);
+            var mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            return new Memory(channel.map(mode, 0, bytes - bytes % Integer.BYTES));
+        }
+    }
+
+    /** Returns the number of words */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the word at an address.
+     *
+     * @throws IndexOutOfBoundsException if the address is not between 0 and size() - 1
+     */
+    public int load(int address) {
+        return words.getInt(Objects.checkIndex(address, size) * Integer.BYTES);
+    }
+
+    /**
+     * Set the word at an address.
+     *
+     * @throws IndexOutOfBoundsException if the address is not between 0 and size() - 1
+     */
+    public void store(int address, int value) {
+        words.putInt(Objects.checkIndex(address, size) * Integer.BYTES, value);
+    }
+
+    // Unchecked access, for engines that have already checked the address against size()
+    // (see sml.engine.VerifiedProgram); an address out of range gives an unspecified word.
+
+    public int loadUnchecked(int address) {
+        return words.getInt(address << 2);
+    }
+
+    public void storeUnchecked(int address, int value) {
+        words.putInt(address << 2, value);
+    }
+}
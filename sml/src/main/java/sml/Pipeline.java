@@ -0,0 +1,104 @@
+package sml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs machines as the stages of a pipeline, each on its own thread, connected by
+ * {@link Channel}s.
+ * <p>
+ * Every stage receives on its channel 0 and sends on its channel 1. A stage's channel 1
+ * is the next stage's channel 0; the first stage's channel 0 is closed and empty, and
+ * the last stage's channel 1 is drained into a sink by the thread that called
+ * {@link #run(IntConsumer)}. When a stage ends, normally or not, both of its channels
+ * are closed: the next stage receives the values already sent and then sees the end,
+ * and the previous stage stops at its next {@code send}.
+ *
+ * @author KLM and xxx
+ */
+public final class Pipeline {
+    private final List<Machine> stages;
+    private final int capacity;
+
+    /**
+     * @param stages   the machines, in order, with their programs loaded
+     * @param capacity the capacity of each channel
+     */
+    public Pipeline(List<Machine> stages, int capacity) {
+        if (stages.isEmpty()) {
+            throw new IllegalArgumentException("A pipeline needs at least one stage");
+        }
+        this.stages = List.copyOf(stages);
+        this.capacity = capacity;
+    }
+
+    /** Returns the stages */
+    public List<Machine> stages() {
+        return stages;
+    }
+
+    /**
+     * Run every stage from zeroed registers until all have ended.
+     *
+     * @param sink receives the values the last stage sends, in order
+     * @throws RuntimeException the exception that ended the first failing stage
+     */
+    public void run(IntConsumer sink) {
+        var input = new Channel(1);
+        input.close();
+        var threads = new ArrayList<Thread>();
+        var failures = new RuntimeException[stages.size()];
+        for (int i = 0; i < stages.size(); i++) {
+            Machine stage = stages.get(i);
+            Channel in = input;
+            Channel out = new Channel(capacity);
+            stage.channels(in, out);
+            int index = i;
+            var thread = new Thread(() -> {
+                try {
+                    stage.execute();
+                } catch (RuntimeException e) {
+                    failures[index] = e;
+                } finally {
+                    in.close();
+                    out.close();
+                }
+            }, "sml-pipeline-" + i);
+            threads.add(thread);
+            input = out;
+        }
+        threads.forEach(Thread::start);
+        Channel last = input;
+        try {
+            while (last.await()) {
+                sink.accept(last.take());
+            }
+        } finally {
+            last.close();
+            for (Thread thread : threads) {
+                joinUninterruptibly(thread);
+            }
+        }
+        for (RuntimeException failure : failures) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package sml;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Content hashes of translated programs, used as cache keys.
+ * <p>
+ * Two programs have the same hash when their instructions have the same labels,
+ * opcodes and operands, in the same order (the hash is taken over each
+ * instruction's {@code toString()}, which includes all of them; the instructions of a
+ * {@link CompactProgram} are hashed with their labels put back, so it hashes the same
+ * as the program translated normally).
+ *
+ * @author KLM and xxx
+ */
+public final class ProgramHash {
+
+    /**
+     * Returns the SHA-256 hash of a program as 64 hex digits.
+     *
+     * @param prog the program
+     * @return the hash
+     */
+    public static String of(List<Instruction> prog) {
+        return HexFormat.of().formatHex(digest(prog, null));
+    }
+
+    /**
+     * Returns the SHA-256 hash of a program together with the registers it starts from.
+     *
+     * @param prog    the program
+     * @param initial the initial register values
+     * @return the hash
+     */
+    public static String of(List<Instruction> prog, Registers initial) {
+        return HexFormat.of().formatHex(digest(prog, initial));
+    }
+
+    private static byte[] digest(List<Instruction> prog, Registers initial) {
+        MessageDigest md = sha256();
+        for (int pc = 0; pc < prog.size(); pc++) {
+            String text = prog.get(pc).toString();
+            if (prog instanceof CompactProgram compact) {
+                text = compact.label(pc) + text;
+            }
+            md.update(text.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) '\n');
+        }
+        if (initial != null) {
+            for (int i = 0; i < initial.size(); i++) {
+                int v = initial.register(i);
+                md.update(new byte[] {(byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v});
+            }
+        }
+        return md.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+        }
+    }
+
+    private ProgramHash() {
+    } // Utility classes should not have a public or default constructor
+}
@@ -0,0 +1,25 @@
+package sml;
+
+import java.util.List;
+
+/**
+ * The reference engine: {@link Machine#run()}, one {@link Instruction#execute(Machine)}
+ * call per step. It needs no preparation and runs every program, so it is the best
+ * choice for programs that execute few instructions, and the one every other engine
+ * must agree with.
+ *
+ * @author KLM and xxx
+ */
+public final class ReferenceEngine implements ExecutionEngine {
+    public static final String NAME = "reference";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Executable prepare(Labels labels, List<Instruction> prog) {
+        return Machine::run;
+    }
+}
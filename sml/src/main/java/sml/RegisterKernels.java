@@ -0,0 +1,99 @@
+package sml;
+
+/**
+ * Element-wise kernels over contiguous runs of the register file, used by the
+ * vector instructions through {@link Registers}.
+ * <p>
+ * The Vector API implementation is chosen when the {@code jdk.incubator.vector}
+ * module is in the boot layer (run with {@code --add-modules jdk.incubator.vector})
+ * unless it is disabled with {@code -Dsml.vector=false}; otherwise the scalar
+ * loops below are used. Both give the same results as the equivalent sequence
+ * of scalar instructions, including when ranges overlap.
+ *
+ * @author KLM and xxx
+ */
+abstract class RegisterKernels {
+    /** The kernels used by every {@link Registers} instance */
+    static final RegisterKernels INSTANCE = select();
+
+    abstract void add(int[] r, int dst, int src1, int src2, int length);
+
+    abstract void sub(int[] r, int dst, int src1, int src2, int length);
+
+    abstract void mul(int[] r, int dst, int src1, int src2, int length);
+
+    abstract int sum(int[] r, int src, int length);
+
+    abstract int dot(int[] r, int src1, int src2, int length);
+
+    /** Returns a short name for the kernels in use ("vector" or "scalar") */
+    abstract String name();
+
+    /**
+     * True when an element-wise write to dst would clobber a source element
+     * before a blocked (vector) loop has read it; such calls must run in order.
+     */
+    static boolean clobbers(int dst, int src, int length) {
+        return dst > src && dst < src + length;
+    }
+
+    private static RegisterKernels select() {
+        boolean enabled = Boolean.parseBoolean(System.getProperty("sml.vector", "true"));
+        if (enabled && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (RegisterKernels) Class.forName("sml.VectorRegisterKernels")
+                    .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall through to the scalar kernels
+            }
+        }
+        return new Scalar();
+    }
+
+    /** Plain loops; also used by the vector kernels for tails and overlapping ranges. */
+    static class Scalar extends RegisterKernels {
+        @Override
+        void add(int[] r, int dst, int src1, int src2, int length) {
+            for (int i = 0; i < length; i++) {
+                r[dst + i] = r[src1 + i] + r[src2 + i];
+            }
+        }
+
+        @Override
+        void sub(int[] r, int dst, int src1, int src2, int length) {
+            for (int i = 0; i < length; i++) {
+                r[dst + i] = r[src1 + i] - r[src2 + i];
+            }
+        }
+
+        @Override
+        void mul(int[] r, int dst, int src1, int src2, int length) {
+            for (int i = 0; i < length; i++) {
+                r[dst + i] = r[src1 + i] * r[src2 + i];
+            }
+        }
+
+        @Override
+        int sum(int[] r, int src, int length) {
+            int total = 0;
+            for (int i = 0; i < length; i++) {
+                total += r[src + i];
+            }
+            return total;
+        }
+
+        @Override
+        int dot(int[] r, int src1, int src2, int length) {
+            int total = 0;
+            for (int i = 0; i < length; i++) {
+                total += r[src1 + i] * r[src2 + i];
+            }
+            return total;
+        }
+
+        @Override
+        String name() {
+            return "scalar";
+        }
+    }
+}
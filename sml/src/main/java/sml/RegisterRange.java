@@ -0,0 +1,54 @@
+package sml;
+
+/**
+ * A contiguous run of registers, written in SML source as {@code first..last}
+ * (both ends inclusive), for example {@code 8..15}.
+ *
+ * @param start  index of the first register in the range
+ * @param length number of registers in the range
+ * @author KLM and xxx
+ */
+public record RegisterRange(int start, int length) {
+
+    public RegisterRange {
+        if (length < 1) {
+            throw new IllegalArgumentException("Empty register range: " + start + ".." + (start + length - 1));
+        }
+    }
+
+    /**
+     * Parse a range operand. A single register index is accepted as a range of length 1.
+     *
+     * @param word the operand text, e.g. "0..7" or "3"
+     * @return the parsed range
+     * @throws NumberFormatException if either end is not an integer
+     */
+    public static RegisterRange parse(String word) {
+        int dots = word.indexOf("..");
+        if (dots < 0) {
+            return new RegisterRange(Integer.parseInt(word), 1);
+        }
+        int first = Integer.parseInt(word.substring(0, dots));
+        int last = Integer.parseInt(word.substring(dots + 2));
+        return new RegisterRange(first, last - first + 1);
+    }
+
+    /** Index of the last register in the range */
+    public int end() {
+        return start + length - 1;
+    }
+
+    /** Returns the index of every register in the range, in order */
+    public int[] indices() {
+        int[] registers = new int[length];
+        for (int i = 0; i < length; i++) {
+            registers[i] = start + i;
+        }
+        return registers;
+    }
+
+    @Override
+    public String toString() {
+        return start + ".." + end();
+    }
+}
@@ -1,10 +1,12 @@
 package sml;
 
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.ToString;
 import lombok.experimental.Accessors;
 
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * This class represents the registers in the "Machine".
@@ -18,8 +20,10 @@ import java.util.Arrays;
 @EqualsAndHashCode
 @Accessors(fluent = true)
 public final class Registers {
-    private static final int NUMBER_OF_REGISTERS = 32;
+    public static final int NUMBER_OF_REGISTERS = 32;
 
+    // The backing array, exposed (as registers()) for engines that run verified programs
+    @Getter
     final int[] registers;
 
     // Constructor: an instance whose registers are set to 0
@@ -35,6 +39,20 @@ public final class Registers {
         Arrays.fill(registers, 0);
     }
 
+    /**
+     * Returns an independent copy of these registers.
+     */
+    public Registers copy() {
+        var copy = new Registers();
+        System.arraycopy(registers, 0, copy.registers, 0, NUMBER_OF_REGISTERS);
+        return copy;
+    }
+
+    /** Returns the number of registers in the machine */
+    public int size() {
+        return NUMBER_OF_REGISTERS;
+    }
+
     // Set register i to v.
     // Precondition: 0 <= i <= NUMBER_OF_REGISTERS
 
@@ -46,4 +64,41 @@ public final class Registers {
         return registers[i];
     }
 
+    // Element-wise operations over register ranges, used by the vector instructions.
+    // Each behaves like the equivalent sequence of scalar instructions in ascending
+    // register order; the source ranges have the same length as dst.
+
+    public void add(RegisterRange dst, int src1, int src2) {
+        checkRanges(dst, src1, src2);
+        RegisterKernels.INSTANCE.add(registers, dst.start(), src1, src2, dst.length());
+    }
+
+    public void sub(RegisterRange dst, int src1, int src2) {
+        checkRanges(dst, src1, src2);
+        RegisterKernels.INSTANCE.sub(registers, dst.start(), src1, src2, dst.length());
+    }
+
+    public void mul(RegisterRange dst, int src1, int src2) {
+        checkRanges(dst, src1, src2);
+        RegisterKernels.INSTANCE.mul(registers, dst.start(), src1, src2, dst.length());
+    }
+
+    // Reductions: the wrapped (32-bit) sum of a range, and of the element-wise products of two ranges.
+
+    public int sum(RegisterRange src) {
+        Objects.checkFromIndexSize(src.start(), src.length(), registers.length);
+        return RegisterKernels.INSTANCE.sum(registers, src.start(), src.length());
+    }
+
+    public int dot(RegisterRange src1, int src2) {
+        checkRanges(src1, src1.start(), src2);
+        return RegisterKernels.INSTANCE.dot(registers, src1.start(), src2, src1.length());
+    }
+
+    private void checkRanges(RegisterRange dst, int src1, int src2) {
+        Objects.checkFromIndexSize(dst.start(), dst.length(), registers.length);
+        Objects.checkFromIndexSize(src1, dst.length(), registers.length);
+        Objects.checkFromIndexSize(src2, dst.length(), registers.length);
+    }
+
 }
@@ -6,10 +6,13 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.extern.java.Log;
+import sml.metrics.RuntimeMetrics;
 
 /**
  * SML program translator: reads a file, parses labels and instructions,
@@ -18,18 +21,46 @@ import lombok.extern.java.Log;
 @Log
 public final class Translator {
     private static final String PATH = "";
+    /** Instruction classes already found, by opcode */
+    private static final Map<String, Class<?>> CLASSES = new ConcurrentHashMap<>();
     private final String fileName;
+    /** Program text to translate instead of reading fileName, or null */
+    private final String source;
     private String line = "";
 
     public Translator(final String file) {
-        this.fileName = PATH + file;
+        this(PATH + file, null);
+    }
+
+    private Translator(final String fileName, final String source) {
+        this.fileName = fileName;
+        this.source = source;
+    }
+
+    /**
+     * Returns a translator for program text held in memory rather than in a file.
+     *
+     * @param source the program text, one instruction per line
+     */
+    public static Translator ofSource(final String source) {
+        return new Translator("<source>", source);
     }
 
     /**
      * Read the SML program from file into lab (labels) and prog (instructions).
      */
     public boolean readAndTranslate(final Labels lab, final List<Instruction> prog) {
-        try (var sc = new Scanner(new File(fileName), StandardCharsets.UTF_8)) {
+        long start = System.nanoTime();
+        try {
+            return translate(lab, prog);
+        } finally {
+            RuntimeMetrics.TRANSLATION_LATENCY.recordSince(start);
+            RuntimeMetrics.TRANSLATIONS.increment();
+        }
+    }
+
+    private boolean translate(final Labels lab, final List<Instruction> prog) {
+        try (var sc = source != null ? new Scanner(source) : new Scanner(new File(fileName), StandardCharsets.UTF_8)) {
             lab.reset();
             prog.clear();
             try {
@@ -73,18 +104,58 @@ public final class Translator {
         return returnInstruction(label, opCode);
     }
 
+    /**
+     * Parse one line of program text ("label opcode operands...").
+     *
+     * @param text the line
+     * @return the instruction, or null if the line is blank, has no opcode or cannot be translated
+     */
+    Instruction translateLine(final String text) {
+        line = text;
+        String label = scan();
+        return label.isEmpty() ? null : getInstruction(label);
+    }
+
+    /**
+     * Translate an operation ("opcode operands...") into an instruction with an empty label.
+     *
+     * @param text the operation
+     * @return the instruction, or null if the text is blank or cannot be translated
+     */
+    Instruction translateOperation(final String text) {
+        line = text;
+        return getInstruction("");
+    }
+
+    /**
+     * Find the class implementing an opcode: "add" is implemented by sml.instructions.AddInstruction.
+     *
+     * @param opCode the opcode
+     * @return the class, or null if there is no such instruction
+     */
+    static Class<?> instructionClass(final String opCode) {
+        Class<?> clazz = CLASSES.get(opCode);
+        if (clazz == null && !opCode.isEmpty()) {
+            String pkg = "sml.instructions";
+            String className = opCode.substring(0, 1).toUpperCase() + opCode.substring(1) + "Instruction";
+            try {
+                clazz = Class.forName(pkg + "." + className);
+                CLASSES.put(opCode, clazz);
+            } catch (ClassNotFoundException e) {
+                return null; // unknown opcodes are not cached, so bad input cannot grow the map
+            }
+        }
+        return clazz;
+    }
+
     /** Build an Instruction via reflection based on opCode and remaining tokens. */
     private Instruction returnInstruction(final String label, final String opCode) {
-        String pkg = "sml.instructions";
-        String className = opCode.substring(0, 1).toUpperCase() + opCode.substring(1) + "Instruction";
-        String fqcn = pkg + "." + className;
-        Class<?> clazz;
-        try {
-            clazz = Class.forName(fqcn);
-        } catch (ClassNotFoundException e) {
+        Class<?> clazz = instructionClass(opCode);
+        if (clazz == null) {
             System.err.println("Unknown instruction: " + opCode);
             return null;
         }
+        String fqcn = clazz.getName();
         Constructor<?> cons = findConstructor(clazz);
         if (cons == null) {
             log.severe("No suitable constructor found for " + fqcn);
@@ -115,6 +186,7 @@ public final class Translator {
      * - first argument is the label String
      * - for each int parameter: call scanInt()
      * - for each String parameter: call scan()
+     * - for each RegisterRange parameter: call scanRange()
      */
     private Object[] argsForConstructor(Constructor<?> cons, String label) {
         Class<?>[] pts = cons.getParameterTypes();
@@ -125,6 +197,8 @@ public final class Translator {
                 args[i] = scanInt();
             } else if (pts[i] == String.class) {
                 args[i] = scan();
+            } else if (pts[i] == RegisterRange.class) {
+                args[i] = scanRange();
             } else {
                 // unsupported parameter type
                 args[i] = null;
@@ -157,4 +231,14 @@ public final class Translator {
             return Integer.MAX_VALUE;
         }
     }
+
+    /** Scan next word as a register range ("first..last"), return null on parse error. */
+    private RegisterRange scanRange() {
+        String w = scan();
+        try {
+            return RegisterRange.parse(w);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
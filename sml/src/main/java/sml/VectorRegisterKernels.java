@@ -0,0 +1,101 @@
+package sml;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Register kernels built on the incubating Vector API.
+ * <p>
+ * Only loaded reflectively by {@link RegisterKernels} once the module is known
+ * to be present, so the rest of the machine never links against it.
+ *
+ * @author KLM and xxx
+ */
+final class VectorRegisterKernels extends RegisterKernels.Scalar {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    void add(int[] r, int dst, int src1, int src2, int length) {
+        if (clobbers(dst, src1, length) || clobbers(dst, src2, length)) {
+            super.add(r, dst, src1, src2, length);
+            return;
+        }
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector a = IntVector.fromArray(SPECIES, r, src1 + i);
+            IntVector b = IntVector.fromArray(SPECIES, r, src2 + i);
+            a.add(b).intoArray(r, dst + i);
+        }
+        for (; i < length; i++) {
+            r[dst + i] = r[src1 + i] + r[src2 + i];
+        }
+    }
+
+    @Override
+    void sub(int[] r, int dst, int src1, int src2, int length) {
+        if (clobbers(dst, src1, length) || clobbers(dst, src2, length)) {
+            super.sub(r, dst, src1, src2, length);
+            return;
+        }
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector a = IntVector.fromArray(SPECIES, r, src1 + i);
+            IntVector b = IntVector.fromArray(SPECIES, r, src2 + i);
+            a.sub(b).intoArray(r, dst + i);
+        }
+        for (; i < length; i++) {
+            r[dst + i] = r[src1 + i] - r[src2 + i];
+        }
+    }
+
+    @Override
+    void mul(int[] r, int dst, int src1, int src2, int length) {
+        if (clobbers(dst, src1, length) || clobbers(dst, src2, length)) {
+            super.mul(r, dst, src1, src2, length);
+            return;
+        }
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector a = IntVector.fromArray(SPECIES, r, src1 + i);
+            IntVector b = IntVector.fromArray(SPECIES, r, src2 + i);
+            a.mul(b).intoArray(r, dst + i);
+        }
+        for (; i < length; i++) {
+            r[dst + i] = r[src1 + i] * r[src2 + i];
+        }
+    }
+
+    @Override
+    int sum(int[] r, int src, int length) {
+        int i = 0;
+        int total = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            total += IntVector.fromArray(SPECIES, r, src + i).reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            total += r[src + i];
+        }
+        return total;
+    }
+
+    @Override
+    int dot(int[] r, int src1, int src2, int length) {
+        int i = 0;
+        int total = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector a = IntVector.fromArray(SPECIES, r, src1 + i);
+            IntVector b = IntVector.fromArray(SPECIES, r, src2 + i);
+            total += a.mul(b).reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            total += r[src1 + i] * r[src2 + i];
+        }
+        return total;
+    }
+
+    @Override
+    String name() {
+        return "vector";
+    }
+}
@@ -0,0 +1,58 @@
+package sml;
+
+import java.math.BigInteger;
+
+/**
+ * The exact values of the registers after a run on the {@code checked} engine in which
+ * arithmetic overflowed 32 bits (see {@code sml.engine.CheckedEngine}).
+ * <p>
+ * A register whose value fits in an {@code int} has the value in {@link Machine#registers()};
+ * a wide one holds the low 32 bits of its value there, and its exact value here.
+ *
+ * @author KLM and xxx
+ */
+public final class WideRegisters {
+    private final int[] registers;
+    private final BigInteger[] wide;
+    private final long overflows;
+
+    /**
+     * @param registers the int values of the registers (copied)
+     * @param wide      the exact value of each wide register, null for the others (copied)
+     * @param overflows the results that did not fit in 32 bits during the run
+     */
+    public WideRegisters(int[] registers, BigInteger[] wide, long overflows) {
+        this.registers = registers.clone();
+        this.wide = wide.clone();
+        this.overflows = overflows;
+    }
+
+    /** Returns the number of registers */
+    public int size() {
+        return registers.length;
+    }
+
+    /** Returns true if register i holds a value that does not fit in an {@code int} */
+    public boolean wide(int i) {
+        return wide[i] != null;
+    }
+
+    /** Returns the exact value of register i */
+    public BigInteger register(int i) {
+        return wide[i] != null ? wide[i] : BigInteger.valueOf(registers[i]);
+    }
+
+    /** Returns the number of arithmetic results that did not fit in 32 bits during the run */
+    public long overflows() {
+        return overflows;
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder("WideRegisters(registers=[");
+        for (int i = 0; i < registers.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append(register(i));
+        }
+        return sb.append("])").toString();
+    }
+}
@@ -0,0 +1,315 @@
+package sml.batch;
+
+import sml.ExecutionEngine;
+import sml.ExecutionEngines;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Registers;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs one program over many rows of initial registers, writing each run's final
+ * registers in the order the rows were read.
+ * <p>
+ * Rows are read in batches by a reader thread, executed by a pool of worker threads,
+ * each with a machine of its own, and written by the thread that called
+ * {@link #run(RowFormat.Reader, RowFormat.Writer)}. A batch is read only when fewer than
+ * the given capacity of batches are between the reader and the writer (queued, running,
+ * or done and waiting for an earlier batch), so memory stays bounded however many rows
+ * there are, and a slow writer or slow workers hold back the reader. Values the program
+ * outputs are discarded. If a row fails or the rows cannot be read or written, the run
+ * stops and {@code run} throws; the rows written so far are the ones before the failure.
+ *
+ * @author KLM and xxx
+ */
+public final class BatchRunner {
+    /** Default number of rows per batch */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    /** Milliseconds between calls of the progress listener */
+    public static final long PROGRESS_INTERVAL = 1000;
+    private static final int WIDTH = Registers.NUMBER_OF_REGISTERS;
+    /** Marks the end of the batches for a worker */
+    private static final Batch STOP = new Batch(-1, 0);
+
+    /**
+     * A snapshot of a run in progress.
+     *
+     * @param rows          rows written so far
+     * @param rowsPerSecond rows written per second since the run started
+     * @param queued        batches read and waiting for a worker
+     * @param running       batches being executed
+     * @param waiting       batches executed and waiting to be written
+     */
+    public record Progress(long rows, double rowsPerSecond, int queued, int running, int waiting) {
+        @Override
+        public String toString() {
+            return String.format("%,d rows (%,.0f rows/s); batches queued %d, running %d, waiting %d",
+                rows, rowsPerSecond, queued, running, waiting);
+        }
+    }
+
+    /**
+     * The outcome of a run.
+     *
+     * @param rows       rows written
+     * @param nanos      time taken
+     * @param maxQueued  the most batches waiting for a worker at once
+     * @param maxWaiting the most batches waiting to be written at once
+     */
+    public record Stats(long rows, long nanos, int maxQueued, int maxWaiting) {
+        /** Returns the rows run per second */
+        public double rowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d rows in %.3f s (%,.0f rows/s); peak batches queued %d, waiting %d",
+                rows, nanos / 1e9, rowsPerSecond(), maxQueued, maxWaiting);
+        }
+    }
+
+    /** Rows, read as initial registers and overwritten with the final ones */
+    private static final class Batch {
+        final long seq;
+        final int[] values;
+        int rows;
+
+        Batch(long seq, int size) {
+            this.seq = seq;
+            this.values = new int[size * WIDTH];
+        }
+    }
+
+    private final Labels labels;
+    private final List<Instruction> prog;
+    private final int workers;
+    private final int batchSize;
+    private final int capacity;
+    private ExecutionEngine engine = ExecutionEngines.defaultEngine();
+    private Consumer<Progress> progress;
+
+    /**
+     * @param labels    the labels of the program
+     * @param prog      the program
+     * @param workers   the number of worker threads
+     * @param batchSize rows per batch
+     * @param capacity  the most batches between reader and writer
+     */
+    public BatchRunner(Labels labels, List<Instruction> prog, int workers, int batchSize, int capacity) {
+        if (workers < 1 || batchSize < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Workers, batch size and capacity must be positive");
+        }
+        this.labels = labels;
+        this.prog = prog;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+    }
+
+    /** Fluent setter for the engine each worker's machine runs the program on */
+    public void engine(ExecutionEngine engine) {
+        this.engine = engine;
+    }
+
+    /** Fluent setter for the listener called every {@value #PROGRESS_INTERVAL} ms during a run; none by default */
+    public void progress(Consumer<Progress> progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Run the program on every row.
+     *
+     * @param in  the rows of initial registers; closed when the run ends
+     * @param out where the rows of final registers are written; closed when the run ends
+     * @return the statistics of the run
+     * @throws IOException           if the rows cannot be read or written
+     * @throws IllegalStateException if the program fails on a row
+     */
+    public Stats run(RowFormat.Reader in, RowFormat.Writer out) throws IOException {
+        try (in; out) {
+            return new Run(in, out).run();
+        }
+    }
+
+    /** The threads and queues of one run */
+    private final class Run {
+        private final RowFormat.Reader in;
+        private final RowFormat.Writer out;
+        private final BlockingQueue<Batch> queued = new ArrayBlockingQueue<>(capacity + workers);
+        private final BlockingQueue<Batch> done = new LinkedBlockingQueue<>();
+        private final Semaphore permits = new Semaphore(capacity);
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        private final List<Thread> threads = new ArrayList<>();
+        private final long start = System.nanoTime();
+        private volatile long rows;
+        private volatile int waiting;
+        private volatile int maxQueued;
+
+        Run(RowFormat.Reader in, RowFormat.Writer out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        Stats run() throws IOException {
+            threads.add(new Thread(this::read, "sml-batch-reader"));
+            for (int i = 0; i < workers; i++) {
+                threads.add(new Thread(this::work, "sml-batch-worker-" + i));
+            }
+            if (progress != null) {
+                var reporter = new Thread(this::report, "sml-batch-progress");
+                reporter.setDaemon(true);
+                threads.add(reporter);
+            }
+            threads.forEach(Thread::start);
+            int maxWaiting = 0;
+            try {
+                var pending = new HashMap<Long, Batch>();
+                for (long next = 0; ; ) {
+                    Batch batch = pending.remove(next);
+                    if (batch == null) {
+                        Batch finished = done.take();
+                        if (finished == STOP) {
+                            break; // failed
+                        }
+                        pending.put(finished.seq, finished);
+                        waiting = pending.size() + done.size();
+                        maxWaiting = Math.max(maxWaiting, waiting);
+                        continue;
+                    }
+                    if (batch.rows == 0) {
+                        break; // the end
+                    }
+                    for (int r = 0; r < batch.rows; r++) {
+                        out.write(batch.values, r * WIDTH);
+                    }
+                    rows += batch.rows;
+                    next++;
+                    permits.release();
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(new InterruptedIOException("Batch run interrupted"));
+            } finally {
+                stop();
+            }
+            Exception e = failure.get();
+            if (e instanceof IOException io) {
+                throw io;
+            } else if (e != null) {
+                throw (RuntimeException) e;
+            }
+            return new Stats(rows, System.nanoTime() - start, maxQueued, maxWaiting);
+        }
+
+        private void read() {
+            long seq = 0;
+            try {
+                while (true) {
+                    permits.acquire();
+                    var batch = new Batch(seq, batchSize);
+                    while (batch.rows < batchSize && in.read(batch.values, batch.rows * WIDTH)) {
+                        batch.rows++;
+                    }
+                    if (batch.rows == 0) {
+                        break;
+                    }
+                    queued.put(batch);
+                    maxQueued = Math.max(maxQueued, queued.size());
+                    seq++;
+                    if (batch.rows < batchSize) {
+                        break;
+                    }
+                }
+                done.add(new Batch(seq, 0));
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                // stopped after a failure
+            } finally {
+                for (int i = 0; i < workers; i++) {
+                    queued.add(STOP);
+                }
+            }
+        }
+
+        private void work() {
+            var m = new Machine();
+            m.engine(engine);
+            m.labels(labels);
+            m.prog(prog);
+            m.out(value -> { });
+            var initial = new Registers();
+            try {
+                for (Batch batch = queued.take(); batch != STOP; batch = queued.take()) {
+                    running.incrementAndGet();
+                    for (int r = 0; r < batch.rows; r++) {
+                        System.arraycopy(batch.values, r * WIDTH, initial.registers(), 0, WIDTH);
+                        try {
+                            m.execute(initial);
+                        } catch (RuntimeException e) {
+                            throw new IllegalStateException("Row " + (batch.seq * batchSize + r + 1) + " failed: " + e, e);
+                        }
+                        System.arraycopy(m.registers().registers(), 0, batch.values, r * WIDTH, WIDTH);
+                    }
+                    running.decrementAndGet();
+                    done.add(batch);
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                // stopped after a failure
+            }
+        }
+
+        private void report() {
+            try {
+                while (true) {
+                    Thread.sleep(PROGRESS_INTERVAL);
+                    long n = rows;
+                    progress.accept(new Progress(n, n * 1e9 / (System.nanoTime() - start),
+                        Math.max(0, queued.size()), running.get(), waiting));
+                }
+            } catch (InterruptedException e) {
+                // the run has ended
+            }
+        }
+
+        /** Record the first failure and wake the writer */
+        private void fail(Exception e) {
+            if (failure.compareAndSet(null, e)) {
+                done.add(STOP);
+            }
+        }
+
+        private void stop() {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package sml.batch;
+
+import sml.DecimalReader;
+import sml.Registers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * How the rows of a batch run are stored: each row is the values of the registers,
+ * from register 0 up, read as a machine's initial registers or written as its final
+ * ones.
+ * <ul>
+ *     <li>{@link #CSV}: one row per line, decimal integers separated by commas; a row
+ *     read may have fewer values than there are registers (the rest are zero), and
+ *     blank lines are skipped;</li>
+ *     <li>{@link #BINARY}: {@link Registers#NUMBER_OF_REGISTERS} little-endian
+ *     {@code int}s per row, the layout of a {@link sml.Memory} file.</li>
+ * </ul>
+ * Both are read and written through {@value #BUFFER_SIZE}-byte buffers, without
+ * creating objects per value.
+ *
+ * @author KLM and xxx
+ */
+public enum RowFormat {
+    CSV {
+        @Override
+        public Reader reader(ReadableByteChannel in) {
+            return new CsvReader(in);
+        }
+
+        @Override
+        public Writer writer(WritableByteChannel out) {
+            return new CsvWriter(out);
+        }
+    },
+    BINARY {
+        @Override
+        public Reader reader(ReadableByteChannel in) {
+            return new BinaryReader(in);
+        }
+
+        @Override
+        public Writer writer(WritableByteChannel out) {
+            return new BinaryWriter(out);
+        }
+    };
+
+    /** Bytes read or written at a time */
+    public static final int BUFFER_SIZE = 64 << 10;
+    private static final int WIDTH = Registers.NUMBER_OF_REGISTERS;
+
+    /** Reads rows */
+    public interface Reader extends Closeable {
+        /**
+         * Read the next row.
+         *
+         * @param row    where to put the values; {@link Registers#NUMBER_OF_REGISTERS} from offset
+         * @param offset the index in row of register 0
+         * @return false at the end of the input
+         * @throws IOException if the input cannot be read or is not in this format
+         */
+        boolean read(int[] row, int offset) throws IOException;
+    }
+
+    /** Writes rows */
+    public interface Writer extends Closeable {
+        /**
+         * Write a row.
+         *
+         * @param row    the values; {@link Registers#NUMBER_OF_REGISTERS} from offset
+         * @param offset the index in row of register 0
+         * @throws IOException if the output cannot be written
+         */
+        void write(int[] row, int offset) throws IOException;
+    }
+
+    /**
+     * Returns a reader of rows in this format.
+     *
+     * @param in the input; closed with the reader
+     */
+    public abstract Reader reader(ReadableByteChannel in);
+
+    /**
+     * Returns a writer of rows in this format.
+     *
+     * @param out the output; flushed and closed with the writer
+     */
+    public abstract Writer writer(WritableByteChannel out);
+
+    /**
+     * Returns the format with the given name, ignoring case.
+     *
+     * @throws IllegalArgumentException if there is no such format
+     */
+    public static RowFormat named(String name) {
+        for (RowFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown row format " + name + " (csv or binary)");
+    }
+
+    private static final class CsvReader implements Reader {
+        private final DecimalReader in;
+        private long line = 1;
+
+        CsvReader(ReadableByteChannel in) {
+            this.in = new DecimalReader(in, BUFFER_SIZE);
+        }
+
+        @Override
+        public boolean read(int[] row, int offset) throws IOException {
+            int c;
+            while ((c = in.peek()) == '\n' || c == '\r') {
+                in.skip();
+                if (c == '\n') {
+                    line++;
+                }
+            }
+            if (c < 0) {
+                return false;
+            }
+            int count = 0;
+            while (true) {
+                if (count == WIDTH) {
+                    throw new IOException("Line " + line + ": more than " + WIDTH + " values");
+                }
+                row[offset + count++] = number();
+                c = in.peek();
+                if (c == ',') {
+                    in.skip();
+                } else if (c == '\n' || c == '\r' || c < 0) {
+                    break;
+                } else {
+                    throw new IOException("Line " + line + ": expected a comma or the end of the line");
+                }
+            }
+            for (int i = count; i < WIDTH; i++) {
+                row[offset + i] = 0;
+            }
+            return true;
+        }
+
+        private int number() throws IOException {
+            while (in.peek() == ' ') {
+                in.skip();
+            }
+            long value = in.number();
+            if (value != DecimalReader.NOT_A_NUMBER && value != (int) value) {
+                throw new IOException("Line " + line + ": number does not fit an int");
+            }
+            while (in.peek() == ' ') {
+                in.skip();
+            }
+            if (value == DecimalReader.NOT_A_NUMBER) {
+                throw new IOException("Line " + line + ": not a number");
+            }
+            return (int) value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class CsvWriter implements Writer {
+        /** Room for the longest row: each value at most 11 characters and a separator */
+        private static final int MAX_ROW = WIDTH * 12;
+        private final WritableByteChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final byte[] bytes = buffer.array();
+        private int position;
+
+        CsvWriter(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int[] row, int offset) throws IOException {
+            if (position + MAX_ROW > bytes.length) {
+                flush();
+            }
+            for (int i = 0; i < WIDTH; i++) {
+                position = decimal(row[offset + i], position);
+                bytes[position++] = (byte) (i == WIDTH - 1 ? '\n' : ',');
+            }
+        }
+
+        /** Write a value's digits at pos, returning the position after them */
+        private int decimal(int value, int pos) {
+            long v = value;
+            if (v < 0) {
+                bytes[pos++] = '-';
+                v = -v;
+            }
+            int end = pos + digits(v);
+            for (int i = end - 1; i >= pos; i--) {
+                bytes[i] = (byte) ('0' + v % 10);
+                v /= 10;
+            }
+            return end;
+        }
+
+        private static int digits(long v) {
+            int n = 1;
+            while (v >= 10) {
+                v /= 10;
+                n++;
+            }
+            return n;
+        }
+
+        private void flush() throws IOException {
+            buffer.clear().limit(position);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            position = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private static final class BinaryReader implements Reader {
+        private final ReadableByteChannel in;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN).flip();
+
+        BinaryReader(ReadableByteChannel in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean read(int[] row, int offset) throws IOException {
+            if (buffer.remaining() < WIDTH * Integer.BYTES) {
+                buffer.compact();
+                while (buffer.position() < WIDTH * Integer.BYTES && in.read(buffer) >= 0) {
+                    // keep reading until there is a whole row or the input ends
+                }
+                buffer.flip();
+                if (!buffer.hasRemaining()) {
+                    return false;
+                }
+                if (buffer.remaining() < WIDTH * Integer.BYTES) {
+                    throw new IOException("Input ends in the middle of a row");
+                }
+            }
+            for (int i = 0; i < WIDTH; i++) {
+                row[offset + i] = buffer.getInt();
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class BinaryWriter implements Writer {
+        private final WritableByteChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        BinaryWriter(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int[] row, int offset) throws IOException {
+            if (buffer.remaining() < WIDTH * Integer.BYTES) {
+                flush();
+            }
+            for (int i = 0; i < WIDTH; i++) {
+                buffer.putInt(row[offset + i]);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
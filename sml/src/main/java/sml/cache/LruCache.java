@@ -0,0 +1,70 @@
+package sml.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded map that evicts the least recently used entry.
+ * <p>
+ * All methods are synchronized, so one instance can be shared between threads.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ * @author KLM and xxx
+ */
+public final class LruCache<K, V> {
+    private final int maxEntries;
+    private final Map<K, V> entries;
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxEntries the most entries held at once
+     */
+    public LruCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                boolean evict = size() > LruCache.this.maxEntries;
+                if (evict) {
+                    evictions.incrementAndGet();
+                }
+                return evict;
+            }
+        };
+    }
+
+    /** Returns the value for a key, marking it most recently used, or null */
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    /** Store a value, evicting the least recently used entry if the cache is full */
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    /** Remove every entry */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /** Returns the number of entries held */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Returns the number of entries evicted so far */
+    public long evictions() {
+        return evictions.get();
+    }
+
+    /** Returns a copy of the entries, least recently used first */
+    public synchronized Map<K, V> snapshot() {
+        return new LinkedHashMap<>(entries);
+    }
+}
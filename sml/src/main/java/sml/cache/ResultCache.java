@@ -0,0 +1,254 @@
+package sml.cache;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.ProgramHash;
+import sml.Registers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memoizes the results of running deterministic programs.
+ * <p>
+ * A program that reads no input always computes the same final registers and
+ * output from the same initial registers, so a run can be replaced by a lookup
+ * keyed by the content hash of the program and its initial registers, and the name
+ * of the engine (whose results may differ: see {@code sml.engine.CheckedEngine}). Only runs
+ * that executed at least {@code minSteps} instructions are stored: cheaper
+ * programs are faster to re-run than to hash. The cache holds at most
+ * {@code maxEntries} results and evicts the least recently used one. Programs with an
+ * instruction that is not {@link Instruction#pure() pure}, such as a memory access,
+ * always run, and a run whose arithmetic overflowed on the {@code checked} engine is not
+ * stored, since its exact registers could not be replayed.
+ * <p>
+ * The cache is safe for use from several threads.
+ *
+ * @author KLM and xxx
+ */
+public final class ResultCache {
+    /** Defaults for {@code Main --result-cache} */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final long DEFAULT_MIN_STEPS = 10_000;
+
+    private static final int FILE_MAGIC = 0x534d4c52; // "SMLR"
+    private static final int FILE_VERSION = 2;
+
+    /**
+     * A memoized run.
+     *
+     * @param registers the final registers
+     * @param output    the values printed by out, in order
+     * @param steps     the instructions the run executed
+     */
+    public record Result(Registers registers, int[] output, long steps) {
+    }
+
+    /**
+     * Counters describing how the cache has been used.
+     *
+     * @param hits      runs answered from the cache
+     * @param misses    runs that had to execute
+     * @param stores    results added to the cache
+     * @param skipped   results not stored because the run was below the cost threshold,
+     *                  its program is not {@link Instruction#pure() pure} or its
+     *                  arithmetic overflowed
+     * @param evictions results dropped to respect the size bound
+     * @param size      results currently held
+     */
+    public record Stats(long hits, long misses, long stores, long skipped, long evictions, int size) {
+    }
+
+    private final long minSteps;
+    private final LruCache<String, Result> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * @param maxEntries the most results held at once
+     * @param minSteps   the fewest executed instructions for a run to be worth storing
+     */
+    public ResultCache(int maxEntries, long minSteps) {
+        this.minSteps = minSteps;
+        this.entries = new LruCache<>(maxEntries);
+    }
+
+    /**
+     * Execute the machine's program from zeroed registers, or replay a memoized run.
+     *
+     * @param m the machine, with its program loaded
+     */
+    public void execute(Machine m) {
+        execute(m, new Registers());
+    }
+
+    /**
+     * Execute the machine's program from the given registers, or replay a memoized run.
+     * Either way the machine ends with the final registers and steps, and the run's
+     * output has been sent to the machine's output sink.
+     *
+     * @param m       the machine, with its program loaded
+     * @param initial the initial registers (not modified)
+     */
+    public void execute(Machine m, Registers initial) {
+        if (!m.prog().stream().allMatch(Instruction::pure)) {
+            // the run depends on (or changes) more than the registers, so cannot be replayed
+            skipped.incrementAndGet();
+            m.execute(initial);
+            return;
+        }
+        String key = key(m, initial);
+        Result cached = get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            m.registers(cached.registers().copy());
+            m.wideRegisters(null);
+            m.steps(cached.steps());
+            m.pc(m.prog().size());
+            for (int value : cached.output()) {
+                m.out().accept(value);
+            }
+            return;
+        }
+        misses.incrementAndGet();
+
+        var sink = m.out();
+        var output = new IntList();
+        m.out(value -> {
+            output.add(value);
+            sink.accept(value);
+        });
+        try {
+            m.execute(initial);
+        } finally {
+            m.out(sink);
+        }
+        if (m.steps() >= minSteps && m.wideRegisters() == null) {
+            put(key, new Result(m.registers().copy(), output.toArray(), m.steps()));
+        } else {
+            skipped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the key a run is memoized under: the hash of the machine's program and the
+     * initial registers ({@link ProgramHash#of(java.util.List, Registers)}) and the name
+     * of its engine.
+     */
+    public static String key(Machine m, Registers initial) {
+        return ProgramHash.of(m.prog(), initial) + "/" + m.engine().name();
+    }
+
+    /** Returns the memoized result for a key from {@link #key(Machine, Registers)}, or null */
+    public Result get(String key) {
+        return entries.get(key);
+    }
+
+    /** Store a result under a key from {@link #key(Machine, Registers)} */
+    public void put(String key, Result result) {
+        entries.put(key, result);
+        stores.incrementAndGet();
+    }
+
+    /** Remove every result; the counters are kept */
+    public void clear() {
+        entries.clear();
+    }
+
+    /** Returns a snapshot of the usage counters */
+    public Stats stats() {
+        return new Stats(hits.get(), misses.get(), stores.get(), skipped.get(), entries.evictions(), entries.size());
+    }
+
+    /**
+     * Write every result to a file, replacing it atomically.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        var snapshot = entries.snapshot();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(snapshot.size());
+            for (var e : snapshot.entrySet()) {
+                out.writeUTF(e.getKey());
+                Registers regs = e.getValue().registers();
+                out.writeInt(regs.size());
+                for (int i = 0; i < regs.size(); i++) {
+                    out.writeInt(regs.register(i));
+                }
+                int[] output = e.getValue().output();
+                out.writeInt(output.length);
+                for (int value : output) {
+                    out.writeInt(value);
+                }
+                out.writeLong(e.getValue().steps());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Add the results saved in a file by {@link #save(Path)}; a missing file is ignored.
+     *
+     * @param file the file to read
+     * @throws IOException if the file exists but cannot be read or is not a saved cache
+     */
+    public void load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a saved result cache: " + file);
+            }
+            if (in.readInt() != FILE_VERSION) {
+                throw new IOException("Saved result cache of another version: " + file);
+            }
+            int count = in.readInt();
+            for (int n = 0; n < count; n++) {
+                String key = in.readUTF();
+                var regs = new Registers();
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    regs.register(i, in.readInt());
+                }
+                int[] output = new int[in.readInt()];
+                for (int i = 0; i < output.length; i++) {
+                    output[i] = in.readInt();
+                }
+                entries.put(key, new Result(regs, output, in.readLong()));
+            }
+        }
+    }
+
+    /** Growable list of ints used to capture output without boxing. */
+    private static final class IntList {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package sml.daemon;
+
+import sml.Machine;
+import sml.Registers;
+import sml.cache.LruCache;
+import sml.server.CompiledProgram;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A warm JVM that runs SML program files on behalf of {@link DaemonClient}, so a
+ * command-line run does not pay for JVM start-up, loading the instruction classes and
+ * warming up the translator's reflection every time.
+ * <p>
+ * The daemon listens on a Unix domain socket. A client sends one line,
+ * {@code RUN <absolute path of program file>}, and receives a line
+ * {@code OUT <value>} for each value the program outputs, as it outputs it, followed
+ * by {@code REGISTERS <registers>} (formatted as {@code Main} prints them) when the
+ * program ends or {@code ERROR <message>} if it fails; then the daemon closes the connection. Each line is flushed as soon as
+ * it is written, so a client sees output while a long program is still running.
+ * Programs are read afresh on each run and their translations are cached by content
+ * hash. Each connection is served on its own thread.
+ *
+ * @author KLM and xxx
+ */
+public final class Daemon implements AutoCloseable {
+    private final Path path;
+    private final ServerSocketChannel server;
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        var thread = new Thread(r, "sml-daemon-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LruCache<String, CompiledProgram> programs;
+
+    /**
+     * Start the daemon. A file left at the socket path by a daemon that did not shut
+     * down cleanly is replaced.
+     *
+     * @param path      the socket file
+     * @param cacheSize the most translated programs kept
+     * @throws IOException if the socket cannot be bound
+     */
+    public Daemon(Path path, int cacheSize) throws IOException {
+        this.path = path;
+        this.programs = new LruCache<>(cacheSize);
+        Files.deleteIfExists(path);
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        new Thread(this::accept, "sml-daemon-accept").start();
+    }
+
+    /** Returns the socket file */
+    public Path path() {
+        return path;
+    }
+
+    /** Stop accepting connections and remove the socket file; runs in progress finish. */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdown();
+        Files.deleteIfExists(path);
+    }
+
+    private void accept() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel client = server.accept();
+                connections.execute(() -> serve(client));
+            } catch (AsynchronousCloseException e) {
+                return; // closed
+            } catch (IOException e) {
+                System.err.println("Daemon: accept failed " + e);
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (client; OutputStream out = new BufferedOutputStream(Channels.newOutputStream(client))) {
+            var in = new BufferedReader(new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+            String request = in.readLine();
+            if (request == null) {
+                return;
+            }
+            try {
+                if (!request.startsWith("RUN ")) {
+                    throw new IllegalArgumentException("Unknown request: " + request);
+                }
+                Registers registers = run(Path.of(request.substring(4)), out);
+                write(out, "REGISTERS " + registers);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                write(out, "ERROR " + String.valueOf(e).replace('\n', ' '));
+            }
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+
+    private Registers run(Path file, OutputStream out) {
+        String source;
+        try {
+            source = Files.readString(file);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read " + file + ": " + e, e);
+        }
+        CompiledProgram program = programs.get(CompiledProgram.hash(source));
+        if (program == null) {
+            program = CompiledProgram.translate(source);
+            programs.put(program.hash(), program);
+        }
+        var m = new Machine();
+        m.labels(program.labels());
+        m.prog(program.prog());
+        m.out(value -> {
+            try {
+                write(out, "OUT " + value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        m.execute();
+        return m.registers();
+    }
+
+    /**
+     * Write and flush one line. The whole line goes out in one call made while holding
+     * the stream's lock, so lines written at once (by spawned threads, say) never interleave.
+     */
+    private static void write(OutputStream out, String line) throws IOException {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (out) {
+            out.write(bytes);
+            out.flush();
+        }
+    }
+}
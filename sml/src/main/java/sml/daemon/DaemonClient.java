@@ -0,0 +1,73 @@
+package sml.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * The thin command-line client of a {@link Daemon}: sends it a program file to run and
+ * prints the program's output as it arrives, then its final registers.
+ * <p>
+ * This class uses nothing else from the SML implementation, so running it loads only
+ * a handful of JDK classes:
+ * {@code java -cp sml.jar sml.daemon.DaemonClient <socket> <file>}.
+ *
+ * @author KLM and xxx
+ */
+public final class DaemonClient {
+
+    /**
+     * @param args the daemon's socket file and the program file
+     */
+    public static void main(final String... args) {
+        if (args.length != 2) {
+            System.err.println("Usage: DaemonClient <socket> <file>");
+            System.exit(-1);
+        }
+        System.exit(run(Path.of(args[0]), Path.of(args[1]), System.out));
+    }
+
+    /**
+     * Run a program file on a daemon.
+     *
+     * @param socket the daemon's socket file
+     * @param file   the program file
+     * @param out    where to print the output and registers
+     * @return 0 if the program ran, otherwise a non-zero exit status
+     */
+    public static int run(Path socket, Path file, PrintStream out) {
+        try (var channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            var request = "RUN " + file.toAbsolutePath() + "\n";
+            Channels.newOutputStream(channel).write(request.getBytes(StandardCharsets.UTF_8));
+            var in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("OUT ")) {
+                    out.println(line.substring(4));
+                } else if (line.startsWith("REGISTERS ")) {
+                    out.println("Values of registers at program termination:" + line.substring(10) + ".");
+                    return 0;
+                } else if (line.startsWith("ERROR ")) {
+                    System.err.println(line.substring(6));
+                    return 1;
+                }
+            }
+            System.err.println("Daemon closed the connection");
+            return 1;
+        } catch (IOException e) {
+            System.err.println("Daemon: cannot connect to " + socket + ": " + e);
+            return 2;
+        }
+    }
+
+    private DaemonClient() {
+    } // Utility classes should not have a public or default constructor
+}
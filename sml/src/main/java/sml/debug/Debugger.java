@@ -0,0 +1,329 @@
+package sml.debug;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.metrics.RuntimeMetrics;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Breakpoints, register watchpoints and single-stepping for a {@link Machine}.
+ * <p>
+ * Nothing in the machine's execution loop knows about debugging. A breakpoint or
+ * watchpoint is set by replacing ("patching") instructions in the machine's program
+ * with wrappers that stop execution when they run; clearing it puts the original
+ * instruction back. A program with no breakpoints or watchpoints therefore runs the
+ * unmodified instructions at full speed, and with some set only the patched
+ * instructions pay anything.
+ * <p>
+ * Attaching copies the machine's program into a list the debugger can patch;
+ * {@link #detach()} gives the machine its original program back.
+ *
+ * @author KLM and xxx
+ */
+public final class Debugger {
+
+    /** Why execution stopped */
+    public enum Reason {
+        /** about to execute an instruction with a breakpoint */
+        BREAKPOINT,
+        /** an instruction changed a watched register */
+        WATCHPOINT,
+        /** one instruction was executed by {@link #step()} */
+        STEP,
+        /** the program counter left the program */
+        FINISHED
+    }
+
+    /**
+     * Where and why execution stopped.
+     *
+     * @param reason   why
+     * @param pc       the next instruction to execute
+     * @param register for a watchpoint, the register that changed (otherwise -1)
+     * @param oldValue for a watchpoint, the value before the change
+     * @param newValue for a watchpoint, the value after the change
+     */
+    public record Stop(Reason reason, int pc, int register, int oldValue, int newValue) {
+        @Override
+        public String toString() {
+            return switch (reason) {
+                case BREAKPOINT -> "Breakpoint at instruction " + pc;
+                case WATCHPOINT -> "Register " + register + " changed from " + oldValue + " to " + newValue
+                    + ", next instruction " + pc;
+                case STEP -> "Stepped, next instruction " + pc;
+                case FINISHED -> "Program finished";
+            };
+        }
+    }
+
+    /** Thrown by patched instructions to unwind out of {@link Machine#run()}; carries no stack trace. */
+    private static final class Halt extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Halt() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Halt HALT = new Halt();
+
+    private final Machine machine;
+    private final List<Instruction> original;
+    private final List<Instruction> patched;
+    private final TreeSet<Integer> breakpoints = new TreeSet<>();
+    private final BitSet watched = new BitSet(Registers.NUMBER_OF_REGISTERS);
+    private Stop pending;
+
+    /**
+     * Attach to a machine, whose program must already be loaded. The machine is reset
+     * to the start of the program with zeroed registers.
+     *
+     * @param machine the machine to debug
+     */
+    public Debugger(Machine machine) {
+        this.machine = machine;
+        this.original = machine.prog();
+        this.patched = new ArrayList<>(original);
+        machine.prog(patched);
+        restart(new Registers());
+    }
+
+    /** Returns the machine being debugged */
+    public Machine machine() {
+        return machine;
+    }
+
+    /**
+     * Go back to the start of the program with a copy of the given registers.
+     *
+     * @param initial the initial registers (not modified)
+     */
+    public void restart(Registers initial) {
+        machine.pc(0);
+        machine.registers(initial.copy());
+    }
+
+    /**
+     * Stop before executing the instruction at pc.
+     *
+     * @param pc the instruction
+     * @throws IndexOutOfBoundsException if there is no such instruction
+     */
+    public void breakAt(int pc) {
+        checkPc(pc);
+        breakpoints.add(pc);
+        patch(pc);
+    }
+
+    /**
+     * Stop before executing the instruction with a label.
+     *
+     * @param label the label
+     * @throws IllegalArgumentException if no instruction has the label
+     */
+    public void breakAt(String label) {
+        breakAt(pcOf(label));
+    }
+
+    /** Remove the breakpoint at pc, if any */
+    public void clearBreak(int pc) {
+        checkPc(pc);
+        breakpoints.remove(pc);
+        patch(pc);
+    }
+
+    /** Returns the pcs that have breakpoints, in order */
+    public List<Integer> breakpoints() {
+        return List.copyOf(breakpoints);
+    }
+
+    /**
+     * Stop after any instruction that changes a register's value.
+     *
+     * @param register the register to watch
+     */
+    public void watch(int register) {
+        watched.set(register);
+        patchWriters(register);
+    }
+
+    /** Stop watching a register */
+    public void unwatch(int register) {
+        watched.clear(register);
+        patchWriters(register);
+    }
+
+    /**
+     * Execute one instruction, ignoring breakpoints and watchpoints.
+     *
+     * @return a STEP stop, or FINISHED if the program has already ended
+     */
+    public Stop step() {
+        int pc = machine.pc();
+        if (pc < 0 || pc >= original.size()) {
+            return stop(Reason.FINISHED);
+        }
+        machine.pc(pc + 1);
+        original.get(pc).execute(machine);
+        return stop(machine.pc() < original.size() ? Reason.STEP : Reason.FINISHED);
+    }
+
+    /**
+     * Run until a breakpoint or watchpoint stops execution or the program ends. A
+     * breakpoint on the current instruction does not stop it again.
+     *
+     * @return why execution stopped
+     */
+    public Stop resume() {
+        int pc = machine.pc();
+        if (breakpoints.contains(pc)) {
+            // step over the breakpoint, but still honour a watchpoint on the instruction
+            machine.pc(pc + 1);
+            try {
+                inner(pc).execute(machine);
+            } catch (Halt h) {
+                return pending;
+            }
+        }
+        try {
+            RuntimeMetrics.measure(machine::run, machine::steps);
+        } catch (Halt h) {
+            return pending;
+        }
+        return stop(Reason.FINISHED);
+    }
+
+    /** Remove every breakpoint and watchpoint and give the machine back its original program */
+    public void detach() {
+        breakpoints.clear();
+        watched.clear();
+        machine.prog(original);
+    }
+
+    /**
+     * Returns the pc of the instruction with a label.
+     *
+     * @throws IllegalArgumentException if no instruction has the label
+     */
+    public int pcOf(String label) {
+        int pc = machine.labels().indexOf(label);
+        if (pc < 0) {
+            throw new IllegalArgumentException("No instruction has label " + label);
+        }
+        return pc;
+    }
+
+    private Stop stop(Reason reason) {
+        return new Stop(reason, machine.pc(), -1, 0, 0);
+    }
+
+    private void checkPc(int pc) {
+        if (pc < 0 || pc >= original.size()) {
+            throw new IndexOutOfBoundsException("No instruction " + pc);
+        }
+    }
+
+    private void patchWriters(int register) {
+        for (int pc = 0; pc < original.size(); pc++) {
+            for (int r : original.get(pc).destinations()) {
+                if (r == register) {
+                    patch(pc);
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Put the right instruction at pc for the breakpoints and watchpoints now set. */
+    private void patch(int pc) {
+        Instruction ins = inner(pc);
+        if (breakpoints.contains(pc)) {
+            ins = new Breakpoint(pc, ins);
+        }
+        patched.set(pc, ins);
+    }
+
+    /** The instruction at pc with any watchpoint wrapper, but no breakpoint */
+    private Instruction inner(int pc) {
+        Instruction ins = original.get(pc);
+        for (int r : ins.destinations()) {
+            if (watched.get(r)) {
+                return new Watch(ins);
+            }
+        }
+        return ins;
+    }
+
+    /** Stops before the instruction it replaces. */
+    private final class Breakpoint extends Instruction {
+        private final int pc;
+        private final Instruction target;
+
+        Breakpoint(int pc, Instruction target) {
+            super(target.getLabel(), target.getOpcode());
+            this.pc = pc;
+            this.target = target;
+        }
+
+        @Override
+        public boolean changesControlFlow() {
+            return true;
+        }
+
+        @Override
+        public void execute(Machine m) {
+            m.pc(pc);
+            pending = new Stop(Reason.BREAKPOINT, pc, -1, 0, 0);
+            throw HALT;
+        }
+
+        @Override
+        public String toString() {
+            return target + " [breakpoint]";
+        }
+    }
+
+    /** Runs the instruction it replaces, then stops if a watched register changed. */
+    private final class Watch extends Instruction {
+        private final Instruction target;
+        private final int[] registers;
+
+        Watch(Instruction target) {
+            super(target.getLabel(), target.getOpcode());
+            this.target = target;
+            this.registers = target.destinations();
+        }
+
+        @Override
+        public boolean changesControlFlow() {
+            return true;
+        }
+
+        @Override
+        public void execute(Machine m) {
+            Registers regs = m.registers();
+            int[] before = new int[registers.length];
+            for (int i = 0; i < registers.length; i++) {
+                before[i] = regs.register(registers[i]);
+            }
+            target.execute(m);
+            for (int i = 0; i < registers.length; i++) {
+                int r = registers[i];
+                if (watched.get(r) && regs.register(r) != before[i]) {
+                    pending = new Stop(Reason.WATCHPOINT, m.pc(), r, before[i], regs.register(r));
+                    throw HALT;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return target + " [watched]";
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package sml.debug;
+
+import sml.Machine;
+import sml.Registers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A command-line front end for the {@link Debugger}.
+ * <p>
+ * Commands (one per line):
+ * <pre>
+ * break &lt;label|pc&gt;     stop before an instruction      delete &lt;label|pc&gt;  remove a breakpoint
+ * watch &lt;register&gt;     stop when a register changes    unwatch &lt;register&gt;
+ * step [n]              execute n instructions (default 1)
+ * continue              run to the next stop            restart             back to instruction 0
+ * regs                  show all registers              print &lt;register&gt;    show one register
+ * list                  show the program                quit
+ * </pre>
+ *
+ * @author KLM and xxx
+ */
+public final class DebuggerCli {
+    private final Debugger debugger;
+    private final PrintStream out;
+
+    /**
+     * @param machine the machine to debug, with its program loaded
+     * @param out     where to write responses
+     */
+    public DebuggerCli(Machine machine, PrintStream out) {
+        this.debugger = new Debugger(machine);
+        this.out = out;
+    }
+
+    /**
+     * Read and obey commands from standard input until "quit" or end of input.
+     */
+    public void run() {
+        var in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        try {
+            out.print("(sml) ");
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!command(line.trim())) {
+                    break;
+                }
+                out.print("(sml) ");
+                out.flush();
+            }
+        } catch (IOException e) {
+            out.println("Debugger: IO error " + e);
+        } finally {
+            debugger.detach();
+        }
+    }
+
+    /**
+     * Obey one command.
+     *
+     * @param line the command
+     * @return false if the command was "quit"
+     */
+    public boolean command(String line) {
+        String[] words = line.split("\\s+");
+        String arg = words.length > 1 ? words[1] : "";
+        Machine m = debugger.machine();
+        try {
+            switch (words[0]) {
+                case "" -> {
+                }
+                case "break", "b" -> {
+                    debugger.breakAt(pc(arg));
+                    out.println("Breakpoint at instruction " + pc(arg));
+                }
+                case "delete", "d" -> debugger.clearBreak(pc(arg));
+                case "watch", "w" -> debugger.watch(Integer.parseInt(arg));
+                case "unwatch" -> debugger.unwatch(Integer.parseInt(arg));
+                case "step", "s" -> {
+                    int n = arg.isEmpty() ? 1 : Integer.parseInt(arg);
+                    Debugger.Stop stop = null;
+                    for (int i = 0; i < n; i++) {
+                        stop = debugger.step();
+                        if (stop.reason() == Debugger.Reason.FINISHED) {
+                            break;
+                        }
+                    }
+                    out.println(stop);
+                    showNext(m);
+                }
+                case "continue", "c" -> {
+                    out.println(debugger.resume());
+                    showNext(m);
+                }
+                case "restart" -> debugger.restart(new Registers());
+                case "regs", "r" -> out.println(m.registers());
+                case "print", "p" -> out.println("r" + arg + " = " + m.registers().register(Integer.parseInt(arg)));
+                case "list", "l" -> {
+                    for (int pc = 0; pc < m.prog().size(); pc++) {
+                        out.println((pc == m.pc() ? "=> " : "   ") + pc + " " + m.prog().get(pc));
+                    }
+                }
+                case "quit", "q" -> {
+                    return false;
+                }
+                default -> out.println("Unknown command: " + words[0]);
+            }
+        } catch (RuntimeException e) {
+            out.println("Error: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /** A breakpoint position given as a label, or as a pc if no label matches */
+    private int pc(String arg) {
+        int pc = debugger.machine().labels().indexOf(arg);
+        return pc >= 0 ? pc : Integer.parseInt(arg);
+    }
+
+    private void showNext(Machine m) {
+        if (m.pc() < m.prog().size()) {
+            out.println("=> " + m.pc() + " " + m.prog().get(m.pc()));
+        }
+    }
+}
@@ -0,0 +1,670 @@
+package sml.engine;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.metrics.Counter;
+import sml.metrics.MetricsRegistry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * The {@code ast} engine: a self-specializing interpreter, in which each instruction is
+ * a node that rewrites itself into a faster variant for what it observes at run time.
+ * <p>
+ * Every {@code lin}, {@code add}, {@code sub}, {@code mul}, {@code div}, {@code out} and
+ * {@code bnz} starts as an uninitialized node, which replaces itself with a specialized
+ * node the first time it runs ({@code add}, {@code sub} and {@code mul} by how their
+ * registers alias: {@code add r a a} doubles, {@code add a a b} accumulates, {@code sub r a a}
+ * zeroes, {@code mul r a a} squares) or after observing {@link #warmup()} executions:
+ * <ul>
+ *     <li>a {@code bnz} that was always taken, or never, becomes a node that assumes it
+ *     will go the same way again;</li>
+ *     <li>a {@code div} whose divisor was always the same positive power of two becomes
+ *     a shift, which checks that the divisor is still that value.</li>
+ * </ul>
+ * A specialized node whose assumption fails de-specializes: it replaces itself with an
+ * uninitialized node, which observes afresh. After {@value #MAX_REWRITES} de-specializations
+ * it settles on the general form, so a node cannot flip back and forth indefinitely.
+ * Other instructions are executed as they are, by {@link Instruction#execute(Machine)}.
+ * <p>
+ * Every rewrite is reported as a {@link Rewrite} to the listener and counted in
+ * {@link #stats()} and the {@code sml_ast_rewrites_total} metric. The warm-up is the
+ * {@code sml.ast.warmup} system property (default {@value #DEFAULT_WARMUP}); setting
+ * {@code sml.ast.log} prints each rewrite to standard error.
+ *
+ * @author KLM and xxx
+ */
+public final class AstEngine implements ExecutionEngine {
+    public static final String NAME = "ast";
+    public static final int DEFAULT_WARMUP = 16;
+    /** De-specializations after which a node stays general */
+    public static final int MAX_REWRITES = 4;
+
+    private static final Counter REWRITES = MetricsRegistry.global().counter("sml_ast_rewrites_total",
+        "Nodes rewritten by the ast engine");
+
+    /**
+     * A node replacing itself.
+     *
+     * @param pc     the instruction the node executes
+     * @param from   the kind of node replaced
+     * @param to     the kind of node it was replaced with
+     * @param reason what the node observed
+     */
+    public record Rewrite(int pc, String from, String to, String reason) {
+        @Override
+        public String toString() {
+            return pc + ": " + from + " -> " + to + " (" + reason + ")";
+        }
+    }
+
+    /**
+     * What the engine's nodes have done, over every program it has prepared.
+     *
+     * @param nodes              the nodes created for the programs prepared
+     * @param specializations    rewrites into a specialized node
+     * @param despecializations  specialized nodes whose assumption failed
+     * @param generalizations    nodes that settled on the general form
+     * @param specializedNodes   specializations by the kind of node, e.g. {@code bnz-taken}
+     */
+    public record Stats(long nodes, long specializations, long despecializations, long generalizations,
+                        Map<String, Long> specializedNodes) {
+        @Override
+        public String toString() {
+            return nodes + " nodes, " + specializations + " specializations " + specializedNodes + ", "
+                + despecializations + " de-specializations, " + generalizations + " generalized";
+        }
+    }
+
+    private final int warmup;
+    private final Consumer<Rewrite> listener;
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder specializations = new LongAdder();
+    private final LongAdder despecializations = new LongAdder();
+    private final LongAdder generalizations = new LongAdder();
+    private final Map<String, LongAdder> kinds = new ConcurrentHashMap<>();
+
+    /** An engine configured from the system properties */
+    public AstEngine() {
+        this(Integer.getInteger("sml.ast.warmup", DEFAULT_WARMUP),
+            Boolean.getBoolean("sml.ast.log") ? r -> System.err.println("Rewrite: " + r) : r -> {
+            });
+    }
+
+    /**
+     * @param warmup   executions a node observes before specializing
+     * @param listener told of every rewrite, on the thread running the program
+     */
+    public AstEngine(int warmup, Consumer<Rewrite> listener) {
+        if (warmup < 1) {
+            throw new IllegalArgumentException("Warm-up must be positive: " + warmup);
+        }
+        this.warmup = warmup;
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    /** Returns the executions a node observes before specializing */
+    public int warmup() {
+        return warmup;
+    }
+
+    /** Returns what the nodes of the programs this engine has prepared have done so far */
+    public Stats stats() {
+        var specialized = new TreeMap<String, Long>();
+        kinds.forEach((kind, count) -> specialized.put(kind, count.sum()));
+        return new Stats(nodes.sum(), specializations.sum(), despecializations.sum(), generalizations.sum(),
+            specialized);
+    }
+
+    @Override
+    public Executable prepare(Labels labels, List<Instruction> prog) {
+        return new Tree(labels, prog)::run;
+    }
+
+    /** A program as a list of nodes, which replace themselves in it */
+    private final class Tree {
+        private final Node[] nodes;
+
+        Tree(Labels labels, List<Instruction> prog) {
+            Code code = Code.decodeSupported(labels, prog);
+            nodes = new Node[prog.size()];
+            for (int pc = 0; pc < nodes.length; pc++) {
+                nodes[pc] = switch (code.op[pc]) {
+                    case Code.LIN -> new Lin(code.a[pc], code.b[pc]);
+                    case Code.ADD, Code.SUB, Code.MUL -> new UninitializedArithmetic(code.op[pc],
+                        code.a[pc], code.b[pc], code.c[pc]);
+                    case Code.DIV -> new UninitializedDiv(code.a[pc], code.b[pc], code.c[pc], 0);
+                    case Code.OUT -> new Out(code.a[pc]);
+                    case Code.BNZ -> new UninitializedBnz(code.a[pc], code.b[pc], 0);
+                    default -> new Generic(prog.get(pc));
+                };
+            }
+            AstEngine.this.nodes.add(nodes.length);
+        }
+
+        void run(Machine m) {
+            long steps = 0;
+            int pc = m.pc();
+            try {
+                int[] r = m.registers().registers();
+                while (pc < nodes.length) {
+                    steps++;
+                    pc = nodes[pc].execute(this, m, r, pc);
+                }
+                m.pc(pc);
+                m.join();
+            } catch (RuntimeException e) {
+                m.pc(pc);
+                throw e;
+            } finally {
+                m.steps(steps);
+            }
+        }
+
+        /** Replace the node at pc, returning the new node */
+        Node replace(int pc, Node node, String reason) {
+            Node old = nodes[pc];
+            nodes[pc] = node;
+            if (node.specialized()) {
+                specializations.increment();
+                kinds.computeIfAbsent(node.kind(), k -> new LongAdder()).increment();
+            } else if (old.specialized()) {
+                despecializations.increment();
+            } else {
+                generalizations.increment();
+            }
+            REWRITES.increment();
+            listener.accept(new Rewrite(pc, old.kind(), node.kind(), reason));
+            return node;
+        }
+    }
+
+    /** An instruction of a program; executing it returns the next pc */
+    private abstract static class Node {
+        abstract int execute(Tree tree, Machine m, int[] r, int pc);
+
+        /** Returns the name of this kind of node, as reported in rewrites and stats */
+        abstract String kind();
+
+        /** Returns true if this node assumes something about the values it sees */
+        boolean specialized() {
+            return false;
+        }
+    }
+
+    /** An instruction this engine does not specialize */
+    private static final class Generic extends Node {
+        private final Instruction ins;
+
+        Generic(Instruction ins) {
+            this.ins = ins;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            m.pc(pc + 1);
+            ins.execute(m);
+            return m.pc();
+        }
+
+        @Override
+        String kind() {
+            return ins.getOpcode();
+        }
+    }
+
+    private static final class Lin extends Node {
+        private final int d;
+        private final int value;
+
+        Lin(int d, int value) {
+            this.d = d;
+            this.value = value;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            r[d] = value;
+            return pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "lin";
+        }
+    }
+
+    private static final class Out extends Node {
+        private final int s;
+
+        Out(int s) {
+            this.s = s;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            m.out().accept(r[s]);
+            return pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "out";
+        }
+    }
+
+    /** An add, sub or mul that chooses its form by how its registers alias */
+    private static final class UninitializedArithmetic extends Node {
+        private final int op;
+        private final int d;
+        private final int s1;
+        private final int s2;
+
+        UninitializedArithmetic(int op, int d, int s1, int s2) {
+            this.op = op;
+            this.d = d;
+            this.s1 = s1;
+            this.s2 = s2;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            Node node;
+            if (op == Code.ADD && s1 == s2) {
+                node = new AddDouble(d, s1);
+            } else if (op == Code.ADD && (d == s1 || d == s2)) {
+                node = new AddAccumulate(d, d == s1 ? s2 : s1);
+            } else if (op == Code.SUB && s1 == s2) {
+                node = new SubZero(d);
+            } else if (op == Code.MUL && s1 == s2) {
+                node = new MulSquare(d, s1);
+            } else {
+                node = new Arithmetic(op, d, s1, s2);
+            }
+            return tree.replace(pc, node, "registers " + d + ", " + s1 + ", " + s2).execute(tree, m, r, pc);
+        }
+
+        @Override
+        String kind() {
+            return (op == Code.ADD ? "add" : op == Code.SUB ? "sub" : "mul") + " (uninitialized)";
+        }
+    }
+
+    private static final class Arithmetic extends Node {
+        private final int op;
+        private final int d;
+        private final int s1;
+        private final int s2;
+
+        Arithmetic(int op, int d, int s1, int s2) {
+            this.op = op;
+            this.d = d;
+            this.s1 = s1;
+            this.s2 = s2;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            r[d] = switch (op) {
+                case Code.ADD -> r[s1] + r[s2];
+                case Code.SUB -> r[s1] - r[s2];
+                default -> r[s1] * r[s2];
+            };
+            return pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return op == Code.ADD ? "add" : op == Code.SUB ? "sub" : "mul";
+        }
+    }
+
+    /** add r a a */
+    private static final class AddDouble extends Node {
+        private final int d;
+        private final int s;
+
+        AddDouble(int d, int s) {
+            this.d = d;
+            this.s = s;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            r[d] = r[s] << 1;
+            return pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "add-double";
+        }
+
+        @Override
+        boolean specialized() {
+            return true;
+        }
+    }
+
+    /** add a a b (or add a b a) */
+    private static final class AddAccumulate extends Node {
+        private final int d;
+        private final int s;
+
+        AddAccumulate(int d, int s) {
+            this.d = d;
+            this.s = s;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            r[d] += r[s];
+            return pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "add-accumulate";
+        }
+
+        @Override
+        boolean specialized() {
+            return true;
+        }
+    }
+
+    /** sub r a a */
+    private static final class SubZero extends Node {
+        private final int d;
+
+        SubZero(int d) {
+            this.d = d;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            r[d] = 0;
+            return pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "sub-zero";
+        }
+
+        @Override
+        boolean specialized() {
+            return true;
+        }
+    }
+
+    /** mul r a a */
+    private static final class MulSquare extends Node {
+        private final int d;
+        private final int s;
+
+        MulSquare(int d, int s) {
+            this.d = d;
+            this.s = s;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            int v = r[s];
+            r[d] = v * v;
+            return pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "mul-square";
+        }
+
+        @Override
+        boolean specialized() {
+            return true;
+        }
+    }
+
+    /** A div watching whether its divisor is always the same power of two */
+    private final class UninitializedDiv extends Node {
+        private final int d;
+        private final int s1;
+        private final int s2;
+        private final int rewrites;
+        private int divisor;
+        private int seen;
+
+        UninitializedDiv(int d, int s1, int s2, int rewrites) {
+            this.d = d;
+            this.s1 = s1;
+            this.s2 = s2;
+            this.rewrites = rewrites;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            int y = r[s2];
+            if (seen == 0) {
+                divisor = y;
+            }
+            if (y != divisor || divisor <= 0 || Integer.bitCount(divisor) != 1) {
+                return tree.replace(pc, new Div(d, s1, s2), "divisor " + y + " is not a constant power of two")
+                    .execute(tree, m, r, pc);
+            }
+            if (++seen == warmup) {
+                return tree.replace(pc, new DivShift(d, s1, s2, divisor, rewrites), "divisor always " + divisor)
+                    .execute(tree, m, r, pc);
+            }
+            r[d] = r[s1] / y;
+            return pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "div (uninitialized)";
+        }
+    }
+
+    private static final class Div extends Node {
+        private final int d;
+        private final int s1;
+        private final int s2;
+
+        Div(int d, int s1, int s2) {
+            this.d = d;
+            this.s1 = s1;
+            this.s2 = s2;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            r[d] = r[s1] / r[s2];
+            return pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "div";
+        }
+    }
+
+    /** A div by a power of two, as a shift that rounds towards zero like / */
+    private final class DivShift extends Node {
+        private final int d;
+        private final int s1;
+        private final int s2;
+        private final int divisor;
+        private final int shift;
+        private final int rewrites;
+
+        DivShift(int d, int s1, int s2, int divisor, int rewrites) {
+            this.d = d;
+            this.s1 = s1;
+            this.s2 = s2;
+            this.divisor = divisor;
+            this.shift = Integer.numberOfTrailingZeros(divisor);
+            this.rewrites = rewrites;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            if (r[s2] != divisor) {
+                Node node = rewrites + 1 < MAX_REWRITES ? new UninitializedDiv(d, s1, s2, rewrites + 1) : new Div(d, s1, s2);
+                return tree.replace(pc, node, "divisor " + r[s2] + ", not " + divisor).execute(tree, m, r, pc);
+            }
+            int x = r[s1];
+            // add divisor - 1 to negative dividends so that the shift rounds towards zero
+            r[d] = (x + ((x >> 31) & (divisor - 1))) >> shift;
+            return pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "div-shift";
+        }
+
+        @Override
+        boolean specialized() {
+            return true;
+        }
+    }
+
+    /** A bnz watching which way it goes */
+    private final class UninitializedBnz extends Node {
+        private final int s;
+        private final int target;
+        private final int rewrites;
+        private int taken;
+        private int seen;
+
+        UninitializedBnz(int s, int target, int rewrites) {
+            this.s = s;
+            this.target = target;
+            this.rewrites = rewrites;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            if (target < 0) {
+                // an undefined label: the branch is never taken
+                return tree.replace(pc, new Bnz(s, target), "undefined target").execute(tree, m, r, pc);
+            }
+            if (r[s] != 0) {
+                taken++;
+            }
+            if (++seen == warmup) {
+                Node node = taken == seen ? new BnzTaken(s, target, rewrites)
+                    : taken == 0 ? new BnzNotTaken(s, target, rewrites) : new Bnz(s, target);
+                tree.replace(pc, node, "taken " + taken + " of " + seen + " times");
+            }
+            return r[s] != 0 ? target : pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "bnz (uninitialized)";
+        }
+    }
+
+    private static final class Bnz extends Node {
+        private final int s;
+        private final int target;
+
+        Bnz(int s, int target) {
+            this.s = s;
+            this.target = target;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            return r[s] != 0 && target >= 0 ? target : pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "bnz";
+        }
+    }
+
+    /** A bnz assumed taken */
+    private final class BnzTaken extends Node {
+        private final int s;
+        private final int target;
+        private final int rewrites;
+
+        BnzTaken(int s, int target, int rewrites) {
+            this.s = s;
+            this.target = target;
+            this.rewrites = rewrites;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            if (r[s] != 0) {
+                return target;
+            }
+            tree.replace(pc, despecialize(s, target, rewrites), "not taken");
+            return pc + 1;
+        }
+
+        @Override
+        String kind() {
+            return "bnz-taken";
+        }
+
+        @Override
+        boolean specialized() {
+            return true;
+        }
+    }
+
+    /** A bnz assumed not taken */
+    private final class BnzNotTaken extends Node {
+        private final int s;
+        private final int target;
+        private final int rewrites;
+
+        BnzNotTaken(int s, int target, int rewrites) {
+            this.s = s;
+            this.target = target;
+            this.rewrites = rewrites;
+        }
+
+        @Override
+        int execute(Tree tree, Machine m, int[] r, int pc) {
+            if (r[s] == 0) {
+                return pc + 1;
+            }
+            tree.replace(pc, despecialize(s, target, rewrites), "taken");
+            return target;
+        }
+
+        @Override
+        String kind() {
+            return "bnz-not-taken";
+        }
+
+        @Override
+        boolean specialized() {
+            return true;
+        }
+    }
+
+    private Node despecialize(int s, int target, int rewrites) {
+        return rewrites + 1 < MAX_REWRITES ? new UninitializedBnz(s, target, rewrites + 1) : new Bnz(s, target);
+    }
+}
@@ -0,0 +1,91 @@
+package sml.engine;
+
+import sml.Instruction;
+
+import java.util.List;
+
+/**
+ * A maximal straight-line run of instructions: control enters only at the first
+ * instruction and leaves only after the last.
+ *
+ * @author KLM and xxx
+ */
+public final class BasicBlock {
+    private final int index;
+    private final int start;
+    private final Instruction[] body;
+    private final boolean terminated;
+    private int[] successors = new int[0];
+    private long executions;
+
+    BasicBlock(int index, int start, List<Instruction> body) {
+        this.index = index;
+        this.start = start;
+        this.body = body.toArray(new Instruction[0]);
+        this.terminated = this.body[this.body.length - 1].changesControlFlow();
+    }
+
+    /** Returns the position of this block in {@link ControlFlowGraph#blocks()} */
+    public int index() {
+        return index;
+    }
+
+    /** Returns the pc of the first instruction */
+    public int start() {
+        return start;
+    }
+
+    /** Returns the pc just past the last instruction */
+    public int end() {
+        return start + body.length;
+    }
+
+    /** Returns the number of instructions in the block */
+    public int length() {
+        return body.length;
+    }
+
+    /** Returns true if the last instruction may jump (for example a bnz) */
+    public boolean terminated() {
+        return terminated;
+    }
+
+    /** Returns the indices of the blocks control may pass to; empty for the last block */
+    public int[] successors() {
+        return successors.clone();
+    }
+
+    /** Returns how many times the block has been entered (approximate under concurrent use) */
+    public long executions() {
+        return executions;
+    }
+
+    Instruction[] body() {
+        return body;
+    }
+
+    void successors(int[] successors) {
+        this.successors = successors;
+    }
+
+    void entered() {
+        executions++;
+    }
+
+    void resetExecutions() {
+        executions = 0;
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder("B").append(index).append(" [").append(start).append(", ").append(end())
+            .append(") ->");
+        if (successors.length == 0) {
+            sb.append(" exit");
+        }
+        for (int s : successors) {
+            sb.append(" B").append(s);
+        }
+        return sb.append(" (entered ").append(executions).append(" times)").toString();
+    }
+}
@@ -0,0 +1,126 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.metrics.RuntimeMetrics;
+
+/**
+ * Executes a program a basic block at a time.
+ * <p>
+ * The instructions inside a block run back to back without touching the program
+ * counter; it is only set before a block's terminating instruction (so that, for
+ * example, a {@code bnz} can overwrite it) and read when choosing the next block.
+ * Each block's execution count is updated as it is entered, see
+ * {@link ControlFlowGraph#toString()}.
+ * <p>
+ * A step budget, if given, is checked as each block is entered, so a run is stopped
+ * with a {@link NonTerminationException} at the first block boundary after it has
+ * executed that many instructions.
+ *
+ * @author KLM and xxx
+ */
+public final class BlockEngine {
+    private final ControlFlowGraph cfg;
+    private final long maxSteps;
+
+    /**
+     * @param cfg the blocks of the program the machine will run
+     */
+    public BlockEngine(ControlFlowGraph cfg) {
+        this(cfg, LoopDetector.UNLIMITED);
+    }
+
+    /**
+     * @param cfg      the blocks of the program the machine will run
+     * @param maxSteps the instructions after which a run is stopped, or {@link LoopDetector#UNLIMITED}
+     */
+    public BlockEngine(ControlFlowGraph cfg, long maxSteps) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("Step budget must be positive: " + maxSteps);
+        }
+        this.cfg = cfg;
+        this.maxSteps = maxSteps;
+    }
+
+    /** Returns the blocks this engine dispatches over */
+    public ControlFlowGraph cfg() {
+        return cfg;
+    }
+
+    /**
+     * Execute the machine's program from zeroed registers.
+     *
+     * @param m the machine, whose program must be the one the graph was built from
+     */
+    public void execute(Machine m) {
+        execute(m, new Registers());
+    }
+
+    /**
+     * Execute the machine's program from a copy of the given registers.
+     *
+     * @param m       the machine, whose program must be the one the graph was built from
+     * @param initial the initial registers (not modified)
+     */
+    public void execute(Machine m, Registers initial) {
+        m.registers(initial.copy());
+        m.pc(0);
+        run(m);
+    }
+
+    /**
+     * Continue executing the machine's program from its current pc and registers.
+     *
+     * @param m the machine, whose program must be the one the graph was built from
+     */
+    public void run(Machine m) {
+        RuntimeMetrics.measure(() -> dispatch(m), m::steps);
+    }
+
+    /** {@link #run(Machine)}, unrecorded: for the block engine, whose runs {@code Machine.execute} records */
+    void dispatch(Machine m) {
+        int size = m.prog().size();
+        int pc = m.pc();
+        long steps = 0;
+        try {
+            while (pc < size) {
+                if (steps >= maxSteps) {
+                    m.pc(pc);
+                    throw new NonTerminationException("Step budget of " + maxSteps + " exhausted at "
+                        + m.prog().get(pc), pc, steps, 0);
+                }
+                int b = cfg.blockStartingAt(pc);
+                if (b < 0) {
+                    // entered mid-block (not via a bnz): step singly until the next block boundary
+                    Instruction ins = m.prog().get(pc);
+                    m.pc(pc + 1);
+                    ins.execute(m);
+                    pc = m.pc();
+                    steps++;
+                    continue;
+                }
+                BasicBlock block = cfg.blocks().get(b);
+                block.entered();
+                Instruction[] body = block.body();
+                int last = body.length - 1;
+                for (int i = 0; i < last; i++) {
+                    body[i].execute(m);
+                }
+                pc = block.end();
+                if (block.terminated()) {
+                    m.pc(pc);
+                    body[last].execute(m);
+                    pc = m.pc();
+                } else {
+                    body[last].execute(m);
+                }
+                steps += body.length;
+            }
+            m.pc(pc);
+            m.join();
+        } finally {
+            m.steps(steps);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package sml.engine;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Labels;
+
+import java.util.List;
+
+/**
+ * The {@code block} engine: {@link BlockEngine}, dispatching a basic block at a time.
+ * Preparing a program builds its {@link ControlFlowGraph}; every program can be run.
+ *
+ * @author KLM and xxx
+ */
+public final class BlockExecutionEngine implements ExecutionEngine {
+    public static final String NAME = "block";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Executable prepare(Labels labels, List<Instruction> prog) {
+        return new BlockEngine(ControlFlowGraph.build(labels, prog))::dispatch;
+    }
+}
@@ -0,0 +1,317 @@
+package sml.engine;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.WideRegisters;
+import sml.instructions.JoinInstruction;
+import sml.instructions.SpawnInstruction;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * The {@code checked} engine: runs programs with overflow-checked arithmetic, widening
+ * a register to a {@code long}, and then to a {@link BigInteger}, only when a result
+ * needs it.
+ * <p>
+ * {@code lin}, {@code add}, {@code sub}, {@code mul}, {@code div}, {@code out} and
+ * {@code bnz} are interpreted by the engine. While their registers hold {@code int}s,
+ * which is tracked in a bit mask, they work on the machine's {@code int} registers as
+ * the other engines do, with an overflow test added. A result that overflows is computed
+ * exactly with {@code long} arithmetic, or {@link BigInteger} if it overflows that too,
+ * and the register is marked wide; a result that fits in an {@code int} again makes it
+ * narrow. A wide register holds the low 32 bits of its value in the machine's registers
+ * and its exact value in {@link Machine#wideRegisters()}, which is set after any run in
+ * which something overflowed. {@code out} of a wide value goes to
+ * {@link Machine#wideOut()}.
+ * <p>
+ * Every other instruction is executed as usual, on {@code int}s: it fails with an
+ * {@link ArithmeticException} if a register it reads is wide, and the registers it writes
+ * become narrow. {@code spawn} counts as reading every register, since children only
+ * have {@code int} registers, and {@code join} as writing the registers it
+ * {@link Machine#joined() merged} from its children. Children run as on the reference
+ * engine ({@link Machine#run()}), so arithmetic that overflows in a child wraps around
+ * silently; only the parent's arithmetic is checked.
+ * <p>
+ * Results are the same as on the other engines until something overflows, after which
+ * they are the exact ones, so this engine is not chosen automatically; select it with
+ * {@code --engine=checked}.
+ *
+ * @author KLM and xxx
+ */
+public final class CheckedEngine implements ExecutionEngine {
+    public static final String NAME = "checked";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Executable prepare(Labels labels, List<Instruction> prog) {
+        return new Checked(labels, prog)::run;
+    }
+
+    /** A program decoded for this engine */
+    private static final class Checked {
+        private final List<Instruction> prog;
+        private final Code code;
+        /**
+         * For the instructions the engine does not interpret, masks of the registers read and
+         * written (for join, only known once it has run: see {@link Machine#joined()})
+         */
+        private final int[] reads;
+        private final int[] writes;
+
+        Checked(Labels labels, List<Instruction> prog) {
+            this.prog = prog;
+            this.code = Code.decodeSupported(labels, prog);
+            this.reads = new int[prog.size()];
+            this.writes = new int[prog.size()];
+            for (int pc = 0; pc < prog.size(); pc++) {
+                Instruction ins = prog.get(pc);
+                reads[pc] = ins instanceof SpawnInstruction ? -1 : mask(ins.sources());
+                writes[pc] = ins instanceof JoinInstruction ? 0 : mask(ins.destinations());
+            }
+        }
+
+        private static int mask(int[] registers) {
+            int mask = 0;
+            for (int r : registers) {
+                mask |= 1 << r;
+            }
+            return mask;
+        }
+
+        void run(Machine m) {
+            new Run(m).run();
+        }
+
+        /** The state of one run: which registers are wide, and their values */
+        private final class Run {
+            private final Machine m;
+            private int[] r;
+            /**
+             * Registers holding values too wide for an int, and of those the ones too wide
+             * for a long (a bit of big is only meaningful while the register is wide)
+             */
+            private int wide;
+            private int big;
+            private final long[] longs;
+            private final BigInteger[] bigs;
+            private long overflows;
+
+            Run(Machine m) {
+                this.m = m;
+                this.r = m.registers().registers();
+                this.longs = new long[r.length];
+                this.bigs = new BigInteger[r.length];
+            }
+
+            void run() {
+                int[] op = code.op;
+                int[] a = code.a;
+                int[] b = code.b;
+                int[] c = code.c;
+                int size = op.length;
+                int pc = m.pc();
+                long steps = 0;
+                try {
+                    while (pc < size) {
+                        steps++;
+                        switch (op[pc]) {
+                            case Code.LIN -> {
+                                r[a[pc]] = b[pc];
+                                wide &= ~(1 << a[pc]);
+                                pc++;
+                            }
+                            case Code.ADD -> {
+                                int x = r[b[pc]];
+                                int y = r[c[pc]];
+                                int v = x + y;
+                                if (narrow(b[pc], c[pc]) && ((x ^ v) & (y ^ v)) >= 0) {
+                                    set(a[pc], v);
+                                } else {
+                                    arithmetic(Code.ADD, a[pc], b[pc], c[pc]);
+                                }
+                                pc++;
+                            }
+                            case Code.SUB -> {
+                                int x = r[b[pc]];
+                                int y = r[c[pc]];
+                                int v = x - y;
+                                if (narrow(b[pc], c[pc]) && ((x ^ y) & (x ^ v)) >= 0) {
+                                    set(a[pc], v);
+                                } else {
+                                    arithmetic(Code.SUB, a[pc], b[pc], c[pc]);
+                                }
+                                pc++;
+                            }
+                            case Code.MUL -> {
+                                long v = (long) r[b[pc]] * r[c[pc]];
+                                if (narrow(b[pc], c[pc]) && (int) v == v) {
+                                    set(a[pc], (int) v);
+                                } else {
+                                    arithmetic(Code.MUL, a[pc], b[pc], c[pc]);
+                                }
+                                pc++;
+                            }
+                            case Code.DIV -> {
+                                int x = r[b[pc]];
+                                int y = r[c[pc]];
+                                if (narrow(b[pc], c[pc]) && (y != -1 || x != Integer.MIN_VALUE)) {
+                                    set(a[pc], x / y);
+                                } else {
+                                    arithmetic(Code.DIV, a[pc], b[pc], c[pc]);
+                                }
+                                pc++;
+                            }
+                            case Code.OUT -> {
+                                out(a[pc]);
+                                pc++;
+                            }
+                            case Code.BNZ -> {
+                                // a wide register is never zero
+                                if ((r[a[pc]] != 0 || (wide & 1 << a[pc]) != 0) && b[pc] >= 0) {
+                                    pc = b[pc];
+                                } else {
+                                    pc++;
+                                }
+                            }
+                            default -> {
+                                if ((wide & reads[pc]) != 0) {
+                                    throw new ArithmeticException(prog.get(pc) + ": reads a register wider than 32 bits");
+                                }
+                                m.pc(pc + 1);
+                                Instruction ins = prog.get(pc);
+                                ins.execute(m);
+                                wide &= ~(ins instanceof JoinInstruction ? m.joined() : writes[pc]);
+                                r = m.registers().registers();
+                                pc = m.pc();
+                            }
+                        }
+                    }
+                    m.pc(pc);
+                    m.join();
+                    wide &= ~m.joined();
+                } catch (RuntimeException e) {
+                    m.pc(pc);
+                    throw e;
+                } finally {
+                    m.steps(steps);
+                    if (overflows > 0) {
+                        var exact = new BigInteger[r.length];
+                        for (int i = 0; i < r.length; i++) {
+                            if ((wide & 1 << i) != 0) {
+                                exact[i] = value(i);
+                            }
+                        }
+                        m.wideRegisters(new WideRegisters(r, exact, overflows));
+                    }
+                }
+            }
+
+            private boolean narrow(int s1, int s2) {
+                return ((wide >>> s1 | wide >>> s2) & 1) == 0;
+            }
+
+            private void set(int d, int v) {
+                r[d] = v;
+                wide &= ~(1 << d);
+            }
+
+            /** Compute a result exactly: in a long if the operands and result fit, else as a BigInteger */
+            private void arithmetic(int op, int d, int s1, int s2) {
+                int beyondLong = big & wide;
+                if (((beyondLong >>> s1 | beyondLong >>> s2) & 1) == 0) {
+                    long x = (wide & 1 << s1) != 0 ? longs[s1] : r[s1];
+                    long y = (wide & 1 << s2) != 0 ? longs[s2] : r[s2];
+                    long v;
+                    boolean overflowed;
+                    switch (op) {
+                        case Code.ADD -> {
+                            v = x + y;
+                            overflowed = ((x ^ v) & (y ^ v)) < 0;
+                        }
+                        case Code.SUB -> {
+                            v = x - y;
+                            overflowed = ((x ^ y) & (x ^ v)) < 0;
+                        }
+                        case Code.MUL -> {
+                            v = x * y;
+                            overflowed = Math.multiplyHigh(x, y) != v >> 63;
+                        }
+                        default -> {
+                            if (y == 0) {
+                                throw new ArithmeticException("/ by zero");
+                            }
+                            overflowed = x == Long.MIN_VALUE && y == -1;
+                            v = x / y;
+                        }
+                    }
+                    if (!overflowed) {
+                        setLong(d, v);
+                        return;
+                    }
+                }
+                BigInteger x = value(s1);
+                BigInteger y = value(s2);
+                setBig(d, switch (op) {
+                    case Code.ADD -> x.add(y);
+                    case Code.SUB -> x.subtract(y);
+                    case Code.MUL -> x.multiply(y);
+                    default -> {
+                        if (y.signum() == 0) {
+                            throw new ArithmeticException("/ by zero");
+                        }
+                        yield x.divide(y);
+                    }
+                });
+            }
+
+            private void setLong(int d, long v) {
+                r[d] = (int) v;
+                if ((int) v == v) {
+                    wide &= ~(1 << d);
+                } else {
+                    longs[d] = v;
+                    wide |= 1 << d;
+                    big &= ~(1 << d);
+                    overflows++;
+                }
+            }
+
+            private void setBig(int d, BigInteger v) {
+                if (v.bitLength() < Long.SIZE) {
+                    setLong(d, v.longValue());
+                } else {
+                    r[d] = v.intValue();
+                    bigs[d] = v;
+                    wide |= 1 << d;
+                    big |= 1 << d;
+                    overflows++;
+                }
+            }
+
+            private BigInteger value(int i) {
+                if ((wide & 1 << i) == 0) {
+                    return BigInteger.valueOf(r[i]);
+                }
+                return (big & 1 << i) != 0 ? bigs[i] : BigInteger.valueOf(longs[i]);
+            }
+
+            private void out(int register) {
+                if ((wide & 1 << register) == 0) {
+                    m.out().accept(r[register]);
+                } else if (m.wideOut() != null) {
+                    m.wideOut().accept(value(register));
+                } else {
+                    throw new ArithmeticException("out: register " + register + " holds " + value(register)
+                        + ", which is wider than 32 bits");
+                }
+            }
+        }
+    }
+}
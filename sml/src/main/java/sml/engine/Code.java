@@ -0,0 +1,218 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.RegisterRange;
+import sml.instructions.AddInstruction;
+import sml.instructions.BnzInstruction;
+import sml.instructions.CallInstruction;
+import sml.instructions.DivInstruction;
+import sml.instructions.InInstruction;
+import sml.instructions.LinInstruction;
+import sml.instructions.LoadInstruction;
+import sml.instructions.LoadxInstruction;
+import sml.instructions.MulInstruction;
+import sml.instructions.OutInstruction;
+import sml.instructions.RetInstruction;
+import sml.instructions.StoreInstruction;
+import sml.instructions.StorexInstruction;
+import sml.instructions.SubInstruction;
+import sml.instructions.VaddInstruction;
+import sml.instructions.VdotInstruction;
+import sml.instructions.VmulInstruction;
+import sml.instructions.VsubInstruction;
+import sml.instructions.VsumInstruction;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A program decoded into parallel arrays of opcodes and operands, the form the
+ * engines in this package execute instead of {@link Instruction} objects.
+ * <p>
+ * Branch targets are resolved to pcs ({@code -1} for a label that does not exist).
+ * The operands of each opcode are:
+ * <pre>
+ * LIN  a=register  b=value
+ * ADD, SUB, MUL, DIV  a=result  b=register1  c=register2
+ * OUT  a=register
+ * BNZ  a=register  b=target pc
+ * VADD, VSUB, VMUL  range=result  b=register1  c=register2
+ * VSUM  range=source  b=result
+ * VDOT  range=source 1  b=result  c=register2
+ * LOAD, STORE  a=register  b=address
+ * LOADX, STOREX  a=register  b=base register  c=offset
+ * CALL  a=target pc
+ * RET
+ * IN  a=register
+ * </pre>
+ *
+ * @author KLM and xxx
+ */
+final class Code {
+    static final int LIN = 0;
+    static final int ADD = 1;
+    static final int SUB = 2;
+    static final int MUL = 3;
+    static final int DIV = 4;
+    static final int OUT = 5;
+    static final int BNZ = 6;
+    static final int VADD = 7;
+    static final int VSUB = 8;
+    static final int VMUL = 9;
+    static final int VSUM = 10;
+    static final int VDOT = 11;
+    static final int LOAD = 12;
+    static final int STORE = 13;
+    static final int LOADX = 14;
+    static final int STOREX = 15;
+    static final int CALL = 16;
+    static final int RET = 17;
+    static final int IN = 18;
+    /** Marks an instruction outside a decoded region */
+    static final int NONE = -1;
+
+    final int[] op;
+    final int[] a;
+    final int[] b;
+    final int[] c;
+    /** The register range of the vector instructions, null for the others */
+    final RegisterRange[] range;
+    /** The largest constant address of a load or store, -1 if there are none */
+    int maxAddress = -1;
+
+    private Code(int size) {
+        op = new int[size];
+        a = new int[size];
+        b = new int[size];
+        c = new int[size];
+        range = new RegisterRange[size];
+    }
+
+    /** Returns the number of instructions */
+    int size() {
+        return op.length;
+    }
+
+    /**
+     * Returns true if {@link #decode(Labels, List)} can decode an instruction.
+     */
+    static boolean supports(Instruction ins) {
+        return ins instanceof LinInstruction || ins instanceof AddInstruction || ins instanceof SubInstruction
+            || ins instanceof MulInstruction || ins instanceof DivInstruction || ins instanceof OutInstruction
+            || ins instanceof BnzInstruction || ins instanceof VaddInstruction || ins instanceof VsubInstruction
+            || ins instanceof VmulInstruction || ins instanceof VsumInstruction || ins instanceof VdotInstruction
+            || ins instanceof LoadInstruction || ins instanceof StoreInstruction
+            || ins instanceof LoadxInstruction || ins instanceof StorexInstruction
+            || ins instanceof CallInstruction || ins instanceof RetInstruction
+            || ins instanceof InInstruction;
+    }
+
+    /**
+     * Decode a translated program.
+     *
+     * @param labels the labels of the program
+     * @param prog   the program
+     * @return the decoded program
+     * @throws IllegalArgumentException if an instruction is not {@link #supports(Instruction) supported}
+     */
+    static Code decode(Labels labels, List<Instruction> prog) {
+        return decode(labels, prog, 0, prog.size());
+    }
+
+    /**
+     * Decode the instructions of a region of a program; the others are marked {@link #NONE}.
+     *
+     * @param labels the labels of the program
+     * @param prog   the program
+     * @param from   the first pc of the region
+     * @param to     the end of the region (exclusive)
+     * @return the decoded program
+     * @throws IllegalArgumentException if an instruction in the region is not {@link #supports(Instruction) supported}
+     */
+    static Code decode(Labels labels, List<Instruction> prog, int from, int to) {
+        var code = new Code(prog.size());
+        Arrays.fill(code.op, NONE);
+        for (int i = from; i < to; i++) {
+            code.decode(i, prog.get(i), labels);
+        }
+        return code;
+    }
+
+    /**
+     * Decode the {@link #supports(Instruction) supported} instructions of a program; the
+     * others are marked {@link #NONE}.
+     *
+     * @param labels the labels of the program
+     * @param prog   the program
+     * @return the decoded program
+     */
+    static Code decodeSupported(Labels labels, List<Instruction> prog) {
+        var code = new Code(prog.size());
+        Arrays.fill(code.op, NONE);
+        for (int i = 0; i < prog.size(); i++) {
+            if (supports(prog.get(i))) {
+                code.decode(i, prog.get(i), labels);
+            }
+        }
+        return code;
+    }
+
+    private void decode(int i, Instruction ins, Labels labels) {
+        if (ins instanceof LinInstruction lin) {
+            set(i, LIN, lin.register(), lin.value(), 0);
+        } else if (ins instanceof AddInstruction add) {
+            set(i, ADD, add.result(), add.register1(), add.register2());
+        } else if (ins instanceof SubInstruction sub) {
+            set(i, SUB, sub.result(), sub.register1(), sub.register2());
+        } else if (ins instanceof MulInstruction mul) {
+            set(i, MUL, mul.result(), mul.register1(), mul.register2());
+        } else if (ins instanceof DivInstruction div) {
+            set(i, DIV, div.result(), div.register1(), div.register2());
+        } else if (ins instanceof OutInstruction out) {
+            set(i, OUT, out.register(), 0, 0);
+        } else if (ins instanceof BnzInstruction bnz) {
+            set(i, BNZ, bnz.register(), labels.indexOf(bnz.targetLabel()), 0);
+        } else if (ins instanceof VaddInstruction v) {
+            setRange(i, VADD, v.result(), v.register1(), v.register2());
+        } else if (ins instanceof VsubInstruction v) {
+            setRange(i, VSUB, v.result(), v.register1(), v.register2());
+        } else if (ins instanceof VmulInstruction v) {
+            setRange(i, VMUL, v.result(), v.register1(), v.register2());
+        } else if (ins instanceof VsumInstruction v) {
+            setRange(i, VSUM, v.range(), v.result(), 0);
+        } else if (ins instanceof VdotInstruction v) {
+            setRange(i, VDOT, v.range1(), v.result(), v.register2());
+        } else if (ins instanceof LoadInstruction load) {
+            set(i, LOAD, load.register(), load.address(), 0);
+            maxAddress = Math.max(maxAddress, load.address());
+        } else if (ins instanceof StoreInstruction store) {
+            set(i, STORE, store.register(), store.address(), 0);
+            maxAddress = Math.max(maxAddress, store.address());
+        } else if (ins instanceof LoadxInstruction load) {
+            set(i, LOADX, load.result(), load.base(), load.offset());
+        } else if (ins instanceof StorexInstruction store) {
+            set(i, STOREX, store.register(), store.base(), store.offset());
+        } else if (ins instanceof CallInstruction call) {
+            set(i, CALL, labels.indexOf(call.targetLabel()), 0, 0);
+        } else if (ins instanceof RetInstruction) {
+            set(i, RET, 0, 0, 0);
+        } else if (ins instanceof InInstruction in) {
+            set(i, IN, in.register(), 0, 0);
+        } else {
+            throw new IllegalArgumentException("Instruction " + i + " cannot be decoded: " + ins);
+        }
+    }
+
+    private void set(int i, int opcode, int x, int y, int z) {
+        op[i] = opcode;
+        a[i] = x;
+        b[i] = y;
+        c[i] = z;
+    }
+
+    private void setRange(int i, int opcode, RegisterRange r, int y, int z) {
+        set(i, opcode, r.start(), y, z);
+        range[i] = r;
+    }
+}
@@ -0,0 +1,118 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.instructions.BnzInstruction;
+import sml.instructions.CallInstruction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The basic blocks of a translated program and the edges between them.
+ * <p>
+ * A new block starts at instruction 0, at every instruction that is the target
+ * of a {@code bnz} or {@code call}, and after every instruction that may change the program
+ * counter ({@link Instruction#changesControlFlow()}).
+ *
+ * @author KLM and xxx
+ */
+public final class ControlFlowGraph {
+    private final List<BasicBlock> blocks;
+    /** For each pc, the index of the block starting there, or -1 if pc is inside a block */
+    private final int[] blockStartingAt;
+
+    private ControlFlowGraph(List<BasicBlock> blocks, int size) {
+        this.blocks = Collections.unmodifiableList(blocks);
+        this.blockStartingAt = new int[size + 1];
+        Arrays.fill(blockStartingAt, -1);
+        for (BasicBlock b : blocks) {
+            blockStartingAt[b.start()] = b.index();
+        }
+    }
+
+    /**
+     * Split a program into basic blocks.
+     *
+     * @param labels the labels of the program
+     * @param prog   the program
+     * @return the control flow graph
+     */
+    public static ControlFlowGraph build(Labels labels, List<Instruction> prog) {
+        int size = prog.size();
+        var leaders = new BitSet(size + 1);
+        leaders.set(0);
+        int[] targets = new int[size];
+        for (int pc = 0; pc < size; pc++) {
+            Instruction ins = prog.get(pc);
+            targets[pc] = -1;
+            if (ins instanceof BnzInstruction bnz) {
+                targets[pc] = labels.indexOf(bnz.targetLabel());
+            } else if (ins instanceof CallInstruction call) {
+                // the return lands on the next instruction, which the fall-through edge covers
+                targets[pc] = labels.indexOf(call.targetLabel());
+            }
+            if (targets[pc] >= 0) {
+                leaders.set(targets[pc]);
+            }
+            if (ins.changesControlFlow()) {
+                leaders.set(pc + 1);
+            }
+        }
+
+        var blocks = new ArrayList<BasicBlock>();
+        for (int start = leaders.nextSetBit(0); start >= 0 && start < size; ) {
+            int next = leaders.nextSetBit(start + 1);
+            int end = next < 0 ? size : Math.min(next, size);
+            blocks.add(new BasicBlock(blocks.size(), start, prog.subList(start, end)));
+            start = end;
+        }
+        var cfg = new ControlFlowGraph(blocks, size);
+
+        for (BasicBlock b : blocks) {
+            int last = b.end() - 1;
+            var successors = new ArrayList<Integer>(2);
+            if (targets[last] >= 0) {
+                successors.add(cfg.blockStartingAt(targets[last]));
+            }
+            if (b.end() < size && !successors.contains(cfg.blockStartingAt(b.end()))) {
+                successors.add(cfg.blockStartingAt(b.end()));
+            }
+            b.successors(successors.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return cfg;
+    }
+
+    /** Returns the blocks in program order */
+    public List<BasicBlock> blocks() {
+        return blocks;
+    }
+
+    /**
+     * Returns the index of the block that starts at pc.
+     *
+     * @param pc a program counter, 0 to the program size inclusive
+     * @return the block index, or -1 if pc is inside a block or past the end
+     */
+    public int blockStartingAt(int pc) {
+        return pc >= 0 && pc < blockStartingAt.length ? blockStartingAt[pc] : -1;
+    }
+
+    /** Set every block's execution count back to zero */
+    public void resetExecutions() {
+        blocks.forEach(BasicBlock::resetExecutions);
+    }
+
+    /** Returns one line per block: its pc range, successors and execution count */
+    @Override
+    public String toString() {
+        var sb = new StringBuilder();
+        for (BasicBlock b : blocks) {
+            sb.append(b).append("\n");
+        }
+        return sb.toString();
+    }
+}
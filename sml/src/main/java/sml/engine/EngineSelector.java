@@ -0,0 +1,165 @@
+package sml.engine;
+
+import sml.ExecutionEngine;
+import sml.ExecutionEngines;
+import sml.Instruction;
+import sml.Labels;
+import sml.LazyProgram;
+import sml.ReferenceEngine;
+import sml.instructions.BnzInstruction;
+import sml.instructions.LinInstruction;
+
+import java.util.List;
+
+/**
+ * The {@code auto} engine: chooses an engine for each program it prepares.
+ * <p>
+ * Preparing a program for the {@code verified} or {@code block} engine costs time in
+ * proportion to its size, which only pays off if the program then executes many more
+ * instructions than it has. Before running a program we cannot know how many it will
+ * execute, so the selector estimates it from the program's loops: each backward
+ * {@code bnz} is assumed to repeat its loop body as many times as the largest constant
+ * the program loads with {@code lin} (loop counters are usually set that way), but at
+ * least {@value #MIN_TRIPS} and at most {@value #MAX_TRIPS} times. Programs
+ * with no loops run on the reference engine. Programs estimated to execute at least the
+ * warm-up budget ({@code sml.engine.warmup} system property, default
+ * {@value #DEFAULT_WARMUP} instructions) and at least {@value #PREPARE_COST} per
+ * instruction run on the verified engine if they verify. The rest, whose loops may or may
+ * not turn out to be hot, run on the {@code tiered} engine, which compiles the loops
+ * that do. Lazily translated programs always run on the reference engine, since
+ * preparing them would translate every instruction.
+ * <p>
+ * If the selector is given a {@link Profile} of the program, the estimate is replaced
+ * by what the profiled runs actually did: the steps per run, and the loops whose
+ * backward branch was taken at least once; the profile is passed on to the tiered
+ * engine too. A profile of any other program is ignored.
+ *
+ * @author KLM and xxx
+ */
+public final class EngineSelector implements ExecutionEngine {
+    /** Bounds on the times each loop is assumed to repeat */
+    public static final int MIN_TRIPS = 10;
+    public static final int MAX_TRIPS = 1_000_000;
+    /** Default warm-up budget, in executed instructions */
+    public static final long DEFAULT_WARMUP = 1_000;
+    /** Executed instructions per program instruction needed to repay preparation */
+    public static final int PREPARE_COST = 10;
+
+    /**
+     * The selector's view of a program.
+     *
+     * @param engine         the name of the engine chosen
+     * @param size           the number of instructions
+     * @param loops          the number of backward branches
+     * @param estimatedSteps the estimated number of instructions a run executes
+     * @param profiled       true if the loops and steps are from a profile, not estimated
+     */
+    public record Choice(String engine, int size, int loops, long estimatedSteps, boolean profiled) {
+    }
+
+    private final long warmup = Long.getLong("sml.engine.warmup", DEFAULT_WARMUP);
+    private final Profile profile;
+
+    /** A selector estimating each program's steps from its loops */
+    public EngineSelector() {
+        this(null);
+    }
+
+    /**
+     * @param profile the profile of the program to be run, or null
+     */
+    public EngineSelector(Profile profile) {
+        this.profile = profile;
+    }
+
+    @Override
+    public String name() {
+        return ExecutionEngines.AUTO;
+    }
+
+    @Override
+    public Executable prepare(Labels labels, List<Instruction> prog) {
+        Choice choice = choose(labels, prog);
+        if (choice.engine().equals(VerifiedExecutionEngine.NAME)) {
+            Executable verified = engine(VerifiedExecutionEngine.NAME).prepare(labels, prog);
+            if (verified != null) {
+                return verified;
+            }
+            return tiered().prepare(labels, prog);
+        }
+        if (choice.engine().equals(TieredEngine.NAME)) {
+            return tiered().prepare(labels, prog);
+        }
+        return engine(choice.engine()).prepare(labels, prog);
+    }
+
+    /** Returns the profile guiding this selector, or null */
+    public Profile profile() {
+        return profile;
+    }
+
+    /**
+     * Decide which engine to run a program on. A program chosen for the verified engine
+     * falls back to the tiered engine if it does not verify.
+     *
+     * @param labels the program's labels
+     * @param prog   the program
+     * @return the choice and what it was based on
+     */
+    public Choice choose(Labels labels, List<Instruction> prog) {
+        if (prog instanceof LazyProgram) {
+            return new Choice(ReferenceEngine.NAME, prog.size(), 0, prog.size(), false);
+        }
+        if (profile != null && profile.runs() > 0 && profile.guides(prog)) {
+            int loops = 0;
+            for (int pc = 0; pc < prog.size(); pc++) {
+                if (profile.taken(pc) > 0 && prog.get(pc) instanceof BnzInstruction bnz
+                    && labels.indexOf(bnz.targetLabel()) <= pc) {
+                    loops++;
+                }
+            }
+            return new Choice(engine(loops, profile.stepsPerRun(), prog.size()), prog.size(), loops,
+                profile.stepsPerRun(), true);
+        }
+        long trips = MIN_TRIPS;
+        for (Instruction ins : prog) {
+            if (ins instanceof LinInstruction lin) {
+                trips = Math.max(trips, Math.min(Math.abs((long) lin.value()), MAX_TRIPS));
+            }
+        }
+        int loops = 0;
+        long estimate = prog.size();
+        for (int pc = 0; pc < prog.size(); pc++) {
+            if (prog.get(pc) instanceof BnzInstruction bnz) {
+                int target = labels.indexOf(bnz.targetLabel());
+                if (target >= 0 && target <= pc) {
+                    loops++;
+                    estimate += trips * (pc - target + 1);
+                }
+            }
+        }
+        return new Choice(engine(loops, estimate, prog.size()), prog.size(), loops, estimate, false);
+    }
+
+    private String engine(int loops, long steps, int size) {
+        if (loops == 0) {
+            return ReferenceEngine.NAME;
+        } else if (steps >= warmup && steps >= (long) PREPARE_COST * size) {
+            return VerifiedExecutionEngine.NAME;
+        } else {
+            return TieredEngine.NAME;
+        }
+    }
+
+    private ExecutionEngine tiered() {
+        return profile != null ? new TieredEngine(profile) : engine(TieredEngine.NAME);
+    }
+
+    private static ExecutionEngine engine(String name) {
+        try {
+            return ExecutionEngines.named(name);
+        } catch (IllegalArgumentException e) {
+            return ExecutionEngines.named(ReferenceEngine.NAME);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.instructions.BnzInstruction;
+import sml.instructions.CallInstruction;
+import sml.instructions.RetInstruction;
+import sml.instructions.SpawnInstruction;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An optimizer pass that replaces {@code call L} with the body of the subroutine at
+ * {@code L}, so that the call and its {@code ret} are no longer executed.
+ * <p>
+ * A subroutine is inlined when its body, from {@code L} up to the first {@code ret}
+ * after it, has at most the given number of instructions, none of which changes
+ * control flow (so it cannot call anything, itself included, or branch out) and none
+ * of which, apart from the first, has a label that a {@code bnz}, {@code call} or
+ * {@code spawn} refers to. The inlined copy takes the place and the label of the call,
+ * so branches to the call branch to the copy; the subroutine itself stays where it is.
+ * <p>
+ * The copies are the same (immutable) instruction objects as the body, so the listing
+ * of an inlined program shows each copied instruction with its original label.
+ *
+ * @author KLM and xxx
+ */
+public final class Inliner {
+    /** Default largest body that is inlined, in instructions */
+    public static final int DEFAULT_MAX_SIZE = 8;
+
+    /**
+     * An inlined program.
+     *
+     * @param labels  the labels of the new program
+     * @param prog    the new program
+     * @param inlined the number of calls replaced
+     */
+    public record Result(Labels labels, List<Instruction> prog, int inlined) {
+    }
+
+    /**
+     * Inline the subroutines of at most {@value #DEFAULT_MAX_SIZE} instructions.
+     *
+     * @param labels the labels of the program (not modified)
+     * @param prog   the program (not modified)
+     * @return the inlined program
+     */
+    public static Result inline(Labels labels, List<Instruction> prog) {
+        return inline(labels, prog, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Inline the subroutines of at most maxSize instructions.
+     *
+     * @param labels  the labels of the program (not modified)
+     * @param prog    the program (not modified)
+     * @param maxSize the largest body to inline, not counting the {@code ret}
+     * @return the inlined program
+     */
+    public static Result inline(Labels labels, List<Instruction> prog, int maxSize) {
+        Set<String> targeted = targetedLabels(prog);
+        var newLabels = new Labels();
+        var newProg = new ArrayList<Instruction>(prog.size());
+        int inlined = 0;
+        for (int pc = 0; pc < prog.size(); pc++) {
+            Instruction ins = prog.get(pc);
+            int entry = ins instanceof CallInstruction call ? labels.indexOf(call.targetLabel()) : -1;
+            int end = entry < 0 ? -1 : inlinableEnd(labels, prog, entry, maxSize, targeted);
+            newLabels.addLabel(labels.get(pc));
+            if (end < 0) {
+                newProg.add(ins);
+                continue;
+            }
+            newProg.add(prog.get(entry));
+            for (int i = entry + 1; i < end; i++) {
+                newLabels.addLabel(labels.get(i));
+                newProg.add(prog.get(i));
+            }
+            inlined++;
+        }
+        return new Result(newLabels, newProg, inlined);
+    }
+
+    /**
+     * Returns the pc of the {@code ret} ending the subroutine at entry, or -1 if the
+     * subroutine cannot be inlined.
+     */
+    private static int inlinableEnd(Labels labels, List<Instruction> prog, int entry, int maxSize,
+                                    Set<String> targeted) {
+        for (int pc = entry; pc < prog.size() && pc - entry <= maxSize; pc++) {
+            Instruction ins = prog.get(pc);
+            if (ins instanceof RetInstruction) {
+                // an empty body would leave the call's label on no instruction
+                return pc > entry ? pc : -1;
+            }
+            if (ins.changesControlFlow() || pc > entry && targeted.contains(labels.get(pc))) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the labels that some instruction jumps to */
+    private static Set<String> targetedLabels(List<Instruction> prog) {
+        var targeted = new HashSet<String>();
+        for (Instruction ins : prog) {
+            if (ins instanceof BnzInstruction bnz) {
+                targeted.add(bnz.targetLabel());
+            } else if (ins instanceof CallInstruction call) {
+                targeted.add(call.targetLabel());
+            } else if (ins instanceof SpawnInstruction spawn) {
+                targeted.add(spawn.targetLabel());
+            }
+        }
+        return targeted;
+    }
+
+    private Inliner() {
+    } // Utility classes should not have a public or default constructor
+}
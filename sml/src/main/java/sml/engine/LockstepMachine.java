@@ -0,0 +1,283 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Registers;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static sml.engine.Code.ADD;
+import static sml.engine.Code.BNZ;
+import static sml.engine.Code.DIV;
+import static sml.engine.Code.LIN;
+import static sml.engine.Code.MUL;
+import static sml.engine.Code.OUT;
+import static sml.engine.Code.SUB;
+import static sml.engine.Code.VADD;
+import static sml.engine.Code.VDOT;
+import static sml.engine.Code.VMUL;
+import static sml.engine.Code.VSUB;
+import static sml.engine.Code.VSUM;
+
+/**
+ * Runs one translated program over many initial register sets ("lanes") in lockstep.
+ * <p>
+ * The register file is stored as structure-of-arrays: one {@code int[]} per register
+ * holding that register's value in every lane, so each instruction is dispatched once
+ * and then applied to all lanes in a tight loop. While every lane is at the same pc the
+ * loops run over all lanes; when a {@code bnz} sends lanes different ways the machine
+ * masks them, always stepping the lanes at the lowest pc so they reconverge as soon as
+ * their paths meet again.
+ * <p>
+ * The results per lane are identical to running {@link sml.Machine#execute(Registers)}
+ * on each input separately. If any lane divides by zero the whole run throws
+ * {@link ArithmeticException}.
+ *
+ * @author KLM and xxx
+ */
+public final class LockstepMachine {
+    private final Code code;
+
+    /**
+     * The final registers and the values printed by {@code out}, per lane.
+     *
+     * @param registers final registers of each lane
+     * @param output    values printed by each lane, in order
+     */
+    public record Result(Registers[] registers, int[][] output) {
+    }
+
+    /**
+     * Decode a translated program for lockstep execution.
+     *
+     * @param labels the labels of the program
+     * @param prog   the program
+     * @throws IllegalArgumentException if the program uses an instruction this mode cannot run
+     */
+    public LockstepMachine(Labels labels, List<Instruction> prog) {
+        try {
+            code = Code.decode(labels, prog);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Not supported in lockstep mode: " + e.getMessage(), e);
+        }
+        for (int i = 0; i < code.size(); i++) {
+            // every lane would share the one memory and return stack, so lanes could not run independently
+            if (code.op[i] > VDOT) {
+                throw new IllegalArgumentException("Not supported in lockstep mode: " + prog.get(i).getOpcode());
+            }
+        }
+    }
+
+    /**
+     * Run the program once per input, all lanes together.
+     *
+     * @param inputs the initial registers of each lane (not modified)
+     * @return the final registers and output of each lane
+     */
+    public Result execute(Registers... inputs) {
+        int lanes = inputs.length;
+        int[] op = code.op, a = code.a, b = code.b, c = code.c;
+        int size = op.length;
+        int[][] r = new int[new Registers().size()][lanes];
+        for (int l = 0; l < lanes; l++) {
+            for (int reg = 0; reg < r.length; reg++) {
+                r[reg][l] = inputs[l].register(reg);
+            }
+        }
+        var output = new LaneOutput(lanes);
+
+        // Lanes are selected through sel[0..count); when all lanes are selected the
+        // loops below skip the indirection.
+        int[] pc = new int[lanes];
+        int[] sel = new int[lanes];
+        int count = lanes;
+        for (int l = 0; l < lanes; l++) {
+            sel[l] = l;
+        }
+        int cur = 0;
+        // true while every unfinished lane is selected; pc[] is only kept up to date otherwise
+        boolean converged = true;
+
+        while (count > 0 && cur < size) {
+            boolean dense = count == lanes;
+            int next = cur + 1;
+            switch (op[cur]) {
+                case LIN -> {
+                    int[] d = r[a[cur]];
+                    int v = b[cur];
+                    if (dense) {
+                        Arrays.fill(d, v);
+                    } else {
+                        for (int k = 0; k < count; k++) {
+                            d[sel[k]] = v;
+                        }
+                    }
+                }
+                case ADD -> {
+                    int[] d = r[a[cur]], x = r[b[cur]], y = r[c[cur]];
+                    if (dense) {
+                        for (int l = 0; l < lanes; l++) {
+                            d[l] = x[l] + y[l];
+                        }
+                    } else {
+                        for (int k = 0; k < count; k++) {
+                            int l = sel[k];
+                            d[l] = x[l] + y[l];
+                        }
+                    }
+                }
+                case SUB -> {
+                    int[] d = r[a[cur]], x = r[b[cur]], y = r[c[cur]];
+                    if (dense) {
+                        for (int l = 0; l < lanes; l++) {
+                            d[l] = x[l] - y[l];
+                        }
+                    } else {
+                        for (int k = 0; k < count; k++) {
+                            int l = sel[k];
+                            d[l] = x[l] - y[l];
+                        }
+                    }
+                }
+                case MUL -> {
+                    int[] d = r[a[cur]], x = r[b[cur]], y = r[c[cur]];
+                    if (dense) {
+                        for (int l = 0; l < lanes; l++) {
+                            d[l] = x[l] * y[l];
+                        }
+                    } else {
+                        for (int k = 0; k < count; k++) {
+                            int l = sel[k];
+                            d[l] = x[l] * y[l];
+                        }
+                    }
+                }
+                case DIV -> {
+                    int[] d = r[a[cur]], x = r[b[cur]], y = r[c[cur]];
+                    for (int k = 0; k < count; k++) {
+                        int l = sel[k];
+                        d[l] = x[l] / y[l];
+                    }
+                }
+                case OUT -> {
+                    int[] s = r[a[cur]];
+                    for (int k = 0; k < count; k++) {
+                        output.add(sel[k], s[sel[k]]);
+                    }
+                }
+                case BNZ -> {
+                    int[] s = r[a[cur]];
+                    int target = b[cur];
+                    if (target == -1) {
+                        break;
+                    }
+                    int taken = 0;
+                    for (int k = 0; k < count; k++) {
+                        if (s[sel[k]] != 0) {
+                            taken++;
+                        }
+                    }
+                    if (taken == count) {
+                        next = target;
+                    } else if (taken != 0) {
+                        // lanes disagree: record each lane's own pc and fall back to masking
+                        converged = false;
+                        for (int k = 0; k < count; k++) {
+                            int l = sel[k];
+                            pc[l] = s[l] != 0 ? target : cur + 1;
+                        }
+                        next = -1;
+                    }
+                }
+                case VADD, VSUB, VMUL -> {
+                    int start = code.range[cur].start();
+                    for (int e = 0; e < code.range[cur].length(); e++) {
+                        int[] d = r[start + e], x = r[b[cur] + e], y = r[c[cur] + e];
+                        for (int k = 0; k < count; k++) {
+                            int l = sel[k];
+                            d[l] = op[cur] == VADD ? x[l] + y[l] : op[cur] == VSUB ? x[l] - y[l] : x[l] * y[l];
+                        }
+                    }
+                }
+                case VSUM, VDOT -> {
+                    int[] d = r[b[cur]];
+                    for (int k = 0; k < count; k++) {
+                        int l = sel[k];
+                        int total = 0;
+                        int start = code.range[cur].start();
+                        for (int e = 0; e < code.range[cur].length(); e++) {
+                            total += op[cur] == VSUM ? r[start + e][l] : r[start + e][l] * r[c[cur] + e][l];
+                        }
+                        d[l] = total;
+                    }
+                }
+                default -> throw new IllegalStateException("Bad opcode " + op[cur]);
+            }
+
+            if (converged && next != -1) {
+                cur = next;
+                continue;
+            }
+            if (next != -1) {
+                for (int k = 0; k < count; k++) {
+                    pc[sel[k]] = next;
+                }
+            }
+            // Masked: step the lanes with the lowest pc next.
+            cur = Integer.MAX_VALUE;
+            int live = 0;
+            for (int l = 0; l < lanes; l++) {
+                if (pc[l] < size) {
+                    live++;
+                    cur = Math.min(cur, pc[l]);
+                }
+            }
+            count = 0;
+            for (int l = 0; l < lanes; l++) {
+                if (pc[l] == cur) {
+                    sel[count++] = l;
+                }
+            }
+            converged = count == live;
+        }
+
+        var result = new Registers[lanes];
+        for (int l = 0; l < lanes; l++) {
+            result[l] = new Registers();
+            for (int reg = 0; reg < r.length; reg++) {
+                result[l].register(reg, r[reg][l]);
+            }
+        }
+        return new Result(result, output.toArrays());
+    }
+
+    /** Growable per-lane output buffers. */
+    private static final class LaneOutput {
+        private final int[][] values;
+        private final int[] sizes;
+
+        LaneOutput(int lanes) {
+            values = new int[lanes][];
+            sizes = new int[lanes];
+        }
+
+        void add(int lane, int value) {
+            int[] v = values[lane];
+            if (v == null) {
+                v = values[lane] = new int[4];
+            } else if (sizes[lane] == v.length) {
+                v = values[lane] = Arrays.copyOf(v, v.length * 2);
+            }
+            v[sizes[lane]++] = value;
+        }
+
+        int[][] toArrays() {
+            int[][] result = new int[values.length][];
+            for (int l = 0; l < values.length; l++) {
+                result[l] = values[l] == null ? new int[0] : Arrays.copyOf(values[l], sizes[l]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.metrics.RuntimeMetrics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Executes a program like {@link Machine#run()}, stopping it with a
+ * {@link NonTerminationException} if it is caught in an infinite loop or runs more
+ * than a budget of steps.
+ * <p>
+ * Loops are found with Brent's cycle-finding algorithm over the machine's state at
+ * back-edges (control transfers to the same or an earlier instruction): the state at
+ * back-edges 1, 2, 4, 8, ... is saved, and each back-edge's state is compared with the
+ * last one saved. A program of {@link Instruction#pure() pure} instructions is
+ * deterministic in its pc, registers and return addresses, so if these repeat the
+ * program never terminates; a loop is found within a few times the back-edges it
+ * takes to enter and go once round it. Comparing two states usually stops at the
+ * first register (typically the loop counter), so a back-edge costs little more than
+ * a branch, and saving costs a copy of the registers at power-of-two intervals only.
+ * An impure instruction (memory, input, channels, spawn) forgets the saved state, so
+ * only loops made of pure instructions are found; the budget still bounds the rest.
+ * Children spawned by the program run as usual, outside the budget.
+ *
+ * @author KLM and xxx
+ */
+public final class LoopDetector {
+    /** No step budget */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    /** What each instruction is, found as it is first executed */
+    private static final byte UNKNOWN = 0;
+    private static final byte PLAIN = 1;
+    private static final byte BRANCH = 2;
+    private static final byte IMPURE = 3;
+
+    private final long maxSteps;
+    private final boolean detectCycles;
+
+    /**
+     * @param maxSteps     the most instructions a run may execute, or {@link #UNLIMITED}
+     * @param detectCycles true to find infinite loops; false to apply the budget alone
+     */
+    public LoopDetector(long maxSteps, boolean detectCycles) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("Step budget must be positive: " + maxSteps);
+        }
+        this.maxSteps = maxSteps;
+        this.detectCycles = detectCycles;
+    }
+
+    /** Returns the most instructions a run may execute */
+    public long maxSteps() {
+        return maxSteps;
+    }
+
+    /** Returns true if infinite loops are looked for */
+    public boolean detectCycles() {
+        return detectCycles;
+    }
+
+    /**
+     * Execute the machine's program from zeroed registers.
+     *
+     * @param m the machine, with its program loaded
+     * @throws NonTerminationException if the program is stopped
+     */
+    public void execute(Machine m) {
+        execute(m, new Registers());
+    }
+
+    /**
+     * Execute the machine's program from a copy of the given registers.
+     *
+     * @param m       the machine, with its program loaded
+     * @param initial the initial registers (not modified)
+     * @throws NonTerminationException if the program is stopped
+     */
+    public void execute(Machine m, Registers initial) {
+        m.pc(0);
+        m.registers(initial.copy());
+        run(m);
+    }
+
+    /**
+     * Continue executing the machine's program from its current pc and registers. The
+     * budget counts from here. If the program is stopped, the machine is left at the
+     * instruction it would have executed next.
+     *
+     * @param m the machine, with its program loaded
+     * @throws NonTerminationException if the program is stopped
+     */
+    public void run(Machine m) {
+        RuntimeMetrics.measure(() -> guard(m), m::steps);
+    }
+
+    private void guard(Machine m) {
+        List<Instruction> prog = m.prog();
+        int size = prog.size();
+        byte[] kinds = new byte[size];
+        // Brent's algorithm: the saved state, and the back-edges until the next save
+        int savedPc = -1;
+        long savedStep = 0;
+        int savedDepth = 0;
+        int[] savedRegisters = new int[Registers.NUMBER_OF_REGISTERS];
+        int[] savedReturns = new int[0];
+        long power = 1;
+        long lambda = 0;
+        long count = 0;
+        int pc = m.pc();
+        try {
+            while (pc < size) {
+                if (count == maxSteps) {
+                    throw new NonTerminationException("Step budget of " + maxSteps + " exhausted at "
+                        + prog.get(pc), pc, count, 0);
+                }
+                Instruction ins = prog.get(pc);
+                byte kind = kinds[pc];
+                if (kind == UNKNOWN) {
+                    kind = !ins.pure() ? IMPURE : ins.changesControlFlow() ? BRANCH : PLAIN;
+                    kinds[pc] = kind;
+                }
+                m.pc(pc + 1);
+                ins.execute(m);
+                count++;
+                int next = m.pc();
+                if (kind == IMPURE) {
+                    savedPc = -1;
+                    power = 1;
+                    lambda = 0;
+                } else if (kind == BRANCH && next <= pc && detectCycles) {
+                    int[] registers = m.registers().registers();
+                    if (next == savedPc && Arrays.equals(registers, savedRegisters)
+                        && sameReturns(m, savedDepth, savedReturns)) {
+                        pc = next;
+                        throw new NonTerminationException("Program never terminates: its state at "
+                            + (next < size ? prog.get(next) : "the end")
+                            + " repeats every " + (count - savedStep) + " steps", next, count, count - savedStep);
+                    }
+                    if (++lambda == power) {
+                        savedPc = next;
+                        savedStep = count;
+                        System.arraycopy(registers, 0, savedRegisters, 0, savedRegisters.length);
+                        savedDepth = m.callDepth();
+                        if (savedReturns.length < savedDepth) {
+                            savedReturns = new int[Machine.MAX_CALL_DEPTH];
+                        }
+                        for (int i = 0; i < savedDepth; i++) {
+                            savedReturns[i] = m.returnAddress(i);
+                        }
+                        power <<= 1;
+                        lambda = 0;
+                    }
+                }
+                pc = next;
+            }
+            m.join();
+        } catch (RuntimeException e) {
+            m.pc(pc);
+            throw e;
+        } finally {
+            m.steps(count);
+        }
+    }
+
+    private static boolean sameReturns(Machine m, int depth, int[] returns) {
+        if (m.callDepth() != depth) {
+            return false;
+        }
+        for (int i = 0; i < depth; i++) {
+            if (m.returnAddress(i) != returns[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,48 @@
+package sml.engine;
+
+/**
+ * Thrown when a {@link LoopDetector} stops a program, either because the program was
+ * proven never to terminate or because it used up its step budget.
+ *
+ * @author KLM and xxx
+ */
+public final class NonTerminationException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final int pc;
+    private final long steps;
+    private final long period;
+
+    /**
+     * @param message the diagnostic
+     * @param pc      the instruction the machine was stopped at
+     * @param steps   the instructions executed before it was stopped
+     * @param period  the steps after which the machine's state repeats, or 0 if the budget ran out
+     */
+    public NonTerminationException(String message, int pc, long steps, long period) {
+        super(message);
+        this.pc = pc;
+        this.steps = steps;
+        this.period = period;
+    }
+
+    /** Returns the instruction the machine was stopped at */
+    public int pc() {
+        return pc;
+    }
+
+    /** Returns the instructions executed before the machine was stopped */
+    public long steps() {
+        return steps;
+    }
+
+    /** Returns the steps after which the machine's state repeats, or 0 if the step budget ran out */
+    public long period() {
+        return period;
+    }
+
+    /** Returns true if the program was proven never to terminate, false if it ran out of steps */
+    public boolean proven() {
+        return period > 0;
+    }
+}
@@ -0,0 +1,212 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.LazyProgram;
+import sml.ProgramHash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * How often each instruction of a program was executed and each branch taken, over
+ * one or more runs, recorded by a {@link Profiler}.
+ * <p>
+ * A profile belongs to the program with its {@link ProgramHash content hash}, so one
+ * saved for an earlier version of a program is recognised as stale and not used (see
+ * {@link #matches(List)}). A profile given to the {@link EngineSelector auto} or
+ * {@link TieredEngine tiered} engine guides its choice of engine or the loops it
+ * compiles before the program starts.
+ * <p>
+ * The file format is a header (magic, version, program hash, number of instructions,
+ * runs) followed by two little-endian {@code long}s per instruction: times executed and
+ * times it passed control anywhere other than the next instruction. Counts are updated
+ * without synchronization, so concurrent runs may lose a few.
+ *
+ * @author KLM and xxx
+ */
+public final class Profile {
+    private static final int MAGIC = 0x534d4c50; // "SMLP"
+    private static final int VERSION = 1;
+    private static final int HASH_LENGTH = 64;
+    /** magic, version, program hash, size, runs */
+    private static final int HEADER = 4 + 4 + HASH_LENGTH + 4 + 8;
+
+    private final String programHash;
+    private final long[] executions;
+    private final long[] taken;
+    private long runs;
+
+    /**
+     * An empty profile.
+     *
+     * @param programHash the {@link ProgramHash#of(List) hash} of the program profiled
+     * @param size        the number of instructions in the program
+     */
+    public Profile(String programHash, int size) {
+        if (programHash.length() != HASH_LENGTH) {
+            throw new IllegalArgumentException("Not a program hash: " + programHash);
+        }
+        this.programHash = programHash;
+        this.executions = new long[size];
+        this.taken = new long[size];
+    }
+
+    /** Returns an empty profile for a program */
+    public static Profile of(List<Instruction> prog) {
+        return new Profile(ProgramHash.of(prog), prog.size());
+    }
+
+    /** Returns the hash of the program profiled */
+    public String programHash() {
+        return programHash;
+    }
+
+    /** Returns the number of instructions in the program profiled */
+    public int size() {
+        return executions.length;
+    }
+
+    /** Returns the number of runs profiled */
+    public long runs() {
+        return runs;
+    }
+
+    /** Returns the times the instruction at pc was executed */
+    public long executions(int pc) {
+        return executions[pc];
+    }
+
+    /** Returns the times the instruction at pc jumped (went anywhere other than pc + 1) */
+    public long taken(int pc) {
+        return taken[pc];
+    }
+
+    /** Returns the instructions executed, over all runs */
+    public long steps() {
+        long steps = 0;
+        for (long e : executions) {
+            steps += e;
+        }
+        return steps;
+    }
+
+    /** Returns the instructions executed per run, or 0 if no run has been profiled */
+    public long stepsPerRun() {
+        return runs == 0 ? 0 : steps() / runs;
+    }
+
+    /** Returns true if this is a profile of the program: it is not stale */
+    public boolean matches(List<Instruction> prog) {
+        return prog.size() == size() && ProgramHash.of(prog).equals(programHash);
+    }
+
+    /**
+     * Returns true if an engine preparing the program should be guided by this profile:
+     * it matches the program, which is not lazily translated (hashing it would translate
+     * every instruction).
+     */
+    boolean guides(List<Instruction> prog) {
+        return !(prog instanceof LazyProgram) && matches(prog);
+    }
+
+    /**
+     * Add another profile of the same program to this one.
+     *
+     * @throws IllegalArgumentException if the other profile is of a different program
+     */
+    public void merge(Profile other) {
+        if (!other.programHash.equals(programHash) || other.size() != size()) {
+            throw new IllegalArgumentException("Profiles of different programs: " + programHash
+                + " and " + other.programHash);
+        }
+        for (int pc = 0; pc < size(); pc++) {
+            executions[pc] += other.executions[pc];
+            taken[pc] += other.taken[pc];
+        }
+        runs += other.runs;
+    }
+
+    void executed(int pc) {
+        executions[pc]++;
+    }
+
+    void jumped(int pc) {
+        taken[pc]++;
+    }
+
+    void ran() {
+        runs++;
+    }
+
+    /**
+     * Write the profile to a file, replacing it.
+     *
+     * @param file the file
+     * @throws IOException if it cannot be written
+     */
+    public void save(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + 16 * size()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).put(programHash.getBytes(StandardCharsets.US_ASCII))
+            .putInt(size()).putLong(runs);
+        for (int pc = 0; pc < size(); pc++) {
+            buffer.putLong(executions[pc]).putLong(taken[pc]);
+        }
+        buffer.flip();
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Read a profile written by {@link #save(Path)}.
+     *
+     * @param file the file
+     * @return the profile, which may be stale: check it {@link #matches(List)} the program
+     * @throws IOException if it cannot be read or is not a profile
+     */
+    public static Profile load(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER || length > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a profile");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading
+            }
+            buffer.flip();
+            if (buffer.remaining() < HEADER || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(file + " is not a profile");
+            }
+            byte[] hash = new byte[HASH_LENGTH];
+            buffer.get(hash);
+            int size = buffer.getInt();
+            if (size < 0 || buffer.remaining() != 8 + 16L * size) {
+                throw new IOException(file + " is truncated");
+            }
+            var profile = new Profile(new String(hash, StandardCharsets.US_ASCII), size);
+            profile.runs = buffer.getLong();
+            for (int pc = 0; pc < size; pc++) {
+                profile.executions[pc] = buffer.getLong();
+                profile.taken[pc] = buffer.getLong();
+            }
+            return profile;
+        }
+    }
+
+    /** Returns a summary: the program, runs and steps per run */
+    @Override
+    public String toString() {
+        return "profile of " + programHash.substring(0, 12) + ": " + runs + " runs, "
+            + stepsPerRun() + " steps per run";
+    }
+}
@@ -0,0 +1,91 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.metrics.RuntimeMetrics;
+
+import java.util.List;
+
+/**
+ * Executes a program like {@link Machine#run()} while counting, in a {@link Profile},
+ * the times each instruction is executed and each branch taken.
+ *
+ * @author KLM and xxx
+ */
+public final class Profiler {
+    private final Profile profile;
+
+    /**
+     * @param profile where to count; it should be a profile of the programs run
+     */
+    public Profiler(Profile profile) {
+        this.profile = profile;
+    }
+
+    /** Returns the profile counted into */
+    public Profile profile() {
+        return profile;
+    }
+
+    /**
+     * Execute the machine's program from zeroed registers.
+     *
+     * @param m the machine, with its program loaded
+     */
+    public void execute(Machine m) {
+        execute(m, new Registers());
+    }
+
+    /**
+     * Execute the machine's program from a copy of the given registers.
+     *
+     * @param m       the machine, with its program loaded
+     * @param initial the initial registers (not modified)
+     */
+    public void execute(Machine m, Registers initial) {
+        m.pc(0);
+        m.registers(initial.copy());
+        run(m);
+    }
+
+    /**
+     * Continue executing the machine's program from its current pc and registers,
+     * profiling it as one more run.
+     *
+     * @param m the machine, with its program loaded
+     * @throws IllegalArgumentException if the profile is of a program of another size
+     */
+    public void run(Machine m) {
+        if (m.prog().size() != profile.size()) {
+            throw new IllegalArgumentException("The profile is of a program of " + profile.size()
+                + " instructions, not " + m.prog().size());
+        }
+        RuntimeMetrics.measure(() -> count(m), m::steps);
+    }
+
+    private void count(Machine m) {
+        List<Instruction> prog = m.prog();
+        int size = prog.size();
+        long count = 0;
+        int pc = m.pc();
+        profile.ran();
+        try {
+            while (pc < size) {
+                Instruction ins = prog.get(pc);
+                m.pc(pc + 1);
+                profile.executed(pc);
+                count++;
+                ins.execute(m);
+                int next = m.pc();
+                if (next != pc + 1) {
+                    profile.jumped(pc);
+                }
+                pc = next;
+            }
+            m.join();
+        } finally {
+            m.steps(count);
+        }
+    }
+}
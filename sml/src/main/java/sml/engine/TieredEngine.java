@@ -0,0 +1,211 @@
+package sml.engine;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.instructions.BnzInstruction;
+import sml.metrics.Counter;
+import sml.metrics.MetricsRegistry;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * The {@code tiered} engine: starts every program interpreted, one
+ * {@link Instruction#execute(Machine)} call per step as on the reference engine, and
+ * compiles its hot loops as they are found.
+ * <p>
+ * Each backward {@code bnz} taken is counted. When a {@code bnz} has been taken
+ * {@link #threshold()} times, the region from its target to itself (the loop) is
+ * verified and decoded as by {@link Verifier} and, from then on, whenever the
+ * interpreter reaches the loop's first instruction it runs the region as a
+ * {@link VerifiedProgram} instead, until the pc leaves the region (an inner loop
+ * compiled first is run as part of its outer loop once that is compiled too). The first switch
+ * happens mid-run, on the back-edge that crossed the threshold, with the machine's
+ * registers as they are (on-stack replacement); leaving the region always falls back
+ * to the interpreter. A loop that does not verify is left interpreted.
+ * <p>
+ * If the engine is given a {@link Profile} of the program, every loop whose {@code bnz}
+ * it records taken at least {@link #threshold()} times is compiled when the program is
+ * prepared, so the program runs compiled from its first instruction. A profile of any
+ * other program is ignored.
+ * <p>
+ * Every tier-up attempt is reported as a {@link TierUp} to the listener and counted in
+ * the {@code sml_tier_ups_total} metric. The threshold is the {@code sml.tier.threshold}
+ * system property (default {@value #DEFAULT_THRESHOLD}); setting {@code sml.tier.log}
+ * prints each tier-up to standard error.
+ *
+ * @author KLM and xxx
+ */
+public final class TieredEngine implements ExecutionEngine {
+    public static final String NAME = "tiered";
+    public static final int DEFAULT_THRESHOLD = 1_000;
+
+    private static final Counter TIER_UPS = MetricsRegistry.global().counter("sml_tier_ups_total",
+        "Loops compiled by the tiered engine");
+
+    /**
+     * An attempt to compile a loop.
+     *
+     * @param from      the loop's first instruction (the bnz target)
+     * @param to        the instruction after the loop's bnz
+     * @param backEdges times the bnz had been taken
+     * @param compiled  true if the loop now runs compiled
+     * @param reason    why the loop could not be compiled, or empty
+     */
+    public record TierUp(int from, int to, long backEdges, boolean compiled, String reason) {
+        @Override
+        public String toString() {
+            return "loop " + from + ".." + (to - 1) + " after " + backEdges + " back-edges: "
+                + (compiled ? "compiled" : "left interpreted, " + reason);
+        }
+    }
+
+    private final int threshold;
+    private final Consumer<TierUp> listener;
+    private final Profile profile;
+
+    /** An engine configured from the system properties */
+    public TieredEngine() {
+        this((Profile) null);
+    }
+
+    /**
+     * An engine configured from the system properties and guided by a profile.
+     *
+     * @param profile the profile of the program to be run, or null
+     */
+    public TieredEngine(Profile profile) {
+        this(Integer.getInteger("sml.tier.threshold", DEFAULT_THRESHOLD),
+            Boolean.getBoolean("sml.tier.log") ? t -> System.err.println("Tier-up: " + t) : t -> {
+            }, profile);
+    }
+
+    /**
+     * @param threshold back-edges taken before a loop is compiled
+     * @param listener  told of every tier-up attempt, on the thread running the program
+     */
+    public TieredEngine(int threshold, Consumer<TierUp> listener) {
+        this(threshold, listener, null);
+    }
+
+    /**
+     * @param threshold back-edges taken before a loop is compiled
+     * @param listener  told of every tier-up attempt, on the thread running the program
+     * @param profile   the profile of the program to be run, or null
+     */
+    public TieredEngine(int threshold, Consumer<TierUp> listener, Profile profile) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+        this.threshold = threshold;
+        this.listener = Objects.requireNonNull(listener);
+        this.profile = profile;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    /** Returns the number of back-edges taken before a loop is compiled */
+    public int threshold() {
+        return threshold;
+    }
+
+    /** Returns the profile guiding this engine, or null */
+    public Profile profile() {
+        return profile;
+    }
+
+    @Override
+    public Executable prepare(Labels labels, List<Instruction> prog) {
+        return new Tiered(labels, prog)::run;
+    }
+
+    /** A program being run by this engine: its back-edge counters and compiled loops. */
+    private final class Tiered {
+        private final Labels labels;
+        private final List<Instruction> prog;
+        /** Whether the instruction at each pc is a bnz, the only instruction whose backward jumps are counted */
+        private final boolean[] bnz;
+        /** Back-edges taken, by the pc of the bnz; -1 once the loop has been tiered up */
+        private final int[] counts;
+        /** The compiled loop starting at each pc, or null */
+        private final Region[] compiled;
+
+        Tiered(Labels labels, List<Instruction> prog) {
+            this.labels = labels;
+            this.prog = prog;
+            this.bnz = new boolean[prog.size()];
+            for (int pc = 0; pc < prog.size(); pc++) {
+                bnz[pc] = prog.get(pc) instanceof BnzInstruction;
+            }
+            this.counts = new int[prog.size()];
+            this.compiled = new Region[prog.size() + 1];
+            if (profile != null && profile.guides(prog)) {
+                // inner loops first, as if they had tiered up as the program ran
+                for (int pc = 0; pc < prog.size(); pc++) {
+                    if (profile.taken(pc) >= threshold && prog.get(pc) instanceof BnzInstruction bnz) {
+                        int target = labels.indexOf(bnz.targetLabel());
+                        if (target >= 0 && target <= pc) {
+                            tierUp(target, pc + 1, profile.taken(pc));
+                            counts[pc] = -1;
+                        }
+                    }
+                }
+            }
+        }
+
+        void run(Machine m) {
+            long[] steps = new long[1];
+            try {
+                m.pc(interpret(m, m.pc(), steps));
+                m.join();
+            } finally {
+                m.steps(steps[0]);
+            }
+        }
+
+        private int interpret(Machine m, int pc, long[] steps) {
+            int size = prog.size();
+            while (pc < size) {
+                Region region = compiled[pc];
+                if (region != null) {
+                    pc = region.program().run(m, pc, region.from(), region.to(), steps);
+                    continue;
+                }
+                Instruction ins = prog.get(pc);
+                m.pc(pc + 1);
+                steps[0]++;
+                ins.execute(m);
+                int next = m.pc();
+                if (bnz[pc] && next <= pc && counts[pc] >= 0 && ++counts[pc] >= threshold) {
+                    tierUp(next, pc + 1, counts[pc]);
+                    counts[pc] = -1;
+                }
+                pc = next;
+            }
+            return pc;
+        }
+
+        private void tierUp(int from, int to, long backEdges) {
+            Verifier.Result result = Verifier.verifyRegion(labels, prog, from, to);
+            if (result.verified()) {
+                // of two loops with the same first instruction, keep the outer one
+                if (compiled[from] == null || compiled[from].to() < to) {
+                    compiled[from] = new Region(from, to, result.program());
+                }
+                TIER_UPS.increment();
+                listener.accept(new TierUp(from, to, backEdges, true, ""));
+            } else {
+                listener.accept(new TierUp(from, to, backEdges, false, result.problems().get(0).toString()));
+            }
+        }
+    }
+
+    private record Region(int from, int to, VerifiedProgram program) {
+    }
+}
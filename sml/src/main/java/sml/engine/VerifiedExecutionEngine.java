@@ -0,0 +1,28 @@
+package sml.engine;
+
+import sml.ExecutionEngine;
+import sml.Instruction;
+import sml.Labels;
+
+import java.util.List;
+
+/**
+ * The {@code verified} engine: {@link VerifiedProgram}, the fastest engine, for the
+ * programs that pass the {@link Verifier}. Preparing a program verifies and decodes it.
+ *
+ * @author KLM and xxx
+ */
+public final class VerifiedExecutionEngine implements ExecutionEngine {
+    public static final String NAME = "verified";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Executable prepare(Labels labels, List<Instruction> prog) {
+        Verifier.Result result = Verifier.verify(labels, prog);
+        return result.verified() ? result.program()::resume : null;
+    }
+}
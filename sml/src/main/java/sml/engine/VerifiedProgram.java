@@ -0,0 +1,169 @@
+package sml.engine;
+
+import sml.Input;
+import sml.Machine;
+import sml.Memory;
+import sml.Registers;
+import sml.metrics.RuntimeMetrics;
+
+import static sml.engine.Code.ADD;
+import static sml.engine.Code.BNZ;
+import static sml.engine.Code.CALL;
+import static sml.engine.Code.DIV;
+import static sml.engine.Code.IN;
+import static sml.engine.Code.LIN;
+import static sml.engine.Code.LOAD;
+import static sml.engine.Code.LOADX;
+import static sml.engine.Code.MUL;
+import static sml.engine.Code.OUT;
+import static sml.engine.Code.RET;
+import static sml.engine.Code.STORE;
+import static sml.engine.Code.STOREX;
+import static sml.engine.Code.SUB;
+import static sml.engine.Code.VADD;
+import static sml.engine.Code.VDOT;
+import static sml.engine.Code.VMUL;
+import static sml.engine.Code.VSUB;
+import static sml.engine.Code.VSUM;
+
+/**
+ * A program that has passed the {@link Verifier}, executed straight from its decoded
+ * form on the machine's register array.
+ * <p>
+ * Because every register operand is known to be in range and every branch target is
+ * resolved, the loop does none of the work {@link Machine#execute()} repeats for each
+ * instruction: no label lookup or missing-label test per {@code bnz}, no virtual call
+ * or program counter update through the machine per instruction. Only
+ * {@code div} and memory access can still fail at run time, with the same exceptions.
+ * Constant {@code load} and {@code store} addresses are checked once, against the
+ * machine's memory size, each time execution enters the program; when they are all in
+ * range those instructions skip the per-access bounds check.
+ *
+ * @author KLM and xxx
+ */
+public final class VerifiedProgram {
+    private final Code code;
+
+    VerifiedProgram(Code code) {
+        this.code = code;
+    }
+
+    /** Returns the number of instructions */
+    public int size() {
+        return code.size();
+    }
+
+    /**
+     * Execute from zeroed registers.
+     *
+     * @param m the machine the program was verified for
+     */
+    public void execute(Machine m) {
+        execute(m, new Registers());
+    }
+
+    /**
+     * Execute from a copy of the given registers.
+     *
+     * @param m       the machine the program was verified for
+     * @param initial the initial registers (not modified)
+     */
+    public void execute(Machine m, Registers initial) {
+        m.registers(initial.copy());
+        m.pc(0);
+        run(m);
+    }
+
+    /**
+     * Continue executing from the machine's current pc and registers.
+     *
+     * @param m the machine the program was verified for
+     */
+    public void run(Machine m) {
+        RuntimeMetrics.measure(() -> resume(m), m::steps);
+    }
+
+    /** {@link #run(Machine)}, unrecorded: for the verified engine, whose runs {@code Machine.execute} records */
+    void resume(Machine m) {
+        long[] steps = new long[1];
+        try {
+            m.pc(run(m, m.pc(), 0, code.size(), steps));
+        } finally {
+            m.steps(steps[0]);
+        }
+    }
+
+    /**
+     * Execute from pc while it stays within [from, to).
+     *
+     * @param m     the machine, whose registers, memory and output are used (but not pc)
+     * @param pc    where to start
+     * @param from  first pc of the region
+     * @param to    end of the region (exclusive)
+     * @param steps steps[0] is increased by the number of instructions executed
+     * @return the pc that left the region
+     */
+    int run(Machine m, int pc, int from, int to, long[] steps) {
+        Registers registers = m.registers();
+        int[] r = registers.registers();
+        var out = m.out();
+        Memory memory = m.memory();
+        Input input = m.input();
+        boolean inBounds = code.maxAddress < memory.size();
+        int[] op = code.op, a = code.a, b = code.b, c = code.c;
+        long n = 0;
+        try {
+            while (pc >= from && pc < to) {
+                int i = pc++;
+                n++;
+                switch (op[i]) {
+                    case LIN -> r[a[i]] = b[i];
+                    case ADD -> r[a[i]] = r[b[i]] + r[c[i]];
+                    case SUB -> r[a[i]] = r[b[i]] - r[c[i]];
+                    case MUL -> r[a[i]] = r[b[i]] * r[c[i]];
+                    case DIV -> r[a[i]] = r[b[i]] / r[c[i]];
+                    case OUT -> {
+                        out.accept(r[a[i]]);
+                        RuntimeMetrics.OUTPUT_VALUES.increment();
+                    }
+                    case BNZ -> {
+                        if (r[a[i]] != 0) {
+                            pc = b[i];
+                        }
+                    }
+                    case VADD -> registers.add(code.range[i], b[i], c[i]);
+                    case VSUB -> registers.sub(code.range[i], b[i], c[i]);
+                    case VMUL -> registers.mul(code.range[i], b[i], c[i]);
+                    case VSUM -> r[b[i]] = registers.sum(code.range[i]);
+                    case VDOT -> r[b[i]] = registers.dot(code.range[i], c[i]);
+                    case LOAD -> r[a[i]] = inBounds ? memory.loadUnchecked(b[i]) : memory.load(b[i]);
+                    case STORE -> {
+                        if (inBounds) {
+                            memory.storeUnchecked(b[i], r[a[i]]);
+                        } else {
+                            memory.store(b[i], r[a[i]]);
+                        }
+                    }
+                    case LOADX -> r[a[i]] = memory.load(r[b[i]] + c[i]);
+                    case STOREX -> memory.store(r[b[i]] + c[i], r[a[i]]);
+                    case CALL -> {
+                        m.pushReturn(pc);
+                        pc = a[i];
+                    }
+                    case RET -> pc = m.popReturn();
+                    case IN -> {
+                        if (input.hasNext()) {
+                            r[a[i]] = input.next();
+                        } else {
+                            pc = code.size();
+                        }
+                    }
+                    default -> throw new IllegalStateException("Bad opcode " + op[i]);
+                }
+            }
+        } finally {
+            steps[0] += n;
+        }
+        return pc;
+    }
+}
@@ -0,0 +1,214 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Registers;
+import sml.instructions.AddInstruction;
+import sml.instructions.BnzInstruction;
+import sml.instructions.CallInstruction;
+import sml.instructions.DivInstruction;
+import sml.instructions.LinInstruction;
+import sml.instructions.LoadInstruction;
+import sml.instructions.MulInstruction;
+import sml.instructions.StoreInstruction;
+import sml.instructions.SubInstruction;
+import sml.instructions.VaddInstruction;
+import sml.instructions.VdotInstruction;
+import sml.instructions.VmulInstruction;
+import sml.instructions.VsubInstruction;
+import sml.instructions.VsumInstruction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks a translated program before it runs, so that a {@link VerifiedProgram}
+ * can execute it without the checks the instructions make for themselves.
+ * <p>
+ * A program verifies when
+ * <ul>
+ *     <li>every register operand is between 0 and {@link Registers#NUMBER_OF_REGISTERS} - 1
+ *     (an operand the translator could not parse is read as {@link Integer#MAX_VALUE});</li>
+ *     <li>every {@code bnz} and {@code call} jumps to a label defined in the program;</li>
+ *     <li>no {@code div} divides by a register that is provably always zero;</li>
+ *     <li>no {@code load} or {@code store} has a negative address;</li>
+ *     <li>every instruction is one the verified engine can run.</li>
+ * </ul>
+ * A register is provably always zero when every instruction that writes it can only
+ * write zero given the other such registers, starting from zeroed registers.
+ *
+ * @author KLM and xxx
+ */
+public final class Verifier {
+
+    /**
+     * Something that stops a program from verifying.
+     *
+     * @param pc      the instruction at fault
+     * @param message what is wrong
+     */
+    public record Problem(int pc, String message) {
+        @Override
+        public String toString() {
+            return "instruction " + pc + ": " + message;
+        }
+    }
+
+    /**
+     * The outcome of verification.
+     *
+     * @param problems what is wrong, empty if the program verified
+     * @param program  the program ready for unchecked execution, or null if there are problems
+     */
+    public record Result(List<Problem> problems, VerifiedProgram program) {
+        /** Returns true if the program verified */
+        public boolean verified() {
+            return program != null;
+        }
+    }
+
+    /**
+     * Verify a program.
+     *
+     * @param labels the labels of the program
+     * @param prog   the program
+     * @return the problems found, and the verified program if there were none
+     */
+    public static Result verify(Labels labels, List<Instruction> prog) {
+        var problems = new ArrayList<Problem>();
+        for (int pc = 0; pc < prog.size(); pc++) {
+            check(labels, pc, prog.get(pc), problems);
+        }
+        if (problems.isEmpty()) {
+            boolean[] zero = alwaysZero(prog);
+            for (int pc = 0; pc < prog.size(); pc++) {
+                if (prog.get(pc) instanceof DivInstruction div && zero[div.register2()]) {
+                    problems.add(new Problem(pc, "division by register " + div.register2() + ", which is always zero"));
+                }
+            }
+        }
+        if (!problems.isEmpty()) {
+            return new Result(Collections.unmodifiableList(problems), null);
+        }
+        return new Result(List.of(), new VerifiedProgram(Code.decode(labels, prog)));
+    }
+
+    /**
+     * Verify only a region of a program, for running with
+     * {@link VerifiedProgram#run(Machine, int, int, int, long[])} while the pc stays in it.
+     * The instructions in the region are checked as by {@link #verify(Labels, List)},
+     * except that division by a register that is always zero is not looked for (it fails
+     * at run time the same way on either path).
+     *
+     * @param labels the labels of the program
+     * @param prog   the program
+     * @param from   the first pc of the region
+     * @param to     the end of the region (exclusive)
+     * @return the problems found, and the program with the region decoded if there were none
+     */
+    static Result verifyRegion(Labels labels, List<Instruction> prog, int from, int to) {
+        var problems = new ArrayList<Problem>();
+        for (int pc = from; pc < to; pc++) {
+            check(labels, pc, prog.get(pc), problems);
+        }
+        if (!problems.isEmpty()) {
+            return new Result(Collections.unmodifiableList(problems), null);
+        }
+        return new Result(List.of(), new VerifiedProgram(Code.decode(labels, prog, from, to)));
+    }
+
+    private static void check(Labels labels, int pc, Instruction ins, List<Problem> problems) {
+        if (!Code.supports(ins)) {
+            problems.add(new Problem(pc, "not supported by the verified engine: " + ins.getOpcode()));
+            return;
+        }
+        checkRegisters(pc, ins.sources(), problems);
+        checkRegisters(pc, ins.destinations(), problems);
+        if (ins instanceof BnzInstruction bnz && labels.indexOf(bnz.targetLabel()) < 0) {
+            problems.add(new Problem(pc, "bnz to undefined label " + bnz.targetLabel()));
+        }
+        if (ins instanceof CallInstruction call && labels.indexOf(call.targetLabel()) < 0) {
+            problems.add(new Problem(pc, "call to undefined label " + call.targetLabel()));
+        }
+        int address = ins instanceof LoadInstruction load ? load.address()
+            : ins instanceof StoreInstruction store ? store.address() : 0;
+        if (address < 0) {
+            problems.add(new Problem(pc, "negative address " + address));
+        }
+    }
+
+    /**
+     * Execute the machine's program on the unchecked path if it verifies,
+     * otherwise with {@link Machine#execute()}.
+     *
+     * @param m the machine, with its program loaded
+     * @return the verification result
+     */
+    public static Result execute(Machine m) {
+        Result result = verify(m.labels(), m.prog());
+        if (result.verified()) {
+            result.program().execute(m);
+        } else {
+            m.execute();
+        }
+        return result;
+    }
+
+    private static void checkRegisters(int pc, int[] registers, List<Problem> problems) {
+        for (int r : registers) {
+            if (r < 0 || r >= Registers.NUMBER_OF_REGISTERS) {
+                problems.add(new Problem(pc, "register " + r + " out of range"));
+                return;
+            }
+        }
+    }
+
+    /** Greatest fixed point of "every write to r writes zero", for registers starting at zero. */
+    private static boolean[] alwaysZero(List<Instruction> prog) {
+        var zero = new boolean[Registers.NUMBER_OF_REGISTERS];
+        Arrays.fill(zero, true);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Instruction ins : prog) {
+                for (int r : ins.destinations()) {
+                    if (zero[r] && !writesZero(ins, zero)) {
+                        zero[r] = false;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return zero;
+    }
+
+    private static boolean writesZero(Instruction ins, boolean[] zero) {
+        if (ins instanceof LinInstruction lin) {
+            return lin.value() == 0;
+        } else if (ins instanceof AddInstruction add) {
+            return zero[add.register1()] && zero[add.register2()];
+        } else if (ins instanceof SubInstruction sub) {
+            return sub.register1() == sub.register2() || zero[sub.register1()] && zero[sub.register2()];
+        } else if (ins instanceof MulInstruction mul) {
+            return zero[mul.register1()] || zero[mul.register2()];
+        } else if (ins instanceof DivInstruction div) {
+            return zero[div.register1()];
+        } else if (ins instanceof VaddInstruction || ins instanceof VsubInstruction || ins instanceof VmulInstruction
+            || ins instanceof VsumInstruction || ins instanceof VdotInstruction) {
+            // element-wise: zero if every source is zero (conservative for vmul and vdot)
+            for (int r : ins.sources()) {
+                if (!zero[r]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private Verifier() {
+    } // Utility classes should not have a public or default constructor
+}
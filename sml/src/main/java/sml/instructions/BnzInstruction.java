@@ -16,6 +16,36 @@ public class BnzInstruction extends Instruction {
         this.targetLabel = targetLabel;
     }
 
+    /** Returns the register tested */
+    public int register() {
+        return register;
+    }
+
+    /** Returns the label jumped to */
+    public String targetLabel() {
+        return targetLabel;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[] {register};
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[0];
+    }
+
+    @Override
+    public boolean changesControlFlow() {
+        return true;
+    }
+
+    @Override
+    public boolean pure() {
+        return true;
+    }
+
     @Override
     public void execute(Machine m) {
         int value = m.registers().register(register);
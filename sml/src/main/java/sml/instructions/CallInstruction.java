@@ -0,0 +1,57 @@
+package sml.instructions;
+
+import sml.Instruction;
+import sml.Machine;
+
+/**
+ * call L  (push the address of the next instruction on the machine's return stack and jump to label L)
+ */
+public class CallInstruction extends Instruction {
+    private final String targetLabel;
+
+    public CallInstruction(String label, String targetLabel) {
+        super(label, "call");
+        this.targetLabel = targetLabel;
+    }
+
+    /** Returns the label of the subroutine called */
+    public String targetLabel() {
+        return targetLabel;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[0];
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[0];
+    }
+
+    @Override
+    public boolean changesControlFlow() {
+        return true;
+    }
+
+    @Override
+    public boolean pure() {
+        return true;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        int targetIndex = m.labels().indexOf(targetLabel);
+        if (targetIndex == -1) {
+            throw new IllegalStateException("call: no instruction has label " + targetLabel);
+        }
+        m.pushReturn(m.pc());
+        m.pc(targetIndex);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " call the subroutine at label " + targetLabel;
+    }
+}
@@ -18,6 +18,36 @@ public class DivInstruction extends Instruction {
         this.register2 = register2;
     }
 
+    /** Returns the destination register */
+    public int result() {
+        return result;
+    }
+
+    /** Returns the dividend register */
+    public int register1() {
+        return register1;
+    }
+
+    /** Returns the divisor register */
+    public int register2() {
+        return register2;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[] {register1, register2};
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[] {result};
+    }
+
+    @Override
+    public boolean pure() {
+        return true;
+    }
+
     @Override
     public void execute(Machine m) {
         int value1 = m.registers().register(register1);
@@ -0,0 +1,60 @@
+package sml.instructions;
+
+import sml.Input;
+import sml.Instruction;
+import sml.Machine;
+
+/**
+ * in r  (store in register r the next number read from the machine's input; at the
+ * end of the input, the machine stops)
+ */
+public class InInstruction extends Instruction {
+    private final int register;
+
+    public InInstruction(String label, int register) {
+        super(label, "in");
+        this.register = register;
+    }
+
+    /** Returns the destination register */
+    public int register() {
+        return register;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[0];
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[] {register};
+    }
+
+    @Override
+    public boolean changesControlFlow() {
+        return true;
+    }
+
+    @Override
+    public boolean pure() {
+        return false;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        Input input = m.input();
+        if (input.hasNext()) {
+            m.registers().register(register, input.next());
+        } else {
+            m.pc(m.prog().size());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " store in register " + register
+            + " the next number read from the input";
+    }
+}
@@ -0,0 +1,52 @@
+package sml.instructions;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterRange;
+import sml.Registers;
+
+/**
+ * join  (wait for the children spawned since the last join and merge their registers,
+ * see {@link Machine#join()}; in a child with no children to wait for, end the child)
+ */
+public class JoinInstruction extends Instruction {
+    /** Any register may be merged from a child */
+    private static final int[] ALL = new RegisterRange(0, Registers.NUMBER_OF_REGISTERS).indices();
+
+    public JoinInstruction(String label) {
+        super(label, "join");
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[0];
+    }
+
+    @Override
+    public int[] destinations() {
+        return ALL.clone();
+    }
+
+    @Override
+    public boolean changesControlFlow() {
+        return true;
+    }
+
+    @Override
+    public boolean pure() {
+        return false;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        if (!m.join() && m.child()) {
+            m.pc(m.prog().size());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " wait for spawned children and merge their registers";
+    }
+}
@@ -16,6 +16,31 @@ public class LinInstruction extends Instruction {
         this.value = value;
     }
 
+    /** Returns the destination register */
+    public int register() {
+        return register;
+    }
+
+    /** Returns the constant stored */
+    public int value() {
+        return value;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[0];
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[] {register};
+    }
+
+    @Override
+    public boolean pure() {
+        return true;
+    }
+
     @Override
     public void execute(Machine m) {
         m.registers().register(register, value);
@@ -0,0 +1,55 @@
+package sml.instructions;
+
+import sml.Instruction;
+import sml.Machine;
+
+/**
+ * load r a  (store in register r the word at memory address a)
+ */
+public class LoadInstruction extends Instruction {
+    private final int register;
+    private final int address;
+
+    public LoadInstruction(String label, int register, int address) {
+        super(label, "load");
+        this.register = register;
+        this.address = address;
+    }
+
+    /** Returns the destination register */
+    public int register() {
+        return register;
+    }
+
+    /** Returns the memory address read */
+    public int address() {
+        return address;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[0];
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[] {register};
+    }
+
+    @Override
+    public boolean pure() {
+        return false;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        m.registers().register(register, m.memory().load(address));
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " store in register " + register
+            + " the word at address " + address;
+    }
+}
@@ -0,0 +1,63 @@
+package sml.instructions;
+
+import sml.Instruction;
+import sml.Machine;
+
+/**
+ * loadx r s1 o  (store in register r the word at memory address s1 + o)
+ */
+public class LoadxInstruction extends Instruction {
+    private final int result;
+    private final int base;
+    private final int offset;
+
+    public LoadxInstruction(String label, int result, int base, int offset) {
+        super(label, "loadx");
+        this.result = result;
+        this.base = base;
+        this.offset = offset;
+    }
+
+    /** Returns the destination register */
+    public int result() {
+        return result;
+    }
+
+    /** Returns the register holding the base address */
+    public int base() {
+        return base;
+    }
+
+    /** Returns the constant added to the base address */
+    public int offset() {
+        return offset;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[] {base};
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[] {result};
+    }
+
+    @Override
+    public boolean pure() {
+        return false;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        m.registers().register(result, m.memory().load(m.registers().register(base) + offset));
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " store in register " + result
+            + " the word at address register " + base
+            + " + " + offset;
+    }
+}
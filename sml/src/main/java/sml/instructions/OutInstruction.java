@@ -2,9 +2,10 @@ package sml.instructions;
 
 import sml.Instruction;
 import sml.Machine;
+import sml.metrics.RuntimeMetrics;
 
 /**
- * out s1  (print the contents of register s1 to standard output)
+ * out s1  (print the contents of register s1 to the machine's output, standard output by default)
  */
 public class OutInstruction extends Instruction {
     private final int register;
@@ -14,9 +15,30 @@ public class OutInstruction extends Instruction {
         this.register = register;
     }
 
+    /** Returns the register printed */
+    public int register() {
+        return register;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[] {register};
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[0];
+    }
+
+    @Override
+    public boolean pure() {
+        return true;
+    }
+
     @Override
     public void execute(Machine m) {
-        System.out.println(m.registers().register(register));
+        m.out().accept(m.registers().register(register));
+        RuntimeMetrics.OUTPUT_VALUES.increment();
     }
 
     @Override
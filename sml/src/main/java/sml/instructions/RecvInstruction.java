@@ -0,0 +1,72 @@
+package sml.instructions;
+
+import sml.Channel;
+import sml.Instruction;
+import sml.Machine;
+
+/**
+ * recv r c  (store in register r the next value received on channel c, waiting until
+ * there is one; if the channel is closed and empty, the machine stops)
+ */
+public class RecvInstruction extends Instruction {
+    private final int register;
+    private final int channel;
+
+    public RecvInstruction(String label, int register, int channel) {
+        super(label, "recv");
+        this.register = register;
+        this.channel = channel;
+    }
+
+    /** Returns the destination register */
+    public int register() {
+        return register;
+    }
+
+    /** Returns the channel number */
+    public int channel() {
+        return channel;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[0];
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[] {register};
+    }
+
+    @Override
+    public boolean changesControlFlow() {
+        return true;
+    }
+
+    @Override
+    public boolean pure() {
+        return false;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        Channel[] channels = m.channels();
+        if (channel < 0 || channel >= channels.length) {
+            throw new IllegalStateException("recv: no channel " + channel + " (the machine has "
+                + channels.length + ")");
+        }
+        Channel c = channels[channel];
+        if (c.await()) {
+            m.registers().register(register, c.take());
+        } else {
+            m.pc(m.prog().size());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " store in register " + register
+            + " the next value received on channel " + channel;
+    }
+}
@@ -0,0 +1,45 @@
+package sml.instructions;
+
+import sml.Instruction;
+import sml.Machine;
+
+/**
+ * ret  (jump to the address popped from the machine's return stack)
+ */
+public class RetInstruction extends Instruction {
+
+    public RetInstruction(String label) {
+        super(label, "ret");
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[0];
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[0];
+    }
+
+    @Override
+    public boolean changesControlFlow() {
+        return true;
+    }
+
+    @Override
+    public boolean pure() {
+        return true;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        m.pc(m.popReturn());
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " return from subroutine";
+    }
+}
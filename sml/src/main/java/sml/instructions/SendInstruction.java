@@ -0,0 +1,69 @@
+package sml.instructions;
+
+import sml.Channel;
+import sml.Instruction;
+import sml.Machine;
+
+/**
+ * send c s1  (send the contents of register s1 on channel c, waiting while it is full;
+ * if the channel is closed, the machine stops)
+ */
+public class SendInstruction extends Instruction {
+    private final int channel;
+    private final int register;
+
+    public SendInstruction(String label, int channel, int register) {
+        super(label, "send");
+        this.channel = channel;
+        this.register = register;
+    }
+
+    /** Returns the channel number */
+    public int channel() {
+        return channel;
+    }
+
+    /** Returns the register sent */
+    public int register() {
+        return register;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[] {register};
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[0];
+    }
+
+    @Override
+    public boolean changesControlFlow() {
+        return true;
+    }
+
+    @Override
+    public boolean pure() {
+        return false;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        Channel[] channels = m.channels();
+        if (channel < 0 || channel >= channels.length) {
+            throw new IllegalStateException("send: no channel " + channel + " (the machine has "
+                + channels.length + ")");
+        }
+        if (!channels[channel].send(m.registers().register(register))) {
+            m.pc(m.prog().size());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " send the contents of register " + register
+            + " on channel " + channel;
+    }
+}
@@ -0,0 +1,51 @@
+package sml.instructions;
+
+import sml.Instruction;
+import sml.Machine;
+
+/**
+ * spawn L  (start a child machine at label L with a copy of the registers; see {@link Machine#spawn(int)})
+ */
+public class SpawnInstruction extends Instruction {
+    private final String targetLabel;
+
+    public SpawnInstruction(String label, String targetLabel) {
+        super(label, "spawn");
+        this.targetLabel = targetLabel;
+    }
+
+    /** Returns the label the child starts at */
+    public String targetLabel() {
+        return targetLabel;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[0];
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[0];
+    }
+
+    @Override
+    public boolean pure() {
+        return false;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        int targetIndex = m.labels().indexOf(targetLabel);
+        if (targetIndex == -1) {
+            throw new IllegalStateException("spawn: no instruction has label " + targetLabel);
+        }
+        m.spawn(targetIndex);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " start a child machine at label " + targetLabel;
+    }
+}
@@ -0,0 +1,55 @@
+package sml.instructions;
+
+import sml.Instruction;
+import sml.Machine;
+
+/**
+ * store s1 a  (store the contents of register s1 in the word at memory address a)
+ */
+public class StoreInstruction extends Instruction {
+    private final int register;
+    private final int address;
+
+    public StoreInstruction(String label, int register, int address) {
+        super(label, "store");
+        this.register = register;
+        this.address = address;
+    }
+
+    /** Returns the register stored */
+    public int register() {
+        return register;
+    }
+
+    /** Returns the memory address written */
+    public int address() {
+        return address;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[] {register};
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[0];
+    }
+
+    @Override
+    public boolean pure() {
+        return false;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        m.memory().store(address, m.registers().register(register));
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " store the contents of register " + register
+            + " at address " + address;
+    }
+}
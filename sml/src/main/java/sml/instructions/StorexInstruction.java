@@ -0,0 +1,63 @@
+package sml.instructions;
+
+import sml.Instruction;
+import sml.Machine;
+
+/**
+ * storex s1 s2 o  (store the contents of register s1 in the word at memory address s2 + o)
+ */
+public class StorexInstruction extends Instruction {
+    private final int register;
+    private final int base;
+    private final int offset;
+
+    public StorexInstruction(String label, int register, int base, int offset) {
+        super(label, "storex");
+        this.register = register;
+        this.base = base;
+        this.offset = offset;
+    }
+
+    /** Returns the register stored */
+    public int register() {
+        return register;
+    }
+
+    /** Returns the register holding the base address */
+    public int base() {
+        return base;
+    }
+
+    /** Returns the constant added to the base address */
+    public int offset() {
+        return offset;
+    }
+
+    @Override
+    public int[] sources() {
+        return new int[] {register, base};
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[0];
+    }
+
+    @Override
+    public boolean pure() {
+        return false;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        m.memory().store(m.registers().register(base) + offset, m.registers().register(register));
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " store the contents of register " + register
+            + " at address register " + base
+            + " + " + offset;
+    }
+}
@@ -0,0 +1,69 @@
+package sml.instructions;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterRange;
+
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * vadd r0..rn s1 s2  (for each k, register r0+k = register s1+k + register s2+k)
+ */
+public class VaddInstruction extends Instruction {
+    private final RegisterRange result;
+    private final int register1;
+    private final int register2;
+
+    public VaddInstruction(String label, RegisterRange result, int register1, int register2) {
+        super(label, "vadd");
+        this.result = Objects.requireNonNull(result);
+        this.register1 = register1;
+        this.register2 = register2;
+    }
+
+    /** Returns the destination registers */
+    public RegisterRange result() {
+        return result;
+    }
+
+    /** Returns the first register of the first source range */
+    public int register1() {
+        return register1;
+    }
+
+    /** Returns the first register of the second source range */
+    public int register2() {
+        return register2;
+    }
+
+    @Override
+    public int[] sources() {
+        return IntStream.concat(IntStream.of(new RegisterRange(register1, result.length()).indices()),
+            IntStream.of(new RegisterRange(register2, result.length()).indices())).toArray();
+    }
+
+    @Override
+    public int[] destinations() {
+        return result.indices();
+    }
+
+    @Override
+    public boolean pure() {
+        return true;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        m.registers().add(result, register1, register2);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " store in registers " + result
+            + " the element-wise sums of registers from " + register1
+            + " and registers from " + register2;
+    }
+
+}
@@ -0,0 +1,69 @@
+package sml.instructions;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterRange;
+
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * vdot r s0..sn t  (register r = the sum over k of register s0+k times register t+k)
+ */
+public class VdotInstruction extends Instruction {
+    private final int result;
+    private final RegisterRange range1;
+    private final int register2;
+
+    public VdotInstruction(String label, int result, RegisterRange range1, int register2) {
+        super(label, "vdot");
+        this.result = result;
+        this.range1 = Objects.requireNonNull(range1);
+        this.register2 = register2;
+    }
+
+    /** Returns the destination register */
+    public int result() {
+        return result;
+    }
+
+    /** Returns the first source range */
+    public RegisterRange range1() {
+        return range1;
+    }
+
+    /** Returns the first register of the second source range */
+    public int register2() {
+        return register2;
+    }
+
+    @Override
+    public int[] sources() {
+        return IntStream.concat(IntStream.of(range1.indices()),
+            IntStream.of(new RegisterRange(register2, range1.length()).indices())).toArray();
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[] {result};
+    }
+
+    @Override
+    public boolean pure() {
+        return true;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        m.registers().register(result, m.registers().dot(range1, register2));
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " store in register " + result
+            + " the dot product of registers " + range1
+            + " and registers from " + register2;
+    }
+
+}
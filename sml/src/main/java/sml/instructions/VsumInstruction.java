@@ -0,0 +1,59 @@
+package sml.instructions;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterRange;
+
+import java.util.Objects;
+
+/**
+ * vsum r s0..sn  (register r = the sum of registers s0 to sn)
+ */
+public class VsumInstruction extends Instruction {
+    private final int result;
+    private final RegisterRange range;
+
+    public VsumInstruction(String label, int result, RegisterRange range) {
+        super(label, "vsum");
+        this.result = result;
+        this.range = Objects.requireNonNull(range);
+    }
+
+    /** Returns the destination register */
+    public int result() {
+        return result;
+    }
+
+    /** Returns the registers summed */
+    public RegisterRange range() {
+        return range;
+    }
+
+    @Override
+    public int[] sources() {
+        return range.indices();
+    }
+
+    @Override
+    public int[] destinations() {
+        return new int[] {result};
+    }
+
+    @Override
+    public boolean pure() {
+        return true;
+    }
+
+    @Override
+    public void execute(Machine m) {
+        m.registers().register(result, m.registers().sum(range));
+    }
+
+    @Override
+    public String toString() {
+        return super.toString()
+            + " store in register " + result
+            + " the sum of registers " + range;
+    }
+
+}
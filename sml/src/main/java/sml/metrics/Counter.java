@@ -0,0 +1,30 @@
+package sml.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count.
+ * <p>
+ * Backed by a {@link LongAdder}, which stripes updates over several cells so
+ * threads incrementing at the same time do not contend on one cache line.
+ *
+ * @author KLM and xxx
+ */
+public final class Counter {
+    private final LongAdder count = new LongAdder();
+
+    /** Add one */
+    public void increment() {
+        count.increment();
+    }
+
+    /** Add n (which should not be negative) */
+    public void add(long n) {
+        count.add(n);
+    }
+
+    /** Returns the current count */
+    public long get() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,27 @@
+package sml.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A value that goes up and down, such as the number of machines running.
+ *
+ * @author KLM and xxx
+ */
+public final class Gauge {
+    private final LongAdder value = new LongAdder();
+
+    /** Add one */
+    public void increment() {
+        value.increment();
+    }
+
+    /** Subtract one */
+    public void decrement() {
+        value.decrement();
+    }
+
+    /** Returns the current value */
+    public long get() {
+        return value.sum();
+    }
+}
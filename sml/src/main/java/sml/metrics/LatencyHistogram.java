@@ -0,0 +1,110 @@
+package sml.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, in the style of HdrHistogram.
+ * <p>
+ * Buckets are log-linear: values below 64 have a bucket each, and every power of
+ * two above that is split into 32 equal sub-buckets, so any recorded value is
+ * reported within about 3% while the whole range of a {@code long} fits in under
+ * 2000 buckets. Recording is a couple of atomic increments and never allocates.
+ *
+ * @author KLM and xxx
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record one duration.
+     *
+     * @param nanos the duration in nanoseconds; negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(v));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Record the time elapsed since a {@link System#nanoTime()} reading.
+     *
+     * @param startNanos the reading taken when the measured operation began
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /** Returns the number of recorded durations */
+    public long count() {
+        return count.get();
+    }
+
+    /** Returns the sum of the recorded durations in nanoseconds */
+    public long sum() {
+        return sum.get();
+    }
+
+    /** Returns the largest recorded duration in nanoseconds */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the duration at or below which the given fraction of recordings fall.
+     *
+     * @param quantile between 0 and 1, for example 0.99
+     * @return the duration in nanoseconds (the upper edge of its bucket), 0 if nothing was recorded
+     */
+    public long quantile(double quantile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /** Returns a quantile converted to the given unit, as a fraction */
+    public double quantile(double quantile, TimeUnit unit) {
+        return (double) quantile(quantile) / unit.toNanos(1);
+    }
+
+    static int bucket(long v) {
+        if (v < 2 * SUB_BUCKETS) {
+            return (int) v;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return exp * SUB_BUCKETS + (int) (v >>> exp);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int exp = bucket / SUB_BUCKETS - 1;
+        long sub = bucket - (long) exp * SUB_BUCKETS;
+        return ((sub + 1) << exp) - 1;
+    }
+}
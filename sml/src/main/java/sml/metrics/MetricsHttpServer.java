@@ -0,0 +1,58 @@
+package sml.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves a registry at {@code http://localhost:<port>/metrics} in Prometheus
+ * text format, using the JDK's built-in HTTP server.
+ * <p>
+ * The server only listens on the loopback interface.
+ *
+ * @author KLM and xxx
+ */
+public final class MetricsHttpServer implements AutoCloseable {
+    private final HttpServer server;
+
+    /**
+     * Start serving.
+     *
+     * @param registry the metrics to serve
+     * @param port     the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public MetricsHttpServer(MetricsRegistry registry, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> respond(exchange, registry));
+        server.start();
+    }
+
+    /** Returns the port the server is listening on */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private static void respond(HttpExchange exchange, MetricsRegistry registry) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = PrometheusFormat.format(registry).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", PrometheusFormat.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    /** Stop serving */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
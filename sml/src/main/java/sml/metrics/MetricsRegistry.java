@@ -0,0 +1,68 @@
+package sml.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Named metrics for the SML runtime.
+ * <p>
+ * {@link #global()} holds the metrics the machine itself records (see
+ * {@link RuntimeMetrics}); they can be scraped from {@link MetricsHttpServer}
+ * or read through JMX. Metrics are registered once and then updated without locks.
+ *
+ * @author KLM and xxx
+ */
+public final class MetricsRegistry {
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    /**
+     * A registered metric.
+     *
+     * @param name   the Prometheus metric name
+     * @param help   one line describing it
+     * @param metric a {@link Counter}, {@link Gauge}, {@link LatencyHistogram} or {@link LongSupplier}
+     */
+    public record Entry(String name, String help, Object metric) {
+    }
+
+    private final Map<String, Entry> metrics = new LinkedHashMap<>();
+
+    /** Returns the registry the runtime records into */
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    /** Register (or return the already registered) counter with this name */
+    public Counter counter(String name, String help) {
+        return register(name, help, Counter.class, new Counter());
+    }
+
+    /** Register (or return the already registered) gauge with this name */
+    public Gauge gauge(String name, String help) {
+        return register(name, help, Gauge.class, new Gauge());
+    }
+
+    /** Register (or return the already registered) latency histogram with this name */
+    public LatencyHistogram histogram(String name, String help) {
+        return register(name, help, LatencyHistogram.class, new LatencyHistogram());
+    }
+
+    /** Register a gauge whose value is computed when read */
+    public synchronized void gauge(String name, String help, LongSupplier value) {
+        metrics.putIfAbsent(name, new Entry(name, help, value));
+    }
+
+    /** Returns a snapshot of the registered metrics in registration order */
+    public synchronized Entry[] entries() {
+        return metrics.values().toArray(new Entry[0]);
+    }
+
+    private synchronized <T> T register(String name, String help, Class<T> type, T fresh) {
+        Entry e = metrics.computeIfAbsent(name, n -> new Entry(n, help, fresh));
+        if (!type.isInstance(e.metric())) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as another type");
+        }
+        return type.cast(e.metric());
+    }
+}
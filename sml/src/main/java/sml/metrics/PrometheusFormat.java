@@ -0,0 +1,59 @@
+package sml.metrics;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Writes a registry in the Prometheus text exposition format (version 0.0.4).
+ * <p>
+ * Latency histograms are exposed as summaries in seconds with the 0.5, 0.9,
+ * 0.99 and 0.999 quantiles.
+ *
+ * @author KLM and xxx
+ */
+public final class PrometheusFormat {
+    /** The Content-Type of the format */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * Format every metric in a registry.
+     *
+     * @param registry the metrics to write
+     * @return the exposition text
+     */
+    public static String format(MetricsRegistry registry) {
+        var sb = new StringBuilder();
+        for (MetricsRegistry.Entry e : registry.entries()) {
+            String name = e.name();
+            sb.append("# HELP ").append(name).append(' ').append(e.help()).append('\n');
+            if (e.metric() instanceof Counter c) {
+                sb.append("# TYPE ").append(name).append(" counter\n");
+                sb.append(name).append(' ').append(c.get()).append('\n');
+            } else if (e.metric() instanceof Gauge g) {
+                sb.append("# TYPE ").append(name).append(" gauge\n");
+                sb.append(name).append(' ').append(g.get()).append('\n');
+            } else if (e.metric() instanceof LongSupplier s) {
+                sb.append("# TYPE ").append(name).append(" gauge\n");
+                sb.append(name).append(' ').append(s.getAsLong()).append('\n');
+            } else if (e.metric() instanceof LatencyHistogram h) {
+                sb.append("# TYPE ").append(name).append(" summary\n");
+                for (double q : QUANTILES) {
+                    sb.append(name).append("{quantile=\"").append(q).append("\"} ")
+                        .append(seconds(h.quantile(q))).append('\n');
+                }
+                sb.append(name).append("_sum ").append(seconds(h.sum())).append('\n');
+                sb.append(name).append("_count ").append(h.count()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private PrometheusFormat() {
+    } // Utility classes should not have a public or default constructor
+}
@@ -0,0 +1,30 @@
+package sml.metrics;
+
+/**
+ * Turns a counter into a rate between successive reads.
+ * <p>
+ * Every read starts a new window, so each reader that wants a rate needs its own meter.
+ *
+ * @author KLM and xxx
+ */
+final class RateMeter {
+    private final Counter counter;
+    private long lastCount;
+    private long lastNanos = System.nanoTime();
+
+    RateMeter(Counter counter) {
+        this.counter = counter;
+        this.lastCount = counter.get();
+    }
+
+    /** Returns the counter's increase per second since the previous call (or since construction) */
+    synchronized long perSecond() {
+        long now = System.nanoTime();
+        long count = counter.get();
+        long elapsed = Math.max(1, now - lastNanos);
+        long rate = (count - lastCount) * 1_000_000_000L / elapsed;
+        lastCount = count;
+        lastNanos = now;
+        return rate;
+    }
+}
@@ -0,0 +1,65 @@
+package sml.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * The metrics recorded by the SML runtime, all in {@link MetricsRegistry#global()}.
+ * <p>
+ * Rates are left to the reader: Prometheus computes them from
+ * {@code sml_instructions_total}, and each {@link SmlMetrics} keeps its own window.
+ *
+ * @author KLM and xxx
+ */
+public final class RuntimeMetrics {
+    private static final MetricsRegistry REGISTRY = MetricsRegistry.global();
+
+    public static final Counter INSTRUCTIONS = REGISTRY.counter("sml_instructions_total",
+        "Instructions executed by all machines");
+    public static final Counter EXECUTIONS = REGISTRY.counter("sml_executions_total",
+        "Programs run to completion or failure");
+    public static final Gauge ACTIVE_MACHINES = REGISTRY.gauge("sml_active_machines",
+        "Machines currently executing a program");
+    public static final LatencyHistogram EXECUTION_LATENCY = REGISTRY.histogram("sml_execution_seconds",
+        "Time taken by Machine.execute");
+    public static final Counter TRANSLATIONS = REGISTRY.counter("sml_translations_total",
+        "Programs translated from source");
+    public static final LatencyHistogram TRANSLATION_LATENCY = REGISTRY.histogram("sml_translation_seconds",
+        "Time taken by Translator.readAndTranslate");
+    public static final Counter OUTPUT_VALUES = REGISTRY.counter("sml_output_values_total",
+        "Values written by out instructions");
+
+    /**
+     * Run a program, counting it among the {@link #ACTIVE_MACHINES active machines} while
+     * it runs and {@link #executed(long, long) recording} it when it ends, normally or by
+     * throwing. {@code Machine.execute} runs every engine through this, so an engine need
+     * not record its own runs; code that runs programs without it calls this itself.
+     *
+     * @param run   runs the program
+     * @param steps returns the instructions executed, once the run has ended
+     */
+    public static void measure(Runnable run, LongSupplier steps) {
+        long start = System.nanoTime();
+        ACTIVE_MACHINES.increment();
+        try {
+            run.run();
+        } finally {
+            ACTIVE_MACHINES.decrement();
+            executed(steps.getAsLong(), start);
+        }
+    }
+
+    /**
+     * Record a finished run.
+     *
+     * @param steps      instructions executed
+     * @param startNanos the {@link System#nanoTime()} reading taken when the run began
+     */
+    public static void executed(long steps, long startNanos) {
+        EXECUTION_LATENCY.recordSince(startNanos);
+        INSTRUCTIONS.add(steps);
+        EXECUTIONS.increment();
+    }
+
+    private RuntimeMetrics() {
+    } // Utility classes should not have a public or default constructor
+}
@@ -0,0 +1,83 @@
+package sml.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JMX MBean exposing {@link RuntimeMetrics}, an alternative to scraping
+ * {@link MetricsHttpServer}.
+ *
+ * @author KLM and xxx
+ */
+public final class SmlMetrics implements SmlMetricsMXBean {
+    /** The name the MBean is registered under */
+    public static final String OBJECT_NAME = "sml:type=Metrics";
+
+    /**
+     * Register the MBean with the platform MBean server; does nothing if it is already registered.
+     */
+    public static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new SmlMetrics(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // already registered by an earlier call
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+    }
+
+    private final RateMeter instructionRate = new RateMeter(RuntimeMetrics.INSTRUCTIONS);
+
+    @Override
+    public long getInstructionsExecuted() {
+        return RuntimeMetrics.INSTRUCTIONS.get();
+    }
+
+    @Override
+    public long getInstructionsPerSecond() {
+        return instructionRate.perSecond();
+    }
+
+    @Override
+    public long getExecutions() {
+        return RuntimeMetrics.EXECUTIONS.get();
+    }
+
+    @Override
+    public long getActiveMachines() {
+        return RuntimeMetrics.ACTIVE_MACHINES.get();
+    }
+
+    @Override
+    public long getOutputValues() {
+        return RuntimeMetrics.OUTPUT_VALUES.get();
+    }
+
+    @Override
+    public long getTranslations() {
+        return RuntimeMetrics.TRANSLATIONS.get();
+    }
+
+    @Override
+    public double getTranslationP50Micros() {
+        return RuntimeMetrics.TRANSLATION_LATENCY.quantile(0.5, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getTranslationP99Micros() {
+        return RuntimeMetrics.TRANSLATION_LATENCY.quantile(0.99, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getExecutionP50Micros() {
+        return RuntimeMetrics.EXECUTION_LATENCY.quantile(0.5, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getExecutionP99Micros() {
+        return RuntimeMetrics.EXECUTION_LATENCY.quantile(0.99, TimeUnit.MICROSECONDS);
+    }
+}
@@ -0,0 +1,29 @@
+package sml.metrics;
+
+/**
+ * JMX view of {@link RuntimeMetrics}, registered as {@code sml:type=Metrics}
+ * by {@link SmlMetrics#register()}. Latencies are in microseconds.
+ *
+ * @author KLM and xxx
+ */
+public interface SmlMetricsMXBean {
+    long getInstructionsExecuted();
+
+    long getInstructionsPerSecond();
+
+    long getExecutions();
+
+    long getActiveMachines();
+
+    long getOutputValues();
+
+    long getTranslations();
+
+    double getTranslationP50Micros();
+
+    double getTranslationP99Micros();
+
+    double getExecutionP50Micros();
+
+    double getExecutionP99Micros();
+}
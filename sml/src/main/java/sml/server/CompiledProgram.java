@@ -0,0 +1,47 @@
+package sml.server;
+
+import sml.CompactProgram;
+import sml.Instruction;
+import sml.InstructionPool;
+import sml.Labels;
+import sml.engine.ControlFlowGraph;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * A translated program held by the server, with its basic blocks.
+ *
+ * @param hash   content hash of the source text
+ * @param labels the labels of the program
+ * @param prog   the instructions
+ * @param cfg    the basic blocks, used when the server runs programs block at a time
+ * @author KLM and xxx
+ */
+public record CompiledProgram(String hash, Labels labels, List<Instruction> prog, ControlFlowGraph cfg) {
+
+    /**
+     * Translate program text into a {@link CompactProgram} whose instructions are shared
+     * with the other programs loaded ({@link InstructionPool#shared()}).
+     *
+     * @param source the program text
+     * @return the translated program
+     */
+    public static CompiledProgram translate(String source) {
+        CompactProgram prog = CompactProgram.of(source, InstructionPool.shared());
+        return new CompiledProgram(hash(source), prog.labels(), prog, ControlFlowGraph.build(prog.labels(), prog));
+    }
+
+    /** Returns the SHA-256 hash of program text as hex, the key the server caches programs under */
+    public static String hash(String source) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package sml.server;
+
+import sml.Machine;
+import sml.Registers;
+import sml.cache.LruCache;
+import sml.engine.BlockEngine;
+import sml.engine.LoopDetector;
+import sml.metrics.Counter;
+import sml.metrics.LatencyHistogram;
+import sml.metrics.MetricsRegistry;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A long-running service that translates and executes SML programs sent over a
+ * local TCP socket, so that the JVM start-up is paid once rather than per program.
+ * <p>
+ * The protocol is line based. A client sends
+ * <pre>
+ * RUN &lt;id&gt;
+ * ...program lines...
+ * END
+ * </pre>
+ * and receives one line of JSON per request:
+ * <pre>
+ * {"id":"&lt;id&gt;","status":"ok","hash":"...","cached":true,"registers":[...],"output":[...],
+ *  "queueMicros":12,"translateMicros":0,"executionMicros":85}
+ * </pre>
+ * or {@code {"id":"<id>","status":"error","error":"..."}}. Requests may be pipelined:
+ * a client can send any number of requests without waiting, they are executed
+ * concurrently on the worker pool, and responses come back in request order.
+ * {@code STATS} returns the cache statistics in the same way. A connection closed in
+ * the middle of a program (before its {@code END}) does not run it.
+ * <p>
+ * A program longer than {@link #MAX_PROGRAM_CHARS} characters is not run, and one that
+ * outputs more than {@link #MAX_OUTPUT_VALUES} values is stopped; either is answered with an
+ * error, so one request cannot exhaust the server's memory.
+ * <p>
+ * Each connection takes two threads, so at most {@link #MAX_CONNECTIONS} are served at
+ * once; further clients wait in the listen backlog. At most {@link #MAX_PENDING} requests
+ * of a connection are in flight; beyond that the server stops reading from it until the
+ * client has taken some responses.
+ * <p>
+ * Translated programs are cached by the hash of their source text, in an LRU
+ * cache of bounded size. The server listens on the loopback interface only.
+ * <p>
+ * Every program runs under a {@link LoopDetector}, by default one with a budget of
+ * {@value #DEFAULT_MAX_STEPS} steps, so a program caught in an infinite loop or over the
+ * step budget is stopped and reported as an error instead of holding a worker
+ * indefinitely. With {@code blocks}, programs run on a {@link BlockEngine} with the same
+ * budget, unless the loop detector also looks for loops.
+ *
+ * @author KLM and xxx
+ */
+public final class ExecutionServer implements AutoCloseable {
+    private static final MetricsRegistry METRICS = MetricsRegistry.global();
+    private static final Counter REQUESTS = METRICS.counter("sml_server_requests_total",
+        "Requests received by the execution server");
+    private static final LatencyHistogram QUEUE_LATENCY = METRICS.histogram("sml_server_queue_seconds",
+        "Time requests wait for a worker");
+    private static final LatencyHistogram REQUEST_LATENCY = METRICS.histogram("sml_server_execution_seconds",
+        "Time taken to translate (on a cache miss) and execute a request");
+
+    /** The most connections served at once */
+    public static final int MAX_CONNECTIONS = 64;
+    /** The most requests of one connection executing or waiting to be written */
+    public static final int MAX_PENDING = 256;
+    /** The most characters in a program, counting a newline per line */
+    public static final int MAX_PROGRAM_CHARS = 1 << 20;
+    /** The most values a program may output */
+    public static final int MAX_OUTPUT_VALUES = 1 << 16;
+    /** The step budget of a server run when no loop detector is given */
+    public static final long DEFAULT_MAX_STEPS = 100_000_000;
+
+    /** Marks the end of a connection's response queue */
+    private static final CompletableFuture<String> CLOSED = CompletableFuture.completedFuture(null);
+
+    private final ServerSocket socket;
+    private final ExecutorService workers;
+    private final LruCache<String, CompiledProgram> programs;
+    private final boolean blocks;
+    private final LoopDetector loopDetector;
+    private final Thread acceptor;
+    private final Semaphore connections = new Semaphore(MAX_CONNECTIONS);
+
+    /**
+     * Start the server.
+     *
+     * @param port      the port to listen on, or 0 for any free port
+     * @param workers   the number of programs executed at once
+     * @param cacheSize the most translated programs kept
+     * @param blocks    true to execute programs a basic block at a time ({@link BlockEngine})
+     * @throws IOException if the port cannot be bound
+     */
+    public ExecutionServer(int port, int workers, int cacheSize, boolean blocks) throws IOException {
+        this(port, workers, cacheSize, blocks, null);
+    }
+
+    /**
+     * Start the server.
+     *
+     * @param port         the port to listen on, or 0 for any free port
+     * @param workers      the number of programs executed at once
+     * @param cacheSize    the most translated programs kept
+     * @param blocks       true to execute programs a basic block at a time ({@link BlockEngine})
+     * @param loopDetector what stops programs that do not terminate, or null for a budget of
+     *                     {@value #DEFAULT_MAX_STEPS} steps
+     * @throws IOException if the port cannot be bound
+     */
+    public ExecutionServer(int port, int workers, int cacheSize, boolean blocks, LoopDetector loopDetector)
+        throws IOException {
+        this.loopDetector = loopDetector != null ? loopDetector : new LoopDetector(DEFAULT_MAX_STEPS, false);
+        this.socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.workers = Executors.newFixedThreadPool(workers);
+        this.programs = new LruCache<>(cacheSize);
+        this.blocks = blocks;
+        this.acceptor = new Thread(this::accept, "sml-server-accept");
+        acceptor.start();
+    }
+
+    /** Returns the port the server is listening on */
+    public int port() {
+        return socket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!socket.isClosed()) {
+            try {
+                connections.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                Socket client = socket.accept();
+                var pending = new ArrayBlockingQueue<CompletableFuture<String>>(MAX_PENDING);
+                new Thread(() -> write(client, pending), "sml-server-write").start();
+                new Thread(() -> read(client, pending), "sml-server-read").start();
+            } catch (SocketException e) {
+                connections.release();
+                return; // closed
+            } catch (IOException e) {
+                connections.release();
+                System.err.println("Server: accept failed " + e);
+            }
+        }
+    }
+
+    /**
+     * Parse requests and hand them to the workers, queueing their responses in order.
+     * Blocks while the queue is full, so a client that does not read cannot pile up work.
+     * Lines are read at most {@link #MAX_PROGRAM_CHARS} characters at a time, so neither a
+     * long program nor a long line can fill the heap.
+     */
+    private void read(Socket client, BlockingQueue<CompletableFuture<String>> pending) {
+        // the writer owns the socket: closing this reader's stream would close it under the writer
+        try {
+            var in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = readLine(in)) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] words = line.trim().split("\\s+", 2);
+                String id = words.length > 1 ? words[1] : "";
+                if (words[0].equals("RUN")) {
+                    var source = new StringBuilder();
+                    boolean tooLong = false;
+                    while ((line = readLine(in)) != null && !line.equals("END")) {
+                        if (source.length() + line.length() + 1 > MAX_PROGRAM_CHARS) {
+                            tooLong = true; // keep reading up to END, dropping the program
+                            source.setLength(0);
+                        }
+                        if (!tooLong) {
+                            source.append(line).append('\n');
+                        }
+                    }
+                    if (line == null) {
+                        return; // closed before END: the program may be truncated
+                    }
+                    long received = System.nanoTime();
+                    REQUESTS.increment();
+                    if (tooLong) {
+                        pending.put(CompletableFuture.completedFuture(
+                            error(id, "Program longer than " + MAX_PROGRAM_CHARS + " characters")));
+                        continue;
+                    }
+                    pending.put(CompletableFuture.supplyAsync(() -> run(id, source.toString(), received), workers));
+                } else if (words[0].equals("STATS")) {
+                    pending.put(CompletableFuture.completedFuture(stats(id)));
+                } else {
+                    pending.put(CompletableFuture.completedFuture(error(id, "Unknown request: " + words[0])));
+                }
+            }
+        } catch (IOException e) {
+            // client went away; responses still pending are dropped by the writer
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closed(pending);
+        }
+    }
+
+    /**
+     * Read a line like {@link BufferedReader#readLine()}, but keep at most
+     * {@link #MAX_PROGRAM_CHARS} + 1 of its characters, dropping the rest.
+     *
+     * @return the line, longer than {@link #MAX_PROGRAM_CHARS} if it was cut short, or null at the end
+     */
+    private static String readLine(BufferedReader in) throws IOException {
+        var line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+            if (line.length() <= MAX_PROGRAM_CHARS) {
+                line.append((char) c);
+            }
+        }
+        if (c < 0 && line.isEmpty()) {
+            return null;
+        }
+        int end = line.length();
+        return end > 0 && line.charAt(end - 1) == '\r' ? line.substring(0, end - 1) : line.toString();
+    }
+
+    private static void closed(BlockingQueue<CompletableFuture<String>> pending) {
+        try {
+            pending.put(CLOSED); // the writer keeps draining, so this cannot block for long
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write responses in request order, waiting for each one to finish. If the client
+     * goes away the socket is closed, which stops the reader, and the queue is drained
+     * until the reader's end marker so that the reader is never left blocked on it.
+     */
+    private void write(Socket client, BlockingQueue<CompletableFuture<String>> pending) {
+        try (client) {
+            var out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+            boolean connected = true;
+            while (true) {
+                CompletableFuture<String> next = pending.take();
+                if (next == CLOSED) {
+                    if (connected) {
+                        out.flush();
+                    }
+                    return;
+                }
+                if (!connected) {
+                    continue;
+                }
+                try {
+                    out.write(next.get());
+                    out.write('\n');
+                    CompletableFuture<String> following = pending.peek();
+                    if (following == null || !following.isDone()) {
+                        out.flush();
+                    }
+                } catch (IOException | ExecutionException e) {
+                    connected = false; // client went away
+                    client.close();
+                }
+            }
+        } catch (IOException e) {
+            // client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.release();
+        }
+    }
+
+    private String run(String id, String source, long received) {
+        long start = System.nanoTime();
+        QUEUE_LATENCY.record(start - received);
+        try {
+            String hash = CompiledProgram.hash(source);
+            CompiledProgram program = programs.get(hash);
+            boolean cached = program != null;
+            if (!cached) {
+                program = CompiledProgram.translate(source);
+                programs.put(hash, program);
+            }
+            long translated = System.nanoTime();
+
+            var m = new Machine();
+            m.labels(program.labels());
+            m.prog(program.prog());
+            var output = new StringBuilder();
+            int[] values = new int[1];
+            m.out(value -> {
+                synchronized (output) { // spawned children output from their own threads
+                    if (++values[0] > MAX_OUTPUT_VALUES) {
+                        throw new IllegalStateException("Program output more than " + MAX_OUTPUT_VALUES + " values");
+                    }
+                    output.append(output.length() == 0 ? "" : ",").append(value);
+                }
+            });
+            if (blocks && !loopDetector.detectCycles()) {
+                new BlockEngine(program.cfg(), loopDetector.maxSteps()).execute(m, new Registers());
+            } else {
+                loopDetector.execute(m);
+            }
+            long finished = System.nanoTime();
+            REQUEST_LATENCY.record(finished - start);
+
+            var sb = new StringBuilder("{\"id\":").append(Json.quote(id))
+                .append(",\"status\":\"ok\",\"hash\":\"").append(hash)
+                .append("\",\"cached\":").append(cached)
+                .append(",\"registers\":[");
+            Registers regs = m.registers();
+            for (int i = 0; i < regs.size(); i++) {
+                sb.append(i == 0 ? "" : ",").append(regs.register(i));
+            }
+            return sb.append("],\"output\":[").append(output)
+                .append("],\"queueMicros\":").append((start - received) / 1000)
+                .append(",\"translateMicros\":").append((translated - start) / 1000)
+                .append(",\"executionMicros\":").append((finished - translated) / 1000)
+                .append('}').toString();
+        } catch (RuntimeException e) {
+            REQUEST_LATENCY.recordSince(start);
+            return error(id, e.toString());
+        }
+    }
+
+    private String stats(String id) {
+        return "{\"id\":" + Json.quote(id) + ",\"status\":\"ok\",\"programs\":" + programs.size()
+            + ",\"evictions\":" + programs.evictions() + "}";
+    }
+
+    private static String error(String id, String message) {
+        return "{\"id\":" + Json.quote(id) + ",\"status\":\"error\",\"error\":" + Json.quote(message) + "}";
+    }
+
+    /** Stop accepting connections and shut the workers down */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,35 @@
+package sml.server;
+
+/**
+ * The little JSON the server writes.
+ *
+ * @author KLM and xxx
+ */
+final class Json {
+
+    /** Returns s as a JSON string literal */
+    static String quote(String s) {
+        var sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private Json() {
+    } // Utility classes should not have a public or default constructor
+}
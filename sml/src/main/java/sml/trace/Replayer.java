@@ -0,0 +1,238 @@
+package sml.trace;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.ProgramHash;
+import sml.Registers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Replays the steps recorded in a {@link TraceBuffer}, forwards and backwards.
+ * <p>
+ * Replay starts at the oldest keyframe still in the buffer. Stepping forward
+ * re-executes the instruction at the current pc and checks that the new pc and
+ * registers are the ones recorded, so a replay that does not reproduce the traced run
+ * is reported rather than silently followed; stepping backward undoes the recorded
+ * changes. An instruction that is not {@link Instruction#pure() pure} (a memory
+ * access, say) is not re-executed: its recorded changes are applied instead. Where
+ * consecutive segments come from different runs, stepping across the boundary jumps to
+ * the state the trace records for the new segment.
+ *
+ * @author KLM and xxx
+ */
+public final class Replayer {
+
+    /** A decoded segment: its keyframe and, for each record, the pc executed and the changes */
+    private record Segment(long step, int pc, int[] registers, int[] pcs, int[] nextPcs,
+                           int[] firstChange, int[] changes) {
+        int records() {
+            return pcs.length;
+        }
+    }
+
+    private final List<Instruction> prog;
+    private final Machine machine = new Machine();
+    private final List<Segment> segments = new ArrayList<>();
+    private final int[][] destinations;
+
+    /** Position: the current segment and how many of its records have been replayed */
+    private int segment;
+    private int record;
+
+    /**
+     * Decode a trace of a program.
+     *
+     * @param trace  the trace
+     * @param labels the program's labels
+     * @param prog   the program that was traced
+     * @throws IllegalArgumentException if the trace is of a different program, or holds no steps
+     */
+    public Replayer(TraceBuffer trace, Labels labels, List<Instruction> prog) {
+        if (!ProgramHash.of(prog).equals(trace.programHash())) {
+            throw new IllegalArgumentException("The trace was not recorded from this program");
+        }
+        this.prog = prog;
+        this.destinations = prog.stream().map(Instruction::destinations).toArray(int[][]::new);
+        IntStream.range(0, trace.segments())
+            .filter(s -> trace.sequence(s) >= 0)
+            .boxed()
+            .sorted(Comparator.comparingLong(trace::sequence))
+            .forEach(s -> segments.add(decode(trace, s)));
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("The trace is empty");
+        }
+        machine.labels(labels);
+        machine.prog(prog);
+        machine.out(value -> {
+        });
+        load(0);
+    }
+
+    private Segment decode(TraceBuffer trace, int s) {
+        int n = trace.records(s);
+        int[] pcs = new int[n];
+        int[] nextPcs = new int[n];
+        int[] firstChange = new int[n + 1];
+        var changes = new ArrayList<Integer>();
+        int[] at = {trace.firstRecord(s)};
+        int pc = trace.pc(s);
+        for (int k = 0; k < n; k++) {
+            pcs[k] = pc;
+            firstChange[k] = changes.size();
+            pc = pc + 1 + trace.get(at);
+            nextPcs[k] = pc;
+            for (int i = 0; i < destinations[pcs[k]].length; i++) {
+                changes.add(trace.get(at));
+            }
+        }
+        firstChange[n] = changes.size();
+        int[] registers = new int[Registers.NUMBER_OF_REGISTERS];
+        for (int r = 0; r < registers.length; r++) {
+            registers[r] = trace.register(s, r);
+        }
+        return new Segment(trace.step(s), trace.pc(s), registers, pcs, nextPcs, firstChange,
+            changes.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /** Fluent setter for where replayed out instructions send values; discarded by default */
+    public Replayer out(IntConsumer out) {
+        machine.out(out);
+        return this;
+    }
+
+    /** Returns the number of steps the traced run had executed at the current position */
+    public long step() {
+        return segments.get(segment).step() + record;
+    }
+
+    /** Returns the first step held in the trace */
+    public long firstStep() {
+        return segments.get(0).step();
+    }
+
+    /** Returns the step after the last one held in the trace */
+    public long lastStep() {
+        Segment last = segments.get(segments.size() - 1);
+        return last.step() + last.records();
+    }
+
+    /** Returns the next instruction to execute at the current position */
+    public int pc() {
+        return machine.pc();
+    }
+
+    /** Returns a copy of the registers at the current position */
+    public Registers registers() {
+        return machine.registers().copy();
+    }
+
+    /** Returns the registers the instruction at the current pc will write */
+    public int[] destinations() {
+        return pc() < prog.size() ? destinations[pc()].clone() : new int[0];
+    }
+
+    /**
+     * Re-execute the next recorded step.
+     *
+     * @return false if the position is already at the end of the trace
+     * @throws IllegalStateException if re-execution does not reproduce the recorded step
+     */
+    public boolean forward() {
+        while (record == segments.get(segment).records()) {
+            if (segment + 1 == segments.size()) {
+                return false;
+            }
+            load(segment + 1);
+        }
+        Segment seg = segments.get(segment);
+        int pc = seg.pcs()[record];
+        int[] registers = machine.registers().registers();
+        int[] dst = destinations[pc];
+        int[] before = new int[dst.length];
+        for (int i = 0; i < dst.length; i++) {
+            before[i] = registers[dst[i]];
+        }
+        Instruction ins = prog.get(pc);
+        machine.pc(pc + 1);
+        if (ins.pure()) {
+            ins.execute(machine);
+        } else {
+            // its effect depends on state the trace does not hold (such as memory): take it from the trace
+            apply(seg, record, registers, 1);
+            machine.pc(seg.nextPcs()[record]);
+        }
+        boolean same = machine.pc() == seg.nextPcs()[record];
+        for (int i = 0; i < dst.length; i++) {
+            same &= registers[dst[i]] - before[i] == seg.changes()[seg.firstChange()[record] + i];
+        }
+        if (!same) {
+            throw new IllegalStateException("Replay diverges from the trace at step " + step()
+                + " (instruction " + pc + ")");
+        }
+        record++;
+        return true;
+    }
+
+    /**
+     * Undo the previous recorded step.
+     *
+     * @return false if the position is already at the start of the trace
+     */
+    public boolean backward() {
+        while (record == 0) {
+            if (segment == 0) {
+                return false;
+            }
+            load(segment - 1);
+            Segment seg = segments.get(segment);
+            int[] registers = machine.registers().registers();
+            for (int k = 0; k < seg.records(); k++) {
+                apply(seg, k, registers, 1);
+            }
+            record = seg.records();
+            machine.pc(seg.records() == 0 ? seg.pc() : seg.nextPcs()[record - 1]);
+        }
+        Segment seg = segments.get(segment);
+        record--;
+        apply(seg, record, machine.registers().registers(), -1);
+        machine.pc(seg.pcs()[record]);
+        return true;
+    }
+
+    /**
+     * Move forward or backward to a step.
+     *
+     * @param step the step, between {@link #firstStep()} and {@link #lastStep()}
+     */
+    public void seek(long step) {
+        while (step() > step && backward()) {
+            // undoing
+        }
+        while (step() < step && forward()) {
+            // re-executing
+        }
+    }
+
+    private void apply(Segment seg, int k, int[] registers, int sign) {
+        int[] dst = destinations[seg.pcs()[k]];
+        for (int i = 0; i < dst.length; i++) {
+            registers[dst[i]] += sign * seg.changes()[seg.firstChange()[k] + i];
+        }
+    }
+
+    private void load(int s) {
+        Segment seg = segments.get(s);
+        var registers = new Registers();
+        System.arraycopy(seg.registers(), 0, registers.registers(), 0, Registers.NUMBER_OF_REGISTERS);
+        machine.registers(registers);
+        machine.pc(seg.pc());
+        segment = s;
+        record = 0;
+    }
+}
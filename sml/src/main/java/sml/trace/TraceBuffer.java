@@ -0,0 +1,262 @@
+package sml.trace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An off-heap ring of trace segments, written by a {@link Tracer} and read by a {@link Replayer}.
+ * <p>
+ * The buffer is either direct memory ({@link #allocate}) or a memory-mapped file
+ * ({@link #create}), so a trace of a run that crashed the process can still be
+ * {@link #open opened} and replayed. It starts with a header holding the hash of the
+ * traced program, followed by fixed-size segments. Each segment begins with a keyframe
+ * (a sequence number, the step count and pc at the start of the segment, and all
+ * registers) and continues with one record per executed instruction:
+ * <ul>
+ *     <li>the difference between the next pc and pc + 1 (zero unless a branch was taken)</li>
+ *     <li>for each register the instruction writes (in {@code Instruction.destinations()}
+ *     order), its new value minus its old value</li>
+ * </ul>
+ * each as a zigzag varint, so most records are one or two bytes. The differences can be
+ * applied in either direction, which is what lets the replayer step backwards. When
+ * the last segment is full writing wraps around and overwrites the oldest, so the
+ * buffer always holds the most recent part of the run.
+ * <p>
+ * Writing never allocates. An instance is not thread-safe.
+ *
+ * @author KLM and xxx
+ */
+public final class TraceBuffer {
+    private static final int MAGIC = 0x534d4c54; // "SMLT"
+    private static final int HASH_LENGTH = 64;
+    /** magic, segment size, segment count, program hash */
+    private static final int HEADER = 128;
+    private static final int SEQUENCE = 0;
+    private static final int STEP = 8;
+    private static final int PC = 16;
+    private static final int RECORDS = 20;
+    private static final int END = 24;
+    private static final int REGISTERS = 28;
+    /** Bytes of segment header before the first record */
+    static final int KEYFRAME = REGISTERS + 4 * sml.Registers.NUMBER_OF_REGISTERS;
+    /** Largest possible record: a pc difference and a difference for every register */
+    static final int MAX_RECORD = 5 * (1 + sml.Registers.NUMBER_OF_REGISTERS);
+
+    private final ByteBuffer buffer;
+    private final int segmentSize;
+    private final int segments;
+    private final String programHash;
+
+    /** Current segment, its start offset and the write position within the buffer */
+    private int segment = -1;
+    private int base;
+    private int position;
+    private int limit;
+    private int records;
+    private long sequence;
+
+    private TraceBuffer(ByteBuffer buffer, int segmentSize, int segments, String programHash) {
+        this.buffer = buffer;
+        this.segmentSize = segmentSize;
+        this.segments = segments;
+        this.programHash = programHash;
+        for (int s = 0; s < segments; s++) {
+            sequence = Math.max(sequence, buffer.getLong(offset(s) + SEQUENCE) + 1);
+        }
+    }
+
+    /**
+     * Allocate an empty trace in direct memory.
+     *
+     * @param capacity    total bytes, including the header
+     * @param segmentSize bytes per segment; a larger segment means fewer keyframes, but
+     *                    more of the trace is lost each time the ring wraps
+     * @param programHash the {@link sml.ProgramHash} of the traced program
+     * @return the buffer
+     */
+    public static TraceBuffer allocate(int capacity, int segmentSize, String programHash) {
+        return format(ByteBuffer.allocateDirect(capacity), segmentSize, programHash);
+    }
+
+    /**
+     * Create (or replace) a trace file and map it into memory.
+     *
+     * @param file        the trace file
+     * @param capacity    total bytes, including the header
+     * @param segmentSize bytes per segment
+     * @param programHash the {@link sml.ProgramHash} of the traced program
+     * @return the buffer
+     * @throws IOException if the file cannot be created
+     */
+    public static TraceBuffer create(Path file, int capacity, int segmentSize, String programHash)
+        throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return format(map, segmentSize, programHash);
+        }
+    }
+
+    /**
+     * Map an existing trace file for reading.
+     *
+     * @param file the trace file
+     * @return the buffer
+     * @throws IOException if the file cannot be read or is not a trace
+     */
+    public static TraceBuffer open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.capacity() < HEADER || map.getInt(0) != MAGIC) {
+                throw new IOException("Not a trace file: " + file);
+            }
+            int segmentSize = map.getInt(4);
+            int segments = map.getInt(8);
+            if (segmentSize <= KEYFRAME + MAX_RECORD || HEADER + (long) segmentSize * segments > map.capacity()) {
+                throw new IOException("Corrupt trace file: " + file);
+            }
+            byte[] hash = new byte[HASH_LENGTH];
+            map.get(12, hash);
+            return new TraceBuffer(map, segmentSize, segments, new String(hash, StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static TraceBuffer format(ByteBuffer buffer, int segmentSize, String programHash) {
+        if (segmentSize <= KEYFRAME + MAX_RECORD) {
+            throw new IllegalArgumentException("Segment size must be more than " + (KEYFRAME + MAX_RECORD));
+        }
+        int segments = (buffer.capacity() - HEADER) / segmentSize;
+        if (segments < 2) {
+            throw new IllegalArgumentException("Capacity must hold a header and at least two segments");
+        }
+        byte[] hash = programHash.getBytes(StandardCharsets.US_ASCII);
+        if (hash.length != HASH_LENGTH) {
+            throw new IllegalArgumentException("Not a program hash: " + programHash);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, segmentSize);
+        buffer.putInt(8, segments);
+        buffer.put(12, hash);
+        for (int s = 0; s < segments; s++) {
+            buffer.putLong(HEADER + s * segmentSize + SEQUENCE, -1);
+        }
+        return new TraceBuffer(buffer, segmentSize, segments, programHash);
+    }
+
+    /** Returns the {@link sml.ProgramHash} of the traced program */
+    public String programHash() {
+        return programHash;
+    }
+
+    /** Returns the number of segments in the ring */
+    public int segments() {
+        return segments;
+    }
+
+    /** Returns the size of each segment in bytes */
+    public int segmentSize() {
+        return segmentSize;
+    }
+
+    // Writing, used by the Tracer
+
+    /** Returns true if the current segment has room for another record */
+    boolean hasRoom() {
+        return position + MAX_RECORD <= limit;
+    }
+
+    /**
+     * Start the next segment (overwriting the oldest when the ring is full) with a keyframe.
+     *
+     * @param step      steps executed before this segment
+     * @param pc        the next instruction
+     * @param registers the register values
+     */
+    void keyframe(long step, int pc, int[] registers) {
+        segment = (segment + 1) % segments;
+        base = offset(segment);
+        limit = base + segmentSize;
+        buffer.putLong(base + SEQUENCE, -1); // invalid until the keyframe is complete
+        buffer.putLong(base + STEP, step);
+        buffer.putInt(base + PC, pc);
+        buffer.putInt(base + RECORDS, 0);
+        buffer.putInt(base + END, KEYFRAME);
+        for (int r = 0; r < registers.length; r++) {
+            buffer.putInt(base + REGISTERS + 4 * r, registers[r]);
+        }
+        buffer.putLong(base + SEQUENCE, sequence++);
+        position = base + KEYFRAME;
+        records = 0;
+    }
+
+    /** Append a value to the current record as a zigzag varint */
+    void put(int value) {
+        int v = (value << 1) ^ (value >> 31);
+        while ((v & ~0x7f) != 0) {
+            buffer.put(position++, (byte) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put(position++, (byte) v);
+    }
+
+    /** Finish the current record, making it visible to readers */
+    void endRecord() {
+        buffer.putInt(base + END, position - base);
+        buffer.putInt(base + RECORDS, ++records);
+    }
+
+    // Reading, used by the Replayer
+
+    /** Returns the sequence number of a segment, or -1 if it holds no keyframe */
+    long sequence(int segment) {
+        return buffer.getLong(offset(segment) + SEQUENCE);
+    }
+
+    long step(int segment) {
+        return buffer.getLong(offset(segment) + STEP);
+    }
+
+    int pc(int segment) {
+        return buffer.getInt(offset(segment) + PC);
+    }
+
+    int records(int segment) {
+        return buffer.getInt(offset(segment) + RECORDS);
+    }
+
+    int register(int segment, int register) {
+        return buffer.getInt(offset(segment) + REGISTERS + 4 * register);
+    }
+
+    /** Returns the offset of the first record of a segment */
+    int firstRecord(int segment) {
+        return offset(segment) + KEYFRAME;
+    }
+
+    /**
+     * Decode the zigzag varint at an offset.
+     *
+     * @param at  the offset; on return {@code at[0]} is advanced past the value
+     * @return the value
+     */
+    int get(int[] at) {
+        int v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(at[0]++);
+            v |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private int offset(int segment) {
+        return HEADER + segment * segmentSize;
+    }
+}
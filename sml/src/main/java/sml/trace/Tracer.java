@@ -0,0 +1,111 @@
+package sml.trace;
+
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.metrics.RuntimeMetrics;
+
+import java.util.List;
+
+/**
+ * Executes a program like {@link Machine#run()} while recording every step in a
+ * {@link TraceBuffer}.
+ * <p>
+ * The registers each instruction writes are looked up once per run, so the only work
+ * added to a step is saving those registers' old values and appending a record of a
+ * few bytes to the buffer; nothing is allocated per step. If an instruction throws, the
+ * trace ends with the last instruction that completed and the machine's pc is left at
+ * the one that failed.
+ *
+ * @author KLM and xxx
+ */
+public final class Tracer {
+    private final TraceBuffer buffer;
+    /** Steps traced by this tracer so far, over all runs */
+    private long steps;
+
+    /**
+     * @param buffer where to record; its program hash should be that of the programs run
+     */
+    public Tracer(TraceBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /** Returns the buffer the tracer records into */
+    public TraceBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Execute the machine's program from zeroed registers.
+     *
+     * @param m the machine, with its program loaded
+     */
+    public void execute(Machine m) {
+        execute(m, new Registers());
+    }
+
+    /**
+     * Execute the machine's program from a copy of the given registers.
+     *
+     * @param m       the machine, with its program loaded
+     * @param initial the initial registers (not modified)
+     */
+    public void execute(Machine m, Registers initial) {
+        m.pc(0);
+        m.registers(initial.copy());
+        run(m);
+    }
+
+    /**
+     * Continue executing the machine's program from its current pc and registers.
+     * Each run starts a new trace segment.
+     *
+     * @param m the machine, with its program loaded
+     */
+    public void run(Machine m) {
+        RuntimeMetrics.measure(() -> trace(m), m::steps);
+    }
+
+    private void trace(Machine m) {
+        List<Instruction> prog = m.prog();
+        int size = prog.size();
+        int[][] destinations = new int[size][];
+        for (int pc = 0; pc < size; pc++) {
+            destinations[pc] = prog.get(pc).destinations();
+        }
+        int[] registers = m.registers().registers();
+        int[] old = new int[Registers.NUMBER_OF_REGISTERS];
+        long count = 0;
+        int pc = m.pc();
+        buffer.keyframe(steps, pc, registers);
+        try {
+            while (pc < size) {
+                if (!buffer.hasRoom()) {
+                    buffer.keyframe(steps + count, pc, registers);
+                }
+                int[] dst = destinations[pc];
+                for (int i = 0; i < dst.length; i++) {
+                    old[i] = registers[dst[i]];
+                }
+                m.pc(pc + 1);
+                prog.get(pc).execute(m);
+                int next = m.pc();
+                buffer.put(next - pc - 1);
+                for (int i = 0; i < dst.length; i++) {
+                    buffer.put(registers[dst[i]] - old[i]);
+                }
+                buffer.endRecord();
+                count++;
+                pc = next;
+            }
+            m.join();
+        } catch (RuntimeException e) {
+            m.pc(pc);
+            throw e;
+        } finally {
+            steps += count;
+            m.steps(count);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package sml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests for the single-producer single-consumer {@link Channel}
+ */
+class ChannelTest {
+    @Test
+    void constructor_Capacity_RoundedUpToPowerOfTwo() {
+        Assertions.assertEquals(1, new Channel(1).capacity());
+        Assertions.assertEquals(8, new Channel(5).capacity());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Channel(0));
+    }
+
+    @Test
+    void sendAndTake_ManyTimesRoundRing_InOrder() {
+        var c = new Channel(4);
+        int next = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int k = 0; k < 3; k++) {
+                Assertions.assertTrue(c.send(round * 3 + k));
+            }
+            for (int k = 0; k < 3; k++) {
+                Assertions.assertTrue(c.await());
+                Assertions.assertEquals(next++, c.take());
+            }
+        }
+        Assertions.assertEquals(0, c.size());
+    }
+
+    @Test
+    void send_Full_ParksUntilValueTaken() throws InterruptedException {
+        var c = new Channel(2);
+        c.send(1);
+        c.send(2);
+        var sent = new AtomicBoolean();
+        var sender = new Thread(() -> sent.set(c.send(3)));
+        sender.start();
+
+        awaitParked(sender);
+        Assertions.assertFalse(sent.get());
+        Assertions.assertTrue(c.await());
+        Assertions.assertEquals(1, c.take());
+        sender.join(5000);
+
+        Assertions.assertTrue(sent.get());
+        Assertions.assertEquals(2, c.size());
+    }
+
+    @Test
+    void await_Empty_ParksUntilValueSent() throws InterruptedException {
+        var c = new Channel(2);
+        var received = new int[1];
+        var receiver = new Thread(() -> {
+            if (c.await()) {
+                received[0] = c.take();
+            }
+        });
+        receiver.start();
+
+        awaitParked(receiver);
+        c.send(42);
+        receiver.join(5000);
+
+        Assertions.assertEquals(42, received[0]);
+    }
+
+    @Test
+    void close_SenderParkedOnFull_SendFails() throws InterruptedException {
+        var c = new Channel(1);
+        c.send(1);
+        var sent = new AtomicBoolean(true);
+        var sender = new Thread(() -> sent.set(c.send(2)));
+        sender.start();
+
+        awaitParked(sender);
+        c.close();
+        sender.join(5000);
+
+        Assertions.assertFalse(sent.get());
+        Assertions.assertFalse(c.send(3));
+    }
+
+    @Test
+    void close_ReceiverParkedOnEmpty_AwaitReportsEnd() throws InterruptedException {
+        var c = new Channel(1);
+        var more = new AtomicBoolean(true);
+        var receiver = new Thread(() -> more.set(c.await()));
+        receiver.start();
+
+        awaitParked(receiver);
+        c.close();
+        receiver.join(5000);
+
+        Assertions.assertFalse(more.get());
+    }
+
+    @Test
+    void close_ValuesLeft_ReceivedBeforeEnd() {
+        var c = new Channel(4);
+        c.send(7);
+        c.send(8);
+        c.close();
+
+        Assertions.assertTrue(c.closed());
+        Assertions.assertTrue(c.await());
+        Assertions.assertEquals(7, c.take());
+        Assertions.assertTrue(c.await());
+        Assertions.assertEquals(8, c.take());
+        Assertions.assertFalse(c.await());
+    }
+
+    /** Wait until a thread is parked (or has finished) */
+    private static void awaitParked(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING && thread.isAlive()) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package sml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for parsing numbers with the {@link DecimalReader}
+ */
+class DecimalReaderTest {
+    @Test
+    void number_SignedNumbersAcrossBufferRefills_Parsed() throws IOException {
+        var in = reader("-2147483648,+12345,0", 3);
+
+        Assertions.assertEquals(Integer.MIN_VALUE, in.number());
+        in.skip();
+        Assertions.assertEquals(12345, in.number());
+        in.skip();
+        Assertions.assertEquals(0, in.number());
+        Assertions.assertEquals(-1, in.peek());
+        Assertions.assertEquals(20, in.offset());
+    }
+
+    @Test
+    void number_NoDigits_NotANumberAndSeparatorLeft() throws IOException {
+        var in = reader("-,", 4);
+
+        Assertions.assertEquals(DecimalReader.NOT_A_NUMBER, in.number());
+        Assertions.assertEquals(',', in.peek());
+    }
+
+    @Test
+    void number_TooLargeForAnInt_OutsideIntRange() throws IOException {
+        Assertions.assertEquals(2147483648L, reader("2147483648", 4).number());
+        Assertions.assertTrue(reader("99999999999999999999", 4).number() > Integer.MAX_VALUE);
+        Assertions.assertTrue(reader("-2147483649", 4).number() < Integer.MIN_VALUE);
+    }
+
+    private static DecimalReader reader(String text, int bufferSize) {
+        var bytes = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+        return new DecimalReader(Channels.newChannel(bytes), bufferSize);
+    }
+}
@@ -0,0 +1,128 @@
+package sml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for translating instructions on first use with a {@link LazyProgram}
+ */
+class LazyProgramTest {
+    /** Blank lines, a label with no opcode and an unknown opcode, which are all skipped */
+    private static final String SOURCE = """
+        f0 lin 1 6
+
+        f1 lin 2 1
+        nothing
+        f2 frob 1 2
+           f3 lin 3 1
+        f4 mul 2 2 1
+        f5 sub 1 1 3
+        f6 bnz 1 f4
+        f7 out 2
+        """;
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("sml-lazy");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path f : files.toList()) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    void get_EveryInstruction_SameAsTranslator() {
+        var translated = new ArrayList<Instruction>();
+        var labels = new Labels();
+        Translator.ofSource(SOURCE).readAndTranslate(labels, translated);
+
+        LazyProgram lazy = LazyProgram.of(SOURCE);
+
+        Assertions.assertEquals(translated.size(), lazy.size());
+        for (int pc = 0; pc < lazy.size(); pc++) {
+            Assertions.assertEquals(translated.get(pc).toString(), lazy.get(pc).toString(), "instruction " + pc);
+        }
+    }
+
+    @Test
+    void labels_Lookup_SameAsTranslator() {
+        var labels = new Labels();
+        Translator.ofSource(SOURCE).readAndTranslate(labels, new ArrayList<>());
+
+        Labels lazy = LazyProgram.of(SOURCE).labels();
+
+        for (String label : List.of("f0", "f1", "f3", "f4", "f5", "f6", "f7", "f2", "nothing", "f")) {
+            Assertions.assertEquals(labels.indexOf(label), lazy.indexOf(label), "label " + label);
+        }
+        Assertions.assertEquals(labels.size(), lazy.size());
+        Assertions.assertEquals("f3", lazy.get(2));
+    }
+
+    @Test
+    void get_OnlyReachedInstructions_Translated() {
+        LazyProgram lazy = LazyProgram.of(SOURCE);
+
+        lazy.get(3);
+
+        Assertions.assertEquals(1, lazy.decodedCount());
+        Assertions.assertSame(lazy.get(3), lazy.get(3));
+    }
+
+    @Test
+    void execute_FromFile_SameResultAsTranslator() throws IOException {
+        Path file = dir.resolve("fact.sml");
+        Files.writeString(file, SOURCE);
+        var m = Machine.ofSource(SOURCE);
+        m.execute();
+        Registers expected = m.registers().copy();
+
+        LazyProgram lazy = LazyProgram.open(file);
+        var out = new ArrayList<Integer>();
+        var lm = new Machine();
+        lm.labels(lazy.labels());
+        lm.prog(lazy);
+        lm.out(out::add);
+        lm.execute();
+
+        Assertions.assertEquals(expected, lm.registers());
+        Assertions.assertEquals(List.of(720), out);
+    }
+
+    @Test
+    void get_MalformedOperands_ThrowsWhenReached() {
+        LazyProgram lazy = LazyProgram.of("m0 lin 1 2\nm1 vadd 1..x 2..3 4..5\n");
+
+        Assertions.assertEquals(2, lazy.size());
+        Assertions.assertDoesNotThrow(() -> lazy.get(0));
+        Assertions.assertThrows(IllegalStateException.class, () -> lazy.get(1));
+    }
+
+    @Test
+    void labels_AddLabel_Throws() {
+        Labels labels = LazyProgram.of(SOURCE).labels();
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> labels.addLabel("x"));
+    }
+
+    @Test
+    void of_Blank_Empty() {
+        Assertions.assertEquals(0, LazyProgram.of("\n   \n\n").size());
+        Assertions.assertEquals(0, LazyProgram.of("").size());
+    }
+}
@@ -0,0 +1,88 @@
+package sml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for running machines connected by channels in a {@link Pipeline}
+ */
+class PipelineTest {
+    /** Sends 5, 4, 3, 2, 1 */
+    private static final String COUNT = """
+        a0 lin 1 5
+        a1 lin 2 1
+        a2 send 1 1
+        a3 sub 1 1 2
+        a4 bnz 1 a2
+        """;
+    /** Sends 1 for ever, until the next stage goes away */
+    private static final String FOREVER = """
+        f0 lin 1 1
+        f1 send 1 1
+        f2 bnz 1 f1
+        """;
+    /** Doubles each value received, until the previous stage ends */
+    private static final String DOUBLE = """
+        d0 lin 2 2
+        d1 recv 1 0
+        d2 mul 3 1 2
+        d3 send 1 3
+        d4 bnz 2 d1
+        """;
+    /** Divides by zero on the first value received */
+    private static final String FAIL = """
+        z0 recv 1 0
+        z1 lin 2 0
+        z2 div 3 1 2
+        """;
+    /** Passes two values on and ends */
+    private static final String TAKE_TWO = """
+        t0 recv 1 0
+        t1 send 1 1
+        t2 recv 1 0
+        t3 send 1 1
+        """;
+
+    @Test
+    void run_ThreeStages_SinkGetsValuesInOrder() {
+        var sink = new ArrayList<Integer>();
+
+        new Pipeline(List.of(Machine.ofSource(COUNT), Machine.ofSource(DOUBLE), Machine.ofSource(DOUBLE)), 2)
+            .run(sink::add);
+
+        Assertions.assertEquals(List.of(20, 16, 12, 8, 4), sink);
+    }
+
+    @Test
+    void run_LaterStageEnds_EarlierStageStops() {
+        var sink = new ArrayList<Integer>();
+
+        new Pipeline(List.of(Machine.ofSource(FOREVER), Machine.ofSource(TAKE_TWO)), 1).run(sink::add);
+
+        Assertions.assertEquals(List.of(1, 1), sink);
+    }
+
+    @Test
+    void run_StageFails_ThrowsAndOtherStagesEnd() {
+        var pipeline = new Pipeline(
+            List.of(Machine.ofSource(FOREVER), Machine.ofSource(FAIL), Machine.ofSource(DOUBLE)), 4);
+
+        Assertions.assertThrows(ArithmeticException.class, () -> pipeline.run(value -> { }));
+    }
+
+    @Test
+    void run_StageWithoutChannelsItUses_DescriptiveError() {
+        var pipeline = new Pipeline(List.of(Machine.ofSource("s0 lin 1 1\ns1 send 2 1")), 1);
+
+        var e = Assertions.assertThrows(IllegalStateException.class, () -> pipeline.run(value -> { }));
+        Assertions.assertEquals("send: no channel 2 (the machine has 2)", e.getMessage());
+    }
+
+    @Test
+    void constructor_NoStages_Throws() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Pipeline(List.of(), 1));
+    }
+}
@@ -0,0 +1,101 @@
+package sml.batch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+import sml.Registers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for running a program over many rows with the {@link BatchRunner}
+ */
+class BatchRunnerTest {
+    private static final int WIDTH = Registers.NUMBER_OF_REGISTERS;
+    /** Sets register 2 to register 1 squared, looping register 1 times so rows take different times */
+    private static final String SQUARE = """
+        s0 lin 3 1
+        s1 add 4 1 0
+        s2 bnz 4 s4
+        s3 bnz 3 s7
+        s4 add 2 2 1
+        s5 sub 4 4 3
+        s6 bnz 4 s4
+        s7 lin 5 0
+        """;
+
+    @Test
+    void run_SeveralWorkersSmallBatches_RowsInOrder() throws IOException {
+        List<int[]> rows = new ArrayList<>();
+        for (int n = 0; n < 2_000; n++) {
+            int[] row = new int[WIDTH];
+            row[1] = (n * 37) % 101;
+            rows.add(row);
+        }
+
+        List<int[]> results = run(runner(SQUARE, 4, 3, 2), rows);
+
+        Assertions.assertEquals(rows.size(), results.size());
+        for (int n = 0; n < rows.size(); n++) {
+            int value = rows.get(n)[1];
+            Assertions.assertEquals(value, results.get(n)[1], "row " + n);
+            Assertions.assertEquals(value * value, results.get(n)[2], "row " + n);
+        }
+    }
+
+    @Test
+    void run_ReturnsStats() throws IOException {
+        var bytes = RowFormatTest.write(RowFormat.CSV, List.of(new int[WIDTH], new int[WIDTH], new int[WIDTH]));
+
+        BatchRunner.Stats stats = runner(SQUARE, 2, 2, 1)
+            .run(reader(RowFormat.CSV, bytes), RowFormat.CSV.writer(Channels.newChannel(new ByteArrayOutputStream())));
+
+        Assertions.assertEquals(3, stats.rows());
+    }
+
+    @Test
+    void run_RowFails_ReportsItsNumber() {
+        var rows = new ArrayList<int[]>();
+        for (int n = 0; n < 20; n++) {
+            int[] row = new int[WIDTH];
+            row[1] = n == 11 ? 0 : n + 1;
+            rows.add(row);
+        }
+
+        IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+            () -> run(runner("d0 lin 2 100\nd1 div 3 2 1", 3, 4, 2), rows));
+        Assertions.assertTrue(e.getMessage().startsWith("Row 12 failed"), e.getMessage());
+        Assertions.assertTrue(e.getCause() instanceof ArithmeticException, String.valueOf(e.getCause()));
+    }
+
+    @Test
+    void constructor_NonPositiveSizes_Throw() {
+        var m = new Machine();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BatchRunner(m.labels(), m.prog(), 0, 1, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BatchRunner(m.labels(), m.prog(), 1, 0, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BatchRunner(m.labels(), m.prog(), 1, 1, 0));
+    }
+
+    private static BatchRunner runner(String source, int workers, int batchSize, int capacity) {
+        var m = Machine.ofSource(source);
+        return new BatchRunner(m.labels(), m.prog(), workers, batchSize, capacity);
+    }
+
+    private static RowFormat.Reader reader(RowFormat format, byte[] bytes) {
+        return format.reader(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    /** Run over rows passed through the binary format, returning the rows written */
+    private static List<int[]> run(BatchRunner runner, List<int[]> rows) throws IOException {
+        var out = new ByteArrayOutputStream();
+        runner.run(reader(RowFormat.BINARY, RowFormatTest.write(RowFormat.BINARY, rows)),
+            RowFormat.BINARY.writer(Channels.newChannel(out)));
+        return RowFormatTest.read(RowFormat.BINARY, out.toByteArray());
+    }
+}
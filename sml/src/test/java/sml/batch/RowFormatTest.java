@@ -0,0 +1,128 @@
+package sml.batch;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sml.Registers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for reading and writing the rows of a batch run in each {@link RowFormat}
+ */
+class RowFormatTest {
+    private static final int WIDTH = Registers.NUMBER_OF_REGISTERS;
+
+    @Test
+    void csv_WriteThenRead_SameRows() throws IOException {
+        List<int[]> rows = rows(5_000);
+
+        assertSameRows(rows, read(RowFormat.CSV, write(RowFormat.CSV, rows)));
+    }
+
+    @Test
+    void binary_WriteThenRead_SameRows() throws IOException {
+        List<int[]> rows = rows(5_000);
+
+        byte[] bytes = write(RowFormat.BINARY, rows);
+
+        Assertions.assertEquals(rows.size() * WIDTH * Integer.BYTES, bytes.length);
+        assertSameRows(rows, read(RowFormat.BINARY, bytes));
+    }
+
+    @Test
+    void csv_MissingValues_ReadAsZero() throws IOException {
+        byte[] bytes = "1, -2,3\n\n7\r\n".getBytes(StandardCharsets.US_ASCII);
+
+        List<int[]> rows = read(RowFormat.CSV, bytes);
+
+        Assertions.assertEquals(2, rows.size());
+        int[] first = new int[WIDTH];
+        first[0] = 1;
+        first[1] = -2;
+        first[2] = 3;
+        Assertions.assertArrayEquals(first, rows.get(0));
+        int[] second = new int[WIDTH];
+        second[0] = 7;
+        Assertions.assertArrayEquals(second, rows.get(1));
+    }
+
+    @Test
+    void csv_NotANumber_ThrowsWithLine() {
+        byte[] bytes = "1,2\n3,x\n".getBytes(StandardCharsets.US_ASCII);
+
+        IOException e = Assertions.assertThrows(IOException.class, () -> read(RowFormat.CSV, bytes));
+        Assertions.assertTrue(e.getMessage().startsWith("Line 2:"), e.getMessage());
+    }
+
+    @Test
+    void csv_NumberTooWide_Throws() {
+        byte[] bytes = "2147483648\n".getBytes(StandardCharsets.US_ASCII);
+
+        Assertions.assertThrows(IOException.class, () -> read(RowFormat.CSV, bytes));
+    }
+
+    @Test
+    void binary_PartialRow_Throws() throws IOException {
+        byte[] bytes = write(RowFormat.BINARY, rows(2));
+
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+
+        Assertions.assertThrows(IOException.class, () -> read(RowFormat.BINARY, truncated));
+    }
+
+    @Test
+    void named_IgnoresCase() {
+        Assertions.assertEquals(RowFormat.CSV, RowFormat.named("csv"));
+        Assertions.assertEquals(RowFormat.BINARY, RowFormat.named("Binary"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RowFormat.named("json"));
+    }
+
+    /** Returns rows with values of every width, including the extremes */
+    private static List<int[]> rows(int count) {
+        var rows = new ArrayList<int[]>();
+        for (int n = 0; n < count; n++) {
+            int[] row = new int[WIDTH];
+            for (int i = 0; i < WIDTH; i++) {
+                row[i] = (n * 31 + i) % 5 == 0 ? Integer.MIN_VALUE : (n - count / 2) * (i + 1) * 7919;
+            }
+            row[WIDTH - 1] = Integer.MAX_VALUE;
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static void assertSameRows(List<int[]> expected, List<int[]> actual) {
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int n = 0; n < expected.size(); n++) {
+            Assertions.assertArrayEquals(expected.get(n), actual.get(n), "row " + n);
+        }
+    }
+
+    static byte[] write(RowFormat format, List<int[]> rows) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (RowFormat.Writer writer = format.writer(Channels.newChannel(bytes))) {
+            for (int[] row : rows) {
+                writer.write(row, 0);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<int[]> read(RowFormat format, byte[] bytes) throws IOException {
+        var rows = new ArrayList<int[]>();
+        try (RowFormat.Reader reader = format.reader(Channels.newChannel(new ByteArrayInputStream(bytes)))) {
+            int[] row = new int[WIDTH];
+            while (reader.read(row, 0)) {
+                rows.add(row.clone());
+            }
+        }
+        return rows;
+    }
+}
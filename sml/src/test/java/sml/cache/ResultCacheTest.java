@@ -0,0 +1,176 @@
+package sml.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.ExecutionEngines;
+import sml.Machine;
+import sml.Memory;
+import sml.Registers;
+import sml.engine.CheckedEngine;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for memoizing runs with the {@link ResultCache}
+ */
+class ResultCacheTest {
+    /** Sums 1..n, n from register 1, printing the sum: 3n + 1 steps */
+    private static final String SUM = """
+        s0 lin 3 1
+        s1 add 2 2 1
+        s2 sub 1 1 3
+        s3 bnz 1 s1
+        s4 out 2
+        """;
+
+    private Machine m;
+    private List<Integer> out;
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        m = Machine.ofSource(SUM);
+        out = new ArrayList<>();
+        m.out(out::add);
+        dir = Files.createTempDirectory("sml-cache");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path f : files.toList()) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+        m = null;
+        out = null;
+    }
+
+    @Test
+    void execute_SecondRun_ReplaysRegistersOutputAndSteps() {
+        var cache = new ResultCache(8, 0);
+        cache.execute(m, start(100));
+        Registers first = m.registers().copy();
+        long steps = m.steps();
+        m.registers(new Registers());
+        m.steps(0);
+
+        cache.execute(m, start(100));
+
+        Assertions.assertEquals(first, m.registers());
+        Assertions.assertEquals(steps, m.steps());
+        Assertions.assertEquals(List.of(5050, 5050), out);
+        ResultCache.Stats stats = cache.stats();
+        Assertions.assertEquals(1, stats.hits());
+        Assertions.assertEquals(1, stats.misses());
+        Assertions.assertEquals(1, stats.stores());
+    }
+
+    @Test
+    void execute_OtherInitialRegisters_Miss() {
+        var cache = new ResultCache(8, 0);
+        cache.execute(m, start(10));
+
+        cache.execute(m, start(20));
+
+        Assertions.assertEquals(List.of(55, 210), out);
+        Assertions.assertEquals(0, cache.stats().hits());
+        Assertions.assertEquals(2, cache.stats().misses());
+    }
+
+    @Test
+    void execute_MoreResultsThanEntries_EvictsLeastRecentlyUsed() {
+        var cache = new ResultCache(2, 0);
+        cache.execute(m, start(1));
+        cache.execute(m, start(2));
+        cache.execute(m, start(1)); // 2 is now the least recently used
+        cache.execute(m, start(3));
+
+        Assertions.assertNotNull(cache.get(ResultCache.key(m, start(1))));
+        Assertions.assertNull(cache.get(ResultCache.key(m, start(2))));
+        Assertions.assertNotNull(cache.get(ResultCache.key(m, start(3))));
+        Assertions.assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    void execute_RunBelowMinSteps_NotStored() {
+        var cache = new ResultCache(8, 100);
+        cache.execute(m, start(10)); // 31 steps
+        cache.execute(m, start(50)); // 151 steps
+
+        Assertions.assertNull(cache.get(ResultCache.key(m, start(10))));
+        Assertions.assertNotNull(cache.get(ResultCache.key(m, start(50))));
+        Assertions.assertEquals(1, cache.stats().skipped());
+    }
+
+    @Test
+    void execute_ImpureProgram_AlwaysRuns() {
+        var impure = Machine.ofSource("i0 load 1 0\ni1 add 1 1 1\ni2 store 1 0");
+        impure.memory(Memory.allocate(1));
+        impure.memory().store(0, 3);
+        var cache = new ResultCache(8, 0);
+
+        cache.execute(impure);
+        cache.execute(impure);
+
+        Assertions.assertEquals(12, impure.memory().load(0));
+        Assertions.assertEquals(0, cache.stats().hits());
+        Assertions.assertEquals(2, cache.stats().skipped());
+    }
+
+    @Test
+    void execute_CheckedRunThatOverflowed_NotStoredNorAnsweredFromOtherEngine() {
+        var cache = new ResultCache(8, 0);
+        m.engine(ExecutionEngines.named("reference"));
+        cache.execute(m, start(100_000)); // the sum wraps
+        m.engine(ExecutionEngines.named(CheckedEngine.NAME));
+        List<BigInteger> wide = new ArrayList<>();
+        m.wideOut(wide::add);
+
+        cache.execute(m, start(100_000));
+
+        Assertions.assertNotNull(m.wideRegisters());
+        Assertions.assertEquals(List.of(BigInteger.valueOf(5_000_050_000L)), wide);
+        Assertions.assertEquals(0, cache.stats().hits());
+        Assertions.assertEquals(1, cache.stats().skipped());
+    }
+
+    @Test
+    void saveAndLoad_RoundTrip_Hits() throws IOException {
+        var cache = new ResultCache(8, 0);
+        cache.execute(m, start(100));
+        long steps = m.steps();
+        Path file = dir.resolve("results");
+        cache.save(file);
+
+        var loaded = new ResultCache(8, 0);
+        loaded.load(file);
+        loaded.execute(m, start(100));
+
+        Assertions.assertEquals(1, loaded.stats().hits());
+        Assertions.assertEquals(5050, m.registers().register(2));
+        Assertions.assertEquals(steps, m.steps());
+    }
+
+    @Test
+    void load_ForeignFile_Throws() throws IOException {
+        Path file = dir.resolve("foreign");
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+
+        Assertions.assertThrows(IOException.class, () -> new ResultCache(8, 0).load(file));
+    }
+
+    private static Registers start(int n) {
+        var regs = new Registers();
+        regs.register(1, n);
+        return regs;
+    }
+}
@@ -0,0 +1,336 @@
+package sml.conformance;
+
+import sml.CompactProgram;
+import sml.ExecutionEngine;
+import sml.ExecutionEngines;
+import sml.Input;
+import sml.Instruction;
+import sml.InstructionPool;
+import sml.Labels;
+import sml.Machine;
+import sml.Memory;
+import sml.Registers;
+import sml.Translator;
+import sml.engine.AstEngine;
+import sml.engine.Inliner;
+import sml.engine.LockstepMachine;
+import sml.engine.LoopDetector;
+import sml.engine.TieredEngine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Runs a program in every execution mode and compares each outcome with that of
+ * {@link Machine#execute()} on the reference engine.
+ * <p>
+ * The modes are every {@link ExecutionEngines#all() available engine}, the
+ * {@link TieredEngine tiered} and {@link AstEngine ast} engines with thresholds low enough for
+ * the short loops of generated programs to tier up and be rewritten, the reference
+ * engine after {@link Inliner inlining}, the {@link LoopDetector} (which must never stop a
+ * program that terminates), and {@link LockstepMachine lockstep} execution
+ * for the programs it accepts, each run on the program both as translated and as a
+ * {@link CompactProgram} sharing one pool of instructions. Two outcomes agree when they printed the same values
+ * and either ended with equal {@link Registers} or threw the same kind of exception.
+ * <p>
+ * A lockstep run has {@value #LANES} lanes: the first starts from zeroed registers like
+ * every other mode, the others from registers seeded with small random values, and each
+ * lane is compared with a reference run from its own registers. Lanes whose reference run
+ * does not stop within {@value #MAX_STEPS} steps are left out.
+ * A run on the {@code checked} engine in which arithmetic overflowed is not compared,
+ * since its results are then meant to differ.
+ *
+ * @author KLM and xxx
+ */
+final class Conformance {
+    /** Words of memory each run is given, for the programs that load and store */
+    static final int MEMORY_WORDS = 256;
+    /** Steps after which a candidate program is taken not to terminate while minimizing */
+    static final long MAX_STEPS = 1_000_000;
+    /** The numbers each run's in instructions read */
+    static final int[] INPUT = {3, -1, 7, 0, 42, 5, 9, -8, 1, 2};
+    /** Lanes in each lockstep run */
+    static final int LANES = 4;
+    /** Back-edges before the low-threshold tiered mode compiles a loop */
+    static final int TIER_THRESHOLD = 2;
+    /** Executions before the low-warmup ast mode rewrites a node */
+    static final int AST_WARMUP = 2;
+    /** Shared by the compact form of every program checked, as a server's programs share one */
+    private static final InstructionPool POOL = new InstructionPool(InstructionPool.SHARED_SIZE);
+
+    /**
+     * How a run ended.
+     *
+     * @param registers the final registers, or null if the run threw
+     * @param out       the values printed, in order, or null if the mode cannot tell
+     * @param exception the class of the exception thrown, or null
+     */
+    record Outcome(Registers registers, List<Integer> out, String exception) {
+        @Override
+        public String toString() {
+            return (exception != null ? "threw " + exception : "registers " + registers) + ", printed " + out;
+        }
+    }
+
+    /**
+     * A mode that disagreed with the reference engine.
+     *
+     * @param mode      the name of the mode
+     * @param expected  the reference outcome
+     * @param actual    the outcome in the mode
+     */
+    record Mismatch(String mode, Outcome expected, Outcome actual) {
+        @Override
+        public String toString() {
+            return mode + ": expected " + expected + " but " + actual;
+        }
+    }
+
+    /**
+     * A way of running a translated program.
+     *
+     * @param name the name reported for a mismatch
+     * @param run  runs a program, returning null if the mode cannot run it
+     */
+    record Mode(String name, BiFunction<Labels, List<Instruction>, Outcome> run) {
+    }
+
+    /** Returns the modes compared with the reference engine, except lockstep */
+    static List<Mode> modes() {
+        var modes = new ArrayList<Mode>();
+        for (ExecutionEngine engine : ExecutionEngines.all()) {
+            modes.add(new Mode(engine.name(), (labels, prog) -> onEngine(engine, labels, prog)));
+        }
+        var tiered = new TieredEngine(TIER_THRESHOLD, t -> { });
+        modes.add(new Mode("tiered (threshold " + TIER_THRESHOLD + ")",
+            (labels, prog) -> onEngine(tiered, labels, prog)));
+        var ast = new AstEngine(AST_WARMUP, r -> { });
+        modes.add(new Mode("ast (warmup " + AST_WARMUP + ")", (labels, prog) -> onEngine(ast, labels, prog)));
+        modes.add(new Mode("inlined", (labels, prog) -> {
+            Inliner.Result inlined = Inliner.inline(labels, prog);
+            return onEngine(ExecutionEngines.named("reference"), inlined.labels(), inlined.prog());
+        }));
+        var loopDetector = new LoopDetector(LoopDetector.UNLIMITED, true);
+        modes.add(new Mode("loop detector", (labels, prog) -> run(labels, prog, loopDetector::execute)));
+        return modes;
+    }
+
+    /**
+     * Run a program in every mode.
+     *
+     * @param source the program text
+     * @return the modes whose outcome differs from the reference engine's
+     */
+    static List<Mismatch> check(List<String> source) {
+        var labels = new Labels();
+        var prog = new ArrayList<Instruction>();
+        translate(source, labels, prog);
+        Outcome expected = onEngine(ExecutionEngines.named("reference"), labels, prog);
+        CompactProgram compact = CompactProgram.of(String.join("\n", source), POOL);
+        var mismatches = new ArrayList<Mismatch>();
+        for (Mode mode : modes()) {
+            Outcome actual = mode.run().apply(labels, prog);
+            if (actual != null && !agree(expected, actual)) {
+                mismatches.add(new Mismatch(mode.name(), expected, actual));
+            }
+            actual = mode.run().apply(compact.labels(), compact);
+            if (actual != null && !agree(expected, actual)) {
+                mismatches.add(new Mismatch(mode.name() + " (compact)", expected, actual));
+            }
+        }
+        mismatches.addAll(lockstep(labels, prog, ""));
+        mismatches.addAll(lockstep(compact.labels(), compact, " (compact)"));
+        return mismatches;
+    }
+
+    /**
+     * Run a program on the reference engine.
+     *
+     * @param source the program text
+     * @return the outcome every mode must match
+     */
+    static Outcome reference(List<String> source) {
+        var labels = new Labels();
+        var prog = new ArrayList<Instruction>();
+        translate(source, labels, prog);
+        return onEngine(ExecutionEngines.named("reference"), labels, prog);
+    }
+
+    /**
+     * Shrink a program on which some mode disagrees with the reference engine. Dropping
+     * lines can leave a loop without its exit, so only candidates that stop within
+     * {@value #MAX_STEPS} steps on the reference engine are kept.
+     *
+     * @param source the program text, one instruction per line
+     * @return the shrunk program
+     */
+    static List<String> minimize(List<String> source) {
+        return minimize(source, p -> terminates(p) && !check(p).isEmpty());
+    }
+
+    /**
+     * Shrink a failing program: repeatedly drop chunks of lines, then single lines, for
+     * as long as the program still fails.
+     *
+     * @param source the program text, one instruction per line
+     * @param fails  true for a program that still shows the failure
+     * @return a program no line of which can be dropped without losing the failure
+     */
+    static List<String> minimize(List<String> source, Predicate<List<String>> fails) {
+        List<String> current = source;
+        int chunk = Math.max(1, current.size() / 2);
+        while (true) {
+            boolean shrunk = false;
+            for (int from = 0; from < current.size(); ) {
+                var candidate = new ArrayList<>(current.subList(0, from));
+                candidate.addAll(current.subList(Math.min(current.size(), from + chunk), current.size()));
+                if (!candidate.isEmpty() && fails.test(candidate)) {
+                    current = candidate;
+                    shrunk = true;
+                } else {
+                    from += chunk;
+                }
+            }
+            if (chunk == 1 && !shrunk) {
+                return current;
+            }
+            chunk = Math.max(1, chunk / 2);
+        }
+    }
+
+    /** Returns true if the program stops within {@value #MAX_STEPS} steps, normally or by throwing */
+    private static boolean terminates(List<String> source) {
+        var labels = new Labels();
+        var prog = new ArrayList<Instruction>();
+        translate(source, labels, prog);
+        return terminates(labels, prog, new Registers());
+    }
+
+    /** Returns true if the program stops within {@value #MAX_STEPS} steps from the given registers */
+    private static boolean terminates(Labels labels, List<Instruction> prog, Registers initial) {
+        var m = new Machine();
+        m.labels(labels);
+        m.prog(prog);
+        m.registers(initial.copy());
+        m.memory(Memory.allocate(MEMORY_WORDS));
+        m.input(Input.of(INPUT));
+        m.out(value -> { });
+        int size = m.prog().size();
+        try {
+            for (long steps = 0; m.pc() < size; steps++) {
+                if (steps == MAX_STEPS) {
+                    return false;
+                }
+                Instruction ins = m.prog().get(m.pc());
+                m.pc(m.pc() + 1);
+                ins.execute(m);
+            }
+        } catch (RuntimeException e) {
+            return true;
+        }
+        return true;
+    }
+
+    private static void translate(List<String> source, Labels labels, List<Instruction> prog) {
+        Translator.ofSource(String.join("\n", source)).readAndTranslate(labels, prog);
+    }
+
+    private static boolean agree(Outcome expected, Outcome actual) {
+        return (actual.out() == null || expected.out().equals(actual.out()))
+            && (expected.exception() != null
+                ? expected.exception().equals(actual.exception())
+                : actual.exception() == null && expected.registers().equals(actual.registers()));
+    }
+
+    private static Outcome onEngine(ExecutionEngine engine, Labels labels, List<Instruction> prog) {
+        return onEngine(engine, labels, prog, new Registers());
+    }
+
+    private static Outcome onEngine(ExecutionEngine engine, Labels labels, List<Instruction> prog,
+                                    Registers initial) {
+        return run(labels, prog, m -> {
+            m.engine(engine);
+            m.execute(initial);
+        });
+    }
+
+    private static Outcome run(Labels labels, List<Instruction> prog, Consumer<Machine> execute) {
+        var m = new Machine();
+        m.labels(labels);
+        m.prog(prog);
+        m.memory(Memory.allocate(MEMORY_WORDS));
+        m.input(Input.of(INPUT));
+        var out = new ArrayList<Integer>();
+        m.out(out::add);
+        Outcome outcome;
+        try {
+            execute.accept(m);
+            outcome = new Outcome(m.registers(), out, null);
+        } catch (RuntimeException e) {
+            outcome = new Outcome(null, out, e.getClass().getName());
+        }
+        return m.wideRegisters() == null ? outcome : null;
+    }
+
+    /**
+     * Run a program in lockstep over {@value #LANES} lanes and compare each lane with the
+     * reference engine run from the same registers.
+     *
+     * @param suffix appended to the name of the mode in a mismatch
+     * @return the lanes that disagree; none if lockstep cannot run the program
+     */
+    private static List<Mismatch> lockstep(Labels labels, List<Instruction> prog, String suffix) {
+        LockstepMachine machine;
+        try {
+            machine = new LockstepMachine(labels, prog);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+        var lanes = new ArrayList<Registers>();
+        lanes.add(new Registers());
+        var random = new Random(prog.size());
+        for (int l = 1; l < LANES; l++) {
+            var seeded = new Registers();
+            for (int r = 0; r < seeded.size(); r++) {
+                seeded.register(r, random.nextInt(41) - 20);
+            }
+            if (terminates(labels, prog, seeded)) {
+                lanes.add(seeded);
+            }
+        }
+        var reference = ExecutionEngines.named("reference");
+        var expected = new ArrayList<Outcome>();
+        for (Registers lane : lanes) {
+            expected.add(onEngine(reference, labels, prog, lane));
+        }
+
+        var mismatches = new ArrayList<Mismatch>();
+        LockstepMachine.Result result;
+        try {
+            result = machine.execute(lanes.toArray(Registers[]::new));
+        } catch (RuntimeException e) {
+            // the whole run throws if any lane does, and output is only returned at the end
+            var actual = new Outcome(null, null, e.getClass().getName());
+            if (expected.stream().noneMatch(o -> actual.exception().equals(o.exception()))) {
+                mismatches.add(new Mismatch("lockstep" + suffix, expected.get(0), actual));
+            }
+            return mismatches;
+        }
+        for (int l = 0; l < lanes.size(); l++) {
+            var actual = new Outcome(result.registers()[l], Arrays.stream(result.output()[l]).boxed().toList(), null);
+            if (!agree(expected.get(l), actual)) {
+                mismatches.add(new Mismatch("lockstep lane " + l + " from " + lanes.get(l) + suffix,
+                    expected.get(l), actual));
+            }
+        }
+        return mismatches;
+    }
+
+    private Conformance() {
+    } // Utility classes should not have a public or default constructor
+}
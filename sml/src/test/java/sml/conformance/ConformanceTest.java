@@ -0,0 +1,78 @@
+package sml.conformance;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Differential tests: every execution mode must compute what the reference engine
+ * computes, for the programs in {@code resources} and for generated programs. A
+ * failing generated program is minimized before it is reported.
+ * <p>
+ * The number of generated programs is the {@code sml.conformance.programs} system
+ * property (default 500); the seeds are consecutive from {@code sml.conformance.seed}
+ * (default 0), so a reported seed reproduces its program.
+ */
+class ConformanceTest {
+    private static final int PROGRAMS = Integer.getInteger("sml.conformance.programs", 500);
+    private static final long SEED = Long.getLong("sml.conformance.seed", 0);
+
+    @Test
+    void corpus_AllModesAgree() throws IOException {
+        var failures = new ArrayList<String>();
+        for (Path file : corpus()) {
+            List<Conformance.Mismatch> mismatches = Conformance.check(Files.readAllLines(file));
+            if (!mismatches.isEmpty()) {
+                failures.add(file + ": " + mismatches);
+            }
+        }
+        Assertions.assertTrue(failures.isEmpty(), String.join("\n", failures));
+    }
+
+    @Test
+    void generated_AllModesAgree() {
+        for (long seed = SEED; seed < SEED + PROGRAMS; seed++) {
+            List<String> program = new ProgramGenerator(seed).generate();
+            List<Conformance.Mismatch> mismatches = Conformance.check(program);
+            if (!mismatches.isEmpty()) {
+                List<String> minimal = Conformance.minimize(program);
+                Assertions.fail("seed " + seed + ": " + mismatches + "\nminimized program:\n"
+                    + String.join("\n", minimal) + "\n" + Conformance.check(minimal));
+            }
+        }
+    }
+
+    @Test
+    void generated_SomeProgramsDivideByZero() {
+        boolean threw = false;
+        for (long seed = SEED; seed < SEED + PROGRAMS && !threw; seed++) {
+            Conformance.Outcome outcome = Conformance.reference(new ProgramGenerator(seed).generate());
+            threw = ArithmeticException.class.getName().equals(outcome.exception());
+        }
+        Assertions.assertTrue(threw, "no generated program exercises an exception");
+    }
+
+    @Test
+    void minimize_KeepsOnlyTheLinesThatFail() {
+        List<String> program = List.of("a0 lin 1 1", "a1 lin 2 2", "a2 div 3 1 0", "a3 out 1", "a4 lin 4 4");
+
+        List<String> minimal = Conformance.minimize(program,
+            p -> p.contains("a2 div 3 1 0") && p.contains("a3 out 1"));
+
+        Assertions.assertEquals(List.of("a2 div 3 1 0", "a3 out 1"), minimal);
+    }
+
+    /** Returns the programs in resources, wherever the tests run from */
+    private static List<Path> corpus() throws IOException {
+        Path dir = Files.isDirectory(Path.of("resources")) ? Path.of("resources") : Path.of("sml", "resources");
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.toString().endsWith(".sml")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package sml.conformance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random SML programs that always terminate.
+ * <p>
+ * A program computes in registers 0 to {@value #DATA} - 1 with arithmetic, vector,
+ * memory, {@code in} and {@code out} instructions, nested counted loops, forward {@code bnz}
+ * jumps and calls of straight-line subroutines placed after the main body. Loop
+ * counters and the constant one live in registers nothing else writes, so every loop
+ * runs a bounded number of times; divisors are arbitrary, so some programs divide by
+ * zero.
+ *
+ * @author KLM and xxx
+ */
+final class ProgramGenerator {
+    /** Registers 0 to DATA - 1 hold data */
+    private static final int DATA = 16;
+    /** The first loop counter register; nested loops use the ones after it */
+    private static final int COUNTER = 24;
+    private static final int MAX_DEPTH = 3;
+    /** Holds 1, for counting loops down and for unconditional jumps */
+    private static final int ONE = 31;
+
+    private final Random random;
+    /** Instructions without labels; "@n" refers to the label of instruction n, "@sK" to subroutine K */
+    private final List<String> body = new ArrayList<>();
+    private int subroutines;
+
+    /**
+     * @param seed the seed; the same seed always generates the same program
+     */
+    ProgramGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Generate a program.
+     *
+     * @return the program text, one labelled instruction per line
+     */
+    List<String> generate() {
+        subroutines = random.nextInt(3);
+        emit("lin " + ONE + " 1");
+        for (int n = random.nextInt(6); n > 0; n--) {
+            emit("lin " + data() + " " + value());
+        }
+        block(0, 5 + random.nextInt(20));
+        int[] entries = new int[subroutines];
+        if (subroutines > 0) {
+            emit("bnz " + ONE + " @end");
+        }
+        for (int k = 0; k < subroutines; k++) {
+            entries[k] = body.size();
+            for (int n = 1 + random.nextInt(10); n > 0; n--) {
+                straight();
+            }
+            if (k + 1 < subroutines && random.nextBoolean()) {
+                // a later subroutine only, so calls cannot recurse
+                emit("call @s" + (k + 1));
+            }
+            emit("ret");
+        }
+        emit("lin " + ONE + " 1");
+        return render(entries);
+    }
+
+    private void block(int depth, int statements) {
+        for (int n = 0; n < statements; n++) {
+            int choice = random.nextInt(10);
+            if (choice == 0 && depth < MAX_DEPTH) {
+                int counter = COUNTER + depth;
+                emit("lin " + counter + " " + (1 + random.nextInt(6)));
+                int start = body.size();
+                block(depth + 1, 1 + random.nextInt(6));
+                emit("sub " + counter + " " + counter + " " + ONE);
+                emit("bnz " + counter + " @" + start);
+            } else if (choice == 1) {
+                int skip = 1 + random.nextInt(3);
+                emit("bnz " + data() + " @" + (body.size() + 1 + skip));
+                for (int i = 0; i < skip; i++) {
+                    straight();
+                }
+            } else if (choice == 2 && subroutines > 0) {
+                emit("call @s" + random.nextInt(subroutines));
+            } else if (choice == 3 && random.nextInt(4) == 0) {
+                // reads past the end of the input stop the program
+                emit("in " + data());
+            } else {
+                straight();
+            }
+        }
+    }
+
+    /** Emit one instruction that does not change control flow */
+    private void straight() {
+        int length = 1 + random.nextInt(4);
+        switch (random.nextInt(14)) {
+            case 0, 1 -> emit("lin " + data() + " " + value());
+            case 2, 3 -> emit("add " + data() + " " + data() + " " + data());
+            case 4, 5 -> emit("sub " + data() + " " + data() + " " + data());
+            case 6 -> emit("mul " + data() + " " + data() + " " + data());
+            case 7 -> emit("div " + data() + " " + data() + " " + data());
+            case 8 -> emit("out " + data());
+            case 9 -> emit("v" + List.of("add", "sub", "mul").get(random.nextInt(3)) + " " + range(length)
+                + " " + start(length) + " " + start(length));
+            case 10 -> emit("vsum " + data() + " " + range(length));
+            case 11 -> emit("vdot " + data() + " " + range(length) + " " + start(length));
+            case 12 -> emit("load " + data() + " " + random.nextInt(Conformance.MEMORY_WORDS));
+            default -> emit("store " + data() + " " + random.nextInt(Conformance.MEMORY_WORDS));
+        }
+    }
+
+    private void emit(String instruction) {
+        body.add(instruction);
+    }
+
+    private int data() {
+        return random.nextInt(DATA);
+    }
+
+    private int value() {
+        return random.nextInt(8) == 0 ? random.nextInt() : random.nextInt(41) - 20;
+    }
+
+    private int start(int length) {
+        return random.nextInt(DATA - length + 1);
+    }
+
+    private String range(int length) {
+        int start = start(length);
+        return start + ".." + (start + length - 1);
+    }
+
+    private List<String> render(int[] entries) {
+        var lines = new ArrayList<String>(body.size());
+        for (int i = 0; i < body.size(); i++) {
+            String text = body.get(i);
+            int at = text.indexOf('@');
+            if (at >= 0) {
+                String ref = text.substring(at + 1);
+                int target = ref.equals("end") ? body.size() - 1
+                    : ref.startsWith("s") ? entries[Integer.parseInt(ref.substring(1))]
+                    : Integer.parseInt(ref);
+                text = text.substring(0, at) + "L" + target;
+            }
+            lines.add("L" + i + " " + text);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,157 @@
+package sml.daemon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Registers;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the line protocol of the {@link Daemon}
+ */
+class DaemonTest {
+    private Path dir;
+    private Daemon daemon;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("sml-daemon");
+        daemon = new Daemon(dir.resolve("sml.sock"), 4);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        daemon.close();
+        try (var files = Files.list(dir)) {
+            for (Path f : files.toList()) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    void run_Program_OutputLinesThenRegisters() throws IOException {
+        Path file = program("p0 lin 1 3\np1 out 1\np2 lin 2 4\np3 out 2\n");
+
+        List<String> lines = request("RUN " + file);
+
+        Assertions.assertEquals(List.of("OUT 3", "OUT 4"), lines.subList(0, 2));
+        Assertions.assertTrue(lines.get(2).startsWith("REGISTERS Registers(registers=[0, 3, 4, 0, "), lines.get(2));
+        Assertions.assertEquals(3, lines.size());
+    }
+
+    @Test
+    void run_OutputBeforeLongLoop_ArrivesBeforeRegisters() throws IOException {
+        Path file = program("l0 lin 1 1\nl1 out 1\nl2 lin 2 3000000\nl3 sub 2 2 1\nl4 bnz 2 l3\n");
+
+        try (var channel = connect("RUN " + file)) {
+            var in = reader(channel);
+
+            Assertions.assertEquals("OUT 1", in.readLine());
+            Assertions.assertTrue(in.readLine().startsWith("REGISTERS "));
+        }
+    }
+
+    @Test
+    void run_SpawnedThreadsOutputting_LinesStayWhole() throws IOException {
+        var source = new StringBuilder();
+        for (int t = 0; t < 4; t++) {
+            source.append("s").append(t).append(" spawn w").append(t).append('\n');
+        }
+        source.append("j0 join\n");
+        for (int t = 0; t < 4; t++) {
+            // each child outputs its own value 200 times, then jumps to the end
+            source.append("w").append(t).append(" lin 1 200\n")
+                .append("x").append(t).append(" lin 3 ").append(1_000_000 * (t + 1)).append('\n')
+                .append("e").append(t).append(" lin 4 1\n")
+                .append("y").append(t).append(" out 3\n")
+                .append("z").append(t).append(" sub 1 1 4\n")
+                .append("v").append(t).append(" bnz 1 y").append(t).append('\n')
+                .append("f").append(t).append(" bnz 4 end\n");
+        }
+        source.append("end lin 5 0\n");
+
+        List<String> lines = request("RUN " + program(source.toString()));
+
+        Assertions.assertTrue(lines.get(lines.size() - 1).startsWith("REGISTERS "), lines.get(lines.size() - 1));
+        Assertions.assertEquals(1001, lines.size()); // the parent runs w0 after the join
+        for (String line : lines.subList(0, lines.size() - 1)) {
+            Assertions.assertTrue(line.matches("OUT [1-4]000000"), line);
+        }
+    }
+
+    @Test
+    void request_Unknown_Error() throws IOException {
+        List<String> lines = request("FROB");
+
+        Assertions.assertEquals(List.of("ERROR java.lang.IllegalArgumentException: Unknown request: FROB"), lines);
+    }
+
+    @Test
+    void run_MissingFile_Error() throws IOException {
+        List<String> lines = request("RUN " + dir.resolve("missing.sml"));
+
+        Assertions.assertEquals(1, lines.size());
+        Assertions.assertTrue(lines.get(0).startsWith("ERROR java.lang.IllegalArgumentException: Cannot read"),
+            lines.get(0));
+    }
+
+    @Test
+    void client_Program_PrintsRegistersAsMainDoes() throws IOException {
+        Path file = program("p0 lin 1 3\np1 out 1\n");
+        var bytes = new ByteArrayOutputStream();
+
+        int status = DaemonClient.run(daemon.path(), file, new PrintStream(bytes, true, StandardCharsets.UTF_8));
+
+        var expected = new Registers();
+        expected.register(1, 3);
+        Assertions.assertEquals(0, status);
+        Assertions.assertEquals(List.of("3", "Values of registers at program termination:" + expected + "."),
+            bytes.toString(StandardCharsets.UTF_8).lines().toList());
+    }
+
+    private Path program(String source) throws IOException {
+        Path file = Files.createTempFile(dir, "program", ".sml");
+        Files.writeString(file, source);
+        return file;
+    }
+
+    private List<String> request(String request) throws IOException {
+        try (var channel = connect(request)) {
+            var in = reader(channel);
+            var lines = new ArrayList<String>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        }
+    }
+
+    private SocketChannel connect(String request) throws IOException {
+        var channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.connect(UnixDomainSocketAddress.of(daemon.path()));
+        Channels.newOutputStream(channel).write((request + "\n").getBytes(StandardCharsets.UTF_8));
+        return channel;
+    }
+
+    private static BufferedReader reader(SocketChannel channel) {
+        return new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,176 @@
+package sml.debug;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for breakpoints, watchpoints and stepping with the {@link Debugger}
+ */
+class DebuggerTest {
+    /** Computes 4! in register 2, counting register 1 down */
+    private static final String FACTORIAL = """
+        f0 lin 1 4
+        f1 lin 2 1
+        f2 lin 3 1
+        f3 mul 2 2 1
+        f4 sub 1 1 3
+        f5 bnz 1 f3
+        f6 out 2
+        """;
+
+    private Machine m;
+    private List<Instruction> program;
+    private List<Integer> out;
+    private Debugger debugger;
+
+    @BeforeEach
+    void setUp() {
+        m = Machine.ofSource(FACTORIAL);
+        program = m.prog();
+        out = new ArrayList<>();
+        m.out(out::add);
+        debugger = new Debugger(m);
+    }
+
+    @Test
+    void resume_BreakpointByLabel_StopsEachTimeAround() {
+        debugger.breakAt("f4");
+
+        Debugger.Stop first = debugger.resume();
+        Debugger.Stop second = debugger.resume();
+
+        Assertions.assertEquals(new Debugger.Stop(Debugger.Reason.BREAKPOINT, 4, -1, 0, 0), first);
+        Assertions.assertEquals(Debugger.Reason.BREAKPOINT, second.reason());
+        Assertions.assertEquals(3, m.registers().register(1)); // the sub has run once
+        Assertions.assertEquals(12, m.registers().register(2));
+    }
+
+    @Test
+    void resume_BreakpointByPc_StopsBeforeInstruction() {
+        debugger.breakAt(6);
+
+        Debugger.Stop stop = debugger.resume();
+
+        Assertions.assertEquals(6, stop.pc());
+        Assertions.assertEquals(24, m.registers().register(2));
+        Assertions.assertEquals(List.of(), out);
+        Assertions.assertEquals(Debugger.Reason.FINISHED, debugger.resume().reason());
+        Assertions.assertEquals(List.of(24), out);
+    }
+
+    @Test
+    void resume_BreakpointCleared_RunsToEnd() {
+        debugger.breakAt("f3");
+        debugger.resume();
+        debugger.clearBreak(3);
+
+        Assertions.assertEquals(Debugger.Reason.FINISHED, debugger.resume().reason());
+        Assertions.assertEquals(List.of(), debugger.breakpoints());
+        Assertions.assertEquals(List.of(24), out);
+    }
+
+    @Test
+    void breakAt_UnknownLabelOrPc_Throws() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> debugger.breakAt("nowhere"));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> debugger.breakAt(7));
+    }
+
+    @Test
+    void resume_Watchpoint_StopsAfterChangeWithValues() {
+        debugger.watch(2);
+
+        Debugger.Stop init = debugger.resume();
+        Debugger.Stop times4 = debugger.resume();
+        Debugger.Stop times3 = debugger.resume();
+
+        Assertions.assertEquals(new Debugger.Stop(Debugger.Reason.WATCHPOINT, 2, 2, 0, 1), init);
+        Assertions.assertEquals(new Debugger.Stop(Debugger.Reason.WATCHPOINT, 4, 2, 1, 4), times4);
+        Assertions.assertEquals(new Debugger.Stop(Debugger.Reason.WATCHPOINT, 4, 2, 4, 12), times3);
+    }
+
+    @Test
+    void resume_WatchedRegisterUnchanged_DoesNotStop() {
+        debugger.restart(registers(0, 0, 0, 1)); // f2 writes the 1 register 3 already holds
+        debugger.watch(3);
+
+        Assertions.assertEquals(Debugger.Reason.FINISHED, debugger.resume().reason());
+    }
+
+    @Test
+    void resume_BreakpointOnWatchedInstruction_StepsOverBreakpointButHonoursWatch() {
+        debugger.breakAt("f3");
+        debugger.watch(2);
+        debugger.resume(); // stops at f1 for the watch on 2
+        debugger.resume(); // breakpoint at f3
+
+        Debugger.Stop stop = debugger.resume();
+
+        Assertions.assertEquals(new Debugger.Stop(Debugger.Reason.WATCHPOINT, 4, 2, 1, 4), stop);
+    }
+
+    @Test
+    void step_EachInstruction_ThenFinished() {
+        debugger.breakAt(1);
+
+        Debugger.Stop first = debugger.step();
+        Debugger.Stop second = debugger.step();
+
+        Assertions.assertEquals(new Debugger.Stop(Debugger.Reason.STEP, 1, -1, 0, 0), first);
+        Assertions.assertEquals(2, second.pc());
+        Assertions.assertEquals(1, m.registers().register(2));
+        debugger.clearBreak(1);
+        debugger.resume();
+        Assertions.assertEquals(Debugger.Reason.FINISHED, debugger.step().reason());
+    }
+
+    @Test
+    void breakAtAndWatch_PatchedInstructions_NotPure() {
+        debugger.breakAt("f3");
+        debugger.watch(1);
+
+        Assertions.assertTrue(program.get(3).pure());
+        Assertions.assertFalse(m.prog().get(3).pure());
+        Assertions.assertFalse(m.prog().get(4).pure());
+        Assertions.assertTrue(m.prog().get(5).pure());
+    }
+
+    @Test
+    void detach_AfterPatching_RestoresProgram() {
+        debugger.breakAt("f3");
+        debugger.watch(1);
+        Assertions.assertNotSame(program, m.prog());
+
+        debugger.detach();
+
+        Assertions.assertSame(program, m.prog());
+        m.execute();
+        Assertions.assertEquals(List.of(24), out);
+    }
+
+    @Test
+    void restart_WithRegisters_StartsOver() {
+        debugger.breakAt("f6");
+        debugger.resume();
+
+        debugger.restart(new Registers());
+
+        Assertions.assertEquals(0, m.pc());
+        Assertions.assertEquals(0, m.registers().register(2));
+        Assertions.assertEquals(6, debugger.resume().pc());
+    }
+
+    private static Registers registers(int... values) {
+        var regs = new Registers();
+        for (int r = 0; r < values.length; r++) {
+            regs.register(r, values[r]);
+        }
+        return regs;
+    }
+}
@@ -0,0 +1,260 @@
+package sml.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.ExecutionEngines;
+import sml.Machine;
+import sml.ReferenceEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the self-specializing nodes of the {@link AstEngine}
+ */
+class AstEngineTest {
+    /** Counts register 1 down from 10: the bnz at 3 is taken 9 times, then falls through */
+    private static final String COUNTDOWN = """
+        c0 lin 1 10
+        c1 lin 2 1
+        c2 sub 1 1 2
+        c3 bnz 1 c2
+        """;
+    /** Divides a dividend, stepped down each time round, by a divisor 8 times, printing each quotient */
+    private static final String DIVIDE = """
+        d0 lin 1 %d
+        d1 lin 2 %d
+        d2 lin 5 %d
+        d3 lin 6 8
+        d4 lin 7 1
+        d5 div 3 1 2
+        d6 out 3
+        d7 sub 1 1 5
+        d8 sub 6 6 7
+        d9 bnz 6 d5
+        """;
+    /** The pc of the div in DIVIDE */
+    private static final int DIV = 5;
+
+    private List<AstEngine.Rewrite> rewrites;
+    private AstEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        rewrites = new ArrayList<>();
+        engine = new AstEngine(3, rewrites::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rewrites = null;
+        engine = null;
+    }
+
+    @Test
+    void execute_LoopBranch_SpecializedTakenThenDespecializedOnExit() {
+        assertMatchesReference(COUNTDOWN);
+
+        Assertions.assertEquals(List.of(
+            "2: sub (uninitialized) -> sub (registers 1, 1, 2)",
+            "3: bnz (uninitialized) -> bnz-taken (taken 3 of 3 times)",
+            "3: bnz-taken -> bnz (uninitialized) (not taken)"), strings(rewrites));
+    }
+
+    @Test
+    void execute_BranchNeverTaken_SpecializedNotTaken() {
+        assertMatchesReference("""
+            n0 lin 1 4
+            n1 lin 2 1
+            n2 lin 3 0
+            n3 bnz 3 n6
+            n4 sub 1 1 2
+            n5 bnz 1 n3
+            n6 lin 4 7
+            """);
+
+        Assertions.assertEquals(List.of("3: bnz (uninitialized) -> bnz-not-taken (taken 0 of 3 times)"),
+            strings(at(3)));
+    }
+
+    @Test
+    void execute_ConstantPowerOfTwoDivisor_BecomesShift() {
+        assertMatchesReference(DIVIDE.formatted(10, 4, 3));
+
+        Assertions.assertEquals(List.of("5: div (uninitialized) -> div-shift (divisor always 4)"), strings(at(DIV)));
+    }
+
+    @Test
+    void execute_ShiftOfNegativeDividends_RoundsTowardsZero() {
+        // dividends 9, 2, -5, ..., -40 by 8
+        var out = assertMatchesReference(DIVIDE.formatted(9, 8, 7));
+
+        Assertions.assertEquals(List.of(1, 0, 0, -1, -2, -3, -4, -5), out);
+        Assertions.assertEquals("div-shift", at(DIV).get(0).to());
+    }
+
+    @Test
+    void execute_ShiftOfIntegerMinValue_LikeDivision() {
+        // dividends MIN_VALUE, MIN_VALUE + 1, ... by 8, 2 and 1
+        for (int divisor : new int[] {8, 2, 1}) {
+            rewrites.clear();
+
+            var out = assertMatchesReference(DIVIDE.formatted(Integer.MIN_VALUE, divisor, -1));
+
+            Assertions.assertEquals(Integer.MIN_VALUE / divisor, (int) out.get(0));
+            Assertions.assertEquals("div-shift", at(DIV).get(0).to(), "divisor " + divisor);
+        }
+    }
+
+    @Test
+    void execute_DivisorNotAPowerOfTwo_StaysGeneral() {
+        assertMatchesReference(DIVIDE.formatted(100, 6, 3));
+
+        Assertions.assertEquals(List.of("5: div (uninitialized) -> div (divisor 6 is not a constant power of two)"),
+            strings(at(DIV)));
+    }
+
+    @Test
+    void execute_AliasedRegisters_SpecializedOnFirstExecution() {
+        Machine m = assertMatchesReferenceOn("""
+            a0 lin 1 5
+            a1 add 2 1 1
+            a2 add 3 3 1
+            a3 add 4 1 4
+            a4 sub 5 1 1
+            a5 mul 6 1 1
+            a6 add 7 1 2
+            """);
+
+        Assertions.assertEquals(List.of(
+            "1: add (uninitialized) -> add-double (registers 2, 1, 1)",
+            "2: add (uninitialized) -> add-accumulate (registers 3, 3, 1)",
+            "3: add (uninitialized) -> add-accumulate (registers 4, 1, 4)",
+            "4: sub (uninitialized) -> sub-zero (registers 5, 1, 1)",
+            "5: mul (uninitialized) -> mul-square (registers 6, 1, 1)",
+            "6: add (uninitialized) -> add (registers 7, 1, 2)"), strings(rewrites));
+        Assertions.assertEquals(10, m.registers().register(2));
+        Assertions.assertEquals(25, m.registers().register(6));
+    }
+
+    @Test
+    void execute_DivisorChanges_DespecializesThenStopsAfterMaxRewrites() {
+        engine = new AstEngine(1, rewrites::add);
+
+        // the divisor alternates 2, 4, 2, 4, ...
+        assertMatchesReference("""
+            m0 lin 1 100
+            m1 lin 2 2
+            m2 lin 8 6
+            m3 lin 6 8
+            m4 lin 7 1
+            m5 div 3 1 2
+            m6 out 3
+            m7 sub 2 8 2
+            m8 sub 6 6 7
+            m9 bnz 6 m5
+            """);
+
+        Assertions.assertEquals(List.of(
+            "5: div (uninitialized) -> div-shift (divisor always 2)",
+            "5: div-shift -> div (uninitialized) (divisor 4, not 2)",
+            "5: div (uninitialized) -> div-shift (divisor always 4)",
+            "5: div-shift -> div (uninitialized) (divisor 2, not 4)",
+            "5: div (uninitialized) -> div-shift (divisor always 2)",
+            "5: div-shift -> div (uninitialized) (divisor 4, not 2)",
+            "5: div (uninitialized) -> div-shift (divisor always 4)",
+            "5: div-shift -> div (divisor 2, not 4)"), strings(at(DIV)));
+        Assertions.assertEquals(AstEngine.MAX_REWRITES,
+            at(DIV).stream().filter(r -> r.to().equals("div-shift")).count());
+    }
+
+    @Test
+    void execute_BranchFlips_DespecializesThenStopsAfterMaxRewrites() {
+        engine = new AstEngine(1, rewrites::add);
+
+        // register 4 alternates 1, 0, 1, 0, ...
+        assertMatchesReference("""
+            f0 lin 4 1
+            f1 lin 9 1
+            f2 lin 6 8
+            f3 bnz 4 f5
+            f4 lin 5 3
+            f5 sub 4 9 4
+            f6 sub 6 6 9
+            f7 bnz 6 f3
+            """);
+
+        Assertions.assertEquals(List.of(
+            "3: bnz (uninitialized) -> bnz-taken (taken 1 of 1 times)",
+            "3: bnz-taken -> bnz (uninitialized) (not taken)",
+            "3: bnz (uninitialized) -> bnz-taken (taken 1 of 1 times)",
+            "3: bnz-taken -> bnz (uninitialized) (not taken)",
+            "3: bnz (uninitialized) -> bnz-taken (taken 1 of 1 times)",
+            "3: bnz-taken -> bnz (uninitialized) (not taken)",
+            "3: bnz (uninitialized) -> bnz-taken (taken 1 of 1 times)",
+            "3: bnz-taken -> bnz (not taken)"), strings(at(3)));
+    }
+
+    @Test
+    void stats_CountsNodesAndRewrites() {
+        assertMatchesReference(COUNTDOWN);
+        assertMatchesReference(DIVIDE.formatted(100, 6, 3));
+
+        AstEngine.Stats stats = engine.stats();
+
+        Assertions.assertEquals(4 + 10, stats.nodes());
+        // the countdown's bnz, and the divide's bnz
+        Assertions.assertEquals(2, stats.specializations());
+        Assertions.assertEquals(2, stats.despecializations());
+        // the countdown's sub, and the divide's div and two subs
+        Assertions.assertEquals(4, stats.generalizations());
+        Assertions.assertEquals(Map.of("bnz-taken", 2L), stats.specializedNodes());
+        Assertions.assertEquals(rewrites.size(), stats.specializations() + stats.despecializations()
+            + stats.generalizations());
+    }
+
+    @Test
+    void constructor_NonPositiveWarmup_Throws() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AstEngine(0, r -> { }));
+    }
+
+    /** Run a program on the engine and on the reference engine, returning the output */
+    private List<Integer> assertMatchesReference(String source) {
+        var out = new ArrayList<Integer>();
+        assertMatchesReferenceOn(source, out);
+        return out;
+    }
+
+    private Machine assertMatchesReferenceOn(String source) {
+        return assertMatchesReferenceOn(source, new ArrayList<>());
+    }
+
+    private Machine assertMatchesReferenceOn(String source, List<Integer> out) {
+        var m = Machine.ofSource(source);
+        m.out(out::add);
+        m.engine(engine);
+        m.execute();
+
+        var reference = Machine.ofSource(source);
+        var expected = new ArrayList<Integer>();
+        reference.out(expected::add);
+        reference.engine(ExecutionEngines.named(ReferenceEngine.NAME));
+        reference.execute();
+        Assertions.assertEquals(expected, out);
+        Assertions.assertEquals(reference.registers(), m.registers());
+        Assertions.assertEquals(reference.steps(), m.steps());
+        return m;
+    }
+
+    /** Returns the rewrites of the node at a pc, in order */
+    private List<AstEngine.Rewrite> at(int pc) {
+        return rewrites.stream().filter(r -> r.pc() == pc).toList();
+    }
+
+    private static List<String> strings(List<AstEngine.Rewrite> rewrites) {
+        return rewrites.stream().map(AstEngine.Rewrite::toString).toList();
+    }
+}
@@ -0,0 +1,85 @@
+package sml.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sml.ExecutionEngines;
+import sml.Machine;
+import sml.ReferenceEngine;
+import sml.Registers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for running a program a basic block at a time with the {@link BlockEngine}
+ */
+class BlockEngineTest {
+    /** Sums n..1 for n in register 1, printing each partial sum */
+    private static final String SUM = """
+        s0 lin 3 1
+        s1 add 2 2 1
+        s2 out 2
+        s3 sub 1 1 3
+        s4 bnz 1 s1
+        s5 lin 4 10
+        s6 mul 5 2 4
+        """;
+
+    @Test
+    void execute_Loop_MatchesReference() {
+        var m = Machine.ofSource(SUM);
+        var blocks = new BlockEngine(ControlFlowGraph.build(m.labels(), m.prog()));
+        var out = new ArrayList<Integer>();
+        m.out(out::add);
+
+        blocks.execute(m, start(5));
+
+        Registers registers = m.registers().copy();
+        long steps = m.steps();
+        var referenceOut = new ArrayList<Integer>();
+        m.out(referenceOut::add);
+        m.engine(ExecutionEngines.named(ReferenceEngine.NAME));
+        m.execute(start(5));
+        Assertions.assertEquals(m.registers(), registers);
+        Assertions.assertEquals(m.steps(), steps);
+        Assertions.assertEquals(referenceOut, out);
+        Assertions.assertEquals(List.of(5, 9, 12, 14, 15), out);
+        Assertions.assertEquals(150, registers.register(5));
+    }
+
+    @Test
+    void execute_Loop_CountsBlockEntries() {
+        var m = Machine.ofSource(SUM);
+        ControlFlowGraph cfg = ControlFlowGraph.build(m.labels(), m.prog());
+
+        new BlockEngine(cfg).execute(m, start(4));
+
+        List<Long> entries = cfg.blocks().stream().map(BasicBlock::executions).toList();
+        Assertions.assertEquals(List.of(1L, 4L, 1L), entries);
+        cfg.resetExecutions();
+        Assertions.assertEquals(0, cfg.blocks().get(1).executions());
+    }
+
+    @Test
+    void run_FromInsideBlock_StepsToNextBoundary() {
+        var m = Machine.ofSource(SUM);
+        var blocks = new BlockEngine(ControlFlowGraph.build(m.labels(), m.prog()));
+        var out = new ArrayList<Integer>();
+        m.out(out::add);
+        m.registers(start(2));
+        m.registers().register(3, 1);
+        m.pc(2); // inside the loop block, skipping the first add
+
+        blocks.run(m);
+
+        Assertions.assertEquals(List.of(0, 1), out);
+        Assertions.assertEquals(10, m.registers().register(5));
+        Assertions.assertEquals(m.prog().size(), m.pc());
+    }
+
+    private static Registers start(int n) {
+        var regs = new Registers();
+        regs.register(1, n);
+        return regs;
+    }
+}
@@ -0,0 +1,236 @@
+package sml.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+import sml.Memory;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for overflow-checked arithmetic on the {@link CheckedEngine}
+ */
+class CheckedEngineTest {
+    /** Computes n! into register 2, n from the first lin, and prints it */
+    private static final String FACTORIAL = """
+        f0 lin 1 %d
+        f1 lin 2 1
+        f2 lin 3 1
+        f3 mul 2 2 1
+        f4 sub 1 1 3
+        f5 bnz 1 f3
+        f6 out 2
+        """;
+
+    private Machine m;
+    private List<Integer> out;
+    private List<BigInteger> wideOut;
+
+    @BeforeEach
+    void setUp() {
+        m = new Machine();
+        m.engine(new CheckedEngine());
+        out = new ArrayList<>();
+        m.out(out::add);
+        wideOut = new ArrayList<>();
+        m.wideOut(wideOut::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        m = null;
+        out = null;
+        wideOut = null;
+    }
+
+    @Test
+    void execute_NoOverflow_LikeTheOtherEngines() {
+        run(FACTORIAL.formatted(12));
+
+        Assertions.assertEquals(List.of(479_001_600), out);
+        Assertions.assertEquals(List.of(), wideOut);
+        Assertions.assertNull(m.wideRegisters());
+    }
+
+    @Test
+    void execute_Factorial13_Exact() {
+        run(FACTORIAL.formatted(13));
+
+        Assertions.assertEquals(List.of(BigInteger.valueOf(6_227_020_800L)), wideOut);
+        Assertions.assertEquals(List.of(), out);
+        Assertions.assertTrue(m.wideRegisters().wide(2));
+        Assertions.assertEquals(BigInteger.valueOf(6_227_020_800L), m.wideRegisters().register(2));
+        Assertions.assertEquals((int) 6_227_020_800L, m.registers().register(2));
+    }
+
+    @Test
+    void execute_Factorial25_Exact() {
+        BigInteger expected = BigInteger.ONE;
+        for (int i = 2; i <= 25; i++) {
+            expected = expected.multiply(BigInteger.valueOf(i));
+        }
+
+        run(FACTORIAL.formatted(25));
+
+        Assertions.assertEquals(List.of(expected), wideOut);
+        Assertions.assertEquals(expected, m.wideRegisters().register(2));
+        Assertions.assertEquals(expected.intValue(), m.registers().register(2));
+    }
+
+    @Test
+    void execute_IntToLongToBigIntegerAndBack_NarrowAgain() {
+        run("""
+            p0 lin 1 65536
+            p1 mul 2 1 1
+            p2 out 2
+            p3 mul 2 2 2
+            p4 out 2
+            p5 div 2 2 1
+            p6 out 2
+            p7 div 2 2 1
+            p8 out 2
+            p9 div 2 2 1
+            pa out 2
+            """);
+
+        Assertions.assertEquals(List.of(BigInteger.TWO.pow(32), BigInteger.TWO.pow(64), BigInteger.TWO.pow(48),
+            BigInteger.TWO.pow(32)), wideOut);
+        Assertions.assertEquals(List.of(65536), out);
+        Assertions.assertFalse(m.wideRegisters().wide(2));
+        Assertions.assertEquals(4, m.wideRegisters().overflows());
+    }
+
+    @Test
+    void execute_AddOverflowsThenSubtractsBack_Narrow() {
+        run("""
+            a0 lin 1 2147483647
+            a1 lin 2 1
+            a2 add 3 1 2
+            a3 out 3
+            a4 sub 3 3 2
+            a5 out 3
+            """);
+
+        Assertions.assertEquals(List.of(BigInteger.valueOf(2_147_483_648L)), wideOut);
+        Assertions.assertEquals(List.of(Integer.MAX_VALUE), out);
+        Assertions.assertFalse(m.wideRegisters().wide(3));
+    }
+
+    @Test
+    void execute_OutOfWideValueWithoutWideOut_Throws() {
+        m.wideOut(null);
+
+        var e = Assertions.assertThrows(ArithmeticException.class, () -> run(FACTORIAL.formatted(13)));
+
+        Assertions.assertEquals("out: register 2 holds 6227020800, which is wider than 32 bits", e.getMessage());
+        Assertions.assertEquals(6, m.pc());
+    }
+
+    @Test
+    void execute_WideRegisterReadByUnsupportedInstruction_Throws() {
+        m.memory(Memory.allocate(4));
+
+        var e = Assertions.assertThrows(ArithmeticException.class, () -> run("""
+            w0 lin 1 65536
+            w1 mul 2 1 1
+            w2 store 2 0
+            """));
+
+        Assertions.assertTrue(e.getMessage().endsWith("reads a register wider than 32 bits"), e.getMessage());
+        Assertions.assertEquals(0, m.memory().load(0));
+    }
+
+    @Test
+    void execute_WideRegisterOverwrittenByUnsupportedInstruction_Narrow() {
+        m.memory(Memory.allocate(4));
+
+        run("""
+            w0 lin 1 65536
+            w1 mul 2 1 1
+            w2 load 2 0
+            w3 out 2
+            """);
+
+        Assertions.assertEquals(List.of(0), out);
+        Assertions.assertFalse(m.wideRegisters().wide(2));
+    }
+
+    @Test
+    void execute_JoinKeepsWideRegistersTheChildrenDidNotChange() {
+        run("""
+            p0 lin 1 5
+            p1 spawn w0
+            p2 lin 20 65536
+            p3 mul 21 20 20
+            p4 join
+            p5 out 21
+            p6 out 2
+            p7 bnz 1 end
+            w0 lin 2 7
+            w1 join
+            end lin 3 0
+            """);
+
+        Assertions.assertEquals(List.of(BigInteger.TWO.pow(32)), wideOut);
+        Assertions.assertEquals(List.of(7), out);
+        Assertions.assertTrue(m.wideRegisters().wide(21));
+    }
+
+    @Test
+    void execute_JoinMergesARegisterAChildChanged_Narrow() {
+        run("""
+            p0 lin 1 5
+            p1 spawn w0
+            p2 lin 20 65536
+            p3 mul 21 20 20
+            p4 join
+            p5 out 21
+            p6 bnz 1 end
+            w0 lin 21 9
+            w1 join
+            end lin 3 0
+            """);
+
+        Assertions.assertEquals(List.of(9), out);
+        Assertions.assertEquals(List.of(), wideOut);
+        Assertions.assertFalse(m.wideRegisters().wide(21));
+    }
+
+    @Test
+    void execute_OverflowInAChild_WrapsAround() {
+        run("""
+            p0 lin 1 65536
+            p1 spawn w0
+            p2 join
+            p3 out 2
+            p4 bnz 1 end
+            w0 mul 2 1 1
+            w1 join
+            end lin 3 0
+            """);
+
+        Assertions.assertEquals(List.of(0), out);
+        Assertions.assertNull(m.wideRegisters());
+    }
+
+    @Test
+    void execute_SpawnWithAWideRegister_Throws() {
+        Assertions.assertThrows(ArithmeticException.class, () -> run("""
+            p0 lin 1 65536
+            p1 mul 2 1 1
+            p2 spawn end
+            end lin 3 0
+            """));
+    }
+
+    private void run(String source) {
+        Machine program = Machine.ofSource(source);
+        m.labels(program.labels());
+        m.prog(program.prog());
+        m.execute();
+    }
+}
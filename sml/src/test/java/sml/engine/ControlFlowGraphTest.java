@@ -0,0 +1,90 @@
+package sml.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+
+import java.util.List;
+
+/**
+ * Tests for splitting a program into basic blocks with the {@link ControlFlowGraph}
+ */
+class ControlFlowGraphTest {
+    /** x0 is a label no instruction jumps to; t0 is the target of the bnz */
+    private static final String LOOP = """
+        p0 lin 1 3
+        p1 lin 2 1
+        x0 add 4 4 1
+        t0 sub 1 1 2
+        t1 bnz 1 t0
+        e0 out 4
+        """;
+    private static final String CALL = """
+        c0 lin 1 5
+        c1 call f0
+        c2 out 1
+        f0 add 1 1 1
+        f1 ret
+        """;
+
+    @Test
+    void build_BranchTarget_StartsBlock() {
+        ControlFlowGraph cfg = build(LOOP);
+
+        Assertions.assertEquals(1, cfg.blockStartingAt(3));
+        Assertions.assertEquals(3, cfg.blocks().get(1).start());
+    }
+
+    @Test
+    void build_LabelNothingJumpsTo_DoesNotStartBlock() {
+        ControlFlowGraph cfg = build(LOOP);
+
+        Assertions.assertEquals(-1, cfg.blockStartingAt(2));
+        Assertions.assertEquals(3, cfg.blocks().get(0).length());
+    }
+
+    @Test
+    void build_AfterBranch_StartsBlock() {
+        List<BasicBlock> blocks = build(LOOP).blocks();
+
+        Assertions.assertEquals(3, blocks.size());
+        Assertions.assertEquals(5, blocks.get(1).end());
+        Assertions.assertTrue(blocks.get(1).terminated());
+        Assertions.assertEquals(5, blocks.get(2).start());
+    }
+
+    @Test
+    void build_Loop_SuccessorsFollowBranchAndFallThrough() {
+        List<BasicBlock> blocks = build(LOOP).blocks();
+
+        Assertions.assertArrayEquals(new int[] {1}, blocks.get(0).successors());
+        Assertions.assertFalse(blocks.get(0).terminated());
+        Assertions.assertArrayEquals(new int[] {1, 2}, blocks.get(1).successors());
+        Assertions.assertArrayEquals(new int[0], blocks.get(2).successors());
+    }
+
+    @Test
+    void build_Call_TargetAndReturnPointStartBlocks() {
+        List<BasicBlock> blocks = build(CALL).blocks();
+
+        Assertions.assertEquals(3, blocks.size());
+        Assertions.assertEquals(List.of(0, 2, 3), blocks.stream().map(BasicBlock::start).toList());
+        Assertions.assertArrayEquals(new int[] {2, 1}, blocks.get(0).successors());
+        Assertions.assertArrayEquals(new int[] {2}, blocks.get(1).successors());
+        Assertions.assertArrayEquals(new int[0], blocks.get(2).successors());
+    }
+
+    @Test
+    void blockStartingAt_OutOfRange_MinusOne() {
+        ControlFlowGraph cfg = build(LOOP);
+
+        Assertions.assertEquals(-1, cfg.blockStartingAt(-1));
+        Assertions.assertEquals(-1, cfg.blockStartingAt(6));
+        Assertions.assertEquals(-1, cfg.blockStartingAt(100));
+    }
+
+    private static ControlFlowGraph build(String source) {
+        var m = Machine.ofSource(source);
+        return ControlFlowGraph.build(m.labels(), m.prog());
+    }
+}
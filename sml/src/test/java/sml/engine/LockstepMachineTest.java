@@ -0,0 +1,93 @@
+package sml.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sml.ExecutionEngines;
+import sml.Machine;
+import sml.ReferenceEngine;
+import sml.Registers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for running a program over many lanes with the {@link LockstepMachine}
+ */
+class LockstepMachineTest {
+    /** Lanes with register 1 zero skip the doubling; all lanes then meet at j0 */
+    private static final String BRANCH = """
+        b0 bnz 1 d0
+        b1 lin 2 7
+        b2 lin 3 1
+        b3 bnz 3 j0
+        d0 add 2 1 1
+        d1 out 2
+        j0 lin 4 3
+        j1 add 5 2 4
+        j2 out 5
+        """;
+    /** Counts register 1 down to zero, so each lane loops as many times as its register 1 */
+    private static final String LOOP = """
+        l0 lin 3 1
+        l1 add 2 2 1
+        l2 out 1
+        l3 sub 1 1 3
+        l4 bnz 1 l1
+        """;
+
+    @Test
+    void execute_LanesDivergeAndReconverge_MatchReference() {
+        assertMatchesReference(BRANCH, lanes(0, 5, 0, -3, 9));
+    }
+
+    @Test
+    void execute_LanesFinishAtDifferentTimes_MatchReference() {
+        assertMatchesReference(LOOP, lanes(1, 4, 2, 7, 1, 3));
+    }
+
+    @Test
+    void execute_OneLaneDividesByZero_WholeRunThrows() {
+        var m = Machine.ofSource("z0 lin 2 12\nz1 div 3 2 1\nz2 out 3");
+
+        LockstepMachine lockstep = new LockstepMachine(m.labels(), m.prog());
+
+        Assertions.assertThrows(ArithmeticException.class, () -> lockstep.execute(lanes(3, 4, 0, 6)));
+    }
+
+    @Test
+    void constructor_UnsupportedInstruction_Throws() {
+        var m = Machine.ofSource("c0 call f0\nf0 ret");
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LockstepMachine(m.labels(), m.prog()));
+    }
+
+    /** Returns one lane per value, each with that value in register 1 */
+    private static Registers[] lanes(int... values) {
+        var lanes = new Registers[values.length];
+        for (int l = 0; l < values.length; l++) {
+            lanes[l] = new Registers();
+            lanes[l].register(1, values[l]);
+        }
+        return lanes;
+    }
+
+
+    private static void assertMatchesReference(String source, Registers[] lanes) {
+        var m = Machine.ofSource(source);
+        LockstepMachine.Result result = new LockstepMachine(m.labels(), m.prog()).execute(lanes);
+
+        m.engine(ExecutionEngines.named(ReferenceEngine.NAME));
+        for (int l = 0; l < lanes.length; l++) {
+            var out = new ArrayList<Integer>();
+            m.out(out::add);
+            m.execute(lanes[l]);
+
+            Assertions.assertEquals(m.registers(), result.registers()[l], "registers of lane " + l);
+            List<Integer> lockstepOut = new ArrayList<>();
+            for (int v : result.output()[l]) {
+                lockstepOut.add(v);
+            }
+            Assertions.assertEquals(out, lockstepOut, "output of lane " + l);
+        }
+    }
+}
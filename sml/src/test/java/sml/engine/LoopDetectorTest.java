@@ -0,0 +1,132 @@
+package sml.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sml.ExecutionEngines;
+import sml.Machine;
+import sml.Memory;
+import sml.ReferenceEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for stopping programs that do not terminate with the {@link LoopDetector}
+ */
+class LoopDetectorTest {
+    /** Branches to itself forever, its state never changing */
+    private static final String SPIN = """
+        s0 lin 1 1
+        s1 lin 2 7
+        s2 bnz 1 s2
+        """;
+    /** Counts register 1 down from 50, printing it */
+    private static final String COUNTDOWN = """
+        c0 lin 1 50
+        c1 lin 3 1
+        c2 out 1
+        c3 sub 1 1 3
+        c4 bnz 1 c2
+        """;
+
+    @Test
+    void execute_InfiniteLoop_Proven() {
+        var m = Machine.ofSource(SPIN);
+
+        var e = Assertions.assertThrows(NonTerminationException.class,
+            () -> new LoopDetector(LoopDetector.UNLIMITED, true).execute(m));
+
+        Assertions.assertTrue(e.proven());
+        Assertions.assertEquals(1, e.period());
+        Assertions.assertEquals(2, e.pc());
+        Assertions.assertEquals(2, m.pc());
+        Assertions.assertEquals(e.steps(), m.steps());
+    }
+
+    @Test
+    void execute_LoopChangingARegister_NotStoppedUntilTheBudget() {
+        var m = Machine.ofSource("i0 lin 1 1\ni1 add 2 2 1\ni2 bnz 1 i1");
+
+        var e = Assertions.assertThrows(NonTerminationException.class,
+            () -> new LoopDetector(100_000, true).execute(m));
+
+        Assertions.assertFalse(e.proven());
+        Assertions.assertEquals(100_000, e.steps());
+    }
+
+    @Test
+    void execute_TerminatingLoop_RunsLikeTheReferenceEngine() {
+        var m = Machine.ofSource(COUNTDOWN);
+        var out = new ArrayList<Integer>();
+        m.out(out::add);
+
+        new LoopDetector(LoopDetector.UNLIMITED, true).execute(m);
+
+        var reference = Machine.ofSource(COUNTDOWN);
+        var expected = new ArrayList<Integer>();
+        reference.out(expected::add);
+        reference.engine(ExecutionEngines.named(ReferenceEngine.NAME));
+        reference.execute();
+        Assertions.assertEquals(expected, out);
+        Assertions.assertEquals(reference.registers(), m.registers());
+        Assertions.assertEquals(reference.steps(), m.steps());
+    }
+
+    @Test
+    void execute_BudgetExhausted_StopsAtExactlyMaxSteps() {
+        var m = Machine.ofSource(COUNTDOWN);
+        var out = new ArrayList<Integer>();
+        m.out(out::add);
+
+        var e = Assertions.assertThrows(NonTerminationException.class,
+            () -> new LoopDetector(7, false).execute(m));
+
+        // lin, lin, then out, sub, bnz, out, sub: the next instruction is the second bnz
+        Assertions.assertFalse(e.proven());
+        Assertions.assertEquals(0, e.period());
+        Assertions.assertEquals(7, e.steps());
+        Assertions.assertEquals(7, m.steps());
+        Assertions.assertEquals(4, e.pc());
+        Assertions.assertEquals(4, m.pc());
+        Assertions.assertEquals(48, m.registers().register(1));
+        Assertions.assertEquals(List.of(50, 49), out);
+    }
+
+    @Test
+    void execute_BudgetEqualToSteps_Completes() {
+        var m = Machine.ofSource(COUNTDOWN);
+        m.out(value -> { });
+
+        new LoopDetector(2 + 3 * 50, false).execute(m);
+
+        Assertions.assertEquals(0, m.registers().register(1));
+        Assertions.assertEquals(2 + 3 * 50, m.steps());
+    }
+
+    @Test
+    void execute_DetectionOff_InfiniteLoopRunsToTheBudget() {
+        var m = Machine.ofSource(SPIN);
+
+        var e = Assertions.assertThrows(NonTerminationException.class,
+            () -> new LoopDetector(1_000, false).execute(m));
+
+        Assertions.assertFalse(e.proven());
+        Assertions.assertEquals(1_000, e.steps());
+    }
+
+    @Test
+    void execute_LoopThroughMemory_OnlyTheBudgetStopsIt() {
+        var m = Machine.ofSource("m0 lin 1 1\nm1 store 1 0\nm2 bnz 1 m1");
+        m.memory(Memory.allocate(1));
+
+        var e = Assertions.assertThrows(NonTerminationException.class,
+            () -> new LoopDetector(10_000, true).execute(m));
+
+        Assertions.assertFalse(e.proven());
+    }
+
+    @Test
+    void constructor_NonPositiveBudget_Throws() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LoopDetector(0, true));
+    }
+}
@@ -0,0 +1,206 @@
+package sml.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.LazyProgram;
+import sml.Machine;
+import sml.ProgramHash;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for recording, saving and merging {@link Profile}s
+ */
+class ProfileTest {
+    /** Counts register 1 down from 10: the bnz at 3 is taken 9 times */
+    private static final String COUNTDOWN = """
+        c0 lin 1 10
+        c1 lin 2 1
+        c2 sub 1 1 2
+        c3 bnz 1 c2
+        """;
+
+    private Machine m;
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        m = Machine.ofSource(COUNTDOWN);
+        dir = Files.createTempDirectory("sml-profile");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path f : files.toList()) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+        m = null;
+    }
+
+    @Test
+    void profiler_CountsExecutionsAndBranches() {
+        Profile profile = profiled(1);
+
+        Assertions.assertEquals(1, profile.runs());
+        Assertions.assertEquals(1, profile.executions(0));
+        Assertions.assertEquals(10, profile.executions(2));
+        Assertions.assertEquals(9, profile.taken(3));
+        Assertions.assertEquals(0, profile.taken(2));
+        Assertions.assertEquals(22, profile.stepsPerRun());
+        Assertions.assertTrue(profile.matches(m.prog()));
+    }
+
+    @Test
+    void save_ThenLoad_SameCounts() throws IOException {
+        Profile profile = profiled(3);
+        Path file = dir.resolve("p.prof");
+
+        profile.save(file);
+        Profile loaded = Profile.load(file);
+
+        Assertions.assertEquals(profile.programHash(), loaded.programHash());
+        Assertions.assertEquals(profile.size(), loaded.size());
+        Assertions.assertEquals(3, loaded.runs());
+        for (int pc = 0; pc < profile.size(); pc++) {
+            Assertions.assertEquals(profile.executions(pc), loaded.executions(pc), "executions at " + pc);
+            Assertions.assertEquals(profile.taken(pc), loaded.taken(pc), "taken at " + pc);
+        }
+        Assertions.assertTrue(loaded.matches(m.prog()));
+    }
+
+    @Test
+    void load_TruncatedFile_Throws() throws IOException {
+        Path file = dir.resolve("p.prof");
+        profiled(1).save(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+
+        IOException e = Assertions.assertThrows(IOException.class, () -> Profile.load(file));
+        Assertions.assertTrue(e.getMessage().endsWith("is truncated"), e.getMessage());
+    }
+
+    @Test
+    void load_ShorterThanTheHeader_Throws() throws IOException {
+        Path file = dir.resolve("p.prof");
+        profiled(1).save(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, 20));
+
+        Assertions.assertThrows(IOException.class, () -> Profile.load(file));
+    }
+
+    @Test
+    void load_ForeignFile_Throws() throws IOException {
+        Path file = dir.resolve("p.prof");
+        Files.writeString(file, "c0 lin 1 10\n".repeat(40));
+
+        IOException e = Assertions.assertThrows(IOException.class, () -> Profile.load(file));
+        Assertions.assertTrue(e.getMessage().endsWith("is not a profile"), e.getMessage());
+    }
+
+    @Test
+    void merge_AddsCountsAndRuns() {
+        Profile profile = profiled(2);
+        Profile other = profiled(3);
+
+        profile.merge(other);
+
+        Assertions.assertEquals(5, profile.runs());
+        Assertions.assertEquals(50, profile.executions(2));
+        Assertions.assertEquals(45, profile.taken(3));
+        Assertions.assertEquals(22, profile.stepsPerRun());
+    }
+
+    @Test
+    void merge_ProfileOfAnotherProgram_Throws() {
+        Profile profile = profiled(1);
+        var other = Machine.ofSource("o0 lin 1 3");
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> profile.merge(Profile.of(other.prog())));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> profile.merge(new Profile(profile.programHash(), profile.size() + 1)));
+        Assertions.assertEquals(1, profile.runs());
+    }
+
+    @Test
+    void guides_ProgramProfiled_True() {
+        Assertions.assertTrue(profiled(1).guides(m.prog()));
+    }
+
+    @Test
+    void guides_ProgramChanged_False() {
+        var changed = Machine.ofSource(COUNTDOWN.replace("lin 1 10", "lin 1 11"));
+
+        Assertions.assertFalse(profiled(1).guides(changed.prog()));
+        Assertions.assertFalse(new Profile(ProgramHash.of(m.prog()), m.prog().size() + 1).guides(m.prog()));
+    }
+
+    @Test
+    void guides_LazyProgram_FalseWithoutTranslatingIt() {
+        LazyProgram lazy = LazyProgram.of(COUNTDOWN);
+
+        Assertions.assertFalse(profiled(1).guides(lazy));
+        Assertions.assertEquals(0, lazy.decodedCount());
+    }
+
+    @Test
+    void tieredEngine_ProfiledLoop_CompiledBeforeTheRun() {
+        Profile profile = profiled(1);
+        List<TieredEngine.TierUp> tierUps = new ArrayList<>();
+
+        m.engine(new TieredEngine(5, tierUps::add, profile));
+        m.execute();
+
+        Assertions.assertEquals(1, tierUps.size());
+        Assertions.assertEquals(9, tierUps.get(0).backEdges());
+        Assertions.assertEquals(0, m.registers().register(1));
+    }
+
+    @Test
+    void tieredEngine_ProfileOfAnotherProgram_Ignored() {
+        Profile profile = profiled(1);
+        var other = Machine.ofSource("o0 lin 1 3\no1 lin 2 1\no2 sub 1 1 2\no3 bnz 1 o2");
+        List<TieredEngine.TierUp> tierUps = new ArrayList<>();
+
+        other.engine(new TieredEngine(5, tierUps::add, profile));
+        other.execute();
+
+        Assertions.assertEquals(List.of(), tierUps);
+    }
+
+    @Test
+    void engineSelector_Profile_ChoosesFromTheProfiledRuns() {
+        Profile profile = profiled(2);
+
+        EngineSelector.Choice profiled = new EngineSelector(profile).choose(m.labels(), m.prog());
+        EngineSelector.Choice estimated = new EngineSelector().choose(m.labels(), m.prog());
+
+        Assertions.assertTrue(profiled.profiled());
+        Assertions.assertEquals(22, profiled.estimatedSteps());
+        Assertions.assertFalse(estimated.profiled());
+    }
+
+    @Test
+    void constructor_NotAHash_Throws() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Profile("abc", 4));
+    }
+
+    /** Returns a profile of the given number of runs of the program */
+    private Profile profiled(int runs) {
+        var profiler = new Profiler(Profile.of(m.prog()));
+        for (int n = 0; n < runs; n++) {
+            profiler.execute(m);
+        }
+        return profiler.profile();
+    }
+}
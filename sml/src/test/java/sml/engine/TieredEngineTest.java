@@ -0,0 +1,171 @@
+package sml.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sml.ExecutionEngines;
+import sml.Machine;
+import sml.ReferenceEngine;
+import sml.Registers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for compiling hot loops mid-run with the {@link TieredEngine}
+ */
+class TieredEngineTest {
+    /** Counts register 1 down from 20, printing it and summing it into register 2 */
+    private static final String LOOP = """
+        l0 lin 1 20
+        l1 lin 3 1
+        l2 add 2 2 1
+        l3 out 1
+        l4 sub 1 1 3
+        l5 bnz 1 l2
+        l6 mul 4 2 2
+        l7 out 4
+        """;
+    /** An inner loop run 6 times for each of 5 outer iterations */
+    private static final String NESTED = """
+        n0 lin 1 5
+        n1 lin 3 1
+        n2 lin 2 6
+        n3 add 4 4 2
+        n4 sub 2 2 3
+        n5 bnz 2 n3
+        n6 sub 1 1 3
+        n7 bnz 1 n2
+        n8 out 4
+        """;
+    /** A loop the verified engine cannot run, because of its join */
+    private static final String UNSUPPORTED = """
+        u0 lin 1 10
+        u1 lin 3 1
+        u2 join
+        u3 sub 1 1 3
+        u4 bnz 1 u2
+        """;
+    /** A loop left by a forward bnz out of its middle, once register 1 reaches 7 */
+    private static final String EARLY_EXIT = """
+        e0 lin 1 0
+        e1 lin 3 1
+        e2 lin 5 -7
+        e3 add 1 1 3
+        e4 add 6 1 5
+        e5 lin 4 1
+        e6 bnz 6 e8
+        e7 bnz 4 done
+        e8 bnz 4 e3
+        done out 1
+        """;
+    /** Calls a subroutine defined before the call sites and one defined after them, three times each */
+    private static final String CALLS = """
+        c0 lin 1 0
+        c1 lin 3 1
+        c2 bnz 3 main
+        early add 1 1 3
+        e1 ret
+        main call early
+        m1 call late
+        m2 call early
+        m3 call late
+        m4 call early
+        m5 call late
+        m6 bnz 3 end
+        late add 1 1 3
+        l1 ret
+        end out 1
+        """;
+
+    @Test
+    void execute_HotLoop_TiersUpAtThreshold() {
+        var tierUps = new ArrayList<TieredEngine.TierUp>();
+
+        assertMatchesReference(LOOP, new TieredEngine(5, tierUps::add));
+
+        Assertions.assertEquals(List.of(new TieredEngine.TierUp(2, 6, 5, true, "")), tierUps);
+    }
+
+    @Test
+    void execute_LoopBelowThreshold_StaysInterpreted() {
+        var tierUps = new ArrayList<TieredEngine.TierUp>();
+
+        assertMatchesReference(LOOP, new TieredEngine(100, tierUps::add));
+
+        Assertions.assertEquals(List.of(), tierUps);
+    }
+
+    @Test
+    void execute_TierUpOnFirstBackEdge_ContinuesOnStack() {
+        var tierUps = new ArrayList<TieredEngine.TierUp>();
+
+        assertMatchesReference(LOOP, new TieredEngine(1, tierUps::add));
+
+        Assertions.assertEquals(1, tierUps.get(0).backEdges());
+    }
+
+    @Test
+    void execute_NestedLoops_InnerThenOuterCompiled() {
+        var tierUps = new ArrayList<TieredEngine.TierUp>();
+
+        assertMatchesReference(NESTED, new TieredEngine(3, tierUps::add));
+
+        Assertions.assertEquals(List.of(
+            new TieredEngine.TierUp(3, 6, 3, true, ""),
+            new TieredEngine.TierUp(2, 8, 3, true, "")), tierUps);
+    }
+
+    @Test
+    void execute_LoopThatDoesNotVerify_LeftInterpreted() {
+        var tierUps = new ArrayList<TieredEngine.TierUp>();
+
+        assertMatchesReference(UNSUPPORTED, new TieredEngine(2, tierUps::add));
+
+        Assertions.assertEquals(1, tierUps.size());
+        Assertions.assertFalse(tierUps.get(0).compiled());
+        Assertions.assertEquals("instruction 2: not supported by the verified engine: join", tierUps.get(0).reason());
+    }
+
+    @Test
+    void execute_CompiledLoopLeftMidway_BackToInterpreter() {
+        var tierUps = new ArrayList<TieredEngine.TierUp>();
+
+        assertMatchesReference(EARLY_EXIT, new TieredEngine(2, tierUps::add));
+
+        Assertions.assertTrue(tierUps.get(0).compiled());
+    }
+
+    @Test
+    void execute_BackwardCallsAndReturns_NotCountedAsBackEdges() {
+        var tierUps = new ArrayList<TieredEngine.TierUp>();
+
+        assertMatchesReference(CALLS, new TieredEngine(2, tierUps::add));
+
+        Assertions.assertEquals(List.of(), tierUps);
+    }
+
+    @Test
+    void constructor_ThresholdBelowOne_Throws() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TieredEngine(0, t -> { }));
+    }
+
+    private static void assertMatchesReference(String source, TieredEngine engine) {
+        var m = Machine.ofSource(source);
+        var out = new ArrayList<Integer>();
+        m.out(out::add);
+        m.engine(ExecutionEngines.named(ReferenceEngine.NAME));
+        m.execute();
+        Registers registers = m.registers().copy();
+        long steps = m.steps();
+        List<Integer> expected = List.copyOf(out);
+
+        out.clear();
+        m.engine(engine);
+        m.execute();
+
+        Assertions.assertEquals(registers, m.registers());
+        Assertions.assertEquals(expected, out);
+        Assertions.assertEquals(steps, m.steps());
+        Assertions.assertEquals(m.prog().size(), m.pc());
+    }
+}
@@ -0,0 +1,109 @@
+package sml.engine;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+import sml.Memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for checking programs with the {@link Verifier} and running them as a {@link VerifiedProgram}
+ */
+class VerifierTest {
+    @Test
+    void verify_UndefinedLabel_Problem() {
+        Verifier.Result result = verify("u0 lin 1 1\nu1 bnz 1 nowhere");
+
+        Assertions.assertFalse(result.verified());
+        Assertions.assertEquals(List.of(new Verifier.Problem(1, "bnz to undefined label nowhere")),
+            result.problems());
+    }
+
+    @Test
+    void verify_CallToUndefinedLabel_Problem() {
+        Verifier.Result result = verify("c0 call nowhere");
+
+        Assertions.assertEquals(List.of(new Verifier.Problem(0, "call to undefined label nowhere")),
+            result.problems());
+    }
+
+    @Test
+    void verify_RegisterOutOfRange_Problem() {
+        Verifier.Result result = verify("r0 lin 1 1\nr1 add 40 1 1\nr2 out x");
+
+        Assertions.assertEquals(List.of(
+            new Verifier.Problem(1, "register 40 out of range"),
+            new Verifier.Problem(2, "register " + Integer.MAX_VALUE + " out of range")), result.problems());
+    }
+
+    @Test
+    void verify_UnsupportedInstruction_Problem() {
+        Verifier.Result result = verify("s0 spawn w0\ns1 join\nw0 lin 1 1");
+
+        Assertions.assertEquals(List.of(
+            new Verifier.Problem(0, "not supported by the verified engine: spawn"),
+            new Verifier.Problem(1, "not supported by the verified engine: join")), result.problems());
+        Assertions.assertNull(result.program());
+    }
+
+    @Test
+    void verify_DivisionByAlwaysZeroRegister_Problem() {
+        Verifier.Result result = verify("d0 lin 1 7\nd1 sub 2 1 1\nd2 div 3 1 2");
+
+        Assertions.assertEquals(List.of(new Verifier.Problem(2, "division by register 2, which is always zero")),
+            result.problems());
+    }
+
+    @Test
+    void verify_NegativeAddress_Problem() {
+        Verifier.Result result = verify("n0 load 1 -4");
+
+        Assertions.assertEquals(List.of(new Verifier.Problem(0, "negative address -4")), result.problems());
+    }
+
+    @Test
+    void execute_VerifiedProgram_SameAsMachine() {
+        String source = "f0 lin 1 5\nf1 lin 2 1\nf2 lin 3 1\nf3 mul 2 2 1\nf4 sub 1 1 3\nf5 bnz 1 f3\nf6 out 2";
+        var m = Machine.ofSource(source);
+        m.execute();
+        var expected = m.registers().copy();
+
+        Verifier.Result result = Verifier.verify(m.labels(), m.prog());
+        var out = new ArrayList<Integer>();
+        m.out(out::add);
+        result.program().execute(m);
+
+        Assertions.assertTrue(result.verified());
+        Assertions.assertEquals(expected, m.registers());
+        Assertions.assertEquals(List.of(120), out);
+        Assertions.assertEquals(7, result.program().size());
+    }
+
+    @Test
+    void execute_AddressesWithinMemory_Run() {
+        var m = Machine.ofSource("a0 lin 1 9\na1 store 1 3\na2 load 2 3");
+        m.memory(Memory.allocate(4));
+
+        Verifier.verify(m.labels(), m.prog()).program().execute(m);
+
+        Assertions.assertEquals(9, m.memory().load(3));
+        Assertions.assertEquals(9, m.registers().register(2));
+    }
+
+    @Test
+    void execute_AddressBeyondMemory_KeepsBoundsCheck() {
+        var m = Machine.ofSource("b0 lin 1 9\nb1 store 1 0\nb2 store 1 4");
+        m.memory(Memory.allocate(4));
+        VerifiedProgram program = Verifier.verify(m.labels(), m.prog()).program();
+
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> program.execute(m));
+        Assertions.assertEquals(9, m.memory().load(0));
+    }
+
+    private static Verifier.Result verify(String source) {
+        var m = Machine.ofSource(source);
+        return Verifier.verify(m.labels(), m.prog());
+    }
+}
@@ -0,0 +1,78 @@
+package sml.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for bucketing durations in a {@link LatencyHistogram}
+ */
+class LatencyHistogramTest {
+    @Test
+    void bucket_SmallValues_OneBucketEach() {
+        for (long v = 0; v < 64; v++) {
+            Assertions.assertEquals(v, LatencyHistogram.bucket(v));
+            Assertions.assertEquals(v, LatencyHistogram.upperBound((int) v));
+        }
+    }
+
+    @Test
+    void bucket_AboveSixtyFour_SharedByNeighbours() {
+        Assertions.assertEquals(LatencyHistogram.bucket(64), LatencyHistogram.bucket(65));
+        Assertions.assertNotEquals(LatencyHistogram.bucket(65), LatencyHistogram.bucket(66));
+        Assertions.assertEquals(65, LatencyHistogram.upperBound(LatencyHistogram.bucket(64)));
+    }
+
+    @Test
+    void bucket_AnyValue_UpperBoundWithinThreePercent() {
+        int previous = -1;
+        for (long v = 1; v > 0 && v < Long.MAX_VALUE / 2; v = v * 3 / 2 + 1) {
+            int b = LatencyHistogram.bucket(v);
+            long upper = LatencyHistogram.upperBound(b);
+            Assertions.assertTrue(b >= previous, "buckets grow with the value at " + v);
+            Assertions.assertTrue(upper >= v, "upper bound " + upper + " below " + v);
+            Assertions.assertTrue(upper - v <= v * 0.03 + 1, "upper bound " + upper + " too far above " + v);
+            previous = b;
+        }
+        Assertions.assertTrue(LatencyHistogram.bucket(Long.MAX_VALUE) < 2000);
+    }
+
+    @Test
+    void quantile_OneToHundred_ReportsRanks() {
+        var h = new LatencyHistogram();
+        for (int v = 1; v <= 100; v++) {
+            h.record(v);
+        }
+
+        Assertions.assertEquals(50, h.quantile(0.5));
+        Assertions.assertEquals(99, h.quantile(0.99));
+        Assertions.assertEquals(100, h.quantile(1.0));
+        Assertions.assertEquals(100, h.count());
+        Assertions.assertEquals(5050, h.sum());
+        Assertions.assertEquals(100, h.max());
+    }
+
+    @Test
+    void quantile_Empty_Zero() {
+        Assertions.assertEquals(0, new LatencyHistogram().quantile(0.99));
+    }
+
+    @Test
+    void quantile_InMicroseconds_Converted() {
+        var h = new LatencyHistogram();
+        h.record(1_000_000);
+
+        Assertions.assertEquals(1000.0, h.quantile(0.5, TimeUnit.MICROSECONDS), 0.0);
+    }
+
+    @Test
+    void record_Negative_CountedAsZero() {
+        var h = new LatencyHistogram();
+        h.record(-5);
+
+        Assertions.assertEquals(1, h.count());
+        Assertions.assertEquals(0, h.sum());
+        Assertions.assertEquals(0, h.quantile(0.5));
+    }
+}
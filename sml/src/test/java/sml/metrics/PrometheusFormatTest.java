@@ -0,0 +1,61 @@
+package sml.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for writing a registry in the {@link PrometheusFormat}
+ */
+class PrometheusFormatTest {
+    @Test
+    void format_EveryKindOfMetric_ExpositionText() {
+        var registry = new MetricsRegistry();
+        registry.counter("runs_total", "Runs").add(3);
+        Gauge active = registry.gauge("active", "Active runs");
+        active.increment();
+        active.increment();
+        active.decrement();
+        registry.gauge("answer", "Computed when read", () -> 42);
+        LatencyHistogram h = registry.histogram("run_seconds", "Run time");
+        h.record(1_000);
+        h.record(2_000_000_000L);
+
+        Assertions.assertEquals("""
+            # HELP runs_total Runs
+            # TYPE runs_total counter
+            runs_total 3
+            # HELP active Active runs
+            # TYPE active gauge
+            active 1
+            # HELP answer Computed when read
+            # TYPE answer gauge
+            answer 42
+            # HELP run_seconds Run time
+            # TYPE run_seconds summary
+            run_seconds{quantile="0.5"} 0.000001007
+            run_seconds{quantile="0.9"} 2.000000000
+            run_seconds{quantile="0.99"} 2.000000000
+            run_seconds{quantile="0.999"} 2.000000000
+            run_seconds_sum 2.000001000
+            run_seconds_count 2
+            """, PrometheusFormat.format(registry));
+    }
+
+    @Test
+    void format_Runtime_ExportsInstructionCounterAndNoRate() {
+        RuntimeMetrics.executed(7, System.nanoTime());
+
+        String text = PrometheusFormat.format(MetricsRegistry.global());
+
+        Assertions.assertTrue(text.contains("# TYPE sml_instructions_total counter\n"), text);
+        Assertions.assertFalse(text.contains("per_second"), text);
+    }
+
+    @Test
+    void counter_SameNameAsGauge_Throws() {
+        var registry = new MetricsRegistry();
+        registry.gauge("x", "A gauge");
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.counter("x", "A counter"));
+    }
+}
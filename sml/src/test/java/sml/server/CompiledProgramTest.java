@@ -0,0 +1,31 @@
+package sml.server;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the programs cached by the server, {@link CompiledProgram}
+ */
+class CompiledProgramTest {
+    private static final String SOURCE = "p0 lin 1 3\np1 lin 2 1\np2 sub 1 1 2\np3 bnz 1 p2\n";
+
+    @Test
+    void hash_SameSource_SameHexDigest() {
+        String hash = CompiledProgram.hash(SOURCE);
+
+        Assertions.assertEquals(64, hash.length());
+        Assertions.assertTrue(hash.matches("[0-9a-f]+"), hash);
+        Assertions.assertEquals(hash, CompiledProgram.hash(new String(SOURCE)));
+        Assertions.assertNotEquals(hash, CompiledProgram.hash(SOURCE + " "));
+    }
+
+    @Test
+    void translate_Source_ProgramLabelsAndBlocks() {
+        CompiledProgram program = CompiledProgram.translate(SOURCE);
+
+        Assertions.assertEquals(CompiledProgram.hash(SOURCE), program.hash());
+        Assertions.assertEquals(4, program.prog().size());
+        Assertions.assertEquals(2, program.labels().indexOf("p2"));
+        Assertions.assertEquals(2, program.cfg().blocks().size());
+    }
+}
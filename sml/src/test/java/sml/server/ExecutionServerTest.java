@@ -0,0 +1,205 @@
+package sml.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.engine.LoopDetector;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the request protocol of the {@link ExecutionServer}
+ */
+class ExecutionServerTest {
+    private ExecutionServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new ExecutionServer(0, 4, 8, false);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        server = null;
+    }
+
+    @Test
+    void run_PipelinedRequests_RespondInRequestOrder() throws IOException {
+        var requests = new StringBuilder();
+        for (int r = 0; r < 6; r++) {
+            // earlier requests loop longer, so they tend to finish later
+            requests.append("RUN r").append(r).append('\n').append(countdown((6 - r) * 20_000)).append("END\n");
+        }
+
+        List<String> responses = exchange(requests.toString());
+
+        Assertions.assertEquals(6, responses.size());
+        for (int r = 0; r < 6; r++) {
+            Assertions.assertTrue(responses.get(r).startsWith("{\"id\":\"r" + r + "\",\"status\":\"ok\""),
+                responses.get(r));
+        }
+    }
+
+    @Test
+    void run_Program_RespondsWithRegistersAndOutput() throws IOException {
+        String response = exchange("RUN a\na0 lin 1 5\na1 lin 2 7\na2 add 3 1 2\na3 out 3\nEND\n").get(0);
+
+        Assertions.assertTrue(response.contains("\"cached\":false"), response);
+        Assertions.assertTrue(response.contains("\"registers\":[0,5,7,12,"), response);
+        Assertions.assertTrue(response.contains("\"output\":[12]"), response);
+    }
+
+    @Test
+    void run_SpawnedChildrenOutputting_NoValueLost() throws IOException {
+        var source = new StringBuilder("RUN p\n");
+        for (int t = 1; t <= 4; t++) {
+            source.append("s").append(t).append(" spawn w").append(t).append('\n');
+        }
+        source.append("j0 join\nj1 lin 4 1\nj2 bnz 4 end\n");
+        for (int t = 1; t <= 4; t++) {
+            source.append("w").append(t).append(" lin 1 250\n")
+                .append("x").append(t).append(" lin 3 ").append(t).append('\n')
+                .append("e").append(t).append(" lin 4 1\n")
+                .append("y").append(t).append(" out 3\n")
+                .append("z").append(t).append(" sub 1 1 4\n")
+                .append("v").append(t).append(" bnz 1 y").append(t).append('\n')
+                .append("f").append(t).append(" bnz 4 end\n");
+        }
+        source.append("end lin 5 0\nEND\n");
+
+        String response = exchange(source.toString()).get(0);
+
+        int from = response.indexOf("\"output\":[") + 10;
+        String output = response.substring(from, response.indexOf(']', from));
+        int[] counts = new int[5];
+        for (String value : output.split(",")) {
+            counts[Integer.parseInt(value)]++;
+        }
+        Assertions.assertArrayEquals(new int[] {0, 250, 250, 250, 250}, counts);
+    }
+
+    @Test
+    void run_SameSourceTwice_SecondIsCached() throws IOException {
+        String run = "RUN c\nc0 lin 1 1\nEND\n";
+        exchange(run);
+
+        String response = exchange(run).get(0);
+
+        Assertions.assertTrue(response.contains("\"cached\":true"), response);
+    }
+
+    @Test
+    void stats_AfterOneProgram_CountsIt() throws IOException {
+        exchange("RUN s\ns0 lin 1 1\nEND\n");
+
+        String response = exchange("STATS x\n").get(0);
+
+        Assertions.assertEquals("{\"id\":\"x\",\"status\":\"ok\",\"programs\":1,\"evictions\":0}", response);
+    }
+
+    @Test
+    void unknownRequest_RespondsWithError() throws IOException {
+        List<String> responses = exchange("FROB q\nSTATS z\n");
+
+        Assertions.assertEquals("{\"id\":\"q\",\"status\":\"error\",\"error\":\"Unknown request: FROB\"}",
+            responses.get(0));
+        Assertions.assertTrue(responses.get(1).startsWith("{\"id\":\"z\",\"status\":\"ok\""), responses.get(1));
+    }
+
+    @Test
+    void run_FailingProgram_RespondsWithErrorAndKeepsConnection() throws IOException {
+        List<String> responses = exchange("RUN bad\nb0 lin 1 0\nb1 div 2 1 1\nEND\nRUN good\ng0 lin 1 3\nEND\n");
+
+        Assertions.assertTrue(responses.get(0).startsWith("{\"id\":\"bad\",\"status\":\"error\""), responses.get(0));
+        Assertions.assertTrue(responses.get(0).contains("ArithmeticException"), responses.get(0));
+        Assertions.assertTrue(responses.get(1).startsWith("{\"id\":\"good\",\"status\":\"ok\""), responses.get(1));
+    }
+
+    @Test
+    void run_DisconnectBeforeEnd_NotExecuted() throws IOException {
+        List<String> responses = exchange("RUN t\nt0 lin 1 5\nt1 out 1\n");
+
+        Assertions.assertEquals(List.of(), responses);
+        Assertions.assertTrue(exchange("STATS y\n").get(0).contains("\"programs\":0"));
+    }
+
+    @Test
+    void run_ProgramTooLong_RespondsWithErrorAndKeepsConnection() throws IOException {
+        String line = "a0 lin 1 1\n";
+        String program = line.repeat(ExecutionServer.MAX_PROGRAM_CHARS / line.length() + 1);
+
+        List<String> responses = exchange("RUN big\n" + program + "END\nRUN good\ng0 lin 1 3\nEND\n");
+
+        Assertions.assertEquals("{\"id\":\"big\",\"status\":\"error\",\"error\":\"Program longer than "
+            + ExecutionServer.MAX_PROGRAM_CHARS + " characters\"}", responses.get(0));
+        Assertions.assertTrue(responses.get(1).startsWith("{\"id\":\"good\",\"status\":\"ok\""), responses.get(1));
+    }
+
+    @Test
+    void run_LineTooLong_RespondsWithError() throws IOException {
+        String line = "a0 lin 1 1" + " ".repeat(ExecutionServer.MAX_PROGRAM_CHARS) + "\n";
+
+        String response = exchange("RUN wide\n" + line + "END\n").get(0);
+
+        Assertions.assertTrue(response.startsWith("{\"id\":\"wide\",\"status\":\"error\""), response);
+    }
+
+    @Test
+    void run_OutputTooLong_RespondsWithError() throws IOException {
+        String response = exchange("RUN chatty\no0 lin 1 1\no1 out 1\no2 bnz 1 o1\nEND\n").get(0);
+
+        Assertions.assertTrue(response.startsWith("{\"id\":\"chatty\",\"status\":\"error\""), response);
+        Assertions.assertTrue(response.contains("output more than " + ExecutionServer.MAX_OUTPUT_VALUES + " values"),
+            response);
+    }
+
+    @Test
+    void run_InfiniteLoop_StoppedByTheDefaultBudget() throws IOException {
+        String response = exchange("RUN spin\ni0 lin 1 1\ni1 bnz 1 i1\nEND\n").get(0);
+
+        Assertions.assertTrue(response.startsWith("{\"id\":\"spin\",\"status\":\"error\""), response);
+        Assertions.assertTrue(response.contains("Step budget of " + ExecutionServer.DEFAULT_MAX_STEPS), response);
+    }
+
+    @Test
+    void run_Blocks_StoppedByTheBudget() throws IOException {
+        server.close();
+        server = new ExecutionServer(0, 1, 8, true, new LoopDetector(1_000, false));
+
+        String response = exchange("RUN spin\ni0 lin 1 1\ni1 lin 2 2\ni2 bnz 1 i1\nEND\n").get(0);
+
+        Assertions.assertTrue(response.contains("Step budget of 1000"), response);
+    }
+
+    /** Send requests on a new connection, close its output and read every response */
+    private List<String> exchange(String requests) throws IOException {
+        try (var client = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            Writer out = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(requests);
+            out.flush();
+            client.shutdownOutput();
+            var in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            var responses = new ArrayList<String>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                responses.add(line);
+            }
+            return responses;
+        }
+    }
+
+    private static String countdown(int n) {
+        return "d0 lin 1 " + n + "\nd1 lin 2 1\nd2 sub 1 1 2\nd3 bnz 1 d2\n";
+    }
+}
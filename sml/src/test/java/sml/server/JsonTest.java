@@ -0,0 +1,24 @@
+package sml.server;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for quoting strings in the server's {@link Json}
+ */
+class JsonTest {
+    @Test
+    void quote_PlainText_Quoted() {
+        Assertions.assertEquals("\"abc 12\"", Json.quote("abc 12"));
+    }
+
+    @Test
+    void quote_SpecialCharacters_Escaped() {
+        Assertions.assertEquals("\"a\\\"b\\\\c\\nd\\re\\tf\"", Json.quote("a\"b\\c\nd\re\tf"));
+    }
+
+    @Test
+    void quote_OtherControlCharacters_UnicodeEscaped() {
+        Assertions.assertEquals("\"\\u0000\\u001f\"", Json.quote("\u0000\u001f"));
+    }
+}
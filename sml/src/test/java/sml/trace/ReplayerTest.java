@@ -0,0 +1,172 @@
+package sml.trace;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.ProgramHash;
+import sml.Registers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for recording runs with the {@link Tracer} and replaying them with the {@link Replayer}
+ */
+class ReplayerTest {
+    /** Sums n..1 for n in register 1, squaring each partial sum so that values grow past one varint byte */
+    private static final String SUM = """
+        s0 lin 3 1
+        s1 add 2 2 1
+        s2 mul 4 2 2
+        s3 sub 1 1 3
+        s4 bnz 1 s1
+        s5 out 2
+        """;
+    /** A segment just above the minimum size, so that a few loop iterations fill it */
+    private static final int SEGMENT = TraceBuffer.KEYFRAME + TraceBuffer.MAX_RECORD + 40;
+
+    private Machine m;
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        m = Machine.ofSource(SUM);
+        m.out(value -> {
+        });
+        dir = Files.createTempDirectory("sml-trace");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path f : files.toList()) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    void forwardAndBackward_WholeRun_ReproduceRecordedRegisters() {
+        List<Registers> expected = snapshots(start(10));
+        TraceBuffer buffer = TraceBuffer.allocate(1 << 16, 4096, ProgramHash.of(m.prog()));
+        new Tracer(buffer).execute(m, start(10));
+
+        var replayer = new Replayer(buffer, m.labels(), m.prog());
+
+        Assertions.assertEquals(0, replayer.firstStep());
+        Assertions.assertEquals(expected.size() - 1, replayer.lastStep());
+        Assertions.assertEquals(expected.get(0), replayer.registers());
+        for (int step = 1; step < expected.size(); step++) {
+            Assertions.assertTrue(replayer.forward());
+            Assertions.assertEquals(expected.get(step), replayer.registers(), "forward to step " + step);
+        }
+        Assertions.assertFalse(replayer.forward());
+        for (int step = expected.size() - 2; step >= 0; step--) {
+            Assertions.assertTrue(replayer.backward());
+            Assertions.assertEquals(expected.get(step), replayer.registers(), "backward to step " + step);
+        }
+        Assertions.assertFalse(replayer.backward());
+    }
+
+    @Test
+    void replay_RingWrappedAcrossSegments_HoldsLatestSteps() {
+        List<Registers> expected = snapshots(start(200));
+        TraceBuffer buffer = TraceBuffer.allocate(128 + 3 * SEGMENT, SEGMENT, ProgramHash.of(m.prog()));
+        new Tracer(buffer).execute(m, start(200));
+
+        var replayer = new Replayer(buffer, m.labels(), m.prog());
+
+        Assertions.assertEquals(3, buffer.segments());
+        Assertions.assertTrue(replayer.firstStep() > 0, "the oldest steps are overwritten");
+        Assertions.assertEquals(expected.size() - 1, replayer.lastStep());
+        int first = (int) replayer.firstStep();
+        Assertions.assertEquals(expected.get(first), replayer.registers());
+        for (int step = first + 1; step < expected.size(); step++) {
+            Assertions.assertTrue(replayer.forward());
+            Assertions.assertEquals(expected.get(step), replayer.registers(), "forward to step " + step);
+        }
+        replayer.seek(first + 1);
+        Assertions.assertEquals(first + 1, replayer.step());
+        Assertions.assertEquals(expected.get(first + 1), replayer.registers());
+    }
+
+    @Test
+    void open_TraceFile_ReplaysAfterReopening() throws IOException {
+        Path file = dir.resolve("run.trace");
+        TraceBuffer written = TraceBuffer.create(file, 1 << 16, 4096, ProgramHash.of(m.prog()));
+        new Tracer(written).execute(m, start(5));
+        Registers last = m.registers().copy();
+
+        var replayer = new Replayer(TraceBuffer.open(file), m.labels(), m.prog());
+        replayer.seek(replayer.lastStep());
+
+        Assertions.assertEquals(last, replayer.registers());
+    }
+
+    @Test
+    void open_ForeignFile_Throws() throws IOException {
+        Path file = dir.resolve("foreign");
+        Files.write(file, new byte[256]);
+
+        Assertions.assertThrows(IOException.class, () -> TraceBuffer.open(file));
+    }
+
+    @Test
+    void open_CorruptHeader_Throws() throws IOException {
+        Path file = dir.resolve("corrupt.trace");
+        TraceBuffer.create(file, 1 << 14, 4096, ProgramHash.of(m.prog()));
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(8, 1000); // more segments than the file holds
+        Files.write(file, bytes);
+
+        IOException e = Assertions.assertThrows(IOException.class, () -> TraceBuffer.open(file));
+        Assertions.assertTrue(e.getMessage().startsWith("Corrupt trace file"), e.getMessage());
+    }
+
+    @Test
+    void constructor_TraceOfOtherProgram_Throws() {
+        TraceBuffer buffer = TraceBuffer.allocate(1 << 14, 4096, ProgramHash.of(m.prog()));
+        new Tracer(buffer).execute(m, start(3));
+        var other = Machine.ofSource("o0 lin 1 1");
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new Replayer(buffer, other.labels(), other.prog()));
+    }
+
+    @Test
+    void constructor_EmptyTrace_Throws() {
+        TraceBuffer buffer = TraceBuffer.allocate(1 << 14, 4096, ProgramHash.of(m.prog()));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Replayer(buffer, m.labels(), m.prog()));
+    }
+
+    /** Returns the registers before the first step and after every step of a run, stepping by hand */
+    private List<Registers> snapshots(Registers initial) {
+        List<Instruction> prog = m.prog();
+        m.registers(initial.copy());
+        m.pc(0);
+        var snapshots = new ArrayList<Registers>();
+        snapshots.add(m.registers().copy());
+        while (m.pc() < prog.size()) {
+            Instruction ins = prog.get(m.pc());
+            m.pc(m.pc() + 1);
+            ins.execute(m);
+            snapshots.add(m.registers().copy());
+        }
+        return snapshots;
+    }
+
+    private static Registers start(int n) {
+        var regs = new Registers();
+        regs.register(1, n);
+        return regs;
+    }
+}